@@ -51,6 +51,13 @@ abstract public class AbstractBuildSupportMojo extends AbstractDockerMojo {
     @Parameter(property = "docker.target.dir", defaultValue="target/docker")
     private String outputDirectory;
 
+    /**
+     * Stream the build context directly to the Docker daemon while creating it instead
+     * of creating a tar archive in the target directory first
+     */
+    @Parameter(property = "docker.streamBuildContext", defaultValue = "false")
+    private boolean streamBuildContext;
+
     protected MojoParameters createMojoParameters() {
         return new MojoParameters(session, project, archive, mavenFileFilter, mavenFilterReader,
                                   sourceDirectory, outputDirectory);
@@ -63,7 +70,7 @@ abstract public class AbstractBuildSupportMojo extends AbstractDockerMojo {
         autoPullBaseImage(hub, imageConfig);
 
         MojoParameters params = createMojoParameters();
-        hub.getBuildService().buildImage(imageConfig, params, checkForNocache(imageConfig), addBuildArgs());
+        hub.getBuildService().buildImage(imageConfig, params, checkForNocache(imageConfig), addBuildArgs(), streamBuildContext);
     }
 
     private Map<String, String> addBuildArgs() {
@@ -6,14 +6,21 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 
+import javax.management.JMException;
+
 import io.fabric8.maven.docker.access.*;
 import io.fabric8.maven.docker.access.hc.DockerAccessWithHcClient;
+import io.fabric8.maven.docker.access.hc.metrics.HttpMetrics;
 import io.fabric8.maven.docker.config.ConfigHelper;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.service.ContainerStateFile;
+import io.fabric8.maven.docker.service.DockerAccessCache;
 import io.fabric8.maven.docker.service.QueryService;
 import io.fabric8.maven.docker.service.ServiceHub;
 import io.fabric8.maven.docker.service.ServiceHubFactory;
 import io.fabric8.maven.docker.util.*;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.*;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -53,9 +60,21 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
     // Minimal API version, independent of any feature used
     public static final String API_VERSION = "1.18";
 
+    // Newest API version the requests are written for, used if the daemon supports it and no version is configured
+    public static final String MAX_API_VERSION = "1.24";
+
     // Filename for holding the build timestamp
     public static final String DOCKER_BUILD_TIMESTAMP = "docker/build.timestamp";
 
+    // Filename for the HTTP metrics of the Docker requests
+    public static final String DOCKER_METRICS = "docker/metrics.json";
+
+    // Filename for the containers created by docker:start
+    public static final String DOCKER_CONTAINER_STATE = "docker/containers.properties";
+
+    // Filename for the details of known Docker daemons
+    public static final String DOCKER_DAEMONS = "docker/daemons.json";
+
     // Current maven project
     @Parameter(defaultValue= "${project}", readonly = true)
     protected MavenProject project;
@@ -118,6 +137,10 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
     @Parameter(property = "docker.logStdout", defaultValue = "false")
     private boolean logStdout;
 
+    // Time in ms for which followed log entries are held back for printing them in time order, 0 to switch off
+    @Parameter(property = "docker.logReorderWindow", defaultValue = "0")
+    private int logReorderWindow;
+
     // Whether to skip docker altogether
     @Parameter(property = "docker.skip", defaultValue = "false")
     private boolean skip;
@@ -144,6 +167,22 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
     @Parameter(property = "docker.maxConnections", defaultValue = "100")
     private int maxConnections;
 
+    // Whether to record metrics for the requests to the Docker daemon
+    @Parameter(property = "docker.metrics", defaultValue = "false")
+    private boolean metrics;
+
+    // Whether to mirror the state of the Docker daemon in memory, kept up to date by its events
+    @Parameter(property = "docker.mirrorState", defaultValue = "false")
+    private boolean mirrorState;
+
+    // Milliseconds after which the mirrored state is fetched again, even if no events have been received
+    @Parameter(property = "docker.mirrorMaxStaleness", defaultValue = "60000")
+    private long mirrorMaxStaleness;
+
+    // Whether to reuse the connection to the Docker daemon for all goals of a session
+    @Parameter(property = "docker.reuseConnection", defaultValue = "true")
+    private boolean reuseConnection;
+
     // Authentication information
     @Parameter
     Map authConfig;
@@ -170,6 +209,9 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
     // API version as requested from the client
     private String serverVersion;
 
+    // Creates further access objects to the daemon used by this goal
+    private DockerAccessCache.Factory dockerAccessFactory;
+
     /**
      * Entry point for this plugin. It will set up the helper class and then calls
      * {@link #executeInternal(ServiceHub)}
@@ -187,9 +229,20 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
             // The 'real' images configuration to use (configured images + externally resolved images)
             String minimalApiVersion = initImageConfiguration(getBuildTimestamp());
             DockerAccess access = null;
+            CachingDockerAccess cachingAccess = null;
+            HttpMetrics httpMetrics = metrics ? createHttpMetrics() : null;
             try {
-                access = createDockerAccess(minimalApiVersion);
-                ServiceHub serviceHub = serviceHubFactory.createServiceHub(project, session, access, log, logSpecFactory);
+                access = createDockerAccess(minimalApiVersion, httpMetrics);
+                if (access != null && mirrorState) {
+                    DaemonStateMirror mirror = new DaemonStateMirror(access, log, mirrorMaxStaleness);
+                    mirror.startFollowing();
+                    cachingAccess = mirror;
+                } else if (access != null && isDockerResponseCachingAllowed()) {
+                    cachingAccess = new CachingDockerAccess(access);
+                }
+                ServiceHub serviceHub = serviceHubFactory.createServiceHub(project, session,
+                                                                           cachingAccess != null ? cachingAccess : access,
+                                                                           dockerAccessFactory, log, logSpecFactory);
                 executeInternal(serviceHub);
             } catch (DockerAccessException exp) {
                 log.error("%s", exp.getMessage());
@@ -198,9 +251,19 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
                 log.error("%s", exp.getMessage());
                 throw exp;
             } finally {
-                if (access != null) {
+                if (cachingAccess instanceof DaemonStateMirror) {
+                    ((DaemonStateMirror) cachingAccess).stopFollowing();
+                }
+                if (cachingAccess != null) {
+                    log.debug("Docker responses: %d taken from cache, %d fetched",
+                              cachingAccess.getHits(), cachingAccess.getMisses());
+                }
+                if (access != null && !serviceHubFactory.getDockerAccessCache().isCached(access)) {
                     access.shutdown();
                 }
+                if (httpMetrics != null) {
+                    storeHttpMetrics(httpMetrics);
+                }
             }
         }
     }
@@ -265,24 +328,83 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
         return imageConfigs;
     }
 
-    private DockerAccess createDockerAccess(String minimalVersion) throws MojoExecutionException, MojoFailureException {
+    private HttpMetrics createHttpMetrics() {
+        HttpMetrics ret = new HttpMetrics();
+        try {
+            ret.registerMBean(project.getArtifactId() + ":" + getGoalName());
+        } catch (JMException e) {
+            log.warn("Cannot register HTTP metrics MBean: %s", e.getMessage());
+        }
+        return ret;
+    }
+
+    private void storeHttpMetrics(HttpMetrics httpMetrics) {
+        File metricsFile = new File(project.getBuild().getDirectory(), DOCKER_METRICS);
+        try {
+            httpMetrics.store(metricsFile, getGoalName());
+            log.verbose("Stored HTTP metrics in %s", metricsFile);
+        } catch (IOException e) {
+            log.warn("Cannot store HTTP metrics in %s: %s", metricsFile, e.getMessage());
+        }
+        try {
+            httpMetrics.unregisterMBean();
+        } catch (JMException e) {
+            log.warn("Cannot unregister HTTP metrics MBean: %s", e.getMessage());
+        }
+    }
+
+    private String getGoalName() {
+        return execution != null ? execution.getGoal() : getClass().getSimpleName();
+    }
+
+    private DockerAccess createDockerAccess(String minimalVersion, final HttpMetrics httpMetrics) throws MojoExecutionException, MojoFailureException {
         DockerAccess access = null;
         if (isDockerAccessRequired()) {
             try {
                 DockerConnectionDetector dockerConnectionDetector = createDockerConnectionDetector();
-                DockerConnectionDetector.ConnectionParameter connectionParam =
+                final DockerConnectionDetector.ConnectionParameter connectionParam =
                     dockerConnectionDetector.detectConnectionParameter(dockerHost, certPath);
-                String version =  minimalVersion != null ? minimalVersion : API_VERSION;
-                access = new DockerAccessWithHcClient("v" + version, connectionParam.getUrl(),
-                                                      connectionParam.getCertPath(),
-                                                      maxConnections,
-                                                      log);
-                access.start();
+                final String requiredVersion =  minimalVersion != null ? minimalVersion : API_VERSION;
+                // Metrics are recorded per goal, so the connection can't be reused then
+                boolean reuse = reuseConnection && httpMetrics == null && session != null;
+                DockerAccessCache accessCache = serviceHubFactory.getDockerAccessCache();
+
+                // The request version depends on the daemon, so its capabilities are fetched first
+                ServerCapabilities capabilities = reuse ? accessCache.getCapabilities(session.getRequest(), connectionParam.getUrl()) : null;
+                DockerAccess probe = null;
+                if (capabilities == null) {
+                    probe = createDockerAccessFactory(connectionParam, requiredVersion, httpMetrics).create(log, null);
+                    try {
+                        capabilities = probe.getServerCapabilities();
+                    } catch (DockerAccessException exp) {
+                        probe.shutdown();
+                        throw exp;
+                    }
+                }
                 setDockerHostAddressProperty(connectionParam.getUrl());
-                serverVersion = access.getServerApiVersion();
-                if (!EnvUtil.greaterOrEqualsVersion(serverVersion,version)) {
+                serverVersion = capabilities.getApiVersion();
+                if (!EnvUtil.greaterOrEqualsVersion(serverVersion, requiredVersion)) {
+                    if (probe != null) {
+                        probe.shutdown();
+                    }
                     throw new MojoExecutionException(
-                        String.format("Server API version %s is smaller than required API version %s", serverVersion, version));
+                        String.format("Server API version %s is smaller than required API version %s", serverVersion, requiredVersion));
+                }
+
+                String version = negotiateApiVersion(requiredVersion, serverVersion);
+                log.debug("Using API version %s for Docker daemon with API version %s", version, serverVersion);
+                DockerAccessCache.Factory factory = createDockerAccessFactory(connectionParam, version, httpMetrics);
+                dockerAccessFactory = createDockerAccessFactory(connectionParam, version, null);
+                if (probe != null && !reuse && version.equals(requiredVersion)) {
+                    access = probe;
+                } else {
+                    if (probe != null) {
+                        probe.shutdown();
+                    }
+                    access = reuse ?
+                        accessCache.get(session.getRequest(), connectionParam.getUrl(), connectionParam.getCertPath(), version,
+                                        maxConnections, log, factory, capabilities) :
+                        factory.create(log, capabilities);
                 }
             }
             catch (IOException e) {
@@ -292,6 +414,41 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
         return access;
     }
 
+    // A configured API version is used as it is, otherwise the newest version supported by both sides
+    private String negotiateApiVersion(String requiredVersion, String serverApiVersion) {
+        if (apiVersion != null) {
+            return requiredVersion;
+        }
+        String supported = EnvUtil.greaterOrEqualsVersion(serverApiVersion, MAX_API_VERSION) ? MAX_API_VERSION : serverApiVersion;
+        return EnvUtil.extractLargerVersion(requiredVersion, supported);
+    }
+
+    private DockerAccessCache.Factory createDockerAccessFactory(final DockerConnectionDetector.ConnectionParameter connectionParam,
+                                                                final String version, final HttpMetrics httpMetrics) {
+        final ServerCapabilitiesFile capabilitiesFile = getServerCapabilitiesFile();
+        return new DockerAccessCache.Factory() {
+            @Override
+            public DockerAccess create(Logger log, ServerCapabilities capabilities) throws IOException {
+                DockerAccess ret = new DockerAccessWithHcClient("v" + version, connectionParam.getUrl(),
+                                                                connectionParam.getCertPath(),
+                                                                maxConnections,
+                                                                httpMetrics,
+                                                                capabilities,
+                                                                capabilitiesFile,
+                                                                log);
+                ret.start();
+                return ret;
+            }
+        };
+    }
+
+    // Details of the daemons known from previous runs, kept with the build output
+    private ServerCapabilitiesFile getServerCapabilitiesFile() {
+        return project != null && project.getBuild() != null ?
+            new ServerCapabilitiesFile(new File(project.getBuild().getDirectory(), DOCKER_DAEMONS)) :
+            null;
+    }
+
     private DockerConnectionDetector createDockerConnectionDetector() {
         return new DockerConnectionDetector(getDockerHostProviders());
     }
@@ -331,6 +488,17 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
         return true;
     }
 
+    /**
+     * Override this if your mojo watches the Docker daemon for changes not done by itself. Otherwise
+     * answers for inspecting and listing containers, images and networks are cached while the goal runs.
+     * If the state of the daemon is mirrored, answers are always cached since changes are noticed then.
+     *
+     * @return <code >true</code> as the default value
+     */
+    protected boolean isDockerResponseCachingAllowed() {
+        return true;
+    }
+
     /**
      * Hook for subclass for doing the real job
      *
@@ -384,6 +552,34 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
         return new PomLabel(project.getGroupId(),project.getArtifactId(),project.getVersion());
     }
 
+    // Whether a project built after this one in the reactor uses this plugin, too. Shared containers
+    // are kept for such projects.
+    protected boolean isPluginUsedByLaterProjects() {
+        if (session == null || execution == null) {
+            return false;
+        }
+        String pluginKey = execution.getMojoDescriptor().getPluginDescriptor().getPluginLookupKey();
+        List<MavenProject> projects = session.getProjects();
+        for (int i = projects.indexOf(project) + 1; i > 0 && i < projects.size(); i++) {
+            for (Plugin plugin : projects.get(i).getBuildPlugins()) {
+                if (pluginKey.equals(plugin.getKey())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Containers created by docker:start for this project
+    protected ContainerStateFile loadContainerStateFile() throws MojoExecutionException {
+        File file = new File(project.getBuild().getDirectory(), DOCKER_CONTAINER_STATE);
+        try {
+            return ContainerStateFile.load(file);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read started containers from " + file + ": " + e.getMessage(), e);
+        }
+    }
+
 
     protected AuthConfig prepareAuthConfig(ImageName image, String configuredRegistry, boolean isPush)
             throws MojoExecutionException {
@@ -396,7 +592,7 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
     protected LogDispatcher getLogDispatcher(ServiceHub hub) {
         LogDispatcher dispatcher = (LogDispatcher) getPluginContext().get(CONTEXT_KEY_LOG_DISPATCHER);
         if (dispatcher == null) {
-            dispatcher = new LogDispatcher(hub.getDockerAccess());
+            dispatcher = new LogDispatcher(hub.getDockerAccess(), logReorderWindow);
             getPluginContext().put(CONTEXT_KEY_LOG_DISPATCHER, dispatcher);
         }
         return dispatcher;
@@ -446,7 +642,8 @@ public abstract class AbstractDockerMojo extends AbstractMojo implements Context
         }
     }
 
-    private void updatePreviousPulledImageCache(String image) {
+    // Synchronized since images can be pulled in parallel
+    private synchronized void updatePreviousPulledImageCache(String image) {
         ImagePullCache cache = getPreviouslyPulledImageCache();
         cache.add(image);
         session.getUserProperties().setProperty(CONTEXT_KEY_PREVIOUSLY_PULLED, cache.toString());
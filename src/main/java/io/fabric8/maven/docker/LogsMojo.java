@@ -1,6 +1,11 @@
 package io.fabric8.maven.docker;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.model.Container;
@@ -11,8 +16,12 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import io.fabric8.maven.docker.config.ImageConfiguration;
+import io.fabric8.maven.docker.log.LogCheckpoints;
 import io.fabric8.maven.docker.log.LogOutputSpec;
 import io.fabric8.maven.docker.log.LogDispatcher;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.joda.time.DateTime;
+import io.fabric8.maven.docker.service.ContainerSnapshot;
 import io.fabric8.maven.docker.service.QueryService;
 
 
@@ -31,6 +40,11 @@ import io.fabric8.maven.docker.service.QueryService;
 @Mojo(name = "logs")
 public class LogsMojo extends AbstractDockerMojo {
 
+    // Filename for the log checkpoints
+    public static final String DOCKER_LOG_CHECKPOINTS = "docker/log-checkpoints.properties";
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("^(\\d+)([smhd])$");
+
     // Whether to log infinitely or to show only the logs happened until now.
     @Parameter(property = "docker.follow", defaultValue = "false")
     private boolean follow;
@@ -39,37 +53,117 @@ public class LogsMojo extends AbstractDockerMojo {
     @Parameter(property = "docker.logAll", defaultValue = "false")
     private boolean logAll;
 
+    // Show only the given number of lines from the end of the logs (all if negative)
+    @Parameter(property = "docker.logTail", defaultValue = "-1")
+    private int logTail;
+
+    // Show only log entries since this time, either a timestamp or a duration like "10m"
+    @Parameter(property = "docker.logSince")
+    private String logSince;
+
+    // Remember the last log entry seen per container and show only newer entries in the next run
+    @Parameter(property = "docker.logCheckpoint", defaultValue = "false")
+    private boolean logCheckpoint;
+
+    private Timestamp since;
+    private LogCheckpoints checkpoints;
+
     @Override
     protected void executeInternal(ServiceHub hub) throws MojoExecutionException, DockerAccessException {
         QueryService queryService = hub.getQueryService();
         LogDispatcher logDispatcher = getLogDispatcher(hub);
+        since = parseSince(logSince);
+        checkpoints = logCheckpoint ? loadCheckpoints() : null;
 
+        // All running containers in one go instead of a request per image
+        ContainerSnapshot containers = queryService.getContainerSnapshot(null, null);
         for (ImageConfiguration image : getResolvedImages()) {
             String imageName = image.getName();
             if (logAll) {
-                for (Container container : queryService.getContainersForImage(imageName)) {
+                for (Container container : containers.getContainersForImage(imageName)) {
                     doLogging(logDispatcher, image, container.getId());
                 }
             } else {
-                Container container = queryService.getLatestContainerForImage(imageName);
+                Container container = containers.getLatestContainerForImage(imageName);
                 if (container != null) {
                     doLogging(logDispatcher, image, container.getId());
                 }
             }
         }
         if (follow) {
+            if (checkpoints != null) {
+                // Following ends only by stopping Maven
+                Runtime.getRuntime().addShutdownHook(new Thread("docker-log-checkpoints") {
+                    @Override
+                    public void run() {
+                        saveCheckpoints();
+                    }
+                });
+            }
             // Block forever ....
             waitForEver();
         }
+        saveCheckpoints();
+    }
+
+    private Timestamp parseSince(String value) throws MojoExecutionException {
+        if (value == null || value.trim().length() == 0) {
+            return null;
+        }
+        Matcher matcher = DURATION_PATTERN.matcher(value.trim());
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group(1));
+            TimeUnit unit = TimeUnit.SECONDS;
+            String u = matcher.group(2);
+            if (u.equals("m")) {
+                unit = TimeUnit.MINUTES;
+            } else if (u.equals("h")) {
+                unit = TimeUnit.HOURS;
+            } else if (u.equals("d")) {
+                unit = TimeUnit.DAYS;
+            }
+            return new Timestamp(new DateTime(System.currentTimeMillis() - unit.toMillis(amount)).toString());
+        }
+        try {
+            return new Timestamp(value.trim());
+        } catch (IllegalArgumentException exp) {
+            throw new MojoExecutionException("Invalid value '" + value + "' for 'logSince'. " +
+                                             "Must be either an ISO 8601 timestamp or a duration like '10m'");
+        }
+    }
+
+    private LogCheckpoints loadCheckpoints() throws MojoExecutionException {
+        File file = getCheckpointFile();
+        try {
+            return LogCheckpoints.load(file);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read log checkpoints from " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void saveCheckpoints() {
+        if (checkpoints != null) {
+            File file = getCheckpointFile();
+            try {
+                checkpoints.save();
+                log.verbose("Stored log checkpoints in %s", file);
+            } catch (IOException e) {
+                log.warn("Cannot store log checkpoints in %s: %s", file, e.getMessage());
+            }
+        }
+    }
+
+    private File getCheckpointFile() {
+        return new File(project.getBuild().getDirectory(), DOCKER_LOG_CHECKPOINTS);
     }
 
     private void doLogging(LogDispatcher logDispatcher, ImageConfiguration imageConfig, String container) throws MojoExecutionException {
         LogOutputSpec spec = serviceHubFactory.getLogOutputSpecFactory().createSpec(container, imageConfig);
         try {
             if (follow) {
-                logDispatcher.trackContainerLog(container, spec);
+                logDispatcher.trackContainerLog(container, spec, since, logTail, checkpoints);
             } else {
-                logDispatcher.fetchContainerLog(container, spec);
+                logDispatcher.fetchContainerLog(container, spec, since, logTail, checkpoints);
             }
         } catch (FileNotFoundException e) {
             throw new MojoExecutionException("Can not log to file " + spec.getFile());
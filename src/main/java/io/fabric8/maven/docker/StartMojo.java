@@ -8,12 +8,16 @@ package io.fabric8.maven.docker;
  * the License.
  */
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.*;
+import io.fabric8.maven.docker.access.CachingDockerAccess;
 import io.fabric8.maven.docker.access.DockerAccess;
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.access.PortMapping;
@@ -22,6 +26,9 @@ import io.fabric8.maven.docker.access.log.LogGetHandle;
 import io.fabric8.maven.docker.config.*;
 import io.fabric8.maven.docker.log.LogDispatcher;
 import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.service.ContainerStateFile;
+import io.fabric8.maven.docker.service.HealthyWaitChecker;
 import io.fabric8.maven.docker.service.QueryService;
 import io.fabric8.maven.docker.service.RunService;
 import io.fabric8.maven.docker.service.ServiceHub;
@@ -52,6 +59,26 @@ public class StartMojo extends AbstractDockerMojo {
     @Parameter(property = "docker.startParallel", defaultValue = "false")
     private boolean startParallel;
 
+    // Max number of pulls, creates and starts running at the same time when starting in parallel
+    @Parameter(property = "docker.startParallelLimit", defaultValue = "8")
+    private int startParallelLimit;
+
+    /**
+     * Whether to take over running containers created from the same configuration and image
+     * instead of creating new ones. Containers taken over are neither waited for nor is their
+     * post-start command executed again.
+     */
+    @Parameter(property = "docker.reuseContainers", defaultValue = "false")
+    private boolean reuseContainers;
+
+    /**
+     * Whether to allocate free host ports for dynamic port mappings before creating the containers,
+     * so that the ports need not be looked up after the start. Only useful if the Docker daemon runs
+     * on the local host.
+     */
+    @Parameter(property = "docker.preallocatePorts", defaultValue = "false")
+    private boolean preallocatePorts;
+
     // whether to block during to start. Set it via System property docker.follow
     private boolean follow;
 
@@ -81,16 +108,6 @@ public class StartMojo extends AbstractDockerMojo {
     @Parameter
     protected String portPropertyFile;
 
-    private static final class StartedContainer {
-        public final ImageConfiguration imageConfig;
-        public final String containerId;
-
-        private StartedContainer(ImageConfiguration imageConfig, String containerId) {
-            this.imageConfig = imageConfig;
-            this.containerId = containerId;
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -110,51 +127,16 @@ public class StartMojo extends AbstractDockerMojo {
         PortMapping.PropertyWriteHelper portMappingPropertyWriteHelper = new PortMapping.PropertyWriteHelper(portPropertyFile);
 
         boolean success = false;
-
-        final ExecutorService executorService = getExecutorService();
-        final ExecutorCompletionService<StartedContainer> containerStartupService = new ExecutorCompletionService<>(executorService);
-
         try {
-            // All aliases which are provided in the image configuration:
-            final Set<String> imageAliases = new HashSet<>();
-            // Remember all aliases which has been started
-            final Set<String> startedContainerAliases = new HashSet<>();
-
-            // All images to to start
-            Queue<ImageConfiguration> imagesWaitingToStart = prepareStart(hub, queryService, runService, imageAliases);
-
-            // Queue of images to start as containers
-            final Queue<ImageConfiguration> imagesStarting = new ArrayDeque<>();
+            List<ImageConfiguration> images = prepareStart(queryService, runService);
 
-            // Loop until every image has been started and the start of all images has been completed
-            while (!hasBeenAllImagesStarted(imagesWaitingToStart, imagesStarting)) {
-
-                final List<ImageConfiguration> imagesReadyToStart =
-                    getImagesWhoseDependenciesHasStarted(imagesWaitingToStart, startedContainerAliases, imageAliases);
-
-                for (final ImageConfiguration image : imagesReadyToStart) {
-
-                    startImage(image, hub, containerStartupService, portMappingPropertyWriteHelper);
-
-                    // Move from waiting to starting status
-                    imagesStarting.add(image);
-                    imagesWaitingToStart.remove(image);
-                }
-
-                // Wait for the next container to finish startup
-                final Future<StartedContainer> startedContainerFuture = containerStartupService.take();
-                try {
-                    final StartedContainer startedContainer = startedContainerFuture.get();
-                    final ImageConfiguration imageConfig = startedContainer.imageConfig;
-
-                    updateAliasesSet(startedContainerAliases, imageConfig.getAlias());
-                    exposeContainerProps(hub.getQueryService(), startedContainer);
-
-                    // All done with this image
-                    imagesStarting.remove(imageConfig);
-                } catch (ExecutionException e) {
-                    rethrowCause(e);
-                }
+            StartPipeline<ImageConfiguration> pipeline =
+                new StartPipeline<>(new ImageStartStages(hub, portMappingPropertyWriteHelper, loadContainerStateFile()),
+                                    startParallelLimit, !startParallel);
+            try {
+                pipeline.run(images);
+            } catch (ExecutionException e) {
+                rethrowCause(e);
             }
 
             portMappingPropertyWriteHelper.write();
@@ -172,12 +154,11 @@ public class StartMojo extends AbstractDockerMojo {
         } catch (IOException e) {
             throw new MojoExecutionException("I/O Error",e);
         } finally {
-            shutdownExecutorService(executorService);
-
             // Rollback if not all could be started
             if (!success) {
                 log.error("Error occurred during container startup, shutting down...");
                 runService.stopStartedContainers(keepContainer, removeVolumes, autoCreateCustomNetworks, getPomLabel());
+                runService.releaseSharedContainers(getPomLabel(), isPluginUsedByLaterProjects(), keepContainer, removeVolumes);
             }
         }
     }
@@ -186,26 +167,11 @@ public class StartMojo extends AbstractDockerMojo {
         return Boolean.valueOf(System.getProperty("docker.follow", "false"));
     }
 
-    // Check if we are done
-    private boolean hasBeenAllImagesStarted(Queue<ImageConfiguration> imagesWaitingToStart, Queue<ImageConfiguration> imagesStarting) {
-        return imagesWaitingToStart.isEmpty() && imagesStarting.isEmpty();
-    }
-
-    private void shutdownExecutorService(ExecutorService executorService) {
-        if (!executorService.isShutdown()) {
-            executorService.shutdown();
-            try {
-                executorService.awaitTermination(10, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                log.warn("ExecutorService did not shutdown normally.");
-                executorService.shutdownNow();
-            }
-        }
-    }
-
-    private void rethrowCause(ExecutionException e) throws IOException, InterruptedException {
+    private void rethrowCause(ExecutionException e) throws IOException, InterruptedException, MojoExecutionException {
         Throwable cause = e.getCause();
-        if (cause instanceof RuntimeException) {
+        if (cause instanceof MojoExecutionException) {
+            throw (MojoExecutionException) cause;
+        } else if (cause instanceof RuntimeException) {
             throw (RuntimeException) cause;
         } else if (cause instanceof IOException) {
             throw (IOException) cause;
@@ -217,127 +183,160 @@ public class StartMojo extends AbstractDockerMojo {
         }
     }
 
-    private void updateAliasesSet(Set<String> aliasesSet, String alias) {
-        // Add the alias to the set only when it is set. When it's
-        // not set it cant be used in the dependency resolution anyway, so we are ignoring
-        // it hence.
-        if (alias != null) {
-            aliasesSet.add(alias);
+    // Prepare start like creating custom networks and return the list of images to start in the correct order
+    private List<ImageConfiguration> prepareStart(QueryService queryService, RunService runService)
+        throws DockerAccessException {
+        final List<ImageConfiguration> images = new ArrayList<>();
+        for (StartOrderResolver.Resolvable resolvable : runService.getImagesConfigsInOrder(queryService, getResolvedImages())) {
+            final ImageConfiguration imageConfig = (ImageConfiguration) resolvable;
+
+            RunImageConfiguration runConfig = imageConfig.getRunConfiguration();
+            NetworkConfig config = runConfig.getNetworkingConfig();
+            if (autoCreateCustomNetworks && config.isCustomNetwork()) {
+                runService.createCustomNetworkIfNotExistant(config.getCustomNetwork());
+            }
+            images.add(imageConfig);
         }
+        return images;
     }
 
-    private void startImage(final ImageConfiguration image,
-                            final ServiceHub hub,
-                            final ExecutorCompletionService<StartedContainer> startingContainers,
-                            final PortMapping.PropertyWriteHelper portMappingPropertyWriteHelper) {
-
-        final RunService runService = hub.getRunService();
-        final Properties projProperties = project.getProperties();
-        final RunImageConfiguration runConfig = image.getRunConfiguration();
-        final PortMapping portMapping = runService.createPortMapping(runConfig, projProperties);
-        final LogDispatcher dispatcher = getLogDispatcher(hub);
-
-        startingContainers.submit(new Callable<StartedContainer>() {
-            @Override
-            public StartedContainer call() throws Exception {
-                final String containerId = runService.createAndStartContainer(image, portMapping, getPomLabel(), projProperties);
-
-                // Update port-mapping writer
-                portMappingPropertyWriteHelper.add(portMapping, runConfig.getPortPropertyFile());
+    // Stages for starting a single image, run by the start pipeline
+    private class ImageStartStages implements StartPipeline.Stages<ImageConfiguration> {
+
+        private final ServiceHub hub;
+        private final RunService runService;
+        private final PortMapping.PropertyWriteHelper portMappingPropertyWriteHelper;
+        private final LogDispatcher dispatcher;
+        private final Properties projProperties;
+        private final ContainerStateFile containerStateFile;
+
+        // Port mappings of the created containers, used when starting them
+        private final ConcurrentMap<String, PortMapping> portMappings = new ConcurrentHashMap<>();
+
+        ImageStartStages(ServiceHub hub, PortMapping.PropertyWriteHelper portMappingPropertyWriteHelper,
+                         ContainerStateFile containerStateFile) {
+            this.hub = hub;
+            this.containerStateFile = containerStateFile;
+            this.runService = hub.getRunService();
+            this.portMappingPropertyWriteHelper = portMappingPropertyWriteHelper;
+            this.dispatcher = getLogDispatcher(hub);
+            this.projProperties = project.getProperties();
+        }
 
-                if (showLogs(image)) {
-                    dispatcher.trackContainerLog(containerId,
-                            serviceHubFactory.getLogOutputSpecFactory().createSpec(containerId, image));
-                }
+        @Override
+        public void pull(ImageConfiguration image) throws DockerAccessException, MojoExecutionException {
+            // Still to check: How to work with linking, volumes, etc ....
+            //String imageName = new ImageName(imageConfig.getName()).getFullNameWithTag(registry);
+            checkImageWithAutoPull(hub, image.getName(),
+                                   getConfiguredRegistry(image, pullRegistry), image.getBuildConfiguration() == null);
+        }
 
-                // Wait if requested
-                waitIfRequested(hub,image, projProperties, containerId);
-                WaitConfiguration waitConfig = runConfig.getWaitConfiguration();
-                if (waitConfig != null && waitConfig.getExec() != null && waitConfig.getExec().getPostStart() != null) {
-                    runService.execInContainer(containerId, waitConfig.getExec().getPostStart(), image);
+        @Override
+        public String create(ImageConfiguration image) throws DockerAccessException {
+            // Created only now since the mapping may refer to properties of the containers started before
+            PortMapping portMapping = runService.createPortMapping(image.getRunConfiguration(), projProperties);
+            // Fixed host ports would change the fingerprint of reused containers and the ports of shared ones
+            if (preallocatePorts && !reuseContainers && !image.getRunConfiguration().isShared()) {
+                try {
+                    portMapping.allocateHostPorts();
+                } catch (IOException e) {
+                    throw new DockerAccessException(e, "%s: Cannot allocate host ports", image.getDescription());
                 }
-
-                return new StartedContainer(image, containerId);
             }
-        });
-    }
-
-    // Pick out all images who can be started right now because all their dependencies has been started
-    private List<ImageConfiguration> getImagesWhoseDependenciesHasStarted(Queue<ImageConfiguration> imagesRemaining,
-                                                                          Set<String> containersStarted,
-                                                                          Set<String> aliases) {
-        final List<ImageConfiguration> ret = new ArrayList<>();
-
-        // Check for all images which can be already started
-        for (ImageConfiguration imageWaitingToStart : imagesRemaining) {
-            List<String> allDependencies = imageWaitingToStart.getDependencies();
-            List<String> aliasDependencies = filterOutNonAliases(aliases, allDependencies);
-            if (containersStarted.containsAll(aliasDependencies)) {
-                ret.add(imageWaitingToStart);
+            if (image.getRunConfiguration().isShared()) {
+                String containerId = runService.createOrAcquireSharedContainer(image, portMapping, getPomLabel(), projProperties);
+                portMappings.put(containerId, portMapping);
+                return containerId;
             }
+            String containerId = reuseContainers ?
+                runService.createOrReuseContainer(image, portMapping, getPomLabel(), projProperties) :
+                runService.createContainer(image, portMapping, getPomLabel(), projProperties);
+            portMappings.put(containerId, portMapping);
+            recordContainer(image, containerId);
+            return containerId;
         }
-        return ret;
-    }
 
-    // Prepare start like creating custom networks, auto pull images, map aliases and return the list of images
-    // to start in the correct order
-    private Queue<ImageConfiguration> prepareStart(ServiceHub hub, QueryService queryService, RunService runService, Set<String> imageAliases)
-        throws DockerAccessException, MojoExecutionException {
-        final Queue<ImageConfiguration> imagesWaitingToStart = new ArrayDeque<>();
-        for (StartOrderResolver.Resolvable resolvable : runService.getImagesConfigsInOrder(queryService, getResolvedImages())) {
-            final ImageConfiguration imageConfig = (ImageConfiguration) resolvable;
+        @Override
+        public String start(ImageConfiguration image, String createdId) throws DockerAccessException, FileNotFoundException {
+            PortMapping portMapping = portMappings.remove(createdId);
+            String containerId = runService.startContainer(image, createdId, portMapping, getPomLabel(), projProperties);
+            if (!containerId.equals(createdId)) {
+                // Created again because an allocated host port has been taken meanwhile
+                recordContainer(image, containerId);
+            }
 
-            // Still to check: How to work with linking, volumes, etc ....
-            //String imageName = new ImageName(imageConfig.getName()).getFullNameWithTag(registry);
+            // Update port-mapping writer
+            portMappingPropertyWriteHelper.add(portMapping, image.getRunConfiguration().getPortPropertyFile());
 
-            String imageName = imageConfig.getName();
-            checkImageWithAutoPull(hub, imageName,
-                                   getConfiguredRegistry(imageConfig, pullRegistry), imageConfig.getBuildConfiguration() == null);
+            if (showLogs(image)) {
+                dispatcher.trackContainerLog(containerId,
+                                             serviceHubFactory.getLogOutputSpecFactory().createSpec(containerId, image));
+            }
+            return containerId;
+        }
 
-            RunImageConfiguration runConfig = imageConfig.getRunConfiguration();
-            NetworkConfig config = runConfig.getNetworkingConfig();
-            if (autoCreateCustomNetworks && config.isCustomNetwork()) {
-                runService.createCustomNetworkIfNotExistant(config.getCustomNetwork());
+        @Override
+        public ListenableFuture<?> waitUntilReady(ImageConfiguration image, String containerId) throws MojoExecutionException {
+            if (runService.isReusedContainer(containerId)) {
+                return Futures.immediateFuture(containerId);
             }
-            imagesWaitingToStart.add(imageConfig);
-            updateAliasesSet(imageAliases, imageConfig.getAlias());
+            return waitIfRequested(hub, image, projProperties, containerId);
         }
-        return imagesWaitingToStart;
-    }
 
-    private List<String> filterOutNonAliases(Set<String> imageAliases, List<String> dependencies) {
-        List<String> ret = new ArrayList<>();
-        for (String alias : dependencies) {
-            if (imageAliases.contains(alias)) {
-                ret.add(alias);
+        @Override
+        public void postStart(ImageConfiguration image, String containerId) throws DockerAccessException {
+            WaitConfiguration waitConfig = image.getRunConfiguration().getWaitConfiguration();
+            if (waitConfig != null && waitConfig.getExec() != null && waitConfig.getExec().getPostStart() != null &&
+                !runService.isReusedContainer(containerId)) {
+                runService.execInContainer(containerId, waitConfig.getExec().getPostStart(), image);
+            }
+            // Exposed before dependent containers are created, so that they can refer to the properties
+            exposeContainerProps(hub.getQueryService(), image, containerId);
+            if (image.getRunConfiguration().isShared()) {
+                runService.sharedContainerReady(image);
             }
         }
-        return ret;
-    }
 
-    private ExecutorService getExecutorService() {
-        final ExecutorService executorService;
-        if (startParallel) {
-            executorService = Executors.newCachedThreadPool();
-        } else {
-            executorService = MoreExecutors.newDirectExecutorService();
+        // Recorded for a docker:stop in another Maven run
+        private void recordContainer(ImageConfiguration image, String containerId) {
+            try {
+                containerStateFile.add(containerId, image);
+            } catch (IOException e) {
+                log.warn("%s: Cannot record container %s: %s", image.getDescription(), containerId, e.getMessage());
+            }
         }
-        return executorService;
     }
 
     // ========================================================================================================
 
-    private void waitIfRequested(ServiceHub hub, ImageConfiguration imageConfig,
-                                 Properties projectProperties, String containerId) throws MojoExecutionException {
+    // The health status is only reported by newer daemons, so the wait would never finish otherwise
+    private void checkHealthCheckSupported(ServiceHub hub, ImageConfiguration imageConfig) throws MojoExecutionException {
+        ServerCapabilities capabilities;
+        try {
+            capabilities = hub.getDockerAccess().getServerCapabilities();
+        } catch (DockerAccessException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        if (!capabilities.supportsHealthCheck()) {
+            throw new MojoExecutionException(
+                String.format("%s: Cannot wait for a healthy container since the Docker daemon with API version %s " +
+                              "doesn't support health checks (1.24 required)",
+                              imageConfig.getDescription(), capabilities.getApiVersion()));
+        }
+    }
+
+    // Returns a future which is done when the container is ready
+    private ListenableFuture<String> waitIfRequested(ServiceHub hub, final ImageConfiguration imageConfig,
+                                                     Properties projectProperties, final String containerId) throws MojoExecutionException {
         RunImageConfiguration runConfig = imageConfig.getRunConfiguration();
         WaitConfiguration wait = runConfig.getWaitConfiguration();
 
         if (wait == null) {
-            return;
+            return Futures.immediateFuture(containerId);
         }
 
         ArrayList<WaitUtil.WaitChecker> checkers = new ArrayList<>();
-        ArrayList<String> logOut = new ArrayList<>();
+        final ArrayList<String> logOut = new ArrayList<>();
 
         if (wait.getUrl() != null) {
             checkers.add(getUrlWaitChecker(imageConfig.getDescription(), projectProperties, wait, logOut));
@@ -349,6 +348,22 @@ public class StartMojo extends AbstractDockerMojo {
             logOut.add("on log out '" + wait.getLog() + "'");
         }
 
+        if (wait.isHealthy()) {
+            checkHealthCheckSupported(hub, imageConfig);
+            log.debug("HealthyWaitChecker: Waiting on container %s to be healthy", containerId);
+            // The checker falls back to polling the container, so it must not get cached answers
+            checkers.add(new HealthyWaitChecker(CachingDockerAccess.uncached(hub.getDockerAccess()), containerId,
+                                                imageConfig.getDescription(), log));
+            logOut.add("on healthy container");
+        }
+
+        List<ListenableFuture<?>> conditions = new ArrayList<>();
+        if (wait.getExit() != null) {
+            log.debug("ExitWait: Waiting on container %s to exit with %d", containerId, wait.getExit());
+            conditions.add(getExitCondition(hub, imageConfig.getDescription(), containerId, wait.getExit()));
+            logOut.add("on exit code " + wait.getExit());
+        }
+
         if (wait.getTcp() != null) {
             try {
                 Container container = hub.getQueryService().getMandatoryContainer(containerId);
@@ -358,24 +373,43 @@ public class StartMojo extends AbstractDockerMojo {
             }
         }
 
-        if (checkers.isEmpty()) {
+        if (checkers.isEmpty() && conditions.isEmpty()) {
             if (wait.getTime() > 0) {
                 log.info("%s: Pausing for %d ms", imageConfig.getDescription(), wait.getTime());
-                WaitUtil.sleep(wait.getTime());
+                return Futures.transform(WaitEngine.getInstance().pause(wait.getTime()), constant(containerId));
             }
-            return;
+            return Futures.immediateFuture(containerId);
         }
 
-        try {
-            long waited = WaitUtil.wait(wait.getTime(), checkers);
-            log.info("%s: Waited %s %d ms",imageConfig.getDescription(), StringUtils.join(logOut.toArray(), " and "), waited);
-        } catch (WaitUtil.WaitTimeoutException exp) {
-            String desc = String.format("%s: Timeout after %d ms while waiting %s",
-                                        imageConfig.getDescription(), exp.getWaited(),
-                                        StringUtils.join(logOut.toArray(), " and "));
-            log.error(desc);
-            throw new MojoExecutionException(desc);
-        }
+        ListenableFuture<Long> waiting = Futures.catchingAsync(
+            WaitEngine.getInstance().wait(wait.getTime(), checkers, conditions),
+            WaitUtil.WaitTimeoutException.class,
+            new AsyncFunction<WaitUtil.WaitTimeoutException, Long>() {
+                @Override
+                public ListenableFuture<Long> apply(WaitUtil.WaitTimeoutException exp) throws MojoExecutionException {
+                    String desc = String.format("%s: Timeout after %d ms while waiting %s",
+                                                imageConfig.getDescription(), exp.getWaited(),
+                                                StringUtils.join(logOut.toArray(), " and "));
+                    log.error(desc);
+                    throw new MojoExecutionException(desc);
+                }
+            });
+        return Futures.transform(waiting, new Function<Long, String>() {
+            @Override
+            public String apply(Long waited) {
+                log.info("%s: Waited %s %d ms",imageConfig.getDescription(), StringUtils.join(logOut.toArray(), " and "), waited);
+                return containerId;
+            }
+        });
+    }
+
+    private static <T> Function<Object, T> constant(final T value) {
+        return new Function<Object, T>() {
+            @Override
+            public T apply(Object input) {
+                return value;
+            }
+        };
     }
 
     private WaitUtil.WaitChecker getUrlWaitChecker(String imageConfigDesc,
@@ -455,46 +489,60 @@ public class StartMojo extends AbstractDockerMojo {
         return host;
     }
 
+    // Completes when the container has exited, fails if it exited with another code than expected
+    private ListenableFuture<Integer> getExitCondition(ServiceHub hub, final String description, final String containerId,
+                                                       final int expectedExitCode) {
+        return Futures.transformAsync(hub.getDockerAccess().waitForExitAsync(containerId), new AsyncFunction<Integer, Integer>() {
+            @Override
+            public ListenableFuture<Integer> apply(Integer exitCode) throws MojoExecutionException {
+                if (exitCode != expectedExitCode) {
+                    String desc = String.format("%s: Container %s exited with code %d instead of %d",
+                                                description, shortId(containerId), exitCode, expectedExitCode);
+                    log.error(desc);
+                    throw new MojoExecutionException(desc);
+                }
+                return Futures.immediateFuture(exitCode);
+            }
+        });
+    }
+
+    private String shortId(String containerId) {
+        return containerId.length() > 12 ? containerId.substring(0, 12) : containerId;
+    }
+
+    // The log is followed right away, so that the checks only need to look at the flag
     private WaitUtil.WaitChecker getLogWaitChecker(final String logPattern, final ServiceHub hub, final String  containerId) {
-        return new WaitUtil.WaitChecker() {
+        final Pattern pattern = Pattern.compile(logPattern);
+        log.debug("LogWaitChecker: Pattern to match '%s'",logPattern);
+        // Flag updated from a different thread, hence atomic (see also #595)
+        final AtomicBoolean detected = new AtomicBoolean();
+        DockerAccess docker = hub.getDockerAccess();
+        final LogGetHandle logHandle = docker.getLogAsync(containerId, new LogCallback() {
+            @Override
+            public void log(int type, Timestamp timestamp, String txt) throws LogCallback.DoneException {
+                log.debug("LogWaitChecker: Tying to match '%s' [Pattern: %s] [thread: %d]",
+                          txt, logPattern, Thread.currentThread().getId());
+                if (pattern.matcher(txt).find()) {
+                    detected.set(true);
+                    throw new LogCallback.DoneException();
+                }
+            }
 
-            private boolean first = true;
-            private LogGetHandle logHandle;
-            // Flag updated from a different thread, hence volatile (see also #595)
-            private volatile boolean detected = false;
+            @Override
+            public void error(String error) {
+                log.error("%s", error);
+            }
+        });
 
+        return new WaitUtil.WaitChecker() {
             @Override
             public boolean check() {
-                if (first) {
-                    final Pattern pattern = Pattern.compile(logPattern);
-                    log.debug("LogWaitChecker: Pattern to match '%s'",logPattern);
-                    DockerAccess docker = hub.getDockerAccess();
-                    logHandle = docker.getLogAsync(containerId, new LogCallback() {
-                        @Override
-                        public void log(int type, Timestamp timestamp, String txt) throws LogCallback.DoneException {
-                            log.debug("LogWaitChecker: Tying to match '%s' [Pattern: %s] [thread: %d]",
-                                      txt, logPattern, Thread.currentThread().getId());
-                            if (pattern.matcher(txt).find()) {
-                                detected = true;
-                                throw new LogCallback.DoneException();
-                            }
-                        }
-
-                        @Override
-                        public void error(String error) {
-                            log.error("%s", error);
-                        }
-                    });
-                    first = false;
-                }
-                return detected;
+                return detected.get();
             }
 
             @Override
             public void cleanUp() {
-                if (logHandle != null) {
-                    logHandle.finish();
-                }
+                logHandle.finish();
             }
         };
     }
@@ -524,14 +572,14 @@ public class StartMojo extends AbstractDockerMojo {
     }
 
     // Expose ports as project properties
-    private void exposeContainerProps(QueryService queryService, StartedContainer startedContainer)
+    private void exposeContainerProps(QueryService queryService, ImageConfiguration imageConfig, String containerId)
         throws DockerAccessException {
-        String propKey = getExposedPropertyKeyPart(startedContainer.imageConfig);
+        String propKey = getExposedPropertyKeyPart(imageConfig);
         if (StringUtils.isNotEmpty(exposeContainerProps) && StringUtils.isNotEmpty(propKey)) {
-            Container container = queryService.getMandatoryContainer(startedContainer.containerId);
+            Container container = queryService.getMandatoryContainer(containerId);
             Properties props = project.getProperties();
             String prefix = addDot(exposeContainerProps) + addDot(propKey);
-            props.put(prefix + "id", startedContainer.containerId);
+            props.put(prefix + "id", containerId);
             String ip = container.getIPAddress();
             if (StringUtils.isNotEmpty(ip)) {
                 props.put(prefix + "ip", ip);
@@ -1,5 +1,7 @@
 package io.fabric8.maven.docker;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -9,6 +11,8 @@ import java.util.Set;
 
 import io.fabric8.maven.docker.config.*;
 import io.fabric8.maven.docker.model.Network;
+import io.fabric8.maven.docker.service.ContainerSnapshot;
+import io.fabric8.maven.docker.service.ContainerStateFile;
 import io.fabric8.maven.docker.service.QueryService;
 import io.fabric8.maven.docker.service.RunService;
 import io.fabric8.maven.docker.service.ServiceHub;
@@ -28,7 +32,8 @@ import org.apache.maven.plugins.annotations.Parameter;
  * started by this goal will be stopped and removed by default (this can be tuned with the
  * system property <code>docker.keepContainer</code>).
  *
- * If this goal is called standalone, then <em>all</em> containers are stopped, for which images
+ * If this goal is called standalone, then the containers recorded by a <code>docker:start</code> in an
+ * earlier run are stopped. If there are none, <em>all</em> containers are stopped, for which images
  * has been configured in the pom.xml
  *
  * @author roland
@@ -62,11 +67,15 @@ public class StopMojo extends AbstractDockerMojo {
         PomLabel pomLabel = getPomLabel();
 
         if (!keepRunning) {
+            ContainerStateFile containerStateFile = loadContainerStateFile();
             if (invokedTogetherWithDockerStart()) {
                 runService.stopStartedContainers(keepContainer, removeVolumes, autoCreateCustomNetworks, pomLabel);
-            } else {
+            } else if (isStopAllContainers() ||
+                       !stopRecordedContainers(queryService, runService, containerStateFile, pomLabel)) {
                 stopContainers(queryService, runService, pomLabel);
             }
+            clearContainerStateFile(containerStateFile);
+            runService.releaseSharedContainers(pomLabel, isPluginUsedByLaterProjects(), keepContainer, removeVolumes);
         }
 
         // Switch off all logging
@@ -74,10 +83,62 @@ public class StopMojo extends AbstractDockerMojo {
         dispatcher.untrackAllContainerLogs();
     }
 
+    // Stop the containers recorded by a docker:start in an earlier Maven run, in the reverse order of their start.
+    // Returns false if no containers have been recorded.
+    private boolean stopRecordedContainers(QueryService queryService, RunService runService,
+                                           ContainerStateFile containerStateFile, PomLabel pomLabel)
+        throws DockerAccessException {
+        List<ContainerStateFile.Entry> entries = containerStateFile.getEntries();
+        if (entries.isEmpty()) {
+            return false;
+        }
+        List<String> ids = new ArrayList<>();
+        for (ContainerStateFile.Entry entry : entries) {
+            ids.add(entry.getContainerId());
+        }
+        // Containers removed in the meantime are skipped
+        Set<String> existing = new HashSet<>();
+        for (Container container : queryService.getContainersById(ids)) {
+            existing.add(container.getId());
+        }
+        for (ContainerStateFile.Entry entry : entries) {
+            String containerId = entry.getContainerId();
+            if (existing.contains(containerId.substring(0, Math.min(12, containerId.length())))) {
+                runService.registerStartedContainer(containerId, getImageConfiguration(entry), pomLabel);
+            }
+        }
+        runService.stopStartedContainers(keepContainer, removeVolumes, autoCreateCustomNetworks, pomLabel);
+        return true;
+    }
+
+    // Configuration the container was created from. If not configured anymore, a configuration
+    // without any shutdown settings and dependencies is used.
+    private ImageConfiguration getImageConfiguration(ContainerStateFile.Entry entry) {
+        for (ImageConfiguration image : getResolvedImages()) {
+            if (entry.matches(image)) {
+                return image;
+            }
+        }
+        return new ImageConfiguration.Builder()
+            .name(entry.getImage())
+            .alias(entry.getAlias())
+            .runConfig(new RunImageConfiguration.Builder().build())
+            .build();
+    }
+
+    private void clearContainerStateFile(ContainerStateFile containerStateFile) {
+        try {
+            containerStateFile.clear();
+        } catch (IOException e) {
+            log.warn("Cannot remove recorded containers: %s", e.getMessage());
+        }
+    }
+
     private void stopContainers(QueryService queryService, RunService runService, PomLabel pomLabel) throws DockerAccessException {
-        Collection<Network> networksToRemove = getNetworksToRemove(queryService, pomLabel);
+        ContainerSnapshot containers = discoverContainers(queryService, pomLabel);
+        Collection<Network> networksToRemove = getNetworksToRemove(queryService, containers, pomLabel);
         for (ImageConfiguration image : getResolvedImages()) {
-            for (Container container : getContainersToStop(queryService, image)) {
+            for (Container container : getContainersToStop(containers, image)) {
                 if (shouldStopContainer(container, pomLabel, image)) {
                     runService.stopContainer(container.getId(), image, keepContainer, removeVolumes);
                 }
@@ -86,15 +147,28 @@ public class StopMojo extends AbstractDockerMojo {
         runService.removeCustomNetworks(networksToRemove);
     }
 
+    // Fetch all candidates at once: Containers with the pom label (or all running containers if
+    // all containers should be stopped) and the containers named after an alias
+    private ContainerSnapshot discoverContainers(QueryService queryService, PomLabel pomLabel) throws DockerAccessException {
+        List<String> aliases = new ArrayList<>();
+        for (ImageConfiguration image : getResolvedImages()) {
+            if (image.getRunConfiguration().getNamingStrategy() == RunImageConfiguration.NamingStrategy.alias &&
+                image.getAlias() != null) {
+                aliases.add(image.getAlias());
+            }
+        }
+        return queryService.getContainerSnapshot(isStopAllContainers() ? null : pomLabel, aliases);
+    }
+
     // If naming strategy is alias stop a container with this name, otherwise get all containers with this image's name
-    private List<Container> getContainersToStop(QueryService queryService, ImageConfiguration image) throws DockerAccessException {
+    private List<Container> getContainersToStop(ContainerSnapshot containers, ImageConfiguration image) {
         RunImageConfiguration.NamingStrategy strategy = image.getRunConfiguration().getNamingStrategy();
 
         if (strategy == RunImageConfiguration.NamingStrategy.alias) {
-            Container container = queryService.getContainer(image.getAlias());
+            Container container = containers.getContainer(image.getAlias());
             return container != null ? Collections.singletonList(container) : Collections.<Container>emptyList();
         } else {
-            return queryService.getContainersForImage(image.getName());
+            return containers.getContainersForImage(image.getName());
         }
     }
 
@@ -122,7 +196,8 @@ public class StopMojo extends AbstractDockerMojo {
         return startCalled != null && startCalled;
     }
 
-    private Set<Network> getNetworksToRemove(QueryService queryService, PomLabel pomLabel) throws DockerAccessException {
+    private Set<Network> getNetworksToRemove(QueryService queryService, ContainerSnapshot containers, PomLabel pomLabel)
+        throws DockerAccessException {
         if (!autoCreateCustomNetworks) {
             return Collections.emptySet();
         }
@@ -135,7 +210,7 @@ public class StopMojo extends AbstractDockerMojo {
                 Network network = getNetworkByName(networks, config.getCustomNetwork());
                 if (network != null) {
                     customNetworks.add(network);
-                    for (Container container : getContainersToStop(queryService, image)) {
+                    for (Container container : getContainersToStop(containers, image)) {
                         if (!shouldStopContainer(container, pomLabel, image)) {
                             // it's sill in use don't collect it
                             customNetworks.remove(network);
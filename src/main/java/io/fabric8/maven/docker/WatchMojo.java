@@ -83,6 +83,12 @@ public class WatchMojo extends AbstractBuildSupportMojo {
     // Scheduler
     private ScheduledExecutorService executor;
 
+    @Override
+    protected boolean isDockerResponseCachingAllowed() {
+        // images are polled for changes done by others
+        return false;
+    }
+
     @Override
     protected synchronized void executeInternal(ServiceHub hub) throws DockerAccessException,
                                                                        MojoExecutionException {
@@ -0,0 +1,38 @@
+package io.fabric8.maven.docker.access;/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An archive (e.g. a docker build context) which is not stored on disk but
+ * written on demand to a given stream. It can be written only once.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public interface ArchiveStream {
+
+    /**
+     * Write the complete archive to the given stream. The stream is closed
+     * when this method returns.
+     *
+     * @param out stream to write to
+     * @throws IOException if the archive cannot be created or written
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
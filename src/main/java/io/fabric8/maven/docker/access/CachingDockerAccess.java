@@ -0,0 +1,443 @@
+package io.fabric8.maven.docker.access;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
+import io.fabric8.maven.docker.access.log.LogCallback;
+import io.fabric8.maven.docker.access.log.LogGetHandle;
+import io.fabric8.maven.docker.config.Arguments;
+import io.fabric8.maven.docker.log.LogOutputSpec;
+import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.model.Network;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.util.Timestamp;
+
+/**
+ * Access object which remembers the answers for inspecting and listing containers, images and networks,
+ * so that asking the same question twice during a goal doesn't need another request. Answers are
+ * forgotten when the plugin changes the object asked for (e.g. starts a container or builds an image).
+ * The details of running containers are not kept at all, since a running container can exit on its own.
+ *
+ * Changes done by others are not noticed, so this access object must only be used as long as
+ * a goal runs and not for polling the state of the daemon.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class CachingDockerAccess implements DockerAccess {
+
+    private final DockerAccess delegate;
+
+    // All guarded by this. Null values are cached for objects which don't exist.
+    private final Map<String, Container> containers = new HashMap<>();
+    private final Map<String, List<Container>> containerLists = new HashMap<>();
+    private final Map<String, String> imageIds = new HashMap<>();
+    private List<Network> networks;
+
+    // Increased whenever cached answers are forgotten. Answers fetched while it changed might be outdated.
+    private long generation;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public CachingDockerAccess(DockerAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Get an access object which always asks the daemon
+     *
+     * @param access access object which might cache answers
+     * @return the access object without caching
+     */
+    public static DockerAccess uncached(DockerAccess access) {
+        return access instanceof CachingDockerAccess ? ((CachingDockerAccess) access).delegate : access;
+    }
+
+    /**
+     * @return number of answers taken from the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of answers fetched from the daemon
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    // =========================================================================================
+    // Cached queries
+
+    @Override
+    public Container getContainer(String containerIdOrName) throws DockerAccessException {
+        long fetchedAt;
+        synchronized (this) {
+            if (isCacheUsable() && containers.containsKey(containerIdOrName)) {
+                hits.incrementAndGet();
+                return containers.get(containerIdOrName);
+            }
+            fetchedAt = generation;
+        }
+        misses.incrementAndGet();
+        Container container = delegate.getContainer(containerIdOrName);
+        synchronized (this) {
+            if (fetchedAt == generation && isCacheUsable() && (container == null || !container.isRunning())) {
+                containers.put(containerIdOrName, container);
+            }
+        }
+        return container;
+    }
+
+    @Override
+    public boolean hasImage(String name) throws DockerAccessException {
+        return getImageId(name) != null;
+    }
+
+    @Override
+    public String getImageId(String name) throws DockerAccessException {
+        long fetchedAt;
+        synchronized (this) {
+            if (isCacheUsable() && imageIds.containsKey(name)) {
+                hits.incrementAndGet();
+                return imageIds.get(name);
+            }
+            fetchedAt = generation;
+        }
+        misses.incrementAndGet();
+        String imageId = delegate.getImageId(name);
+        synchronized (this) {
+            if (fetchedAt == generation && isCacheUsable()) {
+                imageIds.put(name, imageId);
+            }
+        }
+        return imageId;
+    }
+
+    @Override
+    public List<Container> getContainersForImage(String image) throws DockerAccessException {
+        String key = "image:" + image;
+        long fetchedAt;
+        synchronized (this) {
+            if (isCacheUsable() && containerLists.containsKey(key)) {
+                hits.incrementAndGet();
+                return new ArrayList<>(containerLists.get(key));
+            }
+            fetchedAt = generation;
+        }
+        misses.incrementAndGet();
+        List<Container> ret = delegate.getContainersForImage(image);
+        storeContainerList(key, ret, fetchedAt);
+        return ret;
+    }
+
+    @Override
+    public List<Container> listContainers(boolean all, String... filter) throws DockerAccessException {
+        String key = "list:" + all + ":" + Arrays.toString(filter);
+        long fetchedAt;
+        synchronized (this) {
+            if (isCacheUsable() && containerLists.containsKey(key)) {
+                hits.incrementAndGet();
+                return new ArrayList<>(containerLists.get(key));
+            }
+            fetchedAt = generation;
+        }
+        misses.incrementAndGet();
+        List<Container> ret = delegate.listContainers(all, filter);
+        storeContainerList(key, ret, fetchedAt);
+        return ret;
+    }
+
+    @Override
+    public List<Network> listNetworks() throws DockerAccessException {
+        long fetchedAt;
+        synchronized (this) {
+            if (isCacheUsable() && networks != null) {
+                hits.incrementAndGet();
+                return new ArrayList<>(networks);
+            }
+            fetchedAt = generation;
+        }
+        misses.incrementAndGet();
+        List<Network> ret = delegate.listNetworks();
+        synchronized (this) {
+            if (fetchedAt == generation && isCacheUsable()) {
+                networks = new ArrayList<>(ret);
+            }
+        }
+        return ret;
+    }
+
+    private synchronized void storeContainerList(String key, List<Container> list, long fetchedAt) {
+        if (fetchedAt == generation && isCacheUsable()) {
+            containerLists.put(key, new ArrayList<>(list));
+        }
+    }
+
+    // =========================================================================================
+    // Changes, which let the cache forget what it knows about the changed object
+
+    @Override
+    public String createContainer(ContainerCreateConfig configuration, String containerName) throws DockerAccessException {
+        try {
+            return delegate.createContainer(configuration, containerName);
+        } finally {
+            forgetContainer(containerName);
+        }
+    }
+
+    @Override
+    public void startContainer(String containerId) throws DockerAccessException {
+        try {
+            delegate.startContainer(containerId);
+        } finally {
+            forgetContainer(containerId);
+        }
+    }
+
+    @Override
+    public void stopContainer(String containerId, int killWait) throws DockerAccessException {
+        try {
+            delegate.stopContainer(containerId, killWait);
+        } finally {
+            forgetContainer(containerId);
+        }
+    }
+
+    @Override
+    public void removeContainer(String containerId, boolean removeVolumes) throws DockerAccessException {
+        try {
+            delegate.removeContainer(containerId, removeVolumes);
+        } finally {
+            forgetContainer(containerId);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Integer> waitForExitAsync(final String containerId) {
+        ListenableFuture<Integer> ret = delegate.waitForExitAsync(containerId);
+        // The container has stopped when the wait is over
+        ret.addListener(new Runnable() {
+            @Override
+            public void run() {
+                forgetContainer(containerId);
+            }
+        }, MoreExecutors.directExecutor());
+        return ret;
+    }
+
+    @Override
+    public void pullImage(String image, AuthConfig authConfig, String registry) throws DockerAccessException {
+        try {
+            delegate.pullImage(image, authConfig, registry);
+        } finally {
+            forgetImages();
+        }
+    }
+
+    // Might add and remove a temporary tag for the registry
+    @Override
+    public void pushImage(String image, AuthConfig authConfig, String registry, int retries) throws DockerAccessException {
+        try {
+            delegate.pushImage(image, authConfig, registry, retries);
+        } finally {
+            forgetImages();
+        }
+    }
+
+    @Override
+    public void buildImage(String image, File dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
+                           Map<String, String> buildArgs) throws DockerAccessException {
+        try {
+            delegate.buildImage(image, dockerArchive, dockerfileName, forceRemove, noCache, buildArgs);
+        } finally {
+            forgetImages();
+        }
+    }
+
+    @Override
+    public void buildImage(String image, ArchiveStream dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
+                           Map<String, String> buildArgs) throws DockerAccessException {
+        try {
+            delegate.buildImage(image, dockerArchive, dockerfileName, forceRemove, noCache, buildArgs);
+        } finally {
+            forgetImages();
+        }
+    }
+
+    @Override
+    public void tag(String sourceImage, String targetImage, boolean force) throws DockerAccessException {
+        try {
+            delegate.tag(sourceImage, targetImage, force);
+        } finally {
+            forgetImages();
+        }
+    }
+
+    @Override
+    public boolean removeImage(String image, boolean... force) throws DockerAccessException {
+        try {
+            return delegate.removeImage(image, force);
+        } finally {
+            forgetImages();
+        }
+    }
+
+    @Override
+    public String createNetwork(NetworkCreateConfig configuration) throws DockerAccessException {
+        try {
+            return delegate.createNetwork(configuration);
+        } finally {
+            forgetNetworks();
+        }
+    }
+
+    @Override
+    public boolean removeNetwork(String networkId) throws DockerAccessException {
+        try {
+            return delegate.removeNetwork(networkId);
+        } finally {
+            forgetNetworks();
+        }
+    }
+
+    /**
+     * Whether answers can be taken from and put into the cache right now. Called with the lock
+     * on this object held.
+     *
+     * @return true by default
+     */
+    protected boolean isCacheUsable() {
+        return true;
+    }
+
+    // Containers are cached by id and name, lists might contain the container in any state. Ids
+    // are given and returned either full or shortened, hence they match if one is a prefix of the other.
+    synchronized void forgetContainer(String containerIdOrName) {
+        if (containerIdOrName != null) {
+            Iterator<Map.Entry<String, Container>> it = containers.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Container> entry = it.next();
+                Container container = entry.getValue();
+                if (entry.getKey().equals(containerIdOrName) ||
+                    (container != null && (isSameId(containerIdOrName, container.getId()) ||
+                                           containerIdOrName.equals(container.getName())))) {
+                    it.remove();
+                }
+            }
+        }
+        // Ids of unknown containers are not cached, but a new container might be known by
+        // name now or be part of a list
+        containers.values().removeAll(Collections.singleton(null));
+        containerLists.clear();
+        generation++;
+    }
+
+    private boolean isSameId(String containerIdOrName, String id) {
+        return id != null && (containerIdOrName.startsWith(id) || id.startsWith(containerIdOrName));
+    }
+
+    synchronized void forgetImages() {
+        imageIds.clear();
+        generation++;
+    }
+
+    synchronized void forgetNetworks() {
+        networks = null;
+        generation++;
+    }
+
+    synchronized void forgetAll() {
+        containers.clear();
+        containerLists.clear();
+        imageIds.clear();
+        networks = null;
+        generation++;
+    }
+
+    // =========================================================================================
+    // Not cached
+
+    @Override
+    public String getServerApiVersion() throws DockerAccessException {
+        return delegate.getServerApiVersion();
+    }
+
+    @Override
+    public ServerCapabilities getServerCapabilities() throws DockerAccessException {
+        return delegate.getServerCapabilities();
+    }
+
+    @Override
+    public void startExecContainer(String containerId, LogOutputSpec outputSpec) throws DockerAccessException {
+        delegate.startExecContainer(containerId, outputSpec);
+    }
+
+    @Override
+    public String createExecContainer(String containerId, Arguments arguments) throws DockerAccessException {
+        return delegate.createExecContainer(containerId, arguments);
+    }
+
+    @Override
+    public void copyArchive(String containerId, File archive, String targetPath) throws DockerAccessException {
+        delegate.copyArchive(containerId, archive, targetPath);
+    }
+
+    @Override
+    public void getLogSync(String containerId, LogCallback callback) {
+        delegate.getLogSync(containerId, callback);
+    }
+
+    @Override
+    public void getLogSync(String containerId, Timestamp since, int tail, LogCallback callback) {
+        delegate.getLogSync(containerId, since, tail, callback);
+    }
+
+    @Override
+    public LogGetHandle getLogAsync(String containerId, LogCallback callback) {
+        return delegate.getLogAsync(containerId, callback);
+    }
+
+    @Override
+    public LogGetHandle getLogAsync(String containerId, Timestamp since, int tail, LogCallback callback) {
+        return delegate.getLogAsync(containerId, since, tail, callback);
+    }
+
+    @Override
+    public EventGetHandle getEventsAsync(String containerId, EventCallback callback, String... events) {
+        return delegate.getEventsAsync(containerId, callback, events);
+    }
+
+    @Override
+    public void start() throws DockerAccessException {
+        delegate.start();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
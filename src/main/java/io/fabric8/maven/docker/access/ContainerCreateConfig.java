@@ -1,6 +1,9 @@
 package io.fabric8.maven.docker.access;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 import io.fabric8.maven.docker.util.EnvUtil;
@@ -80,6 +83,23 @@ public class ContainerCreateConfig {
         return this;
     }
 
+    /**
+     * Add a single label to the labels set so far
+     *
+     * @param key label key
+     * @param value label value
+     * @return this config
+     */
+    public ContainerCreateConfig label(String key, String value) {
+        JSONObject labels = createConfig.optJSONObject("Labels");
+        if (labels == null) {
+            labels = new JSONObject();
+            createConfig.put("Labels", labels);
+        }
+        labels.put(key, value);
+        return this;
+    }
+
     public ContainerCreateConfig exposedPorts(Set<String> portSpecs) {
         if (portSpecs != null && portSpecs.size() > 0) {
             JSONObject exposedPorts = new JSONObject();
@@ -124,8 +144,63 @@ public class ContainerCreateConfig {
         return createConfig.toString();
     }
 
+    /**
+     * Get a fingerprint of this configuration together with the image it is based on. The fingerprint
+     * is independent of the order in which the configuration has been set up, so two containers created
+     * from the same fingerprint are interchangeable.
+     *
+     * @param imageId id of the image the container is created from
+     * @return hex encoded SHA-256 hash of the configuration and the image id
+     */
+    public String getFingerprint(String imageId) {
+        StringBuilder canonical = new StringBuilder();
+        appendCanonical(createConfig, canonical);
+        canonical.append(imageId);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder ret = new StringBuilder();
+            for (byte b : digest) {
+                ret.append(String.format("%02x", b));
+            }
+            return ret.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     // =======================================================================
 
+    // JSON with the keys of all objects sorted
+    private void appendCanonical(Object value, StringBuilder out) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            out.append('{');
+            String sep = "";
+            String[] keys = JSONObject.getNames(object);
+            if (keys != null) {
+                Arrays.sort(keys);
+                for (String key : keys) {
+                    out.append(sep).append(JSONObject.quote(key)).append(':');
+                    appendCanonical(object.get(key), out);
+                    sep = ",";
+                }
+            }
+            out.append('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            out.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendCanonical(array.get(i), out);
+            }
+            out.append(']');
+        } else {
+            out.append(JSONObject.valueToString(value));
+        }
+    }
+
     private ContainerCreateConfig add(String name, Object value) {
         if (value != null) {
             createConfig.put(name, value);
@@ -0,0 +1,209 @@
+package io.fabric8.maven.docker.access;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.*;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.maven.docker.access.chunked.StreamEvent;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
+import io.fabric8.maven.docker.util.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Access object mirroring containers, images and networks of the daemon in memory. Containers and networks are
+ * fetched once, after that the answers are kept until the event stream of the daemon reports a change of the
+ * object asked for. So unlike {@link CachingDockerAccess} changes done by others are noticed, too, and this access
+ * object can be used by long running goals.
+ *
+ * All answers are dropped when they are older than the given staleness bound. If the event stream is lost, all
+ * questions are passed to the daemon until the stream is reopened, which is retried every second.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class DaemonStateMirror extends CachingDockerAccess implements EventCallback {
+
+    // Delay before reopening a lost event stream
+    private static final long RESYNC_DELAY = 1000;
+
+    private final DockerAccess docker;
+    private final Logger log;
+    private final long maxStaleness;
+
+    private final ScheduledExecutorService resyncExecutor =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                                                                            .setNameFormat("docker-state-mirror-%d")
+                                                                            .build());
+
+    // All guarded by this
+    private EventGetHandle eventHandle;
+    private boolean following;
+    private boolean synced;
+    private long syncedAt;
+
+    /**
+     * Create a mirror, which must be started with {@link #startFollowing()}
+     *
+     * @param docker access object for asking the daemon
+     * @param log logger
+     * @param maxStaleness milliseconds after which all answers are fetched again
+     */
+    public DaemonStateMirror(DockerAccess docker, Logger log, long maxStaleness) {
+        super(docker);
+        this.docker = docker;
+        this.log = log;
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Start following the events of the daemon. Until the event stream is open, all questions are
+     * passed to the daemon.
+     */
+    public synchronized void startFollowing() {
+        following = true;
+        eventHandle = docker.getEventsAsync(null, this);
+    }
+
+    /**
+     * Stop following the events. All questions are passed to the daemon from now on.
+     */
+    public void stopFollowing() {
+        EventGetHandle handle;
+        synchronized (this) {
+            following = false;
+            synced = false;
+            handle = eventHandle;
+            eventHandle = null;
+            forgetAll();
+        }
+        if (handle != null) {
+            handle.finish();
+        }
+        resyncExecutor.shutdownNow();
+    }
+
+    /**
+     * @return whether answers are taken from memory currently
+     */
+    public synchronized boolean isSynced() {
+        return synced;
+    }
+
+    @Override
+    protected boolean isCacheUsable() {
+        if (!synced) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - syncedAt > maxStaleness) {
+            forgetAll();
+            syncedAt = now;
+        }
+        return true;
+    }
+
+    // =============================================================================
+    // Events
+
+    @Override
+    public void open() {
+        synchronized (this) {
+            if (!following) {
+                return;
+            }
+            // Anything could have happened before
+            forgetAll();
+            synced = true;
+            syncedAt = System.currentTimeMillis();
+        }
+        log.debug("Mirroring the state of the Docker daemon");
+        // Snapshot, which is kept until changes are reported
+        try {
+            listContainers(true);
+            listNetworks();
+        } catch (DockerAccessException exp) {
+            log.debug("Cannot fetch state of the Docker daemon: %s", exp.getMessage());
+        }
+    }
+
+    @Override
+    public void event(StreamEvent event) {
+        JSONObject json;
+        try {
+            json = new JSONObject(event.toJson());
+        } catch (JSONException exp) {
+            forgetAll();
+            return;
+        }
+        String type = json.optString("Type", null);
+        String action = json.optString("Action", json.optString("status", ""));
+        JSONObject actor = json.optJSONObject("Actor");
+        String id = actor != null ? actor.optString("ID", null) : json.optString("id", null);
+
+        if (type == null) {
+            // Daemons before API 1.22 only send events for containers (with the image they are created from)
+            // and images
+            type = json.has("from") ? "container" : "image";
+        }
+        if ("container".equals(type)) {
+            // Execs (e.g. for health checks) don't change the container, the result of the check is an event of its own
+            if (!action.startsWith("exec_") && id != null) {
+                forgetContainer(id);
+            }
+        } else if ("image".equals(type)) {
+            forgetImages();
+        } else if ("network".equals(type)) {
+            forgetNetworks();
+            // Connecting and disconnecting changes the networks of a container
+            JSONObject attributes = actor != null ? actor.optJSONObject("Attributes") : null;
+            String container = attributes != null ? attributes.optString("container", null) : null;
+            if (container != null) {
+                forgetContainer(container);
+            }
+        }
+    }
+
+    @Override
+    public void error(String error) {
+        synchronized (this) {
+            synced = false;
+            eventHandle = null;
+            forgetAll();
+            if (!following) {
+                return;
+            }
+        }
+        log.verbose("Lost events of the Docker daemon (%s), resyncing", error);
+        try {
+            resyncExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (DaemonStateMirror.this) {
+                        if (following && eventHandle == null) {
+                            startFollowing();
+                        }
+                    }
+                }
+            }, RESYNC_DELAY, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException exp) {
+            // Stopped concurrently
+        }
+    }
+}
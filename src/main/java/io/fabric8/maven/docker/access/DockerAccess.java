@@ -5,12 +5,17 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
 import io.fabric8.maven.docker.access.log.LogCallback;
 import io.fabric8.maven.docker.access.log.LogGetHandle;
 import io.fabric8.maven.docker.config.Arguments;
 import io.fabric8.maven.docker.log.LogOutputSpec;
 import io.fabric8.maven.docker.model.Container;
 import io.fabric8.maven.docker.model.Network;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.util.Timestamp;
 
 /**
  * Access to the <a href="http://docs.docker.io/en/latest/reference/api/docker_remote_api/">Docker API</a> which
@@ -29,6 +34,14 @@ public interface DockerAccess {
      */
     String getServerApiVersion() throws DockerAccessException;
 
+    /**
+     * Get the capabilities of the running server. They are fetched only once.
+     *
+     * @return capabilities of the server
+     * @throws DockerAccessException if the capabilities could not be obtained
+     */
+    ServerCapabilities getServerCapabilities() throws DockerAccessException;
+
     /**
      * Get a container
      *
@@ -64,6 +77,16 @@ public interface DockerAccess {
      */
     List<Container> getContainersForImage(String image) throws DockerAccessException;
 
+    /**
+     * List containers with a single request.
+     *
+     * @param all whether to include stopped containers
+     * @param filter filters applied by the daemon, given as key value pairs. Values for the same key are alternatives.
+     * @return list of <code>Container</code> objects or an empty list if none is found
+     * @throws DockerAccessException if the request fails
+     */
+    List<Container> listContainers(boolean all, String ... filter) throws DockerAccessException;
+
     /**
      * Starts a previously set up exec instance id.
      * this API sets up an interactive session with the exec command. Output is streamed to the log.
@@ -111,6 +134,16 @@ public interface DockerAccess {
      */
     void stopContainer(String containerId, int killWait) throws DockerAccessException;
 
+    /**
+     * Wait until a container has stopped. The request is done in a dedicated thread, so that
+     * no thread of the caller is blocked while waiting. Cancelling the returned future aborts the request.
+     *
+     * @param containerId the container id
+     * @return future with the exit code of the container. It fails with a {@link DockerAccessException}
+     *         if the request fails.
+     */
+    ListenableFuture<Integer> waitForExitAsync(String containerId);
+
     /** Copy an archive (must be a tar) into a running container
      * Get all containers matching a certain label. This might not be a cheap operation especially if many containers
      * are running. Use with care.
@@ -132,7 +165,19 @@ public interface DockerAccess {
     void getLogSync(String containerId, LogCallback callback);
 
     /**
-     * Get logs asynchronously. This call will start a thread in the background for doing the request.
+     * Get a part of the logs for a container up to now synchronously.
+     *
+     * @param containerId container id
+     * @param since fetch only entries from this time on or all entries if null. The daemon
+     *              filters with a precision of seconds only.
+     * @param tail fetch only this number of entries from the end of the log or all entries if negative
+     * @param callback which is called for each line received
+     */
+    void getLogSync(String containerId, Timestamp since, int tail, LogCallback callback);
+
+    /**
+     * Get logs asynchronously. The logs are read in the background, either by a shared
+     * set of I/O threads or by a dedicated thread for the request.
      * It returns a handle which can be used to abort the request on demand.
      *
      * @param containerId id of the container for which to fetch the logs
@@ -141,6 +186,29 @@ public interface DockerAccess {
      */
     LogGetHandle getLogAsync(String containerId, LogCallback callback);
 
+    /**
+     * Get logs asynchronously, starting with a part of the existing log entries.
+     *
+     * @param containerId id of the container for which to fetch the logs
+     * @param since fetch only entries from this time on or all entries if null (with a precision of seconds)
+     * @param tail start with this number of entries from the end of the log or all entries if negative
+     * @param callback to call when log data arrives
+     * @return handle for managing the lifecycle of the thread
+     */
+    LogGetHandle getLogAsync(String containerId, Timestamp since, int tail, LogCallback callback);
+
+    /**
+     * Follow the events of a container asynchronously in a dedicated thread. Only events
+     * happening after the daemon has accepted the request are received, which is signaled to the callback.
+     *
+     * @param containerId id of the container whose events to follow or <code>null</code> for the events
+     *                    of all containers, images and networks
+     * @param callback to call for every event
+     * @param events names of the events to follow (like "health_status") or all events if none is given
+     * @return handle for stopping to follow the events
+     */
+    EventGetHandle getEventsAsync(String containerId, EventCallback callback, String ... events);
+
     /**
      * Remove a container with the given id
      *
@@ -188,6 +256,21 @@ public interface DockerAccess {
     void buildImage(String image, File dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
                     Map<String, String> buildArgs) throws DockerAccessException;
 
+    /**
+     * Create an docker image from an archive which is created on the fly while being uploaded to the
+     * Docker daemon. No intermediate file is written.
+     *
+     * @param image name of the image to build or <code>null</code> if none should be used
+     * @param dockerArchive archive stream providing the build context. It is consumed by this call.
+     * @param dockerfileName filename of the Dockerfile within the archive or <code>null</code> for the default Dockerfile
+     * @param forceRemove whether to remove intermediate containers
+     * @param noCache whether to use cache when building the image
+     * @param buildArgs buildArgs to add then building the image. Can be <code>null</code> for no build args.
+     * @throws DockerAccessException if docker host reports an error during building of an image
+     */
+    void buildImage(String image, ArchiveStream dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
+                    Map<String, String> buildArgs) throws DockerAccessException;
+
     /**
      * Alias an image in the repository with a complete new name. (Note that this maps to a Docker Remote API 'tag'
      * operation, which IMO is badly named since it also can generate a complete alias to a given image)
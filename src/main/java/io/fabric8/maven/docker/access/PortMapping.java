@@ -1,8 +1,7 @@
 package io.fabric8.maven.docker.access;
 
 import java.io.*;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.net.*;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,6 +46,9 @@ public class PortMapping {
     // variables (container port spec -> host port variable name)
     private final Map<String, String> specToHostPortVariableMap = new HashMap<>();
 
+    // variables for host ports allocated up front (container port spec -> host port variable name)
+    private final Map<String, String> specToAllocatedHostPortVariableMap = new HashMap<>();
+
     /**
      * Create the mapping from a configuration. The configuration is list of port mapping specifications which has the
      * format used by docker for port mapping (i.e. host_ip:host_port:container_port)
@@ -80,6 +82,72 @@ public class PortMapping {
         return !specToHostPortVariableMap.isEmpty() || !specToHostIpVariableMap.isEmpty();
     }
 
+    /**
+     * Allocate free host ports for all dynamic host ports which are to be stored in a variable. A free port is
+     * found by binding a socket to an ephemeral port. All sockets are closed again before this method returns,
+     * and the ports are used for creating the container then. The variables are filled in right away, so that
+     * there is no need to look up the ports after the container has been started. Host IP variables are filled
+     * in, too.
+     *
+     * Another process might grab a port before the container binds it. In this case this method can be called
+     * again for allocating other ports. Since the ports are looked up locally, this works only if the Docker daemon
+     * runs on the local host.
+     *
+     * @return true if any port has been allocated
+     * @throws IOException if no free port can be found
+     */
+    public boolean allocateHostPorts() throws IOException {
+        specToAllocatedHostPortVariableMap.putAll(specToHostPortVariableMap);
+        specToHostPortVariableMap.clear();
+        if (specToAllocatedHostPortVariableMap.isEmpty()) {
+            return false;
+        }
+
+        // Keep all sockets open until the end, so that every port is allocated only once
+        List<Closeable> sockets = new ArrayList<>();
+        try {
+            for (Map.Entry<String, String> entry : specToAllocatedHostPortVariableMap.entrySet()) {
+                String portSpec = entry.getKey();
+                String bindTo = bindToHostMap.get(portSpec);
+                int hostPort = bindEphemeralPort(portSpec, bindTo, sockets);
+                containerPortToHostPort.put(portSpec, hostPort);
+                hostPortVariableMap.put(entry.getValue(), hostPort);
+
+                String hostIpVariable = specToHostIpVariableMap.get(portSpec);
+                if (hostIpVariable != null) {
+                    // Bound to all interfaces if no address is given
+                    String hostIp = bindTo == null || "0.0.0.0".equals(bindTo) ?
+                        projProperties.getProperty("docker.host.address") : bindTo;
+                    if (hostIp != null) {
+                        hostIpVariableMap.put(hostIpVariable, hostIp);
+                        specToHostIpVariableMap.remove(portSpec);
+                    }
+                }
+            }
+        } finally {
+            for (Closeable socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException exp) {
+                    // Closed anyway
+                }
+            }
+        }
+
+        updateDynamicProperties(hostPortVariableMap);
+        updateDynamicProperties(hostIpVariableMap);
+        return true;
+    }
+
+    /**
+     * Check whether host ports have been allocated with {@link #allocateHostPorts()}
+     *
+     * @return true if the mapping contains allocated host ports
+     */
+    public boolean hasAllocatedHostPorts() {
+        return !specToAllocatedHostPortVariableMap.isEmpty();
+    }
+
     /**
      * @return Set of all mapped container ports
      */
@@ -233,6 +301,21 @@ public class PortMapping {
         }
     }
 
+    private int bindEphemeralPort(String portSpec, String bindTo, List<Closeable> sockets) throws IOException {
+        InetSocketAddress address = bindTo != null ? new InetSocketAddress(bindTo, 0) : new InetSocketAddress(0);
+        if (portSpec.endsWith("/udp")) {
+            DatagramSocket socket = new DatagramSocket(null);
+            sockets.add(socket);
+            socket.bind(address);
+            return socket.getLocalPort();
+        } else {
+            ServerSocket socket = new ServerSocket();
+            sockets.add(socket);
+            socket.bind(address);
+            return socket.getLocalPort();
+        }
+    }
+
     private String createPortSpec(String port, String protocol) throws NumberFormatException {
         return Integer.parseInt(port) + "/" + protocol;
     }
@@ -369,7 +452,7 @@ public class PortMapping {
             this.globalExport = new Properties();
         }
 
-        public void add(PortMapping portMapping, String portPropertyFile) {
+        public synchronized void add(PortMapping portMapping, String portPropertyFile) {
             if (portPropertyFile != null) {
                 toExport.put(portPropertyFile, portMapping.dynamicProperties);
             } else if (globalFile != null) {
@@ -377,7 +460,7 @@ public class PortMapping {
             }
         }
 
-        public void write() throws IOException {
+        public synchronized void write() throws IOException {
             for (Map.Entry<String, Properties> entry : toExport.entrySet()) {
                 Properties props = entry.getValue();
                 writeProperties(props, entry.getKey());
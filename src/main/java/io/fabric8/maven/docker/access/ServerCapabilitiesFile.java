@@ -0,0 +1,155 @@
+package io.fabric8.maven.docker.access;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Capabilities of Docker daemons stored in a file, so that later Maven runs don't need to ask a daemon
+ * for its details again. Entries are keyed by the daemon id and remember the URL the daemon was reached
+ * with. An entry is only used if the daemon at this URL still answers <code>/version</code> in the same
+ * way, so an updated or replaced daemon is asked again. Since <code>/version</code> is needed for this
+ * check anyway, the file saves the <code>/info</code> request.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class ServerCapabilitiesFile {
+
+    // Fields of the /version answer which identify a daemon build
+    private static final String[] VERSION_KEYS = {
+        "Version", "ApiVersion", "GitCommit", "BuildTime", "Os", "Arch", "KernelVersion"
+    };
+
+    private static final String URL = "url";
+    private static final String VERSION = "version";
+    private static final String INFO = "info";
+
+    private final File file;
+
+    /**
+     * Create a file store for capabilities
+     *
+     * @param file file holding the capabilities, which doesn't need to exist yet
+     */
+    public ServerCapabilitiesFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Lookup the capabilities of a daemon
+     *
+     * @param url URL of the daemon
+     * @param version answer of the daemon to <code>/version</code>
+     * @return the stored capabilities or <code>null</code> if the daemon is not known or has changed
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized ServerCapabilities lookup(String url, JSONObject version) throws IOException {
+        JSONObject daemons = load();
+        for (String id : getDaemonIds(daemons)) {
+            JSONObject entry = daemons.optJSONObject(id);
+            if (entry != null && url.equals(entry.optString(URL)) && entry.has(INFO) &&
+                sameVersion(version, entry.optJSONObject(VERSION))) {
+                return new ServerCapabilities(version, entry.getJSONObject(INFO));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store the capabilities of a daemon, replacing any capabilities stored for it or for the URL before.
+     * Capabilities without a daemon id are not stored.
+     *
+     * @param url URL of the daemon
+     * @param capabilities capabilities to store
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void store(String url, ServerCapabilities capabilities) throws IOException {
+        String daemonId = capabilities.getDaemonId();
+        if (daemonId == null) {
+            return;
+        }
+        JSONObject daemons = load();
+        for (String id : getDaemonIds(daemons)) {
+            JSONObject entry = daemons.optJSONObject(id);
+            if (entry == null || url.equals(entry.optString(URL))) {
+                daemons.remove(id);
+            }
+        }
+        JSONObject entry = new JSONObject();
+        entry.put(URL, url);
+        entry.put(VERSION, capabilities.getVersionJson());
+        entry.put(INFO, capabilities.getInfoJson());
+        daemons.put(daemonId, entry);
+        save(daemons);
+    }
+
+    private String[] getDaemonIds(JSONObject daemons) {
+        String[] ids = JSONObject.getNames(daemons);
+        return ids != null ? ids : new String[0];
+    }
+
+    private boolean sameVersion(JSONObject version, JSONObject stored) {
+        if (stored == null) {
+            return false;
+        }
+        for (String key : VERSION_KEYS) {
+            if (!version.optString(key).equals(stored.optString(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JSONObject load() throws IOException {
+        if (!file.exists()) {
+            return new JSONObject();
+        }
+        byte[] content = Files.readAllBytes(file.toPath());
+        try {
+            return new JSONObject(new String(content, StandardCharsets.UTF_8));
+        } catch (JSONException exp) {
+            // Broken file, e.g. from an older version, is written again
+            return new JSONObject();
+        }
+    }
+
+    private void save(JSONObject daemons) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        // Write to a temporary file first so that concurrent readers never see a partial file
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            writer.write(daemons.toString(2));
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException exp) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -5,16 +5,23 @@ import java.net.URLEncoder;
 import java.util.*;
 
 import io.fabric8.maven.docker.util.ImageName;
+import io.fabric8.maven.docker.util.Timestamp;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 public final class UrlBuilder {
 
+    // URLs are requested right after they have been built, so only a few of them need to be remembered
+    private static final int MAX_RECORDED_OPERATIONS = 1000;
+
     private final String apiVersion;
 
     // Base Docker URL
     private final String baseUrl;
 
+    // Operations of the URLs built lately, by URL. Only recorded when needed for metrics, null otherwise.
+    private volatile Map<String, String> operations;
+
     public UrlBuilder(String baseUrl, String apiVersion) {
         this.apiVersion = apiVersion;
         this.baseUrl = stripSlash(baseUrl);
@@ -22,7 +29,7 @@ public final class UrlBuilder {
 
     public String buildImage(String image, String dockerfileName, boolean forceRemove, boolean noCache, Map<String, String> buildArgs) {
 
-        Builder urlBuilder = u("build")
+        Builder urlBuilder = u("buildImage", "build")
             .p("t", image)
             .p(forceRemove ? "forcerm" : "rm", true)
             .p("nocache", noCache);
@@ -36,55 +43,84 @@ public final class UrlBuilder {
     }
 
     public String copyArchive(String containerId, String targetPath) {
-        return u("containers/%s/archive",containerId)
+        return u("copyArchive", "containers/%s/archive",containerId)
                 .p("path",targetPath)
                 .build();
     }
 
     public String inspectImage(String name) {
-        return u("images/%s/json", name)
+        return u("inspectImage", "images/%s/json", name)
                 .build();
     }
 
     public String containerLogs(String containerId, boolean follow) {
-        return u("containers/%s/logs", containerId)
+        return containerLogs(containerId, follow, null, -1);
+    }
+
+    /**
+     * URL for fetching the logs of a container
+     *
+     * @param containerId container whose logs to fetch
+     * @param follow whether to follow the logs
+     * @param since only return entries from this time on (with a precision of seconds), null for all entries
+     * @param tail only return this number of entries from the end of the log, all entries if negative
+     * @return url for requesting the logs
+     */
+    public String containerLogs(String containerId, boolean follow, Timestamp since, int tail) {
+        return u("containerLogs", "containers/%s/logs", containerId)
                 .p("stdout",true)
                 .p("stderr",true)
                 .p("timestamps", true)
                 .p("follow", follow)
+                .p("since", since != null ? Long.toString(since.getDate().getMillis() / 1000) : null)
+                .p("tail", tail >= 0 ? Integer.toString(tail) : null)
                 .build();
     }
 
     public String createContainer(String name) {
-        return u("containers/create")
+        return u("createContainer", "containers/create")
                 .p("name", name)
                 .build();
     }
 
     public String version() {
-        return String.format("%s/version", baseUrl);
+        return new Builder("version", String.format("%s/version", baseUrl))
+                .build();
+    }
+
+    public String info() {
+        return u("info", "info")
+                .build();
     }
 
     public String deleteImage(String name, boolean force) {
-        return u("images/%s", name)
+        return u("deleteImage", "images/%s", name)
                 .p("force", force)
                 .build();
     }
 
     public String inspectContainer(String containerId) {
-        return u("containers/%s/json", containerId)
+        return u("inspectContainer", "containers/%s/json", containerId)
                 .build();
     }
 
     public String listContainers(String ... filter) {
-        Builder builder = u("containers/json");
+        return listContainers(false, filter);
+    }
+
+    public String listContainers(boolean all, String ... filter) {
+        Builder builder = u("listContainers", "containers/json");
+        if (all) {
+            builder.p("all", true);
+        }
         if (filter.length > 0) {
             if (filter.length % 2 != 0) {
                 throw new IllegalArgumentException("Filters must be given as key value pairs and not " +Arrays.asList(filter));
             }
             JSONObject filters = new JSONObject();
             for (int i = 0; i < filter.length; i +=2) {
-                JSONArray value = new JSONArray();
+                // Values given for the same key are alternatives
+                JSONArray value = filters.has(filter[i]) ? filters.getJSONArray(filter[i]) : new JSONArray();
                 value.put(filter[i+1]);
                 filters.put(filter[i],value);
             }
@@ -93,15 +129,28 @@ public final class UrlBuilder {
         return builder.build();
     }
 
+    public String containerEvents(String containerId, String ... events) {
+        JSONObject filters = new JSONObject();
+        if (containerId != null) {
+            filters.put("container", new JSONArray().put(containerId));
+        }
+        if (events.length > 0) {
+            filters.put("event", new JSONArray(Arrays.asList(events)));
+        }
+        return u("containerEvents", "events")
+                .p("filters", filters.length() > 0 ? filters.toString() : null)
+                .build();
+    }
+
     public String pullImage(ImageName name, String registry) {
-        return u("images/create")
+        return u("pullImage", "images/create")
                 .p("fromImage", name.getNameWithoutTag(registry))
                 .p("tag", name.getTag())
                 .build();
     }
 
     public String pushImage(ImageName name, String registry) {
-        return u("images/%s/push", name.getNameWithoutTag(registry))
+        return u("pushImage", "images/%s/push", name.getNameWithoutTag(registry))
                 .p("tag", name.getTag())
                 // "force=1" helps Fedora/CentOs Docker variants to push to public registries
                 .p("force", true)
@@ -109,36 +158,41 @@ public final class UrlBuilder {
     }
 
     public String removeContainer(String containerId, boolean removeVolumes) {
-        return u("containers/%s", containerId)
+        return u("removeContainer", "containers/%s", containerId)
                 .p("v", removeVolumes)
                 .build();
     }
 
     public String startContainer(String containerId) {
-        return u("containers/%s/start", containerId)
+        return u("startContainer", "containers/%s/start", containerId)
                 .build();
     }
 
     public String createExecContainer(String containerId) {
-        return u("containers/%s/exec", containerId)
+        return u("createExecContainer", "containers/%s/exec", containerId)
                 .build();
     }
 
     public String startExecContainer(String containerId) {
-        return u("exec/%s/start", containerId)
+        return u("startExecContainer", "exec/%s/start", containerId)
                 .build();
     }
 
     public String stopContainer(String containerId, int killWait) {
-        Builder b = u("containers/%s/stop", containerId);
+        Builder b = u("stopContainer", "containers/%s/stop", containerId);
         if (killWait > 0) {
             b.p("t", killWait);
         }
         return b.build();
     }
 
+    public String waitForContainer(String containerId) {
+        return u("waitForContainer", "containers/%s/wait", containerId)
+                .build();
+    }
+
     public String tagContainer(ImageName source, ImageName target, boolean force) {
-        return u("images/%s/tag", source.getFullName())
+        return u("tagContainer", "images/%s/tag", source.getFullName())
                 .p("repo",target.getNameWithoutTag())
                 .p("tag",target.getTag())
                 .p("force",force)
@@ -146,17 +200,17 @@ public final class UrlBuilder {
     }
 
     public String listNetworks() {
-        return u("networks")
+        return u("listNetworks", "networks")
                 .build();
     }
 
     public String createNetwork() {
-        return u("networks/create")
+        return u("createNetwork", "networks/create")
                 .build();
     }
 
     public String removeNetwork(String id) {
-        return u("networks/%s", id)
+        return u("removeNetwork", "networks/%s", id)
                 .build();
     }
 
@@ -164,6 +218,35 @@ public final class UrlBuilder {
         return baseUrl;
     }
 
+    /**
+     * Remember from now on which builder method has created an URL, so that it can be looked up with
+     * {@link #getOperation(String)}. Switched off by default, since it is only needed for metrics.
+     */
+    public synchronized void recordOperations() {
+        if (operations == null) {
+            operations = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_RECORDED_OPERATIONS;
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the name of the builder method which has created the given request URL. This can be used
+     * for grouping requests independent of the concrete ids and parameters in an URL.
+     *
+     * @param url URL as created by this builder
+     * @return name of the builder method (e.g. "inspectContainer") or "unknown" if the URL has not been
+     *         created by this builder recently or operations are not recorded
+     */
+    public String getOperation(String url) {
+        Map<String, String> recorded = operations;
+        String operation = recorded != null ? recorded.get(url) : null;
+        return operation != null ? operation : "unknown";
+    }
+
     // ============================================================================
 
     @SuppressWarnings("deprecation")
@@ -186,8 +269,8 @@ public final class UrlBuilder {
     }
 
     // Entry point for builder
-    private Builder u(String format, String ... args) {
-        return new Builder(createUrl(String.format(format, (Object[]) encodeArgs(args))));
+    private Builder u(String operation, String format, String ... args) {
+        return new Builder(operation, createUrl(String.format(format, (Object[]) encodeArgs(args))));
     }
 
     private String[] encodeArgs(String[] args) {
@@ -204,12 +287,14 @@ public final class UrlBuilder {
     }
 
 
-    private static class Builder {
+    private class Builder {
 
         private Map<String,String> queryParams = new HashMap<>();
+        private String operation;
         private String url;
 
-        public Builder(String url) {
+        public Builder(String operation, String url) {
+            this.operation = operation;
             this.url = url;
         }
 
@@ -229,6 +314,15 @@ public final class UrlBuilder {
         }
 
         public String build() {
+            String ret = createUrlWithQuery();
+            Map<String, String> recorded = operations;
+            if (recorded != null) {
+                recorded.put(ret, operation);
+            }
+            return ret;
+        }
+
+        private String createUrlWithQuery() {
             if (queryParams.size() > 0) {
                 StringBuilder ret = new StringBuilder(url);
                 ret.append("?");
@@ -2,7 +2,6 @@ package io.fabric8.maven.docker.access.chunked;
 
 import io.fabric8.maven.docker.util.Logger;
 import io.fabric8.maven.docker.access.DockerAccessException;
-import org.json.JSONObject;
 
 public class BuildJsonResponseHandler implements EntityStreamReaderUtil.JsonEntityResponseHandler {
 
@@ -13,22 +12,18 @@ public class BuildJsonResponseHandler implements EntityStreamReaderUtil.JsonEnti
     }
     
     @Override
-    public void process(JSONObject json) throws DockerAccessException {
-        if (json.has("error")) {
-            String msg = json.getString("error");
-            String detailMsg = "";
-            if (json.has("errorDetail")) {
-                JSONObject details = json.getJSONObject("errorDetail");
-                detailMsg = details.getString("message");
-            }
-            throw new DockerAccessException("%s %s", json.get("error"),
+    public void process(StreamEvent event) throws DockerAccessException {
+        if (event.getError() != null) {
+            String msg = event.getError();
+            String detailMsg = event.getErrorDetailMessage() != null ? event.getErrorDetailMessage() : "";
+            throw new DockerAccessException("%s %s", msg,
                     (msg.equals(detailMsg) || "".equals(detailMsg) ? "" : "(" + detailMsg + ")"));
-        } else if (json.has("stream")) {
-            String message = json.getString("stream");
+        } else if (event.getStream() != null) {
+            String message = event.getStream();
             log.verbose("%s", message.trim());
-        } else if (json.has("status")) {
-            String status = json.getString("status").trim();
-            String id = json.has("id") ? json.getString("id") : null;
+        } else if (event.getStatus() != null) {
+            String status = event.getStatus().trim();
+            String id = event.getId();
             if (status.matches("^.*(Download|Pulling).*")) {
                 log.info("  %s%s",id != null ? id + " " : "",status);
             }
@@ -4,8 +4,6 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import io.fabric8.maven.docker.access.DockerAccessException;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
 public class EntityStreamReaderUtil {
 
@@ -14,16 +12,10 @@ public class EntityStreamReaderUtil {
     public static void processJsonStream(JsonEntityResponseHandler handler, InputStream stream) throws IOException {
         handler.start();
         try {
-            JSONTokener tokener = new JSONTokener(stream);
-            while (true) {
-                char next = tokener.nextClean();
-                if (next == 0) {
-                    return;
-                } else {
-                    tokener.back();
-                }
-                JSONObject object = new JSONObject(tokener);
-                handler.process(object);
+            JsonStreamReader reader = new JsonStreamReader(stream);
+            StreamEvent event = new StreamEvent();
+            while (reader.next(event)) {
+                handler.process(event);
             }
         } finally {
             handler.stop();
@@ -31,7 +23,13 @@ public class EntityStreamReaderUtil {
     }
 
     public interface JsonEntityResponseHandler {
-        void process(JSONObject toProcess) throws DockerAccessException;
+        /**
+         * Process a single event. The event object is reused for all events of a stream.
+         *
+         * @param event event to process
+         * @throws DockerAccessException if the event reports an error
+         */
+        void process(StreamEvent event) throws DockerAccessException;
         void start();
         void stop();
     }
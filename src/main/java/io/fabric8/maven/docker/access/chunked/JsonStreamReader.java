@@ -0,0 +1,373 @@
+package io.fabric8.maven.docker.access.chunked;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull based reader for a stream of JSON objects as returned by the Docker daemon for
+ * pull, push and build requests. It works directly on the (UTF-8) byte stream and only extracts
+ * the fields needed into a reusable {@link StreamEvent}. All other values are skipped without
+ * creating any objects.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class JsonStreamReader {
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+
+    // Reusable buffer for decoding strings
+    private final StringBuilder chars = new StringBuilder(256);
+
+    // Event to which the raw bytes are captured while parsing
+    private StreamEvent capture;
+
+    public JsonStreamReader(InputStream in) {
+        this(in, 8192);
+    }
+
+    JsonStreamReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Read the next JSON object from the stream into the given event
+     *
+     * @param event event to fill. All fields are reset before.
+     * @return true if an event has been read, false if the end of the stream has been reached
+     * @throws IOException if reading fails or the stream contains invalid JSON
+     */
+    public boolean next(StreamEvent event) throws IOException {
+        int c = readNonWhitespace();
+        if (c == -1) {
+            return false;
+        }
+        if (c != '{') {
+            throw error("Expected '{' but got '" + (char) c + "'");
+        }
+        event.reset();
+        event.appendRaw(c);
+        capture = event;
+        try {
+            readEvent(event);
+        } finally {
+            capture = null;
+        }
+        return true;
+    }
+
+    // ==================================================================================
+
+    private void readEvent(StreamEvent event) throws IOException {
+        int c = readNonWhitespace();
+        if (c == '}') {
+            return;
+        }
+        while (true) {
+            readKey(c);
+            c = readNonWhitespace();
+            if (matches("id")) {
+                event.setId(readValueAsString(c));
+            } else if (matches("status")) {
+                event.setStatus(readValueAsString(c));
+            } else if (matches("progress")) {
+                event.setProgress(readValueAsString(c));
+            } else if (matches("progressDetail")) {
+                event.setProgressDetail(true);
+                skipValue(c);
+            } else if (matches("stream")) {
+                event.setStream(readValueAsString(c));
+            } else if (matches("error")) {
+                event.setError(readValueAsString(c));
+            } else if (matches("errorDetail") && c == '{') {
+                event.setErrorDetailMessage(readErrorDetailMessage());
+            } else {
+                skipValue(c);
+            }
+            if (endOfObject()) {
+                return;
+            }
+            c = readNonWhitespace();
+        }
+    }
+
+    // Extract "message" from the errorDetail object, '{' has been already read
+    private String readErrorDetailMessage() throws IOException {
+        String message = null;
+        int c = readNonWhitespace();
+        if (c == '}') {
+            return null;
+        }
+        while (true) {
+            readKey(c);
+            c = readNonWhitespace();
+            if (matches("message")) {
+                message = readValueAsString(c);
+            } else {
+                skipValue(c);
+            }
+            if (endOfObject()) {
+                return message;
+            }
+            c = readNonWhitespace();
+        }
+    }
+
+    // Read a key into the char buffer and the following colon. c is the first char of the key
+    private void readKey(int c) throws IOException {
+        if (c != '"') {
+            throw error("Expected '\"' for starting a key");
+        }
+        readString();
+        if (readNonWhitespace() != ':') {
+            throw error("Expected ':' after key " + chars);
+        }
+    }
+
+    // Check for the delimiter after a member and return true if the object is finished
+    private boolean endOfObject() throws IOException {
+        int c = readNonWhitespace();
+        if (c == '}') {
+            return true;
+        }
+        if (c != ',') {
+            throw error("Expected ',' or '}'");
+        }
+        return false;
+    }
+
+    private boolean matches(String key) {
+        int len = key.length();
+        if (chars.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (chars.charAt(i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Read a value as string. Strings are unquoted, other literals returned as is. Objects and arrays are skipped.
+    private String readValueAsString(int c) throws IOException {
+        if (c == '"') {
+            readString();
+            return chars.toString();
+        } else if (c == '{' || c == '[') {
+            skipValue(c);
+            return null;
+        } else {
+            chars.setLength(0);
+            readLiteral(c, true);
+            return "null".equals(chars.toString()) ? null : chars.toString();
+        }
+    }
+
+    private void skipValue(int c) throws IOException {
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                int n = readChecked();
+                if (n == '"') {
+                    skipString();
+                } else if (n == '{' || n == '[') {
+                    depth++;
+                } else if (n == '}' || n == ']') {
+                    depth--;
+                }
+            }
+        } else {
+            readLiteral(c, false);
+        }
+    }
+
+    // Read a number, true, false or null. The terminating char is pushed back.
+    private void readLiteral(int c, boolean store) throws IOException {
+        int n = c;
+        while (true) {
+            if (n == ',' || n == '}' || n == ']' || isWhitespace(n)) {
+                back();
+                return;
+            }
+            if (n == -1) {
+                throw error("Unexpected end of stream");
+            }
+            if (store) {
+                chars.append((char) n);
+            }
+            n = read();
+        }
+    }
+
+    // Decode a string into the char buffer, the opening quote has been already read
+    private void readString() throws IOException {
+        chars.setLength(0);
+        while (true) {
+            int b = readChecked();
+            if (b == '"') {
+                return;
+            } else if (b == '\\') {
+                readEscape();
+            } else if (b < 0x80) {
+                chars.append((char) b);
+            } else {
+                readMultiByte(b);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int b = readChecked();
+            if (b == '"') {
+                return;
+            } else if (b == '\\') {
+                readChecked();
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int b = readChecked();
+        switch (b) {
+            case 'b':
+                chars.append('\b');
+                break;
+            case 'f':
+                chars.append('\f');
+                break;
+            case 'n':
+                chars.append('\n');
+                break;
+            case 'r':
+                chars.append('\r');
+                break;
+            case 't':
+                chars.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(readChecked(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = (value << 4) + digit;
+                }
+                chars.append((char) value);
+                break;
+            default:
+                // '"', '\\', '/' and everything else is taken literally
+                chars.append((char) b);
+        }
+    }
+
+    // UTF-8 decoding of a multi byte sequence, invalid sequences are replaced
+    private void readMultiByte(int lead) throws IOException {
+        int count;
+        int codePoint;
+        if ((lead & 0xe0) == 0xc0) {
+            count = 1;
+            codePoint = lead & 0x1f;
+        } else if ((lead & 0xf0) == 0xe0) {
+            count = 2;
+            codePoint = lead & 0x0f;
+        } else if ((lead & 0xf8) == 0xf0) {
+            count = 3;
+            codePoint = lead & 0x07;
+        } else {
+            chars.append('\uFFFD');
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int b = readChecked();
+            if ((b & 0xc0) != 0x80) {
+                chars.append('\uFFFD');
+                back();
+                return;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3f);
+        }
+        if (Character.isValidCodePoint(codePoint)) {
+            chars.appendCodePoint(codePoint);
+        } else {
+            chars.append('\uFFFD');
+        }
+    }
+
+    private int readNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    private boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int readChecked() throws IOException {
+        int c = read();
+        if (c == -1) {
+            throw error("Unexpected end of stream");
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            int read;
+            do {
+                read = in.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read == -1) {
+                return -1;
+            }
+            pos = 0;
+            limit = read;
+        }
+        int b = buffer[pos++] & 0xff;
+        if (capture != null) {
+            capture.appendRaw(b);
+        }
+        return b;
+    }
+
+    // Push back the last char read. Only a single char can be pushed back.
+    private void back() {
+        if (pos > 0) {
+            pos--;
+            if (capture != null) {
+                capture.removeLastRaw();
+            }
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException("Invalid JSON stream: " + message);
+    }
+}
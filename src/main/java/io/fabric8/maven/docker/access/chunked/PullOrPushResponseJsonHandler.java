@@ -2,7 +2,6 @@ package io.fabric8.maven.docker.access.chunked;
 
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.util.Logger;
-import org.json.JSONObject;
 
 public class PullOrPushResponseJsonHandler implements EntityStreamReaderUtil.JsonEntityResponseHandler {
 
@@ -13,40 +12,40 @@ public class PullOrPushResponseJsonHandler implements EntityStreamReaderUtil.Jso
     }
     
     @Override
-    public void process(JSONObject json) throws DockerAccessException {
-        if (json.has("progressDetail")) {
-            log.progressUpdate(getStringOrEmpty(json, "id"),
-                               getStringOrEmpty(json, "status"),
-                               getStringOrEmpty(json, "progress"));
-        } else if (json.has("error")) {
-            throwDockerAccessException(json);
+    public void process(StreamEvent event) throws DockerAccessException {
+        if (event.hasProgressDetail()) {
+            log.progressUpdate(getStringOrEmpty(event.getId()),
+                               getStringOrEmpty(event.getStatus()),
+                               getStringOrEmpty(event.getProgress()));
+        } else if (event.getError() != null) {
+            throwDockerAccessException(event);
         } else {
             log.progressFinished();
-            logInfoMessage(json);
+            logInfoMessage(event);
             log.progressStart();
         }
     }
 
-    private void logInfoMessage(JSONObject json) {
+    private void logInfoMessage(StreamEvent event) {
         String value;
-        if (json.has("stream")) {
-            value = json.getString("stream").replaceFirst("\n$", "");
-        } else if (json.has("status")) {
-            value = json.getString("status");
+        if (event.getStream() != null) {
+            value = event.getStream().replaceFirst("\n$", "");
+        } else if (event.getStatus() != null) {
+            value = event.getStatus();
         } else {
-            value = json.toString();
+            value = event.toJson();
         }
         log.info("%s", value);
     }
 
-    private void throwDockerAccessException(JSONObject json) throws DockerAccessException {
-        String msg = json.getString("error").trim();
-        String details = json.getJSONObject("errorDetail").getString("message").trim();
-        throw new DockerAccessException("%s %s", msg, (msg.equals(details) ? "" : "(" + details + ")"));
+    private void throwDockerAccessException(StreamEvent event) throws DockerAccessException {
+        String msg = event.getError().trim();
+        String details = getStringOrEmpty(event.getErrorDetailMessage()).trim();
+        throw new DockerAccessException("%s %s", msg, (msg.equals(details) || details.isEmpty() ? "" : "(" + details + ")"));
     }
 
-    private String getStringOrEmpty(JSONObject json, String what) {
-        return json.has(what) ? json.getString(what) : "";
+    private String getStringOrEmpty(String value) {
+        return value != null ? value : "";
     }
 
     @Override
@@ -0,0 +1,141 @@
+package io.fabric8.maven.docker.access.chunked;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A single event of a chunked JSON stream as sent by the Docker daemon when pulling, pushing
+ * or building images. Only the fields evaluated by this plugin are extracted. An event object
+ * is reused by {@link JsonStreamReader} for all events of a stream, so its values must not be
+ * kept beyond processing a single event.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class StreamEvent {
+
+    private String id;
+    private String status;
+    private String progress;
+    private boolean progressDetail;
+    private String stream;
+    private String error;
+    private String errorDetailMessage;
+
+    // Raw bytes of the event, used only for printing out unknown events
+    private byte[] raw = new byte[512];
+    private int rawLength;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getProgress() {
+        return progress;
+    }
+
+    public boolean hasProgressDetail() {
+        return progressDetail;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getErrorDetailMessage() {
+        return errorDetailMessage;
+    }
+
+    /**
+     * Get the event as it was received
+     *
+     * @return the JSON representation of this event
+     */
+    public String toJson() {
+        return new String(raw, 0, rawLength, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    // ===========================================================================
+    // Used by the reader
+
+    void reset() {
+        id = null;
+        status = null;
+        progress = null;
+        progressDetail = false;
+        stream = null;
+        error = null;
+        errorDetailMessage = null;
+        rawLength = 0;
+    }
+
+    void setId(String id) {
+        this.id = id;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+    }
+
+    void setProgress(String progress) {
+        this.progress = progress;
+    }
+
+    void setProgressDetail(boolean progressDetail) {
+        this.progressDetail = progressDetail;
+    }
+
+    void setStream(String stream) {
+        this.stream = stream;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    void setErrorDetailMessage(String errorDetailMessage) {
+        this.errorDetailMessage = errorDetailMessage;
+    }
+
+    void appendRaw(int b) {
+        if (rawLength == raw.length) {
+            raw = Arrays.copyOf(raw, raw.length * 2);
+        }
+        raw[rawLength++] = (byte) b;
+    }
+
+    void removeLastRaw() {
+        if (rawLength > 0) {
+            rawLength--;
+        }
+    }
+}
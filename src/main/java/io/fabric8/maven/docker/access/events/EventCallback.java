@@ -0,0 +1,54 @@
+package io.fabric8.maven.docker.access.events;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import io.fabric8.maven.docker.access.chunked.StreamEvent;
+
+/**
+ * Interface called for the events received from the docker host when following
+ * the events of a container.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public interface EventCallback {
+
+    /**
+     * Called when the daemon has accepted the request, all events happening from now on are received
+     */
+    void open();
+
+    /**
+     * Receive an event
+     *
+     * @param event the event. It is reused for the next event, so its values must not be kept.
+     * @throws DoneException if no more events should be received
+     */
+    void event(StreamEvent event) throws DoneException;
+
+    /**
+     * Called when the events cannot be received (anymore)
+     *
+     * @param error error description
+     */
+    void error(String error);
+
+    /**
+     * Exception indicating that no more events should be received
+     */
+    class DoneException extends Exception {}
+}
@@ -0,0 +1,31 @@
+package io.fabric8.maven.docker.access.events;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Handle for events followed asynchronously
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public interface EventGetHandle {
+
+    /**
+     * Stop following the events
+     */
+    void finish();
+}
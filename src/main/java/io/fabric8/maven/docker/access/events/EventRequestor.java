@@ -0,0 +1,128 @@
+package io.fabric8.maven.docker.access.events;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.fabric8.maven.docker.access.chunked.JsonStreamReader;
+import io.fabric8.maven.docker.access.chunked.StreamEvent;
+import io.fabric8.maven.docker.access.util.RequestUtil;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+/**
+ * Thread following the event stream of the Docker daemon. The stream is kept open
+ * until the callback is done or {@link #finish()} is called.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class EventRequestor extends Thread implements EventGetHandle {
+
+    private final CloseableHttpClient client;
+    private final String url;
+    private final EventCallback callback;
+
+    // Lock for synchronizing aborting the request
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private HttpUriRequest request;
+    private boolean finished;
+
+    /**
+     * Create a requestor which follows events when started
+     *
+     * @param client HTTP client to use, closed when done
+     * @param url events URL including the filters
+     * @param callback callback to call for each event
+     */
+    public EventRequestor(CloseableHttpClient client, String url, EventCallback callback) {
+        this.client = client;
+        this.url = url;
+        this.callback = callback;
+        setDaemon(true);
+        setName("docker-events");
+    }
+
+    @Override
+    public void run() {
+        try {
+            synchronized (lock) {
+                if (finished) {
+                    return;
+                }
+                request = RequestUtil.newGet(url);
+            }
+            HttpResponse response = client.execute(request);
+            StatusLine status = response.getStatusLine();
+            if (status.getStatusCode() != 200) {
+                callback.error("Error while requesting events (" + status + ")");
+                return;
+            }
+            callback.open();
+            InputStream is = response.getEntity().getContent();
+            try {
+                JsonStreamReader reader = new JsonStreamReader(is);
+                StreamEvent event = new StreamEvent();
+                while (reader.next(event)) {
+                    callback.event(event);
+                }
+                if (!isFinished()) {
+                    callback.error("Event stream closed by the Docker daemon");
+                }
+            } catch (EventCallback.DoneException exp) {
+                // Abort first, closing the stream would otherwise wait for its end which never comes
+                finish();
+            } finally {
+                is.close();
+            }
+        } catch (IOException exp) {
+            if (!isFinished()) {
+                callback.error("IO Error while requesting events: " + exp);
+            }
+        } finally {
+            try {
+                synchronized (lock) {
+                    request = null;
+                }
+                client.close();
+            } catch (IOException exp) {
+                // Nothing to do anymore
+            }
+        }
+    }
+
+    @Override
+    public void finish() {
+        synchronized (lock) {
+            finished = true;
+            if (request != null) {
+                request.abort();
+            }
+        }
+    }
+
+    private boolean isFinished() {
+        synchronized (lock) {
+            return finished;
+        }
+    }
+}
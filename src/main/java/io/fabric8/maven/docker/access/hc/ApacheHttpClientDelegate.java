@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import com.google.common.net.MediaType;
+import io.fabric8.maven.docker.access.ArchiveStream;
 import io.fabric8.maven.docker.access.hc.http.HttpRequestException;
 import io.fabric8.maven.docker.access.hc.util.ClientBuilder;
 import org.apache.http.*;
@@ -58,20 +59,19 @@ public class ApacheHttpClientDelegate {
 
     public <T> T delete(String url, ResponseHandler<T> responseHandler, int... statusCodes)
         throws IOException {
-        return httpClient.execute(newDelete(url),
+        return execute(newDelete(url),
                                   new StatusCodeCheckerResponseHandler<>(responseHandler,
                                                                          statusCodes));
     }
 
     public String get(String url, int... statusCodes) throws IOException {
-        return httpClient.execute(newGet(url), new StatusCodeCheckerResponseHandler<>(
+        return execute(newGet(url), new StatusCodeCheckerResponseHandler<>(
             new BodyResponseHandler(), statusCodes));
     }
 
     public <T> T get(String url, ResponseHandler<T> responseHandler, int... statusCodes)
         throws IOException {
-        return httpClient
-            .execute(newGet(url), new StatusCodeCheckerResponseHandler<>(responseHandler, statusCodes));
+        return execute(newGet(url), new StatusCodeCheckerResponseHandler<>(responseHandler, statusCodes));
     }
     public static class BodyResponseHandler implements ResponseHandler<String> {
         @Override
@@ -94,12 +94,12 @@ public class ApacheHttpClientDelegate {
             request.addHeader(entry.getKey(), entry.getValue());
         }
 
-        return httpClient.execute(request, new StatusCodeCheckerResponseHandler<>(responseHandler, statusCodes));
+        return execute(request, new StatusCodeCheckerResponseHandler<>(responseHandler, statusCodes));
     }
 
     public <T> T post(String url, Object body, ResponseHandler<T> responseHandler,
                       int... statusCodes) throws IOException {
-        return httpClient.execute(newPost(url, body),
+        return execute(newPost(url, body),
                                   new StatusCodeCheckerResponseHandler<>(responseHandler,
                                                                          statusCodes));
     }
@@ -109,12 +109,25 @@ public class ApacheHttpClientDelegate {
     }
 
     public int put(String url, Object body, int... statusCodes) throws IOException {
-        return httpClient.execute(newPut(url, body),
+        return execute(newPut(url, body),
                                   new StatusCodeCheckerResponseHandler<>(new StatusCodeResponseHandler(), statusCodes));
     }
 
     // =========================================================================================
 
+    /**
+     * Execute a request. All requests done by this delegate go through this method, which
+     * can be overridden for instrumenting the requests.
+     *
+     * @param request request to execute
+     * @param responseHandler handler for evaluating the response
+     * @return the result of the response handler
+     * @throws IOException if the request fails
+     */
+    protected <T> T execute(HttpUriRequest request, ResponseHandler<T> responseHandler) throws IOException {
+        return httpClient.execute(request, responseHandler);
+    }
+
     private HttpUriRequest addDefaultHeaders(HttpUriRequest req) {
         req.addHeader(HttpHeaders.ACCEPT, "*/*");
         req.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.JSON_UTF_8.toString());
@@ -147,6 +160,8 @@ public class ApacheHttpClientDelegate {
         if (entity != null) {
             if (entity instanceof File) {
                 request.setEntity(new FileEntity((File) entity));
+            } else if (entity instanceof ArchiveStream) {
+                request.setEntity(new ArchiveStreamEntity((ArchiveStream) entity));
             } else {
                 request.setEntity(new StringEntity((String) entity, Charset.defaultCharset()));
             }
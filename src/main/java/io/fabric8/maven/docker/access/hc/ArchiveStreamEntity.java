@@ -0,0 +1,165 @@
+package io.fabric8.maven.docker.access.hc;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import io.fabric8.maven.docker.access.ArchiveStream;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Chunked request entity for an {@link ArchiveStream}. The archive is produced on a separate
+ * thread into a pipe while the request thread sends the pipe's content to the Docker daemon, so that
+ * creating the archive and uploading it overlap. The entity is not repeatable, so only one call of either
+ * {@link #writeTo(OutputStream)} or {@link #getContent()} is possible.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+class ArchiveStreamEntity extends AbstractHttpEntity {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final ArchiveStream archive;
+    private boolean consumed;
+
+    ArchiveStreamEntity(ArchiveStream archive) {
+        this.archive = archive;
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return !consumed;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        if (consumed) {
+            throw new IllegalStateException("Archive stream has already been sent");
+        }
+        consumed = true;
+
+        PipedInputStream in = new PipedInputStream(BUFFER_SIZE);
+        Producer producer = new Producer(archive, new PipedOutputStream(in));
+        producer.start();
+        return new ArchiveInputStream(in, producer);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        InputStream in = getContent();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            // Unblocks the producer in case the upload failed
+            in.close();
+        }
+        out.flush();
+    }
+
+    // Reading end of the pipe, which reports an error of the producer when the end of the archive is reached
+    private static class ArchiveInputStream extends FilterInputStream {
+
+        private final Producer producer;
+
+        ArchiveInputStream(PipedInputStream in, Producer producer) {
+            super(in);
+            this.producer = producer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ret = super.read();
+            if (ret == -1) {
+                checkProducer();
+            }
+            return ret;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int ret = super.read(b, off, len);
+            if (ret == -1) {
+                checkProducer();
+            }
+            return ret;
+        }
+
+        private void checkProducer() throws IOException {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while sending archive");
+            }
+            if (producer.error != null) {
+                throw new IOException("Cannot create archive: " + producer.error.getMessage(), producer.error);
+            }
+        }
+    }
+
+    // Thread writing the archive into the pipe
+    private static class Producer extends Thread {
+
+        private final ArchiveStream archive;
+        private final PipedOutputStream out;
+        private volatile Throwable error;
+
+        Producer(ArchiveStream archive, PipedOutputStream out) {
+            super("docker-archive-producer");
+            setDaemon(true);
+            this.archive = archive;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                archive.writeTo(out);
+            } catch (Throwable exp) {
+                error = exp;
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore, the reader side has been already closed
+                }
+            }
+        }
+    }
+}
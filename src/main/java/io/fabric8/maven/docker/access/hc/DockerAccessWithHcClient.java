@@ -18,19 +18,35 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.fabric8.maven.docker.access.hc.util.ClientBuilder;
+import io.fabric8.maven.docker.access.util.RequestUtil;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import io.fabric8.maven.docker.access.ArchiveStream;
 import io.fabric8.maven.docker.access.AuthConfig;
 import io.fabric8.maven.docker.access.ContainerCreateConfig;
 import io.fabric8.maven.docker.access.DockerAccess;
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.access.NetworkCreateConfig;
+import io.fabric8.maven.docker.access.ServerCapabilitiesFile;
 import io.fabric8.maven.docker.access.UrlBuilder;
 import io.fabric8.maven.docker.access.chunked.BuildJsonResponseHandler;
 import io.fabric8.maven.docker.access.chunked.EntityStreamReaderUtil;
@@ -38,9 +54,17 @@ import io.fabric8.maven.docker.access.chunked.PullOrPushResponseJsonHandler;
 import io.fabric8.maven.docker.access.hc.ApacheHttpClientDelegate.BodyAndStatusResponseHandler;
 import io.fabric8.maven.docker.access.hc.ApacheHttpClientDelegate.HttpBodyAndStatus;
 import io.fabric8.maven.docker.access.hc.http.HttpClientBuilder;
+import io.fabric8.maven.docker.access.hc.http.TcpLogChannelFactory;
+import io.fabric8.maven.docker.access.hc.metrics.HttpMetrics;
+import io.fabric8.maven.docker.access.hc.metrics.MeteredHttpClientDelegate;
+import io.fabric8.maven.docker.access.hc.unix.UnixLogChannelFactory;
 import io.fabric8.maven.docker.access.hc.unix.UnixSocketClientBuilder;
 import io.fabric8.maven.docker.access.hc.win.NamedPipeClientBuilder;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
+import io.fabric8.maven.docker.access.events.EventRequestor;
 import io.fabric8.maven.docker.access.log.LogCallback;
+import io.fabric8.maven.docker.access.log.LogFollowEngine;
 import io.fabric8.maven.docker.access.log.LogGetHandle;
 import io.fabric8.maven.docker.access.log.LogRequestor;
 import io.fabric8.maven.docker.config.Arguments;
@@ -51,7 +75,7 @@ import io.fabric8.maven.docker.model.ContainerDetails;
 import io.fabric8.maven.docker.model.ContainersListElement;
 import io.fabric8.maven.docker.model.Network;
 import io.fabric8.maven.docker.model.NetworksListElement;
-import io.fabric8.maven.docker.util.EnvUtil;
+import io.fabric8.maven.docker.model.ServerCapabilities;
 import io.fabric8.maven.docker.util.ImageName;
 import io.fabric8.maven.docker.util.Logger;
 import io.fabric8.maven.docker.util.Timestamp;
@@ -79,12 +103,34 @@ public class DockerAccessWithHcClient implements DockerAccess {
     // Base URL which is given through when using NamedPipe communication but is not really used
     private static final String NPIPE_URL = "npipe://127.0.0.1:1/";
 
+    // Number of I/O threads used for following container logs
+    private static final int LOG_IO_THREADS = 2;
+
+    // Maximum number of threads waiting for containers to exit if the log engine can't be used
+    private static final int WAIT_THREADS = 8;
+
     // Logging
     private final Logger log;
 
     private final ApacheHttpClientDelegate delegate;
     private final UrlBuilder urlBuilder;
 
+    // Metrics to record, null if switched off
+    private final HttpMetrics metrics;
+
+    // Engine for following logs, null if the transport is not supported (TLS, named pipes)
+    private final LogFollowEngine logFollowEngine;
+
+    // Waits for containers to exit if there is no log engine, created on first use
+    private ExecutorService waitExecutor;
+
+    // Capabilities of the daemon, fetched on first use
+    private volatile ServerCapabilities serverCapabilities;
+
+    // URL of the daemon as given and the file with the details of known daemons (null if not used)
+    private final String daemonUrl;
+    private final ServerCapabilitiesFile capabilitiesFile;
+
     /**
      * Create a new access for the given URL
      *
@@ -100,33 +146,154 @@ public class DockerAccessWithHcClient implements DockerAccess {
                                     String certPath,
                                     int maxConnections,
                                     Logger log) throws IOException {
+        this(apiVersion, baseUrl, certPath, maxConnections, null, log);
+    }
+
+    /**
+     * Create a new access for the given URL which records metrics for all requests
+     *
+     * @param baseUrl  base URL for accessing the docker Daemon
+     * @param certPath used to build up a keystore with the given keys and certificates found in this
+     *                 directory
+     * @param maxConnections maximum parallel connections allowed to docker daemon (if a pool is used)
+     * @param metrics  metrics to update or <code>null</code> if no metrics should be recorded
+     * @param log      a log handler for printing out logging information
+     */
+    public DockerAccessWithHcClient(String apiVersion,
+                                    String baseUrl,
+                                    String certPath,
+                                    int maxConnections,
+                                    HttpMetrics metrics,
+                                    Logger log) throws IOException {
+        this(apiVersion, baseUrl, certPath, maxConnections, metrics, null, log);
+    }
+
+    /**
+     * Create a new access for the given URL for a daemon whose capabilities are already known
+     *
+     * @param baseUrl  base URL for accessing the docker Daemon
+     * @param certPath used to build up a keystore with the given keys and certificates found in this
+     *                 directory
+     * @param maxConnections maximum parallel connections allowed to docker daemon (if a pool is used)
+     * @param metrics  metrics to update or <code>null</code> if no metrics should be recorded
+     * @param capabilities capabilities of the daemon or <code>null</code> if they should be fetched on first use
+     * @param log      a log handler for printing out logging information
+     */
+    public DockerAccessWithHcClient(String apiVersion,
+                                    String baseUrl,
+                                    String certPath,
+                                    int maxConnections,
+                                    HttpMetrics metrics,
+                                    ServerCapabilities capabilities,
+                                    Logger log) throws IOException {
+        this(apiVersion, baseUrl, certPath, maxConnections, metrics, capabilities, null, log);
+    }
+
+    /**
+     * Create a new access for the given URL which looks up the details of the daemon in a file
+     *
+     * @param baseUrl  base URL for accessing the docker Daemon
+     * @param certPath used to build up a keystore with the given keys and certificates found in this
+     *                 directory
+     * @param maxConnections maximum parallel connections allowed to docker daemon (if a pool is used)
+     * @param metrics  metrics to update or <code>null</code> if no metrics should be recorded
+     * @param capabilities capabilities of the daemon or <code>null</code> if they should be fetched on first use
+     * @param capabilitiesFile file with the details of known daemons or <code>null</code> if they should always
+     *                         be fetched
+     * @param log      a log handler for printing out logging information
+     */
+    public DockerAccessWithHcClient(String apiVersion,
+                                    String baseUrl,
+                                    String certPath,
+                                    int maxConnections,
+                                    HttpMetrics metrics,
+                                    ServerCapabilities capabilities,
+                                    ServerCapabilitiesFile capabilitiesFile,
+                                    Logger log) throws IOException {
         this.log = log;
+        this.metrics = metrics;
+        this.serverCapabilities = capabilities;
+        this.daemonUrl = baseUrl;
+        this.capabilitiesFile = capabilitiesFile;
         URI uri = URI.create(baseUrl);
         if (uri.getScheme() == null) {
             throw new IllegalArgumentException("The docker access url '" + baseUrl + "' must contain a schema tcp://, unix:// or npipe://");
         }
         if (uri.getScheme().equalsIgnoreCase("unix")) {
-            this.delegate = createHttpClient(new UnixSocketClientBuilder(uri.getPath(), maxConnections, log));
             this.urlBuilder = new UrlBuilder(UNIX_URL, apiVersion);
+            this.delegate = createHttpClient(new UnixSocketClientBuilder(uri.getPath(), maxConnections, metrics, log));
+            this.logFollowEngine = new LogFollowEngine(new UnixLogChannelFactory(uri.getPath()), LOG_IO_THREADS);
         } else if (uri.getScheme().equalsIgnoreCase("npipe")) {
-        	this.delegate = createHttpClient(new NamedPipeClientBuilder(uri.getPath(), maxConnections, log), false);
             this.urlBuilder = new UrlBuilder(NPIPE_URL, apiVersion);
+            this.delegate = createHttpClient(new NamedPipeClientBuilder(uri.getPath(), maxConnections, metrics, log), false);
+            this.logFollowEngine = null;
         } else {
-            this.delegate = createHttpClient(new HttpClientBuilder(isSSL(baseUrl) ? certPath : null, maxConnections));
             this.urlBuilder = new UrlBuilder(baseUrl, apiVersion);
+            this.delegate = createHttpClient(new HttpClientBuilder(isSSL(baseUrl) ? certPath : null, maxConnections, metrics));
+            this.logFollowEngine = isSSL(baseUrl) ?
+                null :
+                new LogFollowEngine(new TcpLogChannelFactory(uri.getHost(), uri.getPort() != -1 ? uri.getPort() : 80),
+                                    LOG_IO_THREADS);
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public String getServerApiVersion() throws DockerAccessException {
+        return getServerCapabilities().getApiVersion();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ServerCapabilities getServerCapabilities() throws DockerAccessException {
+        // The daemon doesn't change while we are talking to it
+        ServerCapabilities capabilities = serverCapabilities;
+        if (capabilities != null) {
+            return capabilities;
+        }
+        JSONObject version;
         try {
-            String url = urlBuilder.version();
-            String response = delegate.get(url, 200);
-            JSONObject info = new JSONObject(response);
-            return info.getString("ApiVersion");
+            version = new JSONObject(delegate.get(urlBuilder.version(), HTTP_OK));
         } catch (Exception e) {
-            throw new DockerAccessException(e, "Cannot extract API version from server %s", urlBuilder.getBaseUrl());
+            throw new DockerAccessException(e, "Cannot fetch capabilities from server %s", urlBuilder.getBaseUrl());
+        }
+        capabilities = lookupCapabilities(version);
+        if (capabilities == null) {
+            capabilities = new ServerCapabilities(version, fetchInfo());
+            storeCapabilities(capabilities);
+        }
+        serverCapabilities = capabilities;
+        return capabilities;
+    }
+
+    // The details from /info are not needed for talking to the daemon, so a failing request is not fatal
+    private JSONObject fetchInfo() {
+        try {
+            return new JSONObject(delegate.get(urlBuilder.info(), HTTP_OK));
+        } catch (Exception e) {
+            log.warn("Cannot fetch details of Docker daemon %s: %s", daemonUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    private ServerCapabilities lookupCapabilities(JSONObject version) {
+        if (capabilitiesFile != null) {
+            try {
+                return capabilitiesFile.lookup(daemonUrl, version);
+            } catch (IOException e) {
+                log.debug("Cannot read known Docker daemons: %s", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void storeCapabilities(ServerCapabilities capabilities) {
+        if (capabilitiesFile != null) {
+            try {
+                capabilitiesFile.store(daemonUrl, capabilities);
+            } catch (IOException e) {
+                log.debug("Cannot store details of Docker daemon %s: %s", daemonUrl, e.getMessage());
+            }
         }
     }
 
@@ -145,7 +312,8 @@ public class DockerAccessWithHcClient implements DockerAccess {
     }
 
     private ResponseHandler<Object> createExecResponseHandler(LogOutputSpec outputSpec) throws FileNotFoundException {
-        final LogCallback callback = new DefaultLogCallback(outputSpec);
+        final DefaultLogCallback logCallback = new DefaultLogCallback(outputSpec);
+        final LogCallback callback = logCallback;
         return new ResponseHandler<Object>() {
             @Override
             public Object handleResponse(HttpResponse response) throws IOException {
@@ -158,6 +326,8 @@ public class DockerAccessWithHcClient implements DockerAccess {
                         }
                     } catch (LogCallback.DoneException e) {
                         // Ok, we stop here ...
+                    } finally {
+                        logCallback.close();
                     }
                 }
                 return null;
@@ -232,9 +402,92 @@ public class DockerAccessWithHcClient implements DockerAccess {
         }
     }
 
+    @Override
+    public ListenableFuture<Integer> waitForExitAsync(final String containerId) {
+        String url = urlBuilder.waitForContainer(containerId);
+        if (logFollowEngine != null) {
+            // Served by the I/O threads of the log engine, so no thread waits for the container
+            ListenableFuture<String> body =
+                logFollowEngine.request("POST", url, String.format("waiting for container id [%s]", containerId));
+            return Futures.transform(body, new Function<String, Integer>() {
+                @Override
+                public Integer apply(String response) {
+                    return new JSONObject(response).getInt("StatusCode");
+                }
+            });
+        }
+        return waitForExitWithThread(containerId, url);
+    }
+
+    // For TLS and named pipes, which the log engine can't handle. The number of threads is bounded,
+    // further waits are queued. Since the daemon answers at once for a container which has exited
+    // already, a queued wait is late but doesn't miss the exit.
+    private ListenableFuture<Integer> waitForExitWithThread(final String containerId, String url) {
+        final SettableFuture<Integer> ret = SettableFuture.create();
+        final HttpUriRequest request = RequestUtil.newPost(url, null);
+        ret.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (ret.isCancelled()) {
+                    request.abort();
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        getWaitExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (ret.isDone()) {
+                    return;
+                }
+                // Might block for a long time, so it gets its own client instead of occupying a pooled connection
+                try (CloseableHttpClient client = delegate.createBasicClient()) {
+                    HttpResponse response = client.execute(request);
+                    String body = EntityUtils.toString(response.getEntity());
+                    if (response.getStatusLine().getStatusCode() != HTTP_OK) {
+                        ret.setException(new DockerAccessException("Unable to wait for container id [%s] (%s): %s",
+                                                                   containerId, response.getStatusLine(), body));
+                    } else {
+                        ret.set(new JSONObject(body).getInt("StatusCode"));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    ret.setException(new DockerAccessException(e, "Unable to wait for container id [%s]", containerId));
+                }
+            }
+        });
+        return ret;
+    }
+
+    private synchronized ExecutorService getWaitExecutor() {
+        if (waitExecutor == null) {
+            ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(WAIT_THREADS, WAIT_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                       new ThreadFactoryBuilder().setNameFormat("docker-wait-exit-%d").setDaemon(true).build());
+            // Threads stop when idle, so the executor doesn't need to be shut down
+            executor.allowCoreThreadTimeOut(true);
+            waitExecutor = executor;
+        }
+        return waitExecutor;
+    }
+
     @Override
     public void buildImage(String image, File dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
             Map<String, String> buildArgs) throws DockerAccessException {
+        doBuildImage(image, dockerArchive, dockerfileName, forceRemove, noCache, buildArgs);
+    }
+
+    @Override
+    public void buildImage(String image, ArchiveStream dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
+            Map<String, String> buildArgs) throws DockerAccessException {
+        doBuildImage(image, dockerArchive, dockerfileName, forceRemove, noCache, buildArgs);
+    }
+
+    private void doBuildImage(String image, Object dockerArchive, String dockerfileName, boolean forceRemove, boolean noCache,
+                              Map<String, String> buildArgs) throws DockerAccessException {
+        // Older daemons silently ignore build args
+        if (buildArgs != null && !buildArgs.isEmpty() && !getServerCapabilities().supportsBuildArgs()) {
+            throw new DockerAccessException("Unable to build image [%s] with build args since the Docker daemon with API version %s " +
+                                            "doesn't support them (1.21 required)", image, getServerApiVersion());
+        }
         try {
             String url = urlBuilder.buildImage(image, dockerfileName, forceRemove, noCache, buildArgs);
             delegate.post(url, dockerArchive, createBuildResponseHandler(), HTTP_OK);
@@ -257,22 +510,42 @@ public class DockerAccessWithHcClient implements DockerAccess {
 
     @Override
     public void getLogSync(String containerId, LogCallback callback) {
-        LogRequestor extractor = new LogRequestor(delegate.getHttpClient(), urlBuilder, containerId, callback);
+        getLogSync(containerId, null, -1, callback);
+    }
+
+    @Override
+    public void getLogSync(String containerId, Timestamp since, int tail, LogCallback callback) {
+        LogRequestor extractor = new LogRequestor(delegate.getHttpClient(), urlBuilder, containerId, since, tail, callback);
         extractor.fetchLogs();
     }
 
     @Override
     public LogGetHandle getLogAsync(String containerId, LogCallback callback) {
-        LogRequestor extractor = new LogRequestor(delegate.createBasicClient(), urlBuilder, containerId, callback);
+        return getLogAsync(containerId, null, -1, callback);
+    }
+
+    @Override
+    public LogGetHandle getLogAsync(String containerId, Timestamp since, int tail, LogCallback callback) {
+        if (logFollowEngine != null) {
+            return logFollowEngine.follow(urlBuilder.containerLogs(containerId, true, since, tail), callback);
+        }
+        LogRequestor extractor = new LogRequestor(delegate.createBasicClient(), urlBuilder, containerId, since, tail, callback);
         extractor.start();
         return extractor;
     }
 
+    @Override
+    public EventGetHandle getEventsAsync(String containerId, EventCallback callback, String ... events) {
+        EventRequestor requestor =
+            new EventRequestor(delegate.createBasicClient(), urlBuilder.containerEvents(containerId, events), callback);
+        requestor.start();
+        return requestor;
+    }
+
     @Override
     public List<Container> getContainersForImage(String image) throws DockerAccessException {
         String url;
-        String serverApiVersion = getServerApiVersion();
-        if (EnvUtil.greaterOrEqualsVersion(serverApiVersion, "1.23")) {
+        if (getServerCapabilities().supportsAncestorFilter()) {
             // For Docker >= 1.11 we can use a new filter when listing containers
             url = urlBuilder.listContainers("ancestor",image);
         } else {
@@ -297,6 +570,22 @@ public class DockerAccessWithHcClient implements DockerAccess {
         }
     }
 
+    @Override
+    public List<Container> listContainers(boolean all, String ... filter) throws DockerAccessException {
+        String url = urlBuilder.listContainers(all, filter);
+        try {
+            String response = delegate.get(url, HTTP_OK);
+            JSONArray array = new JSONArray(response);
+            List<Container> containers = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                containers.add(new ContainersListElement(array.getJSONObject(i)));
+            }
+            return containers;
+        } catch (IOException e) {
+            throw new DockerAccessException(e, "Unable to list containers");
+        }
+    }
+
     @Override
     public Container getContainer(String containerIdOrName) throws DockerAccessException {
         HttpBodyAndStatus response = inspectContainer(containerIdOrName);
@@ -491,7 +780,9 @@ public class DockerAccessWithHcClient implements DockerAccess {
     }
 
     ApacheHttpClientDelegate createHttpClient(ClientBuilder builder, boolean pooled) throws IOException {
-        return new ApacheHttpClientDelegate(builder, pooled);
+        return metrics != null ?
+            new MeteredHttpClientDelegate(builder, pooled, urlBuilder, metrics) :
+            new ApacheHttpClientDelegate(builder, pooled);
     }
 
     // visible for testing?
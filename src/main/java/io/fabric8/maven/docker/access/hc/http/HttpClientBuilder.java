@@ -18,14 +18,18 @@ package io.fabric8.maven.docker.access.hc.http;/*
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
+import io.fabric8.maven.docker.access.hc.metrics.HttpMetrics;
+import io.fabric8.maven.docker.access.hc.metrics.MeteredConnectionManager;
 import io.fabric8.maven.docker.access.hc.util.ClientBuilder;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.*;
@@ -42,16 +46,23 @@ public class HttpClientBuilder implements ClientBuilder {
 
     private final String certPath;
     private final int maxConnections;
+    private final HttpMetrics metrics;
 
     public HttpClientBuilder(String certPath, int maxConnections) {
+        this(certPath, maxConnections, null);
+    }
+
+    public HttpClientBuilder(String certPath, int maxConnections, HttpMetrics metrics) {
         this.certPath = certPath;
         this.maxConnections = maxConnections;
+        this.metrics = metrics;
     }
 
     public CloseableHttpClient buildPooledClient() throws IOException {
         org.apache.http.impl.client.HttpClientBuilder builder = HttpClients.custom();
-        HttpClientConnectionManager manager = getPooledConnectionFactory(certPath, maxConnections);
+        HttpClientConnectionManager manager = getPooledConnectionFactory(certPath, maxConnections, metrics);
         builder.setConnectionManager(manager);
+        builder.evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS);
         // TODO: For push-redirects working for 301, the redirect strategy should be relaxed (see #351)
         // However not sure whether we should do it right now and whether this is correct, since normally
         // a 301 should only occur when the image name is invalid (e.g. containing "//" in which case a redirect
@@ -68,10 +79,15 @@ public class HttpClientBuilder implements ClientBuilder {
         return HttpClients.custom().setConnectionManager(getBasicConnectionFactory(certPath)).build();
     }
 
-    private static HttpClientConnectionManager getPooledConnectionFactory(String certPath, int maxConnections) throws IOException {
-        PoolingHttpClientConnectionManager ret =  certPath != null ?
+    private static HttpClientConnectionManager getPooledConnectionFactory(String certPath, int maxConnections, HttpMetrics metrics) throws IOException {
+        PoolingHttpClientConnectionManager ret;
+        if (metrics != null) {
+            ret = new MeteredConnectionManager(certPath != null ? getSslFactoryRegistry(certPath) : getDefaultRegistry(), null, metrics);
+        } else {
+            ret = certPath != null ?
                 new PoolingHttpClientConnectionManager(getSslFactoryRegistry(certPath)) :
                 new PoolingHttpClientConnectionManager();
+        }
         ret.setDefaultMaxPerRoute(maxConnections);
         ret.setMaxTotal(maxConnections);
         return ret;
@@ -83,6 +99,14 @@ public class HttpClientBuilder implements ClientBuilder {
             new BasicHttpClientConnectionManager();
     }
 
+    // Same as the default registry of PoolingHttpClientConnectionManager
+    private static Registry<ConnectionSocketFactory> getDefaultRegistry() {
+        return RegistryBuilder.<ConnectionSocketFactory> create()
+                              .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                              .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                              .build();
+    }
+
     private static Registry<ConnectionSocketFactory> getSslFactoryRegistry(String certPath) throws IOException {
         try
         {
@@ -0,0 +1,253 @@
+package io.fabric8.maven.docker.access.hc.metrics;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONObject;
+
+/**
+ * Metrics for the requests to the Docker daemon. Requests are recorded per Docker API operation
+ * (as named by the methods of {@link io.fabric8.maven.docker.access.UrlBuilder}), the usage of the connection
+ * pool is recorded for pooled clients.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class HttpMetrics implements HttpMetricsMXBean {
+
+    // Domain and type of the MBean
+    public static final String MBEAN_NAME_PREFIX = "io.fabric8.maven.docker:type=HttpMetrics";
+
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private volatile ConnPoolControl<HttpRoute> pool;
+
+    private long leaseCount;
+    private long leaseWaitTotalNanos;
+    private long leaseWaitMaxNanos;
+    private int peakLeased;
+
+    private ObjectName objectName;
+
+    /**
+     * Record a finished request
+     *
+     * @param operation name of the operation
+     * @param durationNanos time the request took, including reading the response
+     * @param requestBytes bytes sent as request body
+     * @param responseBytes bytes received as response body
+     * @param error whether the request failed
+     */
+    public void recordRequest(String operation, long durationNanos, long requestBytes, long responseBytes, boolean error) {
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics == null) {
+            OperationMetrics newMetrics = new OperationMetrics(operation);
+            metrics = operations.putIfAbsent(operation, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        metrics.record(durationNanos, requestBytes, responseBytes, error);
+    }
+
+    /**
+     * Record the lease of a connection from the connection pool
+     *
+     * @param waitNanos time waited for the connection
+     */
+    public void recordLease(long waitNanos) {
+        ConnPoolControl<HttpRoute> currentPool = pool;
+        int leased = currentPool != null ? currentPool.getTotalStats().getLeased() : 0;
+        synchronized (this) {
+            leaseCount++;
+            leaseWaitTotalNanos += waitNanos;
+            leaseWaitMaxNanos = Math.max(leaseWaitMaxNanos, waitNanos);
+            peakLeased = Math.max(peakLeased, leased);
+        }
+    }
+
+    // Set by the connection manager
+    void setPool(ConnPoolControl<HttpRoute> pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Map<String, OperationMetrics> getOperations() {
+        return new TreeMap<>(operations);
+    }
+
+    @Override
+    public synchronized long getLeaseCount() {
+        return leaseCount;
+    }
+
+    @Override
+    public synchronized long getLeaseWaitTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(leaseWaitTotalNanos);
+    }
+
+    @Override
+    public synchronized long getLeaseWaitMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(leaseWaitMaxNanos);
+    }
+
+    @Override
+    public synchronized int getPeakLeasedConnections() {
+        return peakLeased;
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        PoolStats stats = getPoolStats();
+        return stats != null ? stats.getLeased() : 0;
+    }
+
+    @Override
+    public int getAvailableConnections() {
+        PoolStats stats = getPoolStats();
+        return stats != null ? stats.getAvailable() : 0;
+    }
+
+    @Override
+    public int getPendingConnections() {
+        PoolStats stats = getPoolStats();
+        return stats != null ? stats.getPending() : 0;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        PoolStats stats = getPoolStats();
+        return stats != null ? stats.getMax() : 0;
+    }
+
+    @Override
+    public String getJson() {
+        return toJson().toString(2);
+    }
+
+    /**
+     * Get all metrics as JSON object with an entry "operations" holding the per-operation
+     * statistics and an entry "pool" with the connection pool statistics
+     *
+     * @return metrics as JSON
+     */
+    public JSONObject toJson() {
+        JSONObject ops = new JSONObject();
+        for (Map.Entry<String, OperationMetrics> entry : getOperations().entrySet()) {
+            ops.put(entry.getKey(), entry.getValue().toJson());
+        }
+        JSONObject poolJson = new JSONObject();
+        synchronized (this) {
+            poolJson.put("leaseCount", leaseCount);
+            poolJson.put("leaseWaitTotalMillis", getLeaseWaitTotalMillis());
+            poolJson.put("leaseWaitMaxMillis", getLeaseWaitMaxMillis());
+            poolJson.put("peakLeased", peakLeased);
+        }
+        PoolStats stats = getPoolStats();
+        if (stats != null) {
+            poolJson.put("leased", stats.getLeased());
+            poolJson.put("available", stats.getAvailable());
+            poolJson.put("pending", stats.getPending());
+            poolJson.put("max", stats.getMax());
+        }
+        JSONObject ret = new JSONObject();
+        ret.put("operations", ops);
+        ret.put("pool", poolJson);
+        return ret;
+    }
+
+    /**
+     * Store the metrics in the given file below the given key. Metrics stored with other keys
+     * (e.g. by other goals) are kept.
+     *
+     * @param file file to update
+     * @param key key under which to store the metrics
+     * @throws IOException if the file cannot be read or written
+     */
+    public void store(File file, String key) throws IOException {
+        JSONObject content = new JSONObject();
+        if (file.exists()) {
+            try {
+                content = new JSONObject(FileUtils.fileRead(file, StandardCharsets.UTF_8.name()));
+            } catch (RuntimeException exp) {
+                // Overwrite a corrupt file
+            }
+        } else {
+            File dir = file.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+        }
+        JSONObject metrics = toJson();
+        metrics.put("timestamp", System.currentTimeMillis());
+        content.put(key, metrics);
+        FileUtils.fileWrite(file, StandardCharsets.UTF_8.name(), content.toString(2));
+    }
+
+    /**
+     * Register this object as MBean at the platform MBeanServer
+     *
+     * @param name name to distinguish the MBean from others registered in parallel
+     * @throws JMException if registration fails
+     */
+    public synchronized void registerMBean(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName oName = new ObjectName(MBEAN_NAME_PREFIX + ",name=" + ObjectName.quote(name));
+        if (server.isRegistered(oName)) {
+            server.unregisterMBean(oName);
+        }
+        server.registerMBean(this, oName);
+        objectName = oName;
+    }
+
+    /**
+     * Unregister this MBean if registered before
+     *
+     * @throws JMException if unregistration fails
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    private PoolStats getPoolStats() {
+        ConnPoolControl<HttpRoute> currentPool = pool;
+        return currentPool != null ? currentPool.getTotalStats() : null;
+    }
+}
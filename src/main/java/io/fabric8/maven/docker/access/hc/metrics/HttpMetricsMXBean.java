@@ -0,0 +1,78 @@
+package io.fabric8.maven.docker.access.hc.metrics;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+/**
+ * JMX view on the metrics collected for the requests to the Docker daemon.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public interface HttpMetricsMXBean {
+
+    /**
+     * @return statistics per Docker API operation, keyed by the name of the operation
+     */
+    Map<String, OperationMetrics> getOperations();
+
+    /**
+     * @return number of connections leased from the connection pool
+     */
+    long getLeaseCount();
+
+    /**
+     * @return overall time spent waiting for a connection from the pool
+     */
+    long getLeaseWaitTotalMillis();
+
+    /**
+     * @return longest time spent waiting for a connection from the pool
+     */
+    long getLeaseWaitMaxMillis();
+
+    /**
+     * @return number of connections currently leased
+     */
+    int getLeasedConnections();
+
+    /**
+     * @return maximum number of connections leased at the same time
+     */
+    int getPeakLeasedConnections();
+
+    /**
+     * @return number of idle connections in the pool
+     */
+    int getAvailableConnections();
+
+    /**
+     * @return number of requests currently waiting for a connection
+     */
+    int getPendingConnections();
+
+    /**
+     * @return maximum size of the connection pool
+     */
+    int getMaxConnections();
+
+    /**
+     * @return all metrics as JSON string
+     */
+    String getJson();
+}
@@ -0,0 +1,150 @@
+package io.fabric8.maven.docker.access.hc.metrics;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import io.fabric8.maven.docker.access.UrlBuilder;
+import io.fabric8.maven.docker.access.hc.ApacheHttpClientDelegate;
+import io.fabric8.maven.docker.access.hc.util.ClientBuilder;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * HTTP client delegate which records latency and transferred bytes of every request
+ * in {@link HttpMetrics}. Requests are grouped by the {@link UrlBuilder} operation which created the URL.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class MeteredHttpClientDelegate extends ApacheHttpClientDelegate {
+
+    private final UrlBuilder urlBuilder;
+    private final HttpMetrics metrics;
+
+    public MeteredHttpClientDelegate(ClientBuilder clientBuilder, boolean pooled,
+                                     UrlBuilder urlBuilder, HttpMetrics metrics) throws IOException {
+        super(clientBuilder, pooled);
+        this.urlBuilder = urlBuilder;
+        this.metrics = metrics;
+        urlBuilder.recordOperations();
+    }
+
+    @Override
+    protected <T> T execute(HttpUriRequest request, final ResponseHandler<T> responseHandler) throws IOException {
+        String operation = urlBuilder.getOperation(request.getURI().toString());
+        final CountingEntity requestEntity = wrapRequestEntity(request);
+        final CountingEntity[] responseEntity = new CountingEntity[1];
+
+        boolean error = true;
+        long start = System.nanoTime();
+        try {
+            T ret = super.execute(request, new ResponseHandler<T>() {
+                @Override
+                public T handleResponse(HttpResponse response) throws IOException {
+                    HttpEntity entity = response.getEntity();
+                    if (entity != null) {
+                        responseEntity[0] = new CountingEntity(entity);
+                        response.setEntity(responseEntity[0]);
+                    }
+                    return responseHandler.handleResponse(response);
+                }
+            });
+            error = false;
+            return ret;
+        } finally {
+            metrics.recordRequest(operation, System.nanoTime() - start,
+                                  requestEntity != null ? requestEntity.getCount() : 0,
+                                  responseEntity[0] != null ? responseEntity[0].getCount() : 0,
+                                  error);
+        }
+    }
+
+    private CountingEntity wrapRequestEntity(HttpUriRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+            if (entityRequest.getEntity() != null) {
+                CountingEntity entity = new CountingEntity(entityRequest.getEntity());
+                entityRequest.setEntity(entity);
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    // Entity which counts the bytes written or read
+    private static class CountingEntity extends HttpEntityWrapper {
+
+        private volatile long count;
+
+        CountingEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        count++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        count += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            super.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    count++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    count += len;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.fabric8.maven.docker.access.hc.metrics;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+/**
+ * Statistics for a single Docker API operation: number of calls, errors, latency
+ * histogram and transferred bytes.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class OperationMetrics {
+
+    // Upper bounds (inclusive) of the latency histogram buckets in milliseconds. The last bucket is unbounded.
+    private static final long[] LATENCY_BUCKETS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 };
+
+    private final String name;
+
+    private long count;
+    private long errors;
+    private long totalNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos;
+    private long requestBytes;
+    private long responseBytes;
+    private final long[] histogram = new long[LATENCY_BUCKETS.length + 1];
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long durationNanos, long requestBytes, long responseBytes, boolean error) {
+        count++;
+        if (error) {
+            errors++;
+        }
+        totalNanos += durationNanos;
+        minNanos = Math.min(minNanos, durationNanos);
+        maxNanos = Math.max(maxNanos, durationNanos);
+        this.requestBytes += requestBytes;
+        this.responseBytes += responseBytes;
+        histogram[bucket(TimeUnit.NANOSECONDS.toMillis(durationNanos))]++;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    public synchronized long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    public synchronized long getMinMillis() {
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(minNanos) : 0;
+    }
+
+    public synchronized long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+    }
+
+    public synchronized double getAverageMillis() {
+        return count > 0 ? totalNanos / (count * 1000000.0) : 0;
+    }
+
+    public synchronized long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public synchronized long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Number of calls per latency bucket. The upper bounds of the buckets are
+     * 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 and 60000 ms, the last entry
+     * counts all calls which took longer.
+     *
+     * @return histogram of latencies
+     */
+    public synchronized long[] getLatencyHistogram() {
+        return histogram.clone();
+    }
+
+    synchronized JSONObject toJson() {
+        JSONObject ret = new JSONObject();
+        ret.put("count", count);
+        ret.put("errors", errors);
+        ret.put("totalMillis", getTotalMillis());
+        ret.put("averageMillis", getAverageMillis());
+        ret.put("minMillis", getMinMillis());
+        ret.put("maxMillis", getMaxMillis());
+        ret.put("requestBytes", requestBytes);
+        ret.put("responseBytes", responseBytes);
+        JSONObject latencies = new JSONObject();
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                latencies.put(i < LATENCY_BUCKETS.length ? "<=" + LATENCY_BUCKETS[i] + "ms" : ">" + LATENCY_BUCKETS[i - 1] + "ms",
+                              histogram[i]);
+            }
+        }
+        ret.put("latencies", latencies);
+        return ret;
+    }
+
+    private int bucket(long millis) {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            if (millis <= LATENCY_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKETS.length;
+    }
+}
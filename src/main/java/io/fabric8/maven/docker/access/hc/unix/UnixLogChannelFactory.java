@@ -0,0 +1,52 @@
+package io.fabric8.maven.docker.access.hc.unix;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.Selector;
+
+import io.fabric8.maven.docker.access.log.LogChannelFactory;
+import jnr.enxio.channels.NativeSelectorProvider;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+/**
+ * Channel factory for following logs over a Unix socket
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class UnixLogChannelFactory implements LogChannelFactory {
+
+    private final String unixSocketPath;
+
+    public UnixLogChannelFactory(String unixSocketPath) {
+        this.unixSocketPath = unixSocketPath;
+    }
+
+    @Override
+    public Selector openSelector() throws IOException {
+        return NativeSelectorProvider.getInstance().openSelector();
+    }
+
+    @Override
+    public SelectableChannel connect() throws IOException {
+        return UnixSocketChannel.open(new UnixSocketAddress(new File(unixSocketPath)));
+    }
+}
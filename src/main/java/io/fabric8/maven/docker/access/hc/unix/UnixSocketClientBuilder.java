@@ -1,5 +1,6 @@
 package io.fabric8.maven.docker.access.hc.unix;
 
+import io.fabric8.maven.docker.access.hc.metrics.HttpMetrics;
 import io.fabric8.maven.docker.access.hc.util.AbstractNativeClientBuilder;
 import io.fabric8.maven.docker.util.Logger;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
@@ -10,6 +11,10 @@ public class UnixSocketClientBuilder extends AbstractNativeClientBuilder {
         super(unixSocketPath, maxConnections, log);
     }
 
+    public UnixSocketClientBuilder(String unixSocketPath, int maxConnections, HttpMetrics metrics, Logger log) {
+        super(unixSocketPath, maxConnections, metrics, log);
+    }
+
     @Override
     protected ConnectionSocketFactory getConnectionSocketFactory() {
         return new UnixConnectionSocketFactory(path);
@@ -19,7 +19,10 @@ package io.fabric8.maven.docker.access.hc.util;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
 
+import io.fabric8.maven.docker.access.hc.metrics.HttpMetrics;
+import io.fabric8.maven.docker.access.hc.metrics.MeteredConnectionManager;
 import io.fabric8.maven.docker.util.Logger;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
@@ -45,9 +48,15 @@ abstract public class AbstractNativeClientBuilder implements ClientBuilder {
 
     private final DnsResolver dnsResolver;
     private final int maxConnections;
+    private final HttpMetrics metrics;
 
     public AbstractNativeClientBuilder(String path, int maxConnections, Logger logger) {
+        this(path, maxConnections, null, logger);
+    }
+
+    public AbstractNativeClientBuilder(String path, int maxConnections, HttpMetrics metrics, Logger logger) {
         this.maxConnections = maxConnections;
+        this.metrics = metrics;
         this.log = logger;
         this.path = path;
         dnsResolver = nullDnsResolver();
@@ -60,9 +69,12 @@ abstract public class AbstractNativeClientBuilder implements ClientBuilder {
     @Override
     public CloseableHttpClient buildPooledClient() {
         final HttpClientBuilder httpBuilder = HttpClients.custom();
-        final PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry, dnsResolver);
+        final PoolingHttpClientConnectionManager manager = metrics != null ?
+            new MeteredConnectionManager(registry, dnsResolver, metrics) :
+            new PoolingHttpClientConnectionManager(registry, dnsResolver);
         manager.setDefaultMaxPerRoute(maxConnections);
         httpBuilder.setConnectionManager(manager);
+        httpBuilder.evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS);
         return httpBuilder.build();
     }
 
@@ -29,7 +29,13 @@ import org.apache.http.impl.client.CloseableHttpClient;
 public interface ClientBuilder {
 
     /**
-     * Create a pooled client
+     * Seconds after which idle connections of a pooled client are closed
+     */
+    int MAX_IDLE_SECONDS = 60;
+
+    /**
+     * Create a pooled client. Connections are kept alive, but closed after being idle for
+     * {@link #MAX_IDLE_SECONDS}.
      *
      * @return an HTTP client
      * @throws IOException
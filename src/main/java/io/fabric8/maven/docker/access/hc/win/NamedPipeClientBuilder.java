@@ -1,5 +1,6 @@
 package io.fabric8.maven.docker.access.hc.win;
 
+import io.fabric8.maven.docker.access.hc.metrics.HttpMetrics;
 import io.fabric8.maven.docker.access.hc.util.AbstractNativeClientBuilder;
 import io.fabric8.maven.docker.util.Logger;
 
@@ -10,6 +11,10 @@ public class NamedPipeClientBuilder extends AbstractNativeClientBuilder {
         super(namedPipePath, maxConnections, log);
     }
 
+    public NamedPipeClientBuilder(String namedPipePath, int maxConnections, HttpMetrics metrics, Logger log) {
+        super(namedPipePath, maxConnections, metrics, log);
+    }
+
     @Override
     protected ConnectionSocketFactory getConnectionSocketFactory() {
         return new NpipeConnectionSocketFactory(path, log);
@@ -0,0 +1,49 @@
+package io.fabric8.maven.docker.access.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.Selector;
+
+/**
+ * Factory for the channels used by the {@link LogFollowEngine} to talk to the Docker daemon.
+ * Channels and selectors must come from the same selector provider.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public interface LogChannelFactory {
+
+    /**
+     * Open a selector which can be used for channels created by {@link #connect()}
+     *
+     * @return a new selector
+     * @throws IOException if the selector cannot be opened
+     */
+    Selector openSelector() throws IOException;
+
+    /**
+     * Open a new connection to the Docker daemon. The returned channel is connected,
+     * in blocking mode and must implement {@link ByteChannel}.
+     *
+     * @return the connected channel
+     * @throws IOException if the connection cannot be established
+     */
+    SelectableChannel connect() throws IOException;
+}
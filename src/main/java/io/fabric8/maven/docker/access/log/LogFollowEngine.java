@@ -0,0 +1,452 @@
+package io.fabric8.maven.docker.access.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.fabric8.maven.docker.access.DockerAccessException;
+
+/**
+ * Engine for following the logs of many containers at once. Instead of a thread and an HTTP client
+ * per container, all log streams are multiplexed over a small, fixed number of I/O threads, each running
+ * a selector loop. The response is decoded incrementally and dispatched to the {@link LogCallback}
+ * of the corresponding container on the I/O thread. Other requests which can take long, like waiting
+ * for a container to exit, are served by the same threads.
+ *
+ * I/O threads are started on demand and stop when they have no log stream to serve anymore, so
+ * that an engine does not need to be shut down explicitly.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFollowEngine {
+
+    // Time after which an idle I/O thread stops
+    private static final long IDLE_TIMEOUT = 10000;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final LogChannelFactory channelFactory;
+    private final IoLoop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Create an engine
+     *
+     * @param channelFactory factory for creating connections to the daemon
+     * @param ioThreads number of I/O threads to use
+     */
+    public LogFollowEngine(LogChannelFactory channelFactory, int ioThreads) {
+        this.channelFactory = channelFactory;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop();
+        }
+    }
+
+    /**
+     * Start following a log stream. The connection is established and the request is sent
+     * on the calling thread, all subsequent reading happens on one of the I/O threads.
+     *
+     * @param url full URL of the log request (as created by the {@link io.fabric8.maven.docker.access.UrlBuilder})
+     * @param callback callback to feed with the log entries
+     * @return handle for stopping to follow
+     */
+    public LogGetHandle follow(String url, LogCallback callback) {
+        LogStream stream = new LogStream(callback);
+        try {
+            stream.open(channelFactory.connect(), createRequest("GET", url));
+        } catch (IOException exp) {
+            callback.error("IO Error while requesting logs: " + exp);
+            stream.close();
+            return stream;
+        }
+        register(stream);
+        return stream;
+    }
+
+    /**
+     * Send a request without body and collect the response body, e.g. for waiting until a container
+     * has exited. Like log streams, the response is read on one of the I/O threads, so that requests
+     * which take long don't occupy a thread each. Cancelling the returned future closes the connection.
+     *
+     * @param method HTTP method
+     * @param url full URL of the request (as created by the {@link io.fabric8.maven.docker.access.UrlBuilder})
+     * @param description what the request does, used in error messages like "waiting for container"
+     * @return future for the response body, failing with a {@link DockerAccessException} on errors
+     */
+    public ListenableFuture<String> request(String method, String url, String description) {
+        final BodyStream stream = new BodyStream(description);
+        try {
+            stream.open(channelFactory.connect(), createRequest(method, url));
+        } catch (IOException exp) {
+            stream.result.setException(new DockerAccessException(exp, "Error while %s", description));
+            stream.close();
+            return stream.result;
+        }
+        stream.result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (stream.result.isCancelled()) {
+                    stream.finish();
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        register(stream);
+        return stream.result;
+    }
+
+    private ByteBuffer createRequest(String method, String url) {
+        URI uri = URI.create(url);
+        String path = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        return LogResponseDecoder.createRequest(method, uri.getAuthority(), path);
+    }
+
+    private void register(Stream stream) {
+        loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length].register(stream);
+    }
+
+    // ==========================================================================================
+
+    // State of a single request whose response is read by an I/O thread
+    private abstract class Stream {
+
+        // Set by the subclasses
+        protected LogResponseDecoder decoder;
+
+        private volatile SelectableChannel channel;
+        protected volatile boolean finished;
+
+        // Loop this stream is registered with
+        private volatile IoLoop loop;
+
+        void open(SelectableChannel channel, ByteBuffer request) throws IOException {
+            this.channel = channel;
+            ByteChannel byteChannel = (ByteChannel) channel;
+            while (request.hasRemaining()) {
+                byteChannel.write(request);
+            }
+            channel.configureBlocking(false);
+        }
+
+        // Called on the I/O thread when data is available
+        void read(ByteBuffer buffer) {
+            try {
+                buffer.clear();
+                int read = ((ByteChannel) channel).read(buffer);
+                if (read < 0) {
+                    decoder.end();
+                    complete();
+                    close();
+                    return;
+                }
+                buffer.flip();
+                if (decoder.decode(buffer)) {
+                    complete();
+                    close();
+                }
+            } catch (DockerAccessException exp) {
+                failed(exp);
+                close();
+            } catch (IOException exp) {
+                if (!finished) {
+                    error("Cannot process chunk response: " + exp);
+                }
+                close();
+            } catch (LogCallback.DoneException exp) {
+                // Can be thrown by a log callback which indicates that we are done.
+                close();
+            }
+        }
+
+        void close() {
+            finished = true;
+            SelectableChannel c = channel;
+            if (c != null) {
+                try {
+                    c.close();
+                } catch (IOException exp) {
+                    error("Error while closing log connection: " + exp);
+                }
+            }
+        }
+
+        public void finish() {
+            finished = true;
+            IoLoop l = loop;
+            if (l != null) {
+                // Channel is closed on the I/O thread to avoid races with a running read
+                l.close(this);
+            } else {
+                close();
+            }
+        }
+
+        // Called when the whole response has been received
+        abstract void complete();
+
+        // Called when the daemon answered with an error status
+        abstract void failed(DockerAccessException exp);
+
+        // Called for all other errors
+        abstract void error(String message);
+    }
+
+    // State of a single followed log
+    private class LogStream extends Stream implements LogGetHandle {
+
+        private final LogCallback callback;
+
+        private volatile DockerAccessException exception;
+
+        LogStream(LogCallback callback) {
+            this.callback = callback;
+            this.decoder = new LogResponseDecoder(new LogFrameDecoder(callback));
+        }
+
+        @Override
+        void complete() {
+            // Nothing to do, all entries have been handed over already
+        }
+
+        @Override
+        void failed(DockerAccessException exp) {
+            exception = exp;
+            callback.error(exp.getMessage());
+        }
+
+        @Override
+        void error(String message) {
+            callback.error(message);
+        }
+
+        @Override
+        public boolean isError() {
+            return exception != null;
+        }
+
+        @Override
+        public DockerAccessException getException() {
+            return exception;
+        }
+    }
+
+    // Request whose body is collected completely
+    private class BodyStream extends Stream implements LogResponseDecoder.Body {
+
+        private final String description;
+        private final SettableFuture<String> result = SettableFuture.create();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        BodyStream(String description) {
+            this.description = description;
+            this.decoder = new LogResponseDecoder(this, description);
+        }
+
+        @Override
+        public void decode(ByteBuffer data) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            body.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void end() {
+            // The body ends with the connection
+        }
+
+        @Override
+        void complete() {
+            result.set(new String(body.toByteArray(), Charsets.UTF_8));
+        }
+
+        @Override
+        void failed(DockerAccessException exp) {
+            result.setException(exp);
+        }
+
+        @Override
+        void error(String message) {
+            result.setException(new DockerAccessException("Error while %s: %s", description, message));
+        }
+
+        @Override
+        void close() {
+            super.close();
+            // No-op if already done
+            result.setException(new DockerAccessException("Error while %s: connection closed", description));
+        }
+    }
+
+    // A single I/O thread with its selector
+    private class IoLoop implements Runnable {
+
+        private final Queue<Stream> toRegister = new ConcurrentLinkedQueue<>();
+        private final Queue<Stream> toClose = new ConcurrentLinkedQueue<>();
+
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        // Guarded by this
+        private Thread thread;
+        private Selector selector;
+
+        void register(Stream stream) {
+            stream.loop = this;
+            toRegister.add(stream);
+            wakeup(true);
+        }
+
+        void close(Stream stream) {
+            toClose.add(stream);
+            wakeup(false);
+        }
+
+        private synchronized void wakeup(boolean startIfStopped) {
+            if (thread == null) {
+                if (!startIfStopped) {
+                    // Loop is not running, so the stream is either not registered or already closed
+                    processCloses();
+                    return;
+                }
+                try {
+                    selector = channelFactory.openSelector();
+                } catch (IOException exp) {
+                    failPending("Cannot open selector: " + exp);
+                    return;
+                }
+                thread = new Thread(this, "docker-log-io-" + THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            Selector sel;
+            synchronized (this) {
+                sel = selector;
+            }
+            try {
+                while (true) {
+                    processRegistrations(sel);
+                    processCloses();
+                    if (sel.select(IDLE_TIMEOUT) > 0) {
+                        processSelected(sel);
+                    } else if (sel.keys().isEmpty() && stopIfIdle(sel)) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException exp) {
+                // Must not happen, but if so, let the streams know that they are dead
+                synchronized (this) {
+                    for (SelectionKey key : sel.keys()) {
+                        Stream stream = (Stream) key.attachment();
+                        stream.error("Error in log I/O thread: " + exp);
+                        stream.close();
+                    }
+                    failPending("Error in log I/O thread: " + exp);
+                    closeSelector(sel);
+                }
+            }
+        }
+
+        private void processRegistrations(Selector sel) {
+            Stream stream;
+            while ((stream = toRegister.poll()) != null) {
+                if (stream.finished) {
+                    stream.close();
+                    continue;
+                }
+                try {
+                    stream.channel.register(sel, SelectionKey.OP_READ, stream);
+                } catch (ClosedChannelException exp) {
+                    stream.close();
+                }
+            }
+        }
+
+        private void processSelected(Selector sel) {
+            Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                Stream stream = (Stream) key.attachment();
+                if (key.isValid() && key.isReadable()) {
+                    stream.read(readBuffer);
+                }
+                if (stream.finished) {
+                    key.cancel();
+                }
+            }
+        }
+
+        private void processCloses() {
+            Stream stream;
+            while ((stream = toClose.poll()) != null) {
+                stream.close();
+            }
+        }
+
+        // Stop the thread when nothing is to do. Synchronized with wakeup() so that
+        // no registration can get lost.
+        private synchronized boolean stopIfIdle(Selector sel) {
+            if (!toRegister.isEmpty() || !toClose.isEmpty()) {
+                return false;
+            }
+            closeSelector(sel);
+            return true;
+        }
+
+        private void closeSelector(Selector sel) {
+            try {
+                sel.close();
+            } catch (IOException exp) {
+                // Nothing we can do about it
+            }
+            selector = null;
+            thread = null;
+        }
+
+        private void failPending(String error) {
+            Stream stream;
+            while ((stream = toRegister.poll()) != null) {
+                stream.error(error);
+                stream.close();
+            }
+        }
+    }
+}
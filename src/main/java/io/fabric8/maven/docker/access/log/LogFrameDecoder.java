@@ -0,0 +1,165 @@
+package io.fabric8.maven.docker.access.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.google.common.base.Charsets;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Incremental decoder for the multiplexed log stream returned by the Docker daemon. Each frame
+ * consists of an eight byte header (stream type, three unused bytes, payload size as big endian integer)
+ * followed by the payload. Data can be fed in arbitrary pieces, a frame is dispatched to the
+ * {@link LogCallback} as soon as it is complete.
+ *
+ * Header and payload buffers are reused across frames and the log line is split into
+ * timestamp and entry directly on the received bytes. The timestamp is handed over unparsed
+ * (see {@link Timestamp#lazy(String)}), so it costs only when it is actually used.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFrameDecoder {
+
+    // Initial size of the payload buffer, which grows with larger frames
+    private static final int INITIAL_PAYLOAD_SIZE = 1024;
+
+    // Payload buffers larger than this are not kept after a frame has been processed
+    private static final int MAX_RETAINED_PAYLOAD_SIZE = 256 * 1024;
+
+    private final LogCallback callback;
+
+    private final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN);
+
+    private byte[] payload = new byte[INITIAL_PAYLOAD_SIZE];
+
+    // Size of the current frame's payload, -1 as long as the header is not complete
+    private int payloadSize = -1;
+    private int payloadRead;
+
+    public LogFrameDecoder(LogCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Decode the given data and dispatch all frames completed by it. The buffer is
+     * consumed completely, an incomplete frame at the end is kept for the next call.
+     *
+     * @param data data read from the log stream
+     * @throws LogCallback.DoneException if the callback signals that it is not interested in more log entries
+     */
+    public void decode(ByteBuffer data) throws LogCallback.DoneException {
+        while (data.hasRemaining()) {
+            if (payloadSize < 0) {
+                transfer(data, header);
+                if (header.hasRemaining()) {
+                    return;
+                }
+                int size = header.getInt(4);
+                if (size <= 0) {
+                    // Ignore empty messages and keep reading.
+                    header.clear();
+                    continue;
+                }
+                if (size > payload.length) {
+                    payload = new byte[size];
+                }
+                payloadSize = size;
+                payloadRead = 0;
+            }
+            int len = Math.min(data.remaining(), payloadSize - payloadRead);
+            data.get(payload, payloadRead, len);
+            payloadRead += len;
+            if (payloadRead < payloadSize) {
+                return;
+            }
+            int type = header.get(0);
+            int size = payloadSize;
+            header.clear();
+            payloadSize = -1;
+            try {
+                dispatch(type, payload, size);
+            } finally {
+                if (payload.length > MAX_RETAINED_PAYLOAD_SIZE) {
+                    payload = new byte[INITIAL_PAYLOAD_SIZE];
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when the stream has ended. Verifies that no incomplete frame is left over.
+     *
+     * @throws IOException if the stream ended in the middle of a frame
+     */
+    public void end() throws IOException {
+        if (payloadSize >= 0) {
+            throw new IOException("Failed to read log message. Could not read all " + payloadSize + " bytes. " +
+                                  "Only " + payloadRead + " bytes read [ Header: " + Hex.encodeHexString(header.array()) + "]");
+        }
+        if (header.position() > 0) {
+            throw new IOException("Failed to read log header. Could not read all 8 bytes. Only " +
+                                  header.position() + " bytes read");
+        }
+    }
+
+    private void transfer(ByteBuffer from, ByteBuffer to) {
+        int limit = from.limit();
+        from.limit(from.position() + Math.min(from.remaining(), to.remaining()));
+        to.put(from);
+        from.limit(limit);
+    }
+
+    // Split "[<timestamp>] <entry>" or "<timestamp> <entry>", with trailing whitespace removed from the
+    // entry. Same semantics as LogRequestor.LOG_LINE but without regexp and intermediate strings.
+    private void dispatch(int type, byte[] line, int len) throws LogCallback.DoneException {
+        int pos = len > 0 && line[0] == '[' ? 1 : 0;
+        int tsStart = pos;
+        while (pos < len && !isWhitespace(line[pos]) && line[pos] != ']') {
+            pos++;
+        }
+        int tsEnd = pos;
+        if (pos < len && line[pos] == ']') {
+            pos++;
+        }
+        int wsStart = pos;
+        while (pos < len && isWhitespace(line[pos])) {
+            pos++;
+        }
+        if (pos == wsStart) {
+            String txt = new String(line, 0, len, Charsets.UTF_8);
+            callback.error(String.format("Invalid log format for '%s' (expected: \"<timestamp> <txt>\") [%04x %04x]",
+                                         txt, txt.length() > 0 ? (int) txt.charAt(0) : 0, txt.length() > 1 ? (int) txt.charAt(1) : 0));
+            throw new LogCallback.DoneException();
+        }
+        int end = len;
+        while (end > pos && isWhitespace(line[end - 1])) {
+            end--;
+        }
+        Timestamp ts = Timestamp.lazy(new String(line, tsStart, tsEnd - tsStart, Charsets.US_ASCII));
+        callback.log(type, ts, new String(line, pos, end - pos, Charsets.UTF_8));
+    }
+
+    // Same characters as \s in a regular expression
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+}
@@ -15,24 +15,17 @@ package io.fabric8.maven.docker.access.log;/*
  * limitations under the License.
  */
 
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.ByteStreams;
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.access.UrlBuilder;
 import io.fabric8.maven.docker.access.util.RequestUtil;
 import io.fabric8.maven.docker.util.Timestamp;
-import org.apache.commons.codec.binary.Hex;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.CloseableHttpClient;
 
@@ -44,8 +37,11 @@ import org.apache.http.impl.client.CloseableHttpClient;
  */
 public class LogRequestor extends Thread implements LogGetHandle {
 
-    // Patter for matching log entries
+    // Patter for matching log entries (as parsed by LogFrameDecoder)
     static final Pattern LOG_LINE = Pattern.compile("^\\[?(?<timestamp>[^\\s\\]]*)]?\\s+(?<entry>.*?)\\s*$", Pattern.DOTALL);
+
+    private static final int BUFFER_SIZE = 8192;
+
     private final CloseableHttpClient client;
 
     private final String containerId;
@@ -60,6 +56,10 @@ public class LogRequestor extends Thread implements LogGetHandle {
 
     private final UrlBuilder urlBuilder;
 
+    // Fetch only entries since this time (if not null) and only the last 'tail' entries (if not negative)
+    private final Timestamp since;
+    private final int tail;
+
     // Lock for synchronizing closing of requests
     private final Object lock = new Object();
 
@@ -72,10 +72,27 @@ public class LogRequestor extends Thread implements LogGetHandle {
      * @param callback callback to call for each line received
      */
     public LogRequestor(CloseableHttpClient client, UrlBuilder urlBuilder, String containerId, LogCallback callback) {
+        this(client, urlBuilder, containerId, null, -1, callback);
+    }
+
+    /**
+     * Create a helper object for requesting only a part of the log entries
+     *
+     * @param client HTTP client to use for requesting the docker host
+     * @param urlBuilder builder that creates docker urls
+     * @param containerId container for which to fetch the host
+     * @param since fetch only entries since this time or all entries if null
+     * @param tail fetch only this number of entries from the end of the log or all if negative
+     * @param callback callback to call for each line received
+     */
+    public LogRequestor(CloseableHttpClient client, UrlBuilder urlBuilder, String containerId,
+                        Timestamp since, int tail, LogCallback callback) {
         this.client = client;
         this.containerId = containerId;
 
         this.urlBuilder = urlBuilder;
+        this.since = since;
+        this.tail = tail;
 
         this.callback = callback;
         this.exception = null;
@@ -116,80 +133,19 @@ public class LogRequestor extends Thread implements LogGetHandle {
         }
     }
 
-    private static class NoBytesReadException extends IOException {
-        public NoBytesReadException() {
-        }
-    }
-
-    /**
-     * This is a copy of ByteStreams.readFully(), with the slight change that it throws
-     * NoBytesReadException if zero bytes are read. Otherwise it is identical.
-     *
-     * @param in
-     * @param bytes
-     * @throws IOException
-     */
-    private void readFully(InputStream in, byte[] bytes) throws IOException {
-        int read = ByteStreams.read(in, bytes, 0, bytes.length);
-        if (read == 0) {
-            throw new NoBytesReadException();
-        } else if (read != bytes.length) {
-            throw new EOFException("reached end of stream after reading "
-                    + read + " bytes; " + bytes.length + " bytes expected");
-        }
-    }
-
-    private boolean readStreamFrame(InputStream is) throws IOException, LogCallback.DoneException {
-        // Read the header, which is composed of eight bytes. The first byte is an integer
-        // indicating the stream type (0 = stdin, 1 = stdout, 2 = stderr), the next three are thrown
-        // out, and the final four are the size of the remaining stream as an integer.
-        ByteBuffer headerBuffer = ByteBuffer.allocate(8);
-        headerBuffer.order(ByteOrder.BIG_ENDIAN);
-        try {
-            this.readFully(is, headerBuffer.array());
-        } catch (NoBytesReadException e) {
-            // Not bytes read for stream. Return false to stop consuming stream.
-            return false;
-        } catch (EOFException e) {
-            throw new IOException("Failed to read log header. Could not read all 8 bytes. " + e.getMessage(), e);
-        }
-
-        // Grab the stream type (stdout, stderr, stdin) from first byte and throw away other 3 bytes.
-        int type = headerBuffer.get();
-
-        // Skip three bytes, then read size from remaining four bytes.
-        int size = headerBuffer.getInt(4);
-
-        // Ignore empty messages and keep reading.
-        if (size <= 0) {
-            return true;
-        }
-
-        // Read the actual message
-        ByteBuffer payload = ByteBuffer.allocate(size);
-        try {
-            ByteStreams.readFully(is, payload.array());
-        } catch (EOFException e) {
-            throw new IOException("Failed to read log message. Could not read all " + size + " bytes. " + e.getMessage() +
-                                  " [ Header: " + Hex.encodeHexString(headerBuffer.array()) + "]", e);
-        }
-
-        String message = Charsets.UTF_8.newDecoder().decode(payload).toString();
-        callLogCallback(type, message);
-        return true;
-    }
-
     private void parseResponse(HttpResponse response) {
         StatusLine status = response.getStatusLine();
         if (status.getStatusCode() != 200) {
             exception = new DockerAccessException("Error while reading logs (" + status + ")");
         }
         try (InputStream is = response.getEntity().getContent()) {
-            while (true) {
-                if (!readStreamFrame(is)) {
-                    return;
-                }
+            LogFrameDecoder decoder = new LogFrameDecoder(callback);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                decoder.decode(ByteBuffer.wrap(buffer, 0, read));
             }
+            decoder.end();
         } catch (IOException e) {
             callback.error("Cannot process chunk response: " + e);
             finish();
@@ -199,20 +155,8 @@ public class LogRequestor extends Thread implements LogGetHandle {
         }
     }
 
-    private void callLogCallback(int type, String txt) throws LogCallback.DoneException {
-        Matcher matcher = LOG_LINE.matcher(txt);
-        if (!matcher.matches()) {
-            callback.error(String.format("Invalid log format for '%s' (expected: \"<timestamp> <txt>\") [%04x %04x]",
-                                         txt,(int) (txt.toCharArray())[0],(int) (txt.toCharArray())[1]));
-            throw new LogCallback.DoneException();
-        }
-        Timestamp ts = new Timestamp(matcher.group("timestamp"));
-        String logTxt = matcher.group("entry");
-        callback.log(type, ts, logTxt);
-    }
-
     private HttpUriRequest getLogRequest(boolean follow) {
-        return RequestUtil.newGet(urlBuilder.containerLogs(containerId, follow));
+        return RequestUtil.newGet(urlBuilder.containerLogs(containerId, follow, since, tail));
     }
 
     @Override
@@ -0,0 +1,284 @@
+package io.fabric8.maven.docker.access.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Charsets;
+import io.fabric8.maven.docker.access.DockerAccessException;
+
+/**
+ * Incremental decoder for the HTTP response of a log request. It parses the status line
+ * and headers, removes a chunked transfer encoding and hands over the body to a {@link LogFrameDecoder}
+ * or, for other requests, to any other {@link Body}.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+class LogResponseDecoder {
+
+    // Maximum size of status line and headers
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private enum State { HEADER, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILER, BODY, DONE }
+
+    private final Body body;
+
+    // What the request was about, for the error message
+    private final String description;
+
+    private State state = State.HEADER;
+
+    // Collects header lines and chunk size lines
+    private final StringBuilder line = new StringBuilder();
+    private int headerSize;
+
+    private String statusLine;
+    private boolean chunked;
+
+    // Bytes left of the current chunk (or the CRLF following the chunk)
+    private int chunkRemaining;
+
+    LogResponseDecoder(final LogFrameDecoder frameDecoder) {
+        this(new Body() {
+            @Override
+            public void decode(ByteBuffer data) throws LogCallback.DoneException {
+                frameDecoder.decode(data);
+            }
+
+            @Override
+            public void end() throws IOException {
+                frameDecoder.end();
+            }
+        }, "reading logs");
+    }
+
+    LogResponseDecoder(Body body, String description) {
+        this.body = body;
+        this.description = description;
+    }
+
+    /**
+     * Decode data received from the daemon.
+     *
+     * @param data data to decode, which is consumed completely
+     * @return true if the response is complete and no more data is expected
+     * @throws DockerAccessException if the daemon returned an error status
+     * @throws IOException if the response is malformed
+     * @throws LogCallback.DoneException if the log callback is not interested in more log entries
+     */
+    boolean decode(ByteBuffer data) throws IOException, LogCallback.DoneException {
+        while (data.hasRemaining() && state != State.DONE) {
+            switch (state) {
+                case HEADER:
+                    if (readLine(data)) {
+                        processHeaderLine();
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    if (readLine(data)) {
+                        processChunkSize();
+                    }
+                    break;
+                case CHUNK_DATA:
+                    ByteBuffer chunk = slice(data, chunkRemaining);
+                    chunkRemaining -= chunk.remaining();
+                    body.decode(chunk);
+                    if (chunkRemaining == 0) {
+                        state = State.CHUNK_END;
+                        chunkRemaining = 2;
+                    }
+                    break;
+                case CHUNK_END:
+                    // Skip the CRLF after the chunk data
+                    int skip = Math.min(chunkRemaining, data.remaining());
+                    data.position(data.position() + skip);
+                    chunkRemaining -= skip;
+                    if (chunkRemaining == 0) {
+                        state = State.CHUNK_SIZE;
+                    }
+                    break;
+                case TRAILER:
+                    // Skip trailing headers up to the final empty line
+                    if (readLine(data)) {
+                        if (line.length() == 0) {
+                            state = State.DONE;
+                        }
+                        line.setLength(0);
+                    }
+                    break;
+                case BODY:
+                    body.decode(data);
+                    break;
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * Called when the connection has been closed by the daemon
+     *
+     * @throws IOException if the response has been truncated
+     */
+    void end() throws IOException {
+        if (state == State.HEADER) {
+            throw new IOException("Connection closed before a response has been received");
+        }
+        if (state != State.DONE && state != State.BODY && state != State.TRAILER) {
+            throw new IOException("Connection closed in the middle of a chunk");
+        }
+        body.end();
+    }
+
+    private boolean readLine(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            char c = (char) (data.get() & 0xff);
+            if (c == '\n') {
+                int len = line.length();
+                if (len > 0 && line.charAt(len - 1) == '\r') {
+                    line.setLength(len - 1);
+                }
+                return true;
+            }
+            line.append(c);
+            if (line.length() > MAX_HEADER_SIZE) {
+                throw new IOException("Response header line too long");
+            }
+        }
+        return false;
+    }
+
+    private void processHeaderLine() throws IOException {
+        String l = line.toString();
+        line.setLength(0);
+        if (statusLine == null) {
+            statusLine = l;
+            return;
+        }
+        if (l.length() > 0) {
+            headerSize += l.length();
+            if (headerSize > MAX_HEADER_SIZE) {
+                throw new IOException("Response header too large");
+            }
+            int idx = l.indexOf(':');
+            if (idx > 0 &&
+                l.substring(0, idx).trim().equalsIgnoreCase("Transfer-Encoding") &&
+                l.substring(idx + 1).trim().toLowerCase().contains("chunked")) {
+                chunked = true;
+            }
+            return;
+        }
+        // End of header
+        int status = parseStatus(statusLine);
+        if (status != 200) {
+            state = State.DONE;
+            throw new DockerAccessException("Error while %s (%s)", description, statusLine);
+        }
+        state = chunked ? State.CHUNK_SIZE : State.BODY;
+    }
+
+    private void processChunkSize() throws IOException {
+        String l = line.toString();
+        line.setLength(0);
+        int ext = l.indexOf(';');
+        String size = (ext >= 0 ? l.substring(0, ext) : l).trim();
+        if (size.length() == 0) {
+            // Tolerate empty lines between chunks
+            return;
+        }
+        try {
+            chunkRemaining = Integer.parseInt(size, 16);
+        } catch (NumberFormatException exp) {
+            throw new IOException("Invalid chunk size '" + size + "'");
+        }
+        if (chunkRemaining < 0) {
+            throw new IOException("Invalid chunk size '" + size + "'");
+        }
+        state = chunkRemaining == 0 ? State.TRAILER : State.CHUNK_DATA;
+    }
+
+    private int parseStatus(String statusLine) throws IOException {
+        String[] parts = statusLine.split("\\s+");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid HTTP status line '" + statusLine + "'");
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException exp) {
+            throw new IOException("Invalid HTTP status line '" + statusLine + "'");
+        }
+    }
+
+    // Create a view on the next max bytes of the data buffer and advance it
+    private ByteBuffer slice(ByteBuffer data, int max) {
+        int len = Math.min(max, data.remaining());
+        ByteBuffer ret = data.slice();
+        ret.limit(len);
+        data.position(data.position() + len);
+        return ret;
+    }
+
+    /**
+     * Request for following the logs of the given path
+     *
+     * @param host value of the host header
+     * @param path path and query of the log request
+     * @return the bytes to send to the daemon
+     */
+    static ByteBuffer createRequest(String host, String path) {
+        return createRequest("GET", host, path);
+    }
+
+    /**
+     * Request without body
+     *
+     * @param method HTTP method
+     * @param host value of the host header
+     * @param path path and query of the request
+     * @return the bytes to send to the daemon
+     */
+    static ByteBuffer createRequest(String method, String host, String path) {
+        String request = method + " " + path + " HTTP/1.1\r\n" +
+                         "Host: " + host + "\r\n" +
+                         "Accept: */*\r\n" +
+                         ("GET".equals(method) ? "" : "Content-Length: 0\r\n") +
+                         "Connection: close\r\n" +
+                         "\r\n";
+        return ByteBuffer.wrap(request.getBytes(Charsets.US_ASCII));
+    }
+
+    /**
+     * Receiver of the response body
+     */
+    interface Body {
+        /**
+         * Decode a part of the body
+         *
+         * @param data data to decode, which is consumed completely
+         * @throws LogCallback.DoneException if not interested in more data
+         */
+        void decode(ByteBuffer data) throws LogCallback.DoneException;
+
+        /**
+         * Called when the connection has been closed by the daemon
+         *
+         * @throws IOException if the body is incomplete
+         */
+        void end() throws IOException;
+    }
+}
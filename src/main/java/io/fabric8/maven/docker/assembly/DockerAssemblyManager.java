@@ -1,5 +1,6 @@
 package io.fabric8.maven.docker.assembly;
 
+import io.fabric8.maven.docker.access.ArchiveStream;
 import io.fabric8.maven.docker.config.*;
 import io.fabric8.maven.docker.util.EnvUtil;
 import io.fabric8.maven.docker.util.Logger;
@@ -77,7 +78,43 @@ public class DockerAssemblyManager {
     public File createDockerTarArchive(String imageName, MojoParameters params, BuildImageConfiguration buildConfig, Logger log)
             throws MojoExecutionException {
         BuildDirs buildDirs = createBuildDirs(imageName, params);
+        BuildTarArchiveCompression compression = buildConfig.getCompression();
+        File archive = new File(buildDirs.getTemporaryRootDirectory(), "docker-build." + compression.getFileSuffix());
+
+        TarArchiver archiver = createBuildContextArchiver(buildDirs, params, buildConfig, log);
+        try {
+            archiver.setDestFile(archive);
+            archiver.setCompression(compression.getTarCompressionMethod());
+            archiver.createArchive();
+            return archive;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot create archive " + archive, e);
+        }
+    }
+
+    /**
+     * Same as {@link #createDockerTarArchive(String, MojoParameters, BuildImageConfiguration, Logger)} but
+     * instead of writing the tar file to disk, a stream is returned which creates the tar (including compression)
+     * on the fly. The assembly and the Dockerfile are still prepared eagerly within the build directories.
+     *
+     * @param imageName Name of the image to create (used for creating build directories)
+     * @param params Mojos parameters (used for finding the directories)
+     * @param buildConfig configuration for how to build the image
+     * @param log Logger used to display warning if permissions are to be normalized
+     * @return archive stream which can be written exactly once
+     * @throws MojoExecutionException
+     */
+    public ArchiveStream createDockerTarStream(String imageName, MojoParameters params, BuildImageConfiguration buildConfig, Logger log)
+            throws MojoExecutionException {
+        BuildDirs buildDirs = createBuildDirs(imageName, params);
+        TarArchiver archiver = createBuildContextArchiver(buildDirs, params, buildConfig, log);
+        return new TarArchiveStream(archiver, buildConfig.getCompression());
+    }
 
+    // Prepare assembly and Dockerfile and return an archiver holding all files for the build context
+    private TarArchiver createBuildContextArchiver(BuildDirs buildDirs, MojoParameters params,
+                                                  BuildImageConfiguration buildConfig, Logger log)
+            throws MojoExecutionException {
         AssemblyConfiguration assemblyConfig = buildConfig.getAssemblyConfiguration();
         AssemblyMode assemblyMode = (assemblyConfig == null) ? AssemblyMode.dir : assemblyConfig.getMode();
 
@@ -128,12 +165,17 @@ public class DockerAssemblyManager {
                     customizer = new AllFilesExecCustomizer(customizer, log);
                 }
             }
-
-            return createBuildTarBall(buildDirs, customizer, assemblyMode, buildConfig.getCompression());
-
         } catch (IOException e) {
             throw new MojoExecutionException(String.format("Cannot create Dockerfile in %s", buildDirs.getOutputDirectory()), e);
         }
+
+        try {
+            return customizer.customize(createBuildArchiver(buildDirs.getOutputDirectory(), assemblyMode));
+        } catch (NoSuchArchiverException e) {
+            throw new MojoExecutionException("No archiver for type 'tar' found", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot add files from " + buildDirs.getOutputDirectory() + " to build archive", e);
+        }
     }
 
     /**
@@ -197,23 +239,6 @@ public class DockerAssemblyManager {
         return new File(archiveDir,relativePath);
     }
 
-    // Create final tar-ball to be used for building the archive to send to the Docker daemon
-    private File createBuildTarBall(BuildDirs buildDirs, ArchiverCustomizer archiverCustomizer,
-                                    AssemblyMode buildMode, BuildTarArchiveCompression compression) throws MojoExecutionException {
-        File archive = new File(buildDirs.getTemporaryRootDirectory(), "docker-build." + compression.getFileSuffix());
-        try {
-            TarArchiver archiver = createBuildArchiver(buildDirs.getOutputDirectory(), archive, buildMode);
-            archiver = archiverCustomizer.customize(archiver);
-            archiver.setCompression(compression.getTarCompressionMethod());
-            archiver.createArchive();
-            return archive;
-        } catch (NoSuchArchiverException e) {
-            throw new MojoExecutionException("No archiver for type 'tar' found", e);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Cannot create archive " + archive, e);
-        }
-    }
-
     private void addDockerIgnoreIfPresent(DefaultFileSet fileSet) throws IOException {
         File directory = fileSet.getDirectory();
         addDockerExcludes(fileSet, directory);
@@ -270,7 +295,7 @@ public class DockerAssemblyManager {
         return archiveDir;
     }
 
-    private TarArchiver createBuildArchiver(File outputDir, File archive, AssemblyMode buildMode) throws NoSuchArchiverException {
+    private TarArchiver createBuildArchiver(File outputDir, AssemblyMode buildMode) throws NoSuchArchiverException {
         TarArchiver archiver = (TarArchiver) archiverManager.getArchiver("tar");
         archiver.setLongfile(TarLongFileMode.posix);
 
@@ -286,7 +311,6 @@ public class DockerAssemblyManager {
             fileSet.setUsingDefaultExcludes(false);
             archiver.addFileSet(fileSet);
         }
-        archiver.setDestFile(archive);
         return archiver;
     }
 
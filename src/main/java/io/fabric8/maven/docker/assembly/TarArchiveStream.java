@@ -0,0 +1,164 @@
+package io.fabric8.maven.docker.assembly;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.fabric8.maven.docker.access.ArchiveStream;
+import io.fabric8.maven.docker.config.BuildTarArchiveCompression;
+import org.codehaus.plexus.archiver.ArchiveEntry;
+import org.codehaus.plexus.archiver.ResourceIterator;
+import org.codehaus.plexus.archiver.commonscompress.archivers.tar.TarArchiveEntry;
+import org.codehaus.plexus.archiver.commonscompress.archivers.tar.TarArchiveOutputStream;
+import org.codehaus.plexus.archiver.commonscompress.archivers.tar.TarConstants;
+import org.codehaus.plexus.archiver.commonscompress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.codehaus.plexus.archiver.tar.TarArchiver;
+import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
+import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
+import org.codehaus.plexus.components.io.resources.PlexusIoResource;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Archive which writes the resources collected by a {@link TarArchiver} directly
+ * to a stream instead of to the archiver's destination file. Entries are created
+ * the same way as {@link TarArchiver} does it (posix long file names, modes, owners).
+ *
+ * The archiver itself can't be used for this, since it always opens its destination file
+ * and its entry writing is only accessible to subclasses, whereas the archiver used here is
+ * a component created by the archiver manager. TarArchiveStreamTest checks that both create
+ * the same entries.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+class TarArchiveStream implements ArchiveStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TarArchiver archiver;
+    private final BuildTarArchiveCompression compression;
+
+    TarArchiveStream(TarArchiver archiver, BuildTarArchiveCompression compression) {
+        this.archiver = archiver;
+        this.compression = compression;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        TarArchiveOutputStream tarOut = new TarArchiveOutputStream(compress(new BufferedOutputStream(out, BUFFER_SIZE)), "UTF8");
+        try {
+            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            ResourceIterator resources = archiver.getResources();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (resources.hasNext()) {
+                addEntry(tarOut, resources.next(), buffer);
+            }
+            tarOut.finish();
+        } finally {
+            tarOut.close();
+        }
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException {
+        switch (compression) {
+            case gzip:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case bzip2:
+                return new BZip2CompressorOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    private void addEntry(TarArchiveOutputStream tarOut, ArchiveEntry entry, byte[] buffer) throws IOException {
+        PlexusIoResource resource = entry.getResource();
+        String name = entryName(entry.getName(), resource.isDirectory());
+        if (name.length() == 0) {
+            return;
+        }
+
+        boolean isSymlink = entry.getType() == ArchiveEntry.SYMLINK;
+        TarArchiveEntry tarEntry;
+        if (isSymlink) {
+            tarEntry = new TarArchiveEntry(name, TarConstants.LF_SYMLINK);
+            tarEntry.setLinkName(((SymlinkDestinationSupplier) resource).getSymlinkDestination());
+        } else {
+            tarEntry = new TarArchiveEntry(name);
+        }
+
+        long lastModified = resource.getLastModified();
+        tarEntry.setModTime(lastModified == PlexusIoResource.UNKNOWN_MODIFICATION_DATE ?
+                                System.currentTimeMillis() : lastModified);
+        if (!isSymlink && !resource.isDirectory()) {
+            long size = resource.getSize();
+            tarEntry.setSize(size == PlexusIoResource.UNKNOWN_RESOURCE_SIZE ? 0 : size);
+        }
+        tarEntry.setMode(entry.getMode());
+        setOwner(tarEntry, entry.getResourceAttributes());
+
+        tarOut.putArchiveEntry(tarEntry);
+        if (!isSymlink && resource.isFile()) {
+            InputStream in = entry.getInputStream();
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    tarOut.write(buffer, 0, read);
+                }
+            } finally {
+                IOUtil.close(in);
+            }
+        }
+        tarOut.closeArchiveEntry();
+    }
+
+    // Same normalization as TarArchiver: forward slashes, no leading slash, trailing slash for dirs
+    private String entryName(String name, boolean isDirectory) {
+        String ret = StringUtils.replace(name, File.separatorChar, '/');
+        if (isDirectory && !ret.endsWith("/")) {
+            ret += "/";
+        }
+        while (ret.startsWith("/")) {
+            ret = ret.substring(1);
+        }
+        return ret;
+    }
+
+    private void setOwner(TarArchiveEntry tarEntry, PlexusIoResourceAttributes attributes) {
+        if (attributes == null) {
+            return;
+        }
+        if (attributes.getUserName() != null) {
+            tarEntry.setUserName(attributes.getUserName());
+        }
+        if (attributes.getGroupName() != null) {
+            tarEntry.setGroupName(attributes.getGroupName());
+        }
+        if (attributes.getUserId() != null) {
+            tarEntry.setUserId(attributes.getUserId());
+        }
+        if (attributes.getGroupId() != null) {
+            tarEntry.setGroupId(attributes.getGroupId());
+        }
+    }
+}
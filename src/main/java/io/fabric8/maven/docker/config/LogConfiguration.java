@@ -11,7 +11,7 @@ import org.apache.maven.plugins.annotations.Parameter;
  */
 public class LogConfiguration implements Serializable {
 
-    public static final LogConfiguration DEFAULT = new LogConfiguration(false, null, null, null, null, null);
+    public static final LogConfiguration DEFAULT = new LogConfiguration(false, null, null, null, null, null, null, false, null);
 
     @Parameter(defaultValue = "true")
     private boolean enabled = true;
@@ -28,17 +28,30 @@ public class LogConfiguration implements Serializable {
     @Parameter
     private String file;
 
+    @Parameter
+    private String fileMaxSize;
+
+    @Parameter
+    private String fileRotateInterval;
+
+    @Parameter
+    private boolean fileCompress;
+
     @Parameter
     private LogDriver driver;
 
     public LogConfiguration() {}
 
-    private LogConfiguration(boolean enabled, String prefix, String color, String date, String file, LogDriver driver) {
+    private LogConfiguration(boolean enabled, String prefix, String color, String date, String file,
+                             String fileMaxSize, String fileRotateInterval, boolean fileCompress, LogDriver driver) {
         this.enabled = enabled;
         this.prefix = prefix;
         this.date = date;
         this.color = color;
         this.file = file;
+        this.fileMaxSize = fileMaxSize;
+        this.fileRotateInterval = fileRotateInterval;
+        this.fileCompress = fileCompress;
         this.driver = driver;
     }
 
@@ -62,6 +75,18 @@ public class LogConfiguration implements Serializable {
         return file;
     }
 
+    public String getFileMaxSize() {
+        return fileMaxSize;
+    }
+
+    public String getFileRotateInterval() {
+        return fileRotateInterval;
+    }
+
+    public boolean isFileCompress() {
+        return fileCompress;
+    }
+
     public LogDriver getDriver() {
         return driver;
     }
@@ -97,6 +122,8 @@ public class LogConfiguration implements Serializable {
     public static class Builder {
         private boolean enabled = true;
         private String prefix, date, color, file;
+        private String fileMaxSize, fileRotateInterval;
+        private boolean fileCompress;
         private Map<String, String> driverOpts;
         private String driverName;
         public Builder enabled(boolean enabled) {
@@ -124,6 +151,21 @@ public class LogConfiguration implements Serializable {
             return this;
         }
 
+        public Builder fileMaxSize(String fileMaxSize) {
+            this.fileMaxSize = fileMaxSize;
+            return this;
+        }
+
+        public Builder fileRotateInterval(String fileRotateInterval) {
+            this.fileRotateInterval = fileRotateInterval;
+            return this;
+        }
+
+        public Builder fileCompress(boolean fileCompress) {
+            this.fileCompress = fileCompress;
+            return this;
+        }
+
         public Builder logDriverName(String logDriver) {
             this.driverName = logDriver;
             return this;
@@ -137,6 +179,7 @@ public class LogConfiguration implements Serializable {
 
         public LogConfiguration build() {
             return new LogConfiguration(enabled, prefix, color, date, file,
+                                        fileMaxSize, fileRotateInterval, fileCompress,
                                         driverName != null ? new LogDriver(driverName,driverOpts) : null);
         }
     }
@@ -145,6 +145,10 @@ public class RunImageConfiguration implements Serializable {
     @Parameter
     private boolean skip = false;
 
+    // Whether the container is shared by all projects of the reactor
+    @Parameter
+    private boolean shared = false;
+
 
     public RunImageConfiguration() { }
 
@@ -315,6 +319,10 @@ public class RunImageConfiguration implements Serializable {
         return skip;
     }
 
+    public boolean isShared() {
+        return shared;
+    }
+
     // ======================================================================================
 
     public static class Builder {
@@ -527,6 +535,13 @@ public class RunImageConfiguration implements Serializable {
             return this;
         }
 
+        public Builder shared(String shared) {
+            if (shared != null) {
+                config.shared = Boolean.valueOf(shared);
+            }
+            return this;
+        }
+
         public RunImageConfiguration build() {
             return config;
         }
@@ -32,6 +32,12 @@ public class WaitConfiguration implements Serializable {
     @Parameter
     private String log;
 
+    @Parameter
+    private boolean healthy;
+
+    @Parameter
+    private Integer exit;
+
     @Parameter
     private int shutdown;
 
@@ -40,12 +46,15 @@ public class WaitConfiguration implements Serializable {
 
     public WaitConfiguration() {}
 
-    private WaitConfiguration(int time, ExecConfiguration exec, HttpConfiguration http, TcpConfiguration tcp, String log, int shutdown, int kill) {
+    private WaitConfiguration(int time, ExecConfiguration exec, HttpConfiguration http, TcpConfiguration tcp, String log,
+                              boolean healthy, Integer exit, int shutdown, int kill) {
         this.time = time;
         this.exec = exec;
         this.http = http;
         this.tcp = tcp;
         this.log = log;
+        this.healthy = healthy;
+        this.exit = exit;
         this.shutdown = shutdown;
         this.kill = kill;
     }
@@ -74,6 +83,14 @@ public class WaitConfiguration implements Serializable {
         return log;
     }
 
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public Integer getExit() {
+        return exit;
+    }
+
     public int getShutdown() {
         return shutdown;
     }
@@ -93,6 +110,8 @@ public class WaitConfiguration implements Serializable {
         private List<Integer> tcpPorts;
         private String tcpHost;
         private TcpConfigMode tcpMode;
+        private boolean healthy;
+        private Integer exit;
 
         public Builder time(int time) {
             this.time = time;
@@ -119,6 +138,16 @@ public class WaitConfiguration implements Serializable {
             return this;
         }
 
+        public Builder healthy(boolean healthy) {
+            this.healthy = healthy;
+            return this;
+        }
+
+        public Builder exit(Integer exit) {
+            this.exit = exit;
+            return this;
+        }
+
         public Builder shutdown(int shutdown) {
             this.shutdown = shutdown;
             return this;
@@ -153,6 +182,8 @@ public class WaitConfiguration implements Serializable {
                                          url != null ? new HttpConfiguration(url,method,status) : null,
                                          tcpPorts != null ? new TcpConfiguration(tcpMode, tcpHost, tcpPorts) : null,
                                          log,
+                                         healthy,
+                                         exit,
                                          shutdown,
                                          kill);
         }
@@ -89,6 +89,7 @@ public enum ConfigKey {
     RESTART_POLICY_RETRY("restartPolicy.retry"),
     RUN,
     SECURITY_OPTS,
+    SHARED,
     SHMSIZE,
     SKIP_BUILD("skip.build"),
     SKIP_RUN("skip.run"),
@@ -98,6 +99,8 @@ public enum ConfigKey {
     USER,
     VOLUMES,
     VOLUMES_FROM,
+    WAIT_EXIT("wait.exit"),
+    WAIT_HEALTHY("wait.healthy"),
     WAIT_LOG("wait.log"),
     WAIT_TIME("wait.time"),
     WAIT_URL("wait.url"),
@@ -127,6 +127,7 @@ public class PropertyConfigHandler implements ExternalConfigHandler {
                 .wait(extractWaitConfig(prefix, properties))
                 .volumes(extractVolumeConfig(prefix, properties))
                 .skip(withPrefix(prefix, SKIP_RUN, properties))
+                .shared(withPrefix(prefix, SHARED, properties))
                 .ulimits(extractUlimits(prefix, properties))
                 .tmpfs(listWithPrefix(prefix, TMPFS, properties))
                 .build();
@@ -237,6 +238,8 @@ public class PropertyConfigHandler implements ExternalConfigHandler {
                 .method(withPrefix(prefix, WAIT_HTTP_METHOD, properties))
                 .status(withPrefix(prefix, WAIT_HTTP_STATUS, properties))
                 .log(withPrefix(prefix, WAIT_LOG, properties))
+                .healthy(Boolean.parseBoolean(withPrefix(prefix, WAIT_HEALTHY, properties)))
+                .exit(intWithPrefix(prefix, WAIT_EXIT, properties))
                 .kill(asInt(withPrefix(prefix, WAIT_KILL, properties)))
                 .shutdown(asInt(withPrefix(prefix, WAIT_SHUTDOWN, properties)))
                 .tcpHost(withPrefix(prefix, WAIT_TCP_HOST, properties))
@@ -28,64 +28,64 @@ public class DefaultLogCallback implements LogCallback {
 
     private final LogOutputSpec outputSpec;
     private PrintStream ps;
+
+    // Merge stage for ordering the entries of multiple containers, null if printing directly
+    private final LogMerger merger;
+
     public DefaultLogCallback(LogOutputSpec outputSpec) throws FileNotFoundException {
-        this.outputSpec = outputSpec;
-        ps = createPrintStream(outputSpec.isLogStdout(), outputSpec.getFile());
+        this(outputSpec, null);
     }
 
-    private PrintStream createPrintStream(boolean logStdout, String file) throws FileNotFoundException {
-        return !logStdout && file != null ? new PrintStream(new FileOutputStream(file), true) : System.out;
+    /**
+     * Callback which hands over its entries to a merge stage for printing them in time order
+     * together with the entries of other containers.
+     *
+     * @param outputSpec how to print the log entries
+     * @param merger merger to use or <code>null</code> for printing the entries directly
+     * @throws FileNotFoundException if the log file cannot be created
+     */
+    public DefaultLogCallback(LogOutputSpec outputSpec, LogMerger merger) throws FileNotFoundException {
+        this.outputSpec = outputSpec;
+        this.merger = merger;
+        ps = createPrintStream(outputSpec);
     }
 
-    @Override
-    public void log(int type, Timestamp timestamp, String txt) {
-        addLogEntry(ps, new LogEntry(type, timestamp, txt));
+    private PrintStream createPrintStream(LogOutputSpec spec) throws FileNotFoundException {
+        if (spec.isLogStdout() || spec.getFile() == null) {
+            return System.out;
+        }
+        // Written asynchronously in batches, so no autoflush
+        return new PrintStream(new LogFileOutputStream(new File(spec.getFile()),
+                                                       spec.getFileMaxSize(),
+                                                       spec.getFileRotateInterval(),
+                                                       spec.isFileCompress()), false);
     }
 
-    @Override
-    public void error(String error) {
-        ps.println(error);
+    /**
+     * Write out all pending log output and close the log file, if any. Must be called when
+     * the log is not followed anymore.
+     */
+    public void close() {
+        if (ps != System.out) {
+            ps.close();
+        }
     }
 
-    private void addLogEntry(PrintStream ps, LogEntry logEntry) {
-        // TODO: Add the entry to a queue, and let the queue be picked up with a small delay from an extra
-        // thread which then can sort the entries by time before printing it out in order to avoid race conditions.
-
+    @Override
+    public void log(int type, Timestamp timestamp, String txt) {
         LogOutputSpec spec = outputSpec;
         if (spec == null) {
             spec = LogOutputSpec.DEFAULT;
         }
-        String text = logEntry.getText();
-        ps.println(spec.getPrompt(spec.isUseColor(),logEntry.getTimestamp()) + text);
-    }
-
-        // A single log-entry
-    private static class LogEntry implements Comparable<LogEntry> {
-        private final int type;
-        private final Timestamp timestamp;
-        private final String text;
-
-        public LogEntry(int type, Timestamp timestamp, String text) {
-            this.type = type;
-            this.timestamp = timestamp;
-            this.text = text;
-        }
-
-        public int getType() {
-            return type;
-        }
-
-        public Timestamp getTimestamp() {
-            return timestamp;
-        }
-
-        public String getText() {
-            return text;
+        if (merger != null) {
+            merger.add(spec, ps, timestamp, txt);
+            return;
         }
+        ps.println(spec.getPrompt(spec.isUseColor(), timestamp) + txt);
+    }
 
-        @Override
-        public int compareTo(LogEntry entry) {
-            return timestamp.compareTo(entry.timestamp);
-        }
+    @Override
+    public void error(String error) {
+        ps.println(error);
     }
 }
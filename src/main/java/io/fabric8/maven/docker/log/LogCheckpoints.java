@@ -0,0 +1,154 @@
+package io.fabric8.maven.docker.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import io.fabric8.maven.docker.access.log.LogCallback;
+import io.fabric8.maven.docker.util.Timestamp;
+
+/**
+ * Timestamps of the last log entry seen per container, stored in a file so that
+ * subsequent runs only fetch and print log entries which are newer.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogCheckpoints {
+
+    private final File file;
+
+    // Guarded by this
+    private final Map<String, Timestamp> checkpoints = new HashMap<>();
+    private boolean modified;
+
+    private LogCheckpoints(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the checkpoints from the given file. If the file doesn't exist, no checkpoints are
+     * set. Invalid entries are ignored.
+     *
+     * @param file file holding the checkpoints
+     * @return checkpoints
+     * @throws IOException if the file cannot be read
+     */
+    public static LogCheckpoints load(File file) throws IOException {
+        LogCheckpoints ret = new LogCheckpoints(file);
+        if (file.exists()) {
+            Properties props = new Properties();
+            try (InputStream is = new FileInputStream(file)) {
+                props.load(is);
+            }
+            for (String containerId : props.stringPropertyNames()) {
+                try {
+                    ret.checkpoints.put(containerId, new Timestamp(props.getProperty(containerId)));
+                } catch (IllegalArgumentException exp) {
+                    // Start from scratch for this container
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the time of the last log entry seen for a container
+     *
+     * @param containerId container id
+     * @return time of the last entry or null if there is no checkpoint for this container
+     */
+    public synchronized Timestamp get(String containerId) {
+        return checkpoints.get(containerId);
+    }
+
+    /**
+     * Record a log entry for a container. The checkpoint is only moved forward.
+     *
+     * @param containerId container id
+     * @param timestamp time of the log entry
+     */
+    public synchronized void update(String containerId, Timestamp timestamp) {
+        Timestamp current = checkpoints.get(containerId);
+        if (current == null || current.compareTo(timestamp) < 0) {
+            checkpoints.put(containerId, timestamp);
+            modified = true;
+        }
+    }
+
+    /**
+     * Wrap a callback so that only entries after the checkpoint of the given container
+     * are passed on and every entry passed on moves the checkpoint forward.
+     *
+     * @param containerId container whose log is fetched
+     * @param callback callback to delegate to
+     * @return filtering and recording callback
+     */
+    public LogCallback track(final String containerId, final LogCallback callback) {
+        final Timestamp checkpoint = get(containerId);
+        return new LogCallback() {
+            @Override
+            public void log(int type, Timestamp timestamp, String txt) throws DoneException {
+                boolean valid = timestamp.isValid();
+                // Already seen entries are skipped, the daemon filters only with a precision of seconds
+                if (valid && checkpoint != null && timestamp.compareTo(checkpoint) <= 0) {
+                    return;
+                }
+                callback.log(type, timestamp, txt);
+                if (valid) {
+                    update(containerId, timestamp);
+                }
+            }
+
+            @Override
+            public void error(String error) {
+                callback.error(error);
+            }
+        };
+    }
+
+    /**
+     * Store the checkpoints if any has changed since loading them
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        Properties props = new Properties();
+        for (Map.Entry<String, Timestamp> entry : checkpoints.entrySet()) {
+            props.setProperty(entry.getKey(), entry.getValue().toIsoString());
+        }
+        // Write to a temporary file first so that an interrupted write doesn't lose all checkpoints
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            props.store(os, "Last log entries seen by docker:logs");
+        }
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("Cannot write " + file);
+        }
+        modified = false;
+    }
+}
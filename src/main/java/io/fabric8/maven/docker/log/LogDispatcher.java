@@ -16,10 +16,13 @@ package io.fabric8.maven.docker.log;/*
  */
 
 import java.io.FileNotFoundException;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.access.log.LogCallback;
 import io.fabric8.maven.docker.access.log.LogGetHandle;
+import io.fabric8.maven.docker.util.Timestamp;
 
 /**
  * @author roland
@@ -27,33 +30,116 @@ import io.fabric8.maven.docker.access.log.LogGetHandle;
  */
 public class LogDispatcher {
 
-    private Map<String,LogGetHandle> logHandles;
+    // Concurrent so that containers started in parallel can be tracked without locking
+    private final Map<String,LogGetHandle> logHandles;
+    private final Map<String,DefaultLogCallback> logCallbacks;
 
     private DockerAccess dockerAccess;
 
+    // Merge stage for followed logs, null if entries are printed as they arrive
+    private final LogMerger merger;
+
     public LogDispatcher(DockerAccess dockerAccess) {
+        this(dockerAccess, 0);
+    }
+
+    /**
+     * Dispatcher which prints the followed logs of all containers in time order
+     *
+     * @param dockerAccess access object for fetching the logs
+     * @param reorderWindow time in milliseconds for which log entries are held back for sorting them
+     *                      by time. If 0, entries are printed as they arrive.
+     */
+    public LogDispatcher(DockerAccess dockerAccess, int reorderWindow) {
         this.dockerAccess = dockerAccess;
-        logHandles = new HashMap<>();
+        this.merger = reorderWindow > 0 ? new LogMerger(reorderWindow) : null;
+        logHandles = new ConcurrentHashMap<>();
+        logCallbacks = new ConcurrentHashMap<>();
+    }
+
+    public void trackContainerLog(String containerId, LogOutputSpec spec) throws FileNotFoundException {
+        trackContainerLog(containerId, spec, null, -1, null);
     }
 
-    public synchronized void trackContainerLog(String containerId, LogOutputSpec spec) throws FileNotFoundException {
-        LogGetHandle handle = dockerAccess.getLogAsync(containerId, new DefaultLogCallback(spec));
+    /**
+     * Follow the log of a container, starting with a part of its existing log
+     *
+     * @param containerId container whose log to follow
+     * @param spec how to print the log
+     * @param since start with entries from this time on, or with all entries if null
+     * @param tail start with this number of entries from the end of the log, or with all entries if negative
+     * @param checkpoints if not null, only entries after the container's checkpoint are printed and the
+     *                    checkpoint is updated with every entry
+     * @throws FileNotFoundException if the log file cannot be created
+     */
+    public void trackContainerLog(String containerId, LogOutputSpec spec,
+                                  Timestamp since, int tail, LogCheckpoints checkpoints) throws FileNotFoundException {
+        DefaultLogCallback callback = new DefaultLogCallback(spec, merger);
+        logCallbacks.put(containerId, callback);
+        LogGetHandle handle = dockerAccess.getLogAsync(containerId, startTime(containerId, since, checkpoints), tail,
+                                                       track(containerId, callback, checkpoints));
         logHandles.put(containerId, handle);
     }
 
-    public synchronized void fetchContainerLog(String containerId, LogOutputSpec spec) throws FileNotFoundException {
-        dockerAccess.getLogSync(containerId, new DefaultLogCallback(spec));
+    public void fetchContainerLog(String containerId, LogOutputSpec spec) throws FileNotFoundException {
+        fetchContainerLog(containerId, spec, null, -1, null);
+    }
+
+    /**
+     * Print a part of the log of a container
+     *
+     * @param containerId container whose log to print
+     * @param spec how to print the log
+     * @param since print only entries from this time on, or all entries if null
+     * @param tail print only this number of entries from the end of the log, or all entries if negative
+     * @param checkpoints if not null, only entries after the container's checkpoint are printed and the
+     *                    checkpoint is updated with every entry
+     * @throws FileNotFoundException if the log file cannot be created
+     */
+    public void fetchContainerLog(String containerId, LogOutputSpec spec,
+                                  Timestamp since, int tail, LogCheckpoints checkpoints) throws FileNotFoundException {
+        DefaultLogCallback callback = new DefaultLogCallback(spec);
+        try {
+            dockerAccess.getLogSync(containerId, startTime(containerId, since, checkpoints), tail,
+                                    track(containerId, callback, checkpoints));
+        } finally {
+            callback.close();
+        }
     }
 
-    public synchronized void untrackAllContainerLogs() {
+    public void untrackAllContainerLogs() {
         for (String key : logHandles.keySet()) {
-            LogGetHandle handle = logHandles.get(key);
-            handle.finish();
+            LogGetHandle handle = logHandles.remove(key);
+            if (handle != null) {
+                handle.finish();
+            }
+        }
+        if (merger != null) {
+            merger.flush();
+        }
+        // Log files are written asynchronously, make sure everything is on disk
+        for (String key : logCallbacks.keySet()) {
+            DefaultLogCallback callback = logCallbacks.remove(key);
+            if (callback != null) {
+                callback.close();
+            }
         }
-        logHandles.clear();
     }
 
     // =======================================================================================
 
+    // Later one of the given start time and the checkpoint
+    private Timestamp startTime(String containerId, Timestamp since, LogCheckpoints checkpoints) {
+        Timestamp checkpoint = checkpoints != null ? checkpoints.get(containerId) : null;
+        if (checkpoint == null) {
+            return since;
+        }
+        return since == null || checkpoint.compareTo(since) > 0 ? checkpoint : since;
+    }
+
+    private LogCallback track(String containerId, LogCallback callback, LogCheckpoints checkpoints) {
+        return checkpoints != null ? checkpoints.track(containerId, callback) : callback;
+    }
+
 
 }
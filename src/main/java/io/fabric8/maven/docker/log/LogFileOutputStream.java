@@ -0,0 +1,368 @@
+package io.fabric8.maven.docker.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Output stream for writing container logs to a file. Writing only copies into an in-memory buffer,
+ * the file itself is written by a dedicated writer thread in large batches. The file can be rotated
+ * when it exceeds a given size or after a given time, optionally compressing the rotated segments
+ * with gzip. Rotation happens only at line boundaries.
+ *
+ * {@link #flush()} blocks until everything written so far is on disk. Pending output is also written
+ * out when the JVM shuts down.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFileOutputStream extends OutputStream {
+
+    // Writer is woken up when this amount of data is buffered ...
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    // ... or when this time has passed
+    private static final long WRITE_INTERVAL = 200;
+
+    // Writers block when the writer thread falls behind by this amount
+    private static final int MAX_PENDING = 4 * 1024 * 1024;
+
+    // Maximum time to wait in flush() and close()
+    private static final long FLUSH_TIMEOUT = 10000;
+
+    private static final DateTimeFormatter SEGMENT_FORMAT = DateTimeFormat.forPattern("yyyyMMdd-HHmmss");
+
+    private final File file;
+    private final long maxSize;
+    private final long rotateInterval;
+    private final boolean compress;
+
+    private final Object lock = new Object();
+    private final Thread writer;
+    private final Thread shutdownHook;
+
+    // Guarded by lock
+    private byte[] buffer = new byte[BATCH_SIZE];
+    private byte[] spare = new byte[BATCH_SIZE];
+    private int count;
+    private long received;
+    private long written;
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException error;
+
+    // Only accessed by the writer thread
+    private OutputStream out;
+    private long fileSize;
+    private long nextRotation;
+
+    /**
+     * Open a log file without rotation. An existing file is overwritten.
+     *
+     * @param file file to write to
+     * @throws FileNotFoundException if the file cannot be created
+     */
+    public LogFileOutputStream(File file) throws FileNotFoundException {
+        this(file, 0, 0, false);
+    }
+
+    /**
+     * Open a rotating log file. An existing file is overwritten.
+     *
+     * @param file file to write to
+     * @param maxSize size in bytes after which the file is rotated, 0 for no size based rotation
+     * @param rotateInterval time in milliseconds after which the file is rotated, 0 for no time based rotation
+     * @param compress whether to gzip rotated segments
+     * @throws FileNotFoundException if the file cannot be created
+     */
+    public LogFileOutputStream(File file, long maxSize, long rotateInterval, boolean compress) throws FileNotFoundException {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.rotateInterval = rotateInterval;
+        this.compress = compress;
+        this.out = new FileOutputStream(file);
+        this.nextRotation = System.currentTimeMillis() + rotateInterval;
+
+        writer = new Thread("docker-log-file-" + file.getName()) {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+
+        shutdownHook = new Thread("docker-log-file-flush") {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (IOException exp) {
+                    // Nothing we can do about it anymore
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        synchronized (lock) {
+            while (count >= MAX_PENDING && !closed && error == null) {
+                waitOnLock(0);
+            }
+            checkState();
+            if (count + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + len));
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            received += len;
+            if (count >= BATCH_SIZE) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until everything written so far has been written to the file
+     *
+     * @throws IOException if writing to the file failed or timed out
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            long target = received;
+            long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+            while (written < target && error == null && writer.isAlive()) {
+                flushRequested = true;
+                lock.notifyAll();
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Timeout while writing log file " + file);
+                }
+                waitOnLock(remaining);
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join(FLUSH_TIMEOUT);
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException exp) {
+            // Already shutting down
+        }
+        synchronized (lock) {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    // ==========================================================================================
+
+    private void checkState() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (closed) {
+            throw new IOException("Log file " + file + " already closed");
+        }
+    }
+
+    private void waitOnLock(long millis) throws IOException {
+        try {
+            lock.wait(millis);
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing log file " + file);
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            byte[] data;
+            int len;
+            boolean stop;
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + WRITE_INTERVAL;
+                long remaining = WRITE_INTERVAL;
+                while (count < BATCH_SIZE && !flushRequested && !closed && remaining > 0) {
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException exp) {
+                        // Write out what we have
+                        break;
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                data = buffer;
+                len = count;
+                buffer = spare;
+                spare = null;
+                count = 0;
+                flushRequested = false;
+                stop = closed;
+                // Let blocked writers continue
+                lock.notifyAll();
+            }
+
+            IOException failure = null;
+            try {
+                if (len > 0) {
+                    writeToFile(data, len);
+                }
+                if (stop) {
+                    out.close();
+                }
+            } catch (IOException exp) {
+                failure = exp;
+            }
+
+            synchronized (lock) {
+                written += len;
+                spare = data.length > BATCH_SIZE * 4 ? new byte[BATCH_SIZE] : data;
+                if (failure != null) {
+                    error = failure;
+                    closeQuietly();
+                }
+                lock.notifyAll();
+                if (stop || failure != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Write a batch, rotating the file when required. Only full lines are put into a segment, except when a
+    // single line is larger than the maximum size, which then gets a segment on its own.
+    private void writeToFile(byte[] data, int len) throws IOException {
+        long now = System.currentTimeMillis();
+        if (rotateInterval > 0 && now >= nextRotation && fileSize > 0) {
+            rotate(now);
+        }
+        int pos = 0;
+        while (pos < len) {
+            int end = len;
+            if (maxSize > 0 && fileSize + (len - pos) > maxSize) {
+                end = lastLineEnd(data, pos, pos + (int) Math.max(0, maxSize - fileSize));
+                if (end == pos) {
+                    if (fileSize > 0) {
+                        rotate(now);
+                        continue;
+                    }
+                    end = firstLineEnd(data, pos, len);
+                }
+            }
+            out.write(data, pos, end - pos);
+            fileSize += end - pos;
+            pos = end;
+        }
+    }
+
+    private void rotate(long now) throws IOException {
+        out.close();
+        File segment = segmentFile(now);
+        if (!file.renameTo(segment)) {
+            throw new IOException("Cannot rotate log file " + file + " to " + segment);
+        }
+        out = new FileOutputStream(file);
+        fileSize = 0;
+        nextRotation = now + rotateInterval;
+        if (compress) {
+            gzip(segment);
+        }
+    }
+
+    private File segmentFile(long now) {
+        String base = file.getName() + "." + SEGMENT_FORMAT.print(now);
+        File segment = new File(file.getParentFile(), base);
+        for (int i = 1; segment.exists() || new File(segment.getPath() + ".gz").exists(); i++) {
+            segment = new File(file.getParentFile(), base + "-" + i);
+        }
+        return segment;
+    }
+
+    private void gzip(File segment) throws IOException {
+        File target = new File(segment.getPath() + ".gz");
+        try (InputStream is = new FileInputStream(segment);
+             OutputStream os = new GZIPOutputStream(new FileOutputStream(target), BATCH_SIZE)) {
+            byte[] buf = new byte[BATCH_SIZE];
+            int read;
+            while ((read = is.read(buf)) != -1) {
+                os.write(buf, 0, read);
+            }
+        }
+        if (!segment.delete()) {
+            throw new IOException("Cannot remove " + segment + " after compressing it");
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            out.close();
+        } catch (IOException exp) {
+            // Already failed
+        }
+    }
+
+    // Position after the last newline in [from, to), or from if there is none
+    private static int lastLineEnd(byte[] data, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (data[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return from;
+    }
+
+    // Position after the first newline starting at from, or to if there is none
+    private static int firstLineEnd(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,208 @@
+package io.fabric8.maven.docker.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.PrintStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.fabric8.maven.docker.util.Timestamp;
+
+/**
+ * Merge stage for the logs of multiple containers. Log entries are put into a lock-free queue by
+ * the threads reading the logs and a single writer thread prints them out in the order of their timestamps.
+ * An entry is held back at most for the given reorder window, so that entries of different containers
+ * arriving within this window are printed in time order. Entries are written in batches so that the
+ * producers don't contend on a shared {@link PrintStream}.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogMerger {
+
+    // Writer thread stops after being idle for this time and is restarted on demand
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final long windowNanos;
+    private final long tickNanos;
+
+    private final Queue<LogEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean shutdownHookAdded = new AtomicBoolean();
+
+    // Only accessed when holding the lock on this object
+    private final PriorityQueue<LogEntry> pending = new PriorityQueue<>();
+    private final Map<PrintStream, StringBuilder> batches = new IdentityHashMap<>();
+
+    /**
+     * Create a merger
+     *
+     * @param reorderWindowMillis time in milliseconds for which entries are held back for ordering
+     */
+    public LogMerger(long reorderWindowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(reorderWindowMillis);
+        this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(5), windowNanos / 4);
+    }
+
+    /**
+     * Add a log entry. This call does not block.
+     *
+     * @param spec output spec used for formatting the entry
+     * @param out stream to print to
+     * @param timestamp timestamp of the entry
+     * @param text log text
+     */
+    public void add(LogOutputSpec spec, PrintStream out, Timestamp timestamp, String text) {
+        queue.add(new LogEntry(spec, out, timestamp, text, System.nanoTime(), sequence.getAndIncrement()));
+        if (!running.get() && running.compareAndSet(false, true)) {
+            startWriter();
+        }
+    }
+
+    /**
+     * Print out all entries received so far, regardless of the reorder window.
+     */
+    public void flush() {
+        writePending(0, true);
+    }
+
+    private void startWriter() {
+        if (shutdownHookAdded.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread("docker-log-merger-flush") {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+        Thread writer = new Thread("docker-log-merger") {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void runWriter() {
+        boolean stopped = false;
+        try {
+            long idleSince = System.nanoTime();
+            while (true) {
+                LockSupport.parkNanos(tickNanos);
+                long now = System.nanoTime();
+                if (writePending(now - windowNanos, false)) {
+                    idleSince = now;
+                } else if (now - idleSince > IDLE_TIMEOUT_NANOS) {
+                    running.set(false);
+                    stopped = true;
+                    // Re-check, an entry might have been added before the flag was reset
+                    if (queue.isEmpty() || !running.compareAndSet(false, true)) {
+                        return;
+                    }
+                    stopped = false;
+                }
+            }
+        } finally {
+            if (!stopped) {
+                // Unexpected error, allow a restart with the next entry
+                running.set(false);
+            }
+        }
+    }
+
+    // Write all entries which arrived before the given time (or all if requested), in timestamp order.
+    // Returns true if there are (or were) entries to process.
+    private synchronized boolean writePending(long arrivedBefore, boolean all) {
+        LogEntry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.resolveTimestamp();
+            pending.add(entry);
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+        // Only the entry with the earliest timestamp is looked at, so an entry which has arrived
+        // later but belongs before the others holds them back until its window has passed
+        while (!pending.isEmpty() && (all || pending.peek().arrival - arrivedBefore <= 0)) {
+            entry = pending.poll();
+            StringBuilder batch = batches.get(entry.out);
+            if (batch == null) {
+                batch = new StringBuilder(8192);
+                batches.put(entry.out, batch);
+            }
+            batch.append(entry.spec.getPrompt(entry.spec.isUseColor(), entry.timestamp))
+                 .append(entry.text)
+                 .append(LINE_SEPARATOR);
+        }
+        for (Map.Entry<PrintStream, StringBuilder> batch : batches.entrySet()) {
+            StringBuilder text = batch.getValue();
+            if (text.length() > 0) {
+                PrintStream out = batch.getKey();
+                out.print(text);
+                out.flush();
+                text.setLength(0);
+            }
+        }
+        return true;
+    }
+
+    // A single log-entry
+    private static class LogEntry implements Comparable<LogEntry> {
+        private final LogOutputSpec spec;
+        private final PrintStream out;
+        private final String text;
+        private final long arrival;
+        private final long sequence;
+        private Timestamp timestamp;
+
+        LogEntry(LogOutputSpec spec, PrintStream out, Timestamp timestamp, String text, long arrival, long sequence) {
+            this.spec = spec;
+            this.out = out;
+            this.timestamp = timestamp;
+            this.text = text;
+            this.arrival = arrival;
+            this.sequence = sequence;
+        }
+
+        // Check the timestamp up front so that comparing can't fail. Entries with an invalid timestamp
+        // are sorted in with the time they have been received. Docker's UTC timestamps are neither
+        // parsed for checking nor for comparing them.
+        void resolveTimestamp() {
+            if (!timestamp.isValid()) {
+                timestamp = new Timestamp();
+            }
+        }
+
+        @Override
+        public int compareTo(LogEntry entry) {
+            int ret = timestamp.compareTo(entry.timestamp);
+            return ret != 0 ? ret : Long.compare(sequence, entry.sequence);
+        }
+    }
+}
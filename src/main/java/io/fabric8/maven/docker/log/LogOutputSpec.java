@@ -15,6 +15,10 @@ package io.fabric8.maven.docker.log;/*
  * limitations under the License.
  */
 
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import io.fabric8.maven.docker.util.Timestamp;
 import org.fusesource.jansi.Ansi;
 import org.joda.time.format.*;
@@ -28,7 +32,7 @@ import static org.fusesource.jansi.Ansi.ansi;
  */
 public class LogOutputSpec {
 
-    public static final LogOutputSpec DEFAULT = new LogOutputSpec("", YELLOW, null, null, null, true, true);
+    public static final LogOutputSpec DEFAULT = new LogOutputSpec("", YELLOW, null, null, null, 0, 0, false, true, true);
 
     private final String containerId;
     private final boolean useColor;
@@ -37,6 +41,13 @@ public class LogOutputSpec {
     private Ansi.Color color;
     private DateTimeFormatter timeFormatter;
     private String file;
+    private long fileMaxSize;
+    private long fileRotateInterval;
+    private boolean fileCompress;
+
+    // Prompt parts which are the same for every line. Computed on first use since
+    // the ANSI mode is decided only when the logger has been set up.
+    private volatile PromptParts promptParts;
 
     // Palette used for prefixing the log output
     private final static Ansi.Color COLOR_PALETTE[] = {
@@ -44,13 +55,23 @@ public class LogOutputSpec {
     };
     private static int globalColorIdx = 0;
 
+    // Size or time interval for rotating the log file, with an optional unit
+    private static final Pattern QUANTITY_PATTERN = Pattern.compile("^(\\d{1,12})\\s*([a-zA-Z]?)$");
+    private static final TimeUnit[] INTERVAL_UNITS = {
+            TimeUnit.SECONDS, TimeUnit.MINUTES, TimeUnit.HOURS, TimeUnit.DAYS
+    };
+
     private LogOutputSpec(String prefix, Ansi.Color color, DateTimeFormatter timeFormatter,
-                          String containerId, String file, boolean useColor, boolean logStdout) {
+                          String containerId, String file, long fileMaxSize, long fileRotateInterval,
+                          boolean fileCompress, boolean useColor, boolean logStdout) {
         this.prefix = prefix;
         this.color = color;
         this.containerId = containerId;
         this.timeFormatter = timeFormatter;
         this.file = file;
+        this.fileMaxSize = fileMaxSize;
+        this.fileRotateInterval = fileRotateInterval;
+        this.fileCompress = fileCompress;
         this.useColor = useColor;
         this.logStdout = logStdout;
     }
@@ -68,27 +89,65 @@ public class LogOutputSpec {
     }
 
     public String getPrompt(boolean withColor,Timestamp timestamp) {
-        return formatTimestamp(timestamp,withColor) + formatPrefix(prefix, withColor) + "> ";
+        PromptParts parts = getPromptParts();
+        String prompt = withColor ? parts.colorPrompt : parts.plainPrompt;
+        if (timeFormatter == null) {
+            return prompt;
+        }
+        StringBuilder ret = new StringBuilder(64);
+        if (withColor) {
+            ret.append(parts.dateColorStart);
+            timeFormatter.printTo(ret, timestamp.getDate());
+            ret.append(parts.colorEnd);
+        } else {
+            timeFormatter.printTo(ret, timestamp.getDate());
+        }
+        return ret.append(' ').append(prompt).toString();
     }
 
     public String getFile(){
         return file;
     }
 
-    private String formatTimestamp(Timestamp timestamp,boolean withColor) {
-        if (timeFormatter == null) {
-            return "";
+    /**
+     * @return size in bytes after which the log file is rotated, 0 if not rotated by size
+     */
+    public long getFileMaxSize() {
+        return fileMaxSize;
+    }
+
+    /**
+     * @return time in milliseconds after which the log file is rotated, 0 if not rotated by time
+     */
+    public long getFileRotateInterval() {
+        return fileRotateInterval;
+    }
+
+    public boolean isFileCompress() {
+        return fileCompress;
+    }
+
+    private PromptParts getPromptParts() {
+        PromptParts parts = promptParts;
+        if (parts == null) {
+            parts = new PromptParts(prefix, color);
+            promptParts = parts;
         }
-        String date = timeFormatter.print(timestamp.getDate());
-        return (withColor ?
-                ansi().fgBright(BLACK).a(date).reset().toString() :
-                date) + " ";
+        return parts;
     }
 
-    private String formatPrefix(String prefix,boolean withColor) {
-        return withColor ?
-                ansi().fg(color).a(prefix).reset().toString() :
-                prefix;
+    private static class PromptParts {
+        private final String plainPrompt;
+        private final String colorPrompt;
+        private final String dateColorStart;
+        private final String colorEnd;
+
+        PromptParts(String prefix, Ansi.Color color) {
+            plainPrompt = prefix + "> ";
+            colorPrompt = color != null ? ansi().fg(color).a(prefix).reset().toString() + "> " : plainPrompt;
+            dateColorStart = ansi().fgBright(BLACK).toString();
+            colorEnd = ansi().reset().toString();
+        }
     }
 
     public static class Builder {
@@ -97,6 +156,9 @@ public class LogOutputSpec {
         private String containerId;
         private DateTimeFormatter timeFormatter;
         private String file;
+        private long fileMaxSize;
+        private long fileRotateInterval;
+        private boolean fileCompress;
         private boolean useColor;
         private boolean logStdout;
 
@@ -125,6 +187,21 @@ public class LogOutputSpec {
             return this;
         }
 
+        public Builder fileMaxSize(String size) {
+            this.fileMaxSize = size != null && size.trim().length() > 0 ? parseSize(size) : 0;
+            return this;
+        }
+
+        public Builder fileRotateInterval(String interval) {
+            this.fileRotateInterval = interval != null && interval.trim().length() > 0 ? parseInterval(interval) : 0;
+            return this;
+        }
+
+        public Builder fileCompress(boolean compress) {
+            this.fileCompress = compress;
+            return this;
+        }
+
         public Builder timeFormatter(String formatOrConstant) {
             if (formatOrConstant == null || formatOrConstant.equalsIgnoreCase("NONE")
                 || formatOrConstant.equalsIgnoreCase("FALSE")) {
@@ -169,7 +246,41 @@ public class LogOutputSpec {
         }
 
         public LogOutputSpec build() {
-            return new LogOutputSpec(prefix, color, timeFormatter, containerId, file, useColor, logStdout);
+            return new LogOutputSpec(prefix, color, timeFormatter, containerId, file,
+                                     fileMaxSize, fileRotateInterval, fileCompress, useColor, logStdout);
+        }
+
+        // Size in bytes, optionally with a unit k, m or g
+        private long parseSize(String size) {
+            Matcher matcher = QUANTITY_PATTERN.matcher(size.trim());
+            if (matcher.matches()) {
+                long amount = Long.parseLong(matcher.group(1));
+                int idx = "bkmg".indexOf(unit(matcher, "b"));
+                if (idx >= 0) {
+                    return amount << (10 * idx);
+                }
+            }
+            throw new IllegalArgumentException(
+                    "Invalid log file size '" + size + "'. Must be a number of bytes optionally followed by 'k', 'm' or 'g'");
+        }
+
+        // Interval in milliseconds, given in seconds or with a unit s, m, h or d
+        private long parseInterval(String interval) {
+            Matcher matcher = QUANTITY_PATTERN.matcher(interval.trim());
+            if (matcher.matches()) {
+                long amount = Long.parseLong(matcher.group(1));
+                int idx = "smhd".indexOf(unit(matcher, "s"));
+                if (idx >= 0) {
+                    return INTERVAL_UNITS[idx].toMillis(amount);
+                }
+            }
+            throw new IllegalArgumentException(
+                    "Invalid log file rotation interval '" + interval + "'. Must be a number of seconds optionally followed by 's', 'm', 'h' or 'd'");
+        }
+
+        private String unit(Matcher matcher, String defaultUnit) {
+            String unit = matcher.group(2).toLowerCase();
+            return unit.length() > 0 ? unit : defaultUnit;
         }
     }
 }
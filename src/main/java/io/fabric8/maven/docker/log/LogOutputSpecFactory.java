@@ -44,6 +44,9 @@ public class LogOutputSpecFactory {
         addPrefix(builder, logConfig.getPrefix()
                 , imageConfiguration.getAlias(), containerId);
         builder.file(logConfig.getFileLocation())
+               .fileMaxSize(logConfig.getFileMaxSize())
+               .fileRotateInterval(logConfig.getFileRotateInterval())
+               .fileCompress(logConfig.isFileCompress())
                .containerId(containerId)
                .useColor(useColor)
                .logStdout(logStdout)
@@ -40,6 +40,13 @@ public interface Container {
 
     boolean isRunning();
 
+    /**
+     * Health status of the container as reported by the health check of its image
+     *
+     * @return "starting", "healthy" or "unhealthy" or <code>null</code> if the container has no health check
+     */
+    String getHealthStatus();
+
     /**
      * IP Adress of the container if provided
      *
@@ -25,6 +25,8 @@ public class ContainerDetails implements Container {
     static final String STATE = "State";
 
     private static final String RUNNING = "Running";
+    private static final String HEALTH = "Health";
+    private static final String STATUS = "Status";
 
     private final JSONObject json;
 
@@ -121,6 +123,13 @@ public class ContainerDetails implements Container {
         return state.getBoolean(RUNNING);
     }
 
+    @Override
+    public String getHealthStatus() {
+        JSONObject state = json.getJSONObject(STATE);
+        JSONObject health = state.optJSONObject(HEALTH);
+        return health != null ? health.optString(STATUS, null) : null;
+    }
+
     private void addPortMapping(String port, JSONObject hostConfig, Map<String, PortBinding> portBindings) {
         String hostIp = hostConfig.getString(HOST_IP);
         Integer hostPort = Integer.valueOf(hostConfig.getString(HOST_PORT));
@@ -1,6 +1,8 @@
 package io.fabric8.maven.docker.model;
 
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -22,6 +24,8 @@ public class ContainersListElement implements Container {
     private static final String SLASH = "/";
     private static final String UP = "up";
 
+    private static final Pattern HEALTH_STATUS_PATTERN = Pattern.compile("\\((?:health: )?(starting|healthy|unhealthy)\\)$");
+
     private final JSONObject json;
 
     public ContainersListElement(JSONObject json) {
@@ -100,6 +104,13 @@ public class ContainersListElement implements Container {
         return status.toLowerCase().contains(UP);
     }
 
+    @Override
+    public String getHealthStatus() {
+        // The status ends with e.g. "(healthy)" or "(health: starting)" for containers with a health check
+        Matcher matcher = HEALTH_STATUS_PATTERN.matcher(json.getString(STATUS));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
     private PortBinding createPortBinding(JSONObject object) {
         PortBinding binding = null;
 
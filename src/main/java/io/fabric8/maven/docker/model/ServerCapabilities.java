@@ -0,0 +1,147 @@
+package io.fabric8.maven.docker.model;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import io.fabric8.maven.docker.util.EnvUtil;
+import org.json.JSONObject;
+
+/**
+ * What a Docker daemon is able to do, built once from the answers to <code>/version</code> and
+ * <code>/info</code>. Capabilities are derived from the API version of the daemon, so that
+ * checking them doesn't need any further request. The answer to <code>/info</code> is optional,
+ * the details taken from it are <code>null</code> if it couldn't be fetched.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class ServerCapabilities {
+
+    static final String API_VERSION = "ApiVersion";
+    static final String VERSION = "Version";
+    static final String ID = "ID";
+    static final String NAME = "Name";
+    static final String OS_TYPE = "OSType";
+
+    private final JSONObject version;
+    private final JSONObject info;
+
+    /**
+     * Create the capabilities of a daemon
+     *
+     * @param version answer to <code>/version</code>
+     * @param info answer to <code>/info</code> or <code>null</code> if not available
+     */
+    public ServerCapabilities(JSONObject version, JSONObject info) {
+        this.version = version;
+        this.info = info != null ? info : new JSONObject();
+    }
+
+    /**
+     * @return highest API version supported by the daemon, e.g. "1.24"
+     */
+    public String getApiVersion() {
+        return version.getString(API_VERSION);
+    }
+
+    /**
+     * @return version of the Docker daemon, e.g. "1.12.1"
+     */
+    public String getVersion() {
+        return version.optString(VERSION, null);
+    }
+
+    /**
+     * @return unique id of the daemon or <code>null</code> if not known
+     */
+    public String getDaemonId() {
+        return info.optString(ID, null);
+    }
+
+    /**
+     * @return host name of the daemon or <code>null</code> if not known
+     */
+    public String getName() {
+        return info.optString(NAME, null);
+    }
+
+    /**
+     * @return operating system of the containers ("linux" or "windows"), <code>null</code> for older daemons
+     *         or if not known
+     */
+    public String getOsType() {
+        return info.optString(OS_TYPE, null);
+    }
+
+    /**
+     * @return answer to <code>/version</code> these capabilities are built from
+     */
+    public JSONObject getVersionJson() {
+        return version;
+    }
+
+    /**
+     * @return answer to <code>/info</code> these capabilities are built from, empty if not available
+     */
+    public JSONObject getInfoJson() {
+        return info;
+    }
+
+    /**
+     * Check whether the daemon supports at least the given API version
+     *
+     * @param apiVersion version to check, e.g. "1.23"
+     * @return true if the daemon's API version is the same or newer
+     */
+    public boolean supportsApiVersion(String apiVersion) {
+        return EnvUtil.greaterOrEqualsVersion(getApiVersion(), apiVersion);
+    }
+
+    /**
+     * @return whether containers can be filtered by their image (including parent images) when listing them
+     */
+    public boolean supportsAncestorFilter() {
+        return supportsApiVersion("1.23");
+    }
+
+    /**
+     * @return whether the health check of an image is run and reported
+     */
+    public boolean supportsHealthCheck() {
+        return supportsApiVersion("1.24");
+    }
+
+    /**
+     * @return whether containers can have aliases in a custom network
+     */
+    public boolean supportsNetworkAliases() {
+        return supportsApiVersion("1.22");
+    }
+
+    /**
+     * @return whether build args can be given when building an image
+     */
+    public boolean supportsBuildArgs() {
+        return supportsApiVersion("1.21");
+    }
+
+    /**
+     * @return whether waiting for a container supports conditions like <code>next-exit</code>
+     */
+    public boolean supportsWaitCondition() {
+        return supportsApiVersion("1.30");
+    }
+}
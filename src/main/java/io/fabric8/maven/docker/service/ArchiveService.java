@@ -15,6 +15,7 @@ package io.fabric8.maven.docker.service;/*
  * limitations under the License.
  */
 
+import io.fabric8.maven.docker.access.ArchiveStream;
 import io.fabric8.maven.docker.assembly.AssemblyFiles;
 import io.fabric8.maven.docker.assembly.DockerAssemblyManager;
 import io.fabric8.maven.docker.config.BuildImageConfiguration;
@@ -101,4 +102,9 @@ public class ArchiveService {
             throws MojoExecutionException {
         return dockerAssemblyManager.createDockerTarArchive(imageName, params, buildConfig, log);
     }
+
+    ArchiveStream createArchiveStream(String imageName, BuildImageConfiguration buildConfig, MojoParameters params, Logger log)
+            throws MojoExecutionException {
+        return dockerAssemblyManager.createDockerTarStream(imageName, params, buildConfig, log);
+    }
 }
@@ -1,6 +1,7 @@
 package io.fabric8.maven.docker.service;
 
 import com.google.common.collect.ImmutableMap;
+import io.fabric8.maven.docker.access.ArchiveStream;
 import io.fabric8.maven.docker.access.DockerAccess;
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.config.BuildImageConfiguration;
@@ -41,6 +42,24 @@ public class BuildService {
      */
     public void buildImage(ImageConfiguration imageConfig, MojoParameters params, boolean noCache, Map<String, String> buildArgs)
         throws DockerAccessException, MojoExecutionException {
+        buildImage(imageConfig, params, noCache, buildArgs, false);
+    }
+
+    /**
+     * Build an image
+     *
+     * @param imageConfig the image configuration
+     * @param params mojo params for the project
+     * @param noCache if not null, dictate the caching behaviour. Otherwise its taken from the build configuration
+     * @param buildArgs
+     * @param streamBuildContext if true the build archive is streamed directly to the Docker daemon while it is created
+     *                           instead of writing it to the build directory first
+     * @throws DockerAccessException
+     * @throws MojoExecutionException
+     */
+    public void buildImage(ImageConfiguration imageConfig, MojoParameters params, boolean noCache, Map<String, String> buildArgs,
+                           boolean streamBuildContext)
+        throws DockerAccessException, MojoExecutionException {
 
         String imageName = imageConfig.getName();
         ImageName.validate(imageName);
@@ -54,19 +73,21 @@ public class BuildService {
             oldImageId = queryService.getImageId(imageName);
         }
 
-        long time = System.currentTimeMillis();
-        File dockerArchive = archiveService.createArchive(imageName, buildConfig, params, log);
-        log.info("%s: Created %s in %s", dockerArchive.getName(), imageConfig.getDescription(), EnvUtil.formatDurationTill(time));
-
         Map<String, String> mergedBuildMap = prepareBuildArgs(buildArgs, buildConfig);
 
-        // auto is now supported by docker, consider switching?
-        String newImageId =
-                doBuildImage(imageName,
-                             dockerArchive,
-                             getDockerfileName(buildConfig),
-                             cleanupMode.isRemove(),
-                             noCache, mergedBuildMap);
+        long time = System.currentTimeMillis();
+        if (streamBuildContext) {
+            ArchiveStream dockerArchive = archiveService.createArchiveStream(imageName, buildConfig, params, log);
+            docker.buildImage(imageName, dockerArchive, getDockerfileName(buildConfig), cleanupMode.isRemove(), noCache, mergedBuildMap);
+            log.info("%s: Streamed build context in %s", imageConfig.getDescription(), EnvUtil.formatDurationTill(time));
+        } else {
+            File dockerArchive = archiveService.createArchive(imageName, buildConfig, params, log);
+            log.info("%s: Created %s in %s", dockerArchive.getName(), imageConfig.getDescription(), EnvUtil.formatDurationTill(time));
+
+            // auto is now supported by docker, consider switching?
+            docker.buildImage(imageName, dockerArchive, getDockerfileName(buildConfig), cleanupMode.isRemove(), noCache, mergedBuildMap);
+        }
+        String newImageId = queryService.getImageId(imageName);
         log.info("%s: Built image %s",imageConfig.getDescription(), newImageId);
 
         if (oldImageId != null && !oldImageId.equals(newImageId)) {
@@ -101,12 +122,4 @@ public class BuildService {
         }
     }
 
-    // ===============================================================
-
-    private String doBuildImage(String imageName, File dockerArchive, String dockerfileName, boolean cleanUp, boolean noCache, Map<String, String> buildArgs)
-        throws DockerAccessException, MojoExecutionException {
-        docker.buildImage(imageName, dockerArchive, dockerfileName, cleanUp, noCache, buildArgs);
-        return queryService.getImageId(imageName);
-    }
-
 }
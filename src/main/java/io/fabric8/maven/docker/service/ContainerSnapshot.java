@@ -0,0 +1,92 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+
+import io.fabric8.maven.docker.model.Container;
+
+/**
+ * Containers fetched once from the daemon and indexed by image and name, so that
+ * looking up the containers of many images doesn't need a request per image.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class ContainerSnapshot {
+
+    private final Map<String, List<Container>> containersByImage = new HashMap<>();
+    private final Map<String, Container> containersByName = new HashMap<>();
+
+    /**
+     * Create a snapshot
+     *
+     * @param containers containers to index. Containers with the same id are only taken once.
+     */
+    public ContainerSnapshot(Collection<Container> containers) {
+        Set<String> ids = new HashSet<>();
+        for (Container container : containers) {
+            if (!ids.add(container.getId())) {
+                continue;
+            }
+            List<Container> forImage = containersByImage.get(container.getImage());
+            if (forImage == null) {
+                forImage = new ArrayList<>();
+                containersByImage.put(container.getImage(), forImage);
+            }
+            forImage.add(container);
+            containersByName.put(container.getName(), container);
+        }
+    }
+
+    /**
+     * Get all containers of an image
+     *
+     * @param image image name as used for creating the containers
+     * @return list of containers, empty if none is found
+     */
+    public List<Container> getContainersForImage(String image) {
+        List<Container> ret = containersByImage.get(image);
+        return ret != null ? Collections.unmodifiableList(ret) : Collections.<Container>emptyList();
+    }
+
+    /**
+     * Get the newest container of an image
+     *
+     * @param image image name as used for creating the containers
+     * @return the newest container or <code>null</code> if none is found
+     */
+    public Container getLatestContainerForImage(String image) {
+        Container ret = null;
+        for (Container container : getContainersForImage(image)) {
+            if (ret == null || container.getCreated() >= ret.getCreated()) {
+                ret = container;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get a container by name
+     *
+     * @param name container name
+     * @return the container or <code>null</code> if none is found
+     */
+    public Container getContainer(String name) {
+        return containersByName.get(name);
+    }
+}
@@ -0,0 +1,171 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import io.fabric8.maven.docker.config.ImageConfiguration;
+
+/**
+ * Containers created by <code>docker:start</code>, stored in a file so that <code>docker:stop</code> running
+ * in another Maven invocation can stop exactly these containers without looking them up at the daemon.
+ * The file is written whenever a container is added, so it's complete even if the start fails halfway.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class ContainerStateFile {
+
+    private final File file;
+
+    // Guarded by this. Entries in the order the containers were created, key is the container id
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private ContainerStateFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the containers from the given file. If the file doesn't exist, there are no containers.
+     * Incomplete entries are ignored.
+     *
+     * @param file file holding the containers
+     * @return the containers
+     * @throws IOException if the file cannot be read
+     */
+    public static ContainerStateFile load(File file) throws IOException {
+        ContainerStateFile ret = new ContainerStateFile(file);
+        if (file.exists()) {
+            Properties props = new Properties();
+            try (InputStream is = new FileInputStream(file)) {
+                props.load(is);
+            }
+            for (int i = 0; props.getProperty(i + ".id") != null; i++) {
+                String image = props.getProperty(i + ".image");
+                if (image != null) {
+                    String containerId = props.getProperty(i + ".id");
+                    ret.entries.put(containerId, new Entry(containerId, image, props.getProperty(i + ".alias")));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Add a container and store the file. A container added again moves to the end.
+     *
+     * @param containerId id of the container
+     * @param imageConfig configuration of the container's image
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void add(String containerId, ImageConfiguration imageConfig) throws IOException {
+        entries.remove(containerId);
+        entries.put(containerId, new Entry(containerId, imageConfig.getName(), imageConfig.getAlias()));
+        save();
+    }
+
+    /**
+     * Get all containers
+     *
+     * @return the containers in the order they were added
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Forget all containers and delete the file
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    public synchronized void clear() throws IOException {
+        entries.clear();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    private void save() throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        Properties props = new Properties();
+        int i = 0;
+        for (Entry entry : entries.values()) {
+            props.setProperty(i + ".id", entry.getContainerId());
+            props.setProperty(i + ".image", entry.getImage());
+            if (entry.getAlias() != null) {
+                props.setProperty(i + ".alias", entry.getAlias());
+            }
+            i++;
+        }
+        // Write to a temporary file first so that an interrupted write doesn't lose all containers
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            props.store(os, "Containers created by docker:start");
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException exp) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A container with the image it was created from
+     */
+    public static class Entry {
+
+        private final String containerId;
+        private final String image;
+        private final String alias;
+
+        Entry(String containerId, String image, String alias) {
+            this.containerId = containerId;
+            this.image = image;
+            this.alias = alias;
+        }
+
+        public String getContainerId() {
+            return containerId;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        /**
+         * Check whether a configuration is the one this container was created from. Images with
+         * an alias are matched by alias, all others by name.
+         *
+         * @param imageConfig configuration to check
+         * @return true if the configuration matches
+         */
+        public boolean matches(ImageConfiguration imageConfig) {
+            return alias != null ? alias.equals(imageConfig.getAlias()) : image.equals(imageConfig.getName());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.fabric8.maven.docker.service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.fabric8.maven.docker.config.ImageConfiguration;
 import io.fabric8.maven.docker.config.RunImageConfiguration;
@@ -9,20 +10,24 @@ import io.fabric8.maven.docker.util.PomLabel;
 
 /**
  * Tracker class for tracking started containers so that they can be shut down at the end when
- * <code>docker:start</code> and <code>docker:stop</code> are used in the same run
+ * <code>docker:start</code> and <code>docker:stop</code> are used in the same run.
+ *
+ * Lookups by name or alias don't lock. Registering and removing a container takes a lock, but doesn't
+ * depend on the number of tracked containers since every registration knows its name, alias and pom label.
  */
 public class ContainerTracker {
 
     // Map holding associations between started containers and their images via name and aliases
     // Key: Image, Value: Container
-    private final Map<String, String> imageToContainerMap = new HashMap<>();
+    private final Map<String, String> imageToContainerMap = new ConcurrentHashMap<>();
 
     // Key: Alias, Value: container
-    private final Map<String, String> aliasToContainerMap = new HashMap<>();
+    private final Map<String, String> aliasToContainerMap = new ConcurrentHashMap<>();
 
-    // Maps holding actions to be used when doing a shutdown
-    private final Map<String, ContainerShutdownDescriptor> shutdownDescriptorPerContainerMap = new LinkedHashMap<>();
-    private final Map<PomLabel,List<ContainerShutdownDescriptor>> shutdownDescriptorPerPomLabelMap = new HashMap<>();
+    // Maps holding the registrations in the order they were made, used when doing a shutdown.
+    // Only accessed when holding the lock on this object.
+    private final Map<String, Registration> registrationPerContainerMap = new LinkedHashMap<>();
+    private final Map<PomLabel, Map<String, Registration>> registrationPerPomLabelMap = new HashMap<>();
 
     /**
      * Register a started container to this tracker
@@ -34,9 +39,12 @@ public class ContainerTracker {
     public synchronized void registerContainer(String containerId,
                                                ImageConfiguration imageConfig,
                                                PomLabel pomLabel) {
-        ContainerShutdownDescriptor descriptor = new ContainerShutdownDescriptor(imageConfig, containerId);
-        shutdownDescriptorPerContainerMap.put(containerId, descriptor);
-        updatePomLabelMap(pomLabel, descriptor);
+        // Registering a container again moves it to the end
+        removeContainer(containerId);
+
+        Registration registration = new Registration(new ContainerShutdownDescriptor(imageConfig, containerId), pomLabel);
+        registrationPerContainerMap.put(containerId, registration);
+        updatePomLabelMap(registration);
         updateImageToContainerMapping(imageConfig, containerId);
     }
 
@@ -47,25 +55,25 @@ public class ContainerTracker {
      * @return descriptor of the container removed or <code>null</code>
      */
     public synchronized ContainerShutdownDescriptor removeContainer(String containerId) {
-        ContainerShutdownDescriptor descriptor = shutdownDescriptorPerContainerMap.remove(containerId);
-        if (descriptor != null) {
-            removeContainerIdFromLookupMaps(containerId);
-            removeDescriptorFromPomLabelMap(descriptor);
+        Registration registration = registrationPerContainerMap.remove(containerId);
+        if (registration == null) {
+            return null;
         }
-        return descriptor;
+        removeFromPomLabelMap(registration);
+        removeFromLookupMaps(registration);
+        return registration.descriptor;
     }
 
     /**
-     * Lookup a container by name or alias from the tracked containers
+     * Lookup a container by name or alias from the tracked containers. This doesn't block
+     * concurrent registrations.
      *
      * @param lookup name or alias of the container to lookup
      * @return container id found or <code>null</code>
      */
-    public synchronized String lookupContainer(String lookup) {
-        if (aliasToContainerMap.containsKey(lookup)) {
-            return aliasToContainerMap.get(lookup);
-        }
-        return imageToContainerMap.get(lookup);
+    public String lookupContainer(String lookup) {
+        String containerId = aliasToContainerMap.get(lookup);
+        return containerId != null ? containerId : imageToContainerMap.get(lookup);
     }
 
     /**
@@ -78,13 +86,21 @@ public class ContainerTracker {
      * @return the descriptors for the given label or an empty collection
      */
     public synchronized Collection<ContainerShutdownDescriptor> removeShutdownDescriptors(PomLabel pomLabel) {
-        List<ContainerShutdownDescriptor> descriptors;
+        List<ContainerShutdownDescriptor> descriptors = new ArrayList<>();
         if (pomLabel != null) {
-            descriptors = removeFromPomLabelMap(pomLabel);
-            removeFromPerContainerMap(descriptors);
+            Map<String, Registration> registrations = registrationPerPomLabelMap.remove(pomLabel);
+            if (registrations != null) {
+                for (Registration registration : registrations.values()) {
+                    registrationPerContainerMap.remove(registration.descriptor.getContainerId());
+                    removeFromLookupMaps(registration);
+                    descriptors.add(registration.descriptor);
+                }
+            }
         } else {
             // All entries are requested
-            descriptors = new ArrayList<>(shutdownDescriptorPerContainerMap.values());
+            for (Registration registration : registrationPerContainerMap.values()) {
+                descriptors.add(registration.descriptor);
+            }
             clearAllMaps();
         }
 
@@ -94,47 +110,26 @@ public class ContainerTracker {
 
     // ========================================================
 
-    private void updatePomLabelMap(PomLabel pomLabel, ContainerShutdownDescriptor descriptor) {
-        if (pomLabel != null) {
-            List<ContainerShutdownDescriptor> descList = shutdownDescriptorPerPomLabelMap.get(pomLabel);
-            if (descList == null) {
-                descList = new ArrayList<>();
-                shutdownDescriptorPerPomLabelMap.put(pomLabel,descList);
+    private void updatePomLabelMap(Registration registration) {
+        if (registration.pomLabel != null) {
+            Map<String, Registration> registrations = registrationPerPomLabelMap.get(registration.pomLabel);
+            if (registrations == null) {
+                registrations = new LinkedHashMap<>();
+                registrationPerPomLabelMap.put(registration.pomLabel, registrations);
             }
-            descList.add(descriptor);
+            registrations.put(registration.descriptor.getContainerId(), registration);
         }
     }
 
-    private void removeDescriptorFromPomLabelMap(ContainerShutdownDescriptor descriptor) {
-        Iterator<Map.Entry<PomLabel, List<ContainerShutdownDescriptor>>> mapIt = shutdownDescriptorPerPomLabelMap.entrySet().iterator();
-        while(mapIt.hasNext()) {
-            Map.Entry<PomLabel,List<ContainerShutdownDescriptor>> mapEntry = mapIt.next();
-            List descs = mapEntry.getValue();
-            Iterator<ContainerShutdownDescriptor> it = descs.iterator();
-            while (it.hasNext()) {
-                ContainerShutdownDescriptor desc = it.next();
-                if (descriptor.equals(desc)) {
-                    it.remove();
+    private void removeFromPomLabelMap(Registration registration) {
+        if (registration.pomLabel != null) {
+            Map<String, Registration> registrations = registrationPerPomLabelMap.get(registration.pomLabel);
+            if (registrations != null) {
+                registrations.remove(registration.descriptor.getContainerId());
+                if (registrations.isEmpty()) {
+                    registrationPerPomLabelMap.remove(registration.pomLabel);
                 }
             }
-            if (descs.size() == 0) {
-                mapIt.remove();
-            }
-        }
-    }
-
-    private void removeContainerIdFromLookupMaps(String containerId) {
-        removeValueFromMap(imageToContainerMap,containerId);
-        removeValueFromMap(aliasToContainerMap,containerId);
-    }
-
-    private void removeValueFromMap(Map<String, String> map, String value) {
-        Iterator<Map.Entry<String,String>> it = map.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String,String> entry = it.next();
-            if (entry.getValue().equals(value)) {
-                it.remove();
-            }
         }
     }
 
@@ -146,32 +141,34 @@ public class ContainerTracker {
         }
     }
 
-    private void removeFromPerContainerMap(List<ContainerShutdownDescriptor> descriptors) {
-        Iterator<Map.Entry<String, ContainerShutdownDescriptor>> it = shutdownDescriptorPerContainerMap.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, ContainerShutdownDescriptor> entry = it.next();
-            if (descriptors.contains(entry.getValue())) {
-                removeContainerIdFromLookupMaps(entry.getKey());
-                it.remove();
-            }
+    // Only remove the mappings if they haven't been taken over by a container registered later
+    private void removeFromLookupMaps(Registration registration) {
+        ImageConfiguration imageConfig = registration.descriptor.getImageConfiguration();
+        String containerId = registration.descriptor.getContainerId();
+        imageToContainerMap.remove(imageConfig.getName(), containerId);
+        if (imageConfig.getAlias() != null) {
+            aliasToContainerMap.remove(imageConfig.getAlias(), containerId);
         }
     }
 
-    private List<ContainerShutdownDescriptor> removeFromPomLabelMap(PomLabel pomLabel) {
-        List<ContainerShutdownDescriptor> descriptors;
-        descriptors = shutdownDescriptorPerPomLabelMap.remove(pomLabel);
-        if (descriptors == null) {
-            descriptors = new ArrayList<>();
-        } return descriptors;
-    }
-
     private void clearAllMaps() {
-        shutdownDescriptorPerContainerMap.clear();
-        shutdownDescriptorPerPomLabelMap.clear();
+        registrationPerContainerMap.clear();
+        registrationPerPomLabelMap.clear();
         imageToContainerMap.clear();
         aliasToContainerMap.clear();
     }
 
+    // A registered container with the pom label it belongs to
+    private static class Registration {
+        private final ContainerShutdownDescriptor descriptor;
+        private final PomLabel pomLabel;
+
+        Registration(ContainerShutdownDescriptor descriptor, PomLabel pomLabel) {
+            this.descriptor = descriptor;
+            this.pomLabel = pomLabel;
+        }
+    }
+
     // =======================================================
 
     static class ContainerShutdownDescriptor {
@@ -0,0 +1,233 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.*;
+
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.access.DockerAccessException;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.util.Logger;
+
+/**
+ * Docker access objects shared by all goal executions of a Maven session, so that the connection pool
+ * (and for TLS the parsed key store) is set up only once per daemon. Access objects are identified by
+ * URL, cert path, API version and pool size. The capabilities of a daemon are fetched only once, even
+ * if it is accessed with different API versions.
+ *
+ * The cache is bound to a single session. All access objects are shut down by {@link DockerAccessCacheParticipant}
+ * when the session ends. If the plugin is not loaded as extension, they are shut down only when the cache is used by
+ * another session (like for a Maven daemon running several builds), the connections of the last session are dropped
+ * when the JVM exits.
+ * Shared containers kept until the JVM exits are stopped with an access object of their own, which is not cached.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class DockerAccessCache {
+
+    // All guarded by this
+    private final Map<String, Entry> accessMap = new HashMap<>();
+    private final Map<String, ServerCapabilities> capabilitiesMap = new HashMap<>();
+    private Object currentSession;
+
+    /**
+     * Get the access object for a daemon, create it if not cached yet. Access objects returned
+     * must not be shut down by the caller.
+     *
+     * @param session identifies the session, e.g. the execution request of the Maven session
+     * @param url URL of the daemon
+     * @param certPath path to the certificates or <code>null</code>
+     * @param apiVersion API version to use
+     * @param maxConnections size of the connection pool
+     * @param log logger of the current execution, which is used by the access object from now on
+     * @param factory used for creating the access object if it is not cached
+     * @return the access object
+     * @throws IOException if creating the access object fails
+     */
+    public synchronized DockerAccess get(Object session, String url, String certPath, String apiVersion, int maxConnections,
+                                         Logger log, Factory factory) throws IOException {
+        return get(session, url, certPath, apiVersion, maxConnections, log, factory, null);
+    }
+
+    /**
+     * Get the access object for a daemon like {@link #get(Object, String, String, String, int, Logger, Factory)}
+     * for a daemon whose capabilities may be known already
+     *
+     * @param capabilities capabilities of the daemon, fetched if <code>null</code> and not cached
+     */
+    public synchronized DockerAccess get(Object session, String url, String certPath, String apiVersion, int maxConnections,
+                                         Logger log, Factory factory, ServerCapabilities capabilities) throws IOException {
+        checkSession(session);
+        if (capabilities != null && !capabilitiesMap.containsKey(url)) {
+            capabilitiesMap.put(url, capabilities);
+        }
+        String key = url + "|" + certPath + "|" + apiVersion + "|" + maxConnections;
+        Entry entry = accessMap.get(key);
+        if (entry == null) {
+            CurrentLogger logger = new CurrentLogger(log);
+            capabilities = capabilitiesMap.get(url);
+            DockerAccess access = factory.create(logger, capabilities);
+            if (capabilities == null) {
+                try {
+                    capabilitiesMap.put(url, access.getServerCapabilities());
+                } catch (DockerAccessException exp) {
+                    access.shutdown();
+                    throw exp;
+                }
+            }
+            entry = new Entry(access, logger);
+            accessMap.put(key, entry);
+        } else {
+            entry.logger.delegate = log;
+            log.debug("Reusing connection to %s", url);
+        }
+        return entry.access;
+    }
+
+    /**
+     * Get the capabilities of a daemon fetched in this session
+     *
+     * @param session identifies the session, e.g. the execution request of the Maven session
+     * @param url URL of the daemon
+     * @return the capabilities or <code>null</code> if not fetched yet
+     */
+    public synchronized ServerCapabilities getCapabilities(Object session, String url) {
+        checkSession(session);
+        return capabilitiesMap.get(url);
+    }
+
+    /**
+     * Check whether an access object is managed by this cache
+     *
+     * @param access access object to check
+     * @return true if the access object is cached and must not be shut down by its user
+     */
+    public synchronized boolean isCached(DockerAccess access) {
+        for (Entry entry : accessMap.values()) {
+            if (entry.access == access) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shut down and remove all cached access objects
+     */
+    public synchronized void shutdownAll() {
+        for (Entry entry : accessMap.values()) {
+            entry.access.shutdown();
+        }
+        accessMap.clear();
+        capabilitiesMap.clear();
+        currentSession = null;
+    }
+
+    private void checkSession(Object session) {
+        if (currentSession != session) {
+            shutdownAll();
+            currentSession = session;
+        }
+    }
+
+    /**
+     * Factory for creating an access object if it is not cached yet
+     */
+    public interface Factory {
+        /**
+         * Create and start an access object
+         *
+         * @param log logger to use for the access object
+         * @param capabilities capabilities of the daemon if already known, <code>null</code> otherwise
+         * @return the access object
+         * @throws IOException if creating the access object fails
+         */
+        DockerAccess create(Logger log, ServerCapabilities capabilities) throws IOException;
+    }
+
+    private static class Entry {
+        private final DockerAccess access;
+        private final CurrentLogger logger;
+
+        Entry(DockerAccess access, CurrentLogger logger) {
+            this.access = access;
+            this.logger = logger;
+        }
+    }
+
+    // Logger delegating to the logger of the goal execution which has fetched the access object last
+    private static class CurrentLogger implements Logger {
+
+        private volatile Logger delegate;
+
+        CurrentLogger(Logger delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void debug(String format, Object... params) {
+            delegate.debug(format, params);
+        }
+
+        @Override
+        public void info(String format, Object... params) {
+            delegate.info(format, params);
+        }
+
+        @Override
+        public void verbose(String format, Object... params) {
+            delegate.verbose(format, params);
+        }
+
+        @Override
+        public void warn(String format, Object... params) {
+            delegate.warn(format, params);
+        }
+
+        @Override
+        public void error(String format, Object... params) {
+            delegate.error(format, params);
+        }
+
+        @Override
+        public String errorMessage(String message) {
+            return delegate.errorMessage(message);
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return delegate.isDebugEnabled();
+        }
+
+        @Override
+        public void progressStart() {
+            delegate.progressStart();
+        }
+
+        @Override
+        public void progressUpdate(String layerId, String status, String progressMessage) {
+            delegate.progressUpdate(layerId, status, progressMessage);
+        }
+
+        @Override
+        public void progressFinished() {
+            delegate.progressFinished();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+
+/**
+ * Shuts down the access objects cached for a Maven session when the session ends. Maven calls
+ * lifecycle participants only for plugins declared with <code>&lt;extensions&gt;true&lt;/extensions&gt;</code>,
+ * otherwise the access objects are shut down when the next session starts.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+@Component(role = AbstractMavenLifecycleParticipant.class, hint = "docker-access-cache")
+public class DockerAccessCacheParticipant extends AbstractMavenLifecycleParticipant {
+
+    @Requirement
+    protected ServiceHubFactory serviceHubFactory;
+
+    @Override
+    public void afterSessionEnd(MavenSession session) {
+        serviceHubFactory.getDockerAccessCache().shutdownAll();
+    }
+}
@@ -0,0 +1,202 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.access.chunked.StreamEvent;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
+import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.util.Logger;
+import io.fabric8.maven.docker.util.WaitUtil;
+
+/**
+ * Wait until the health check of a container reports it as healthy. The health status is pushed by the
+ * <code>health_status</code> events of the Docker daemon, so that no polling is needed. The container is
+ * inspected only once when the events are followed, to catch a status reached before. If the events are
+ * not available, the container is inspected on every check instead.
+ *
+ * A container reported as unhealthy fails the wait immediately.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class HealthyWaitChecker implements WaitUtil.WaitChecker {
+
+    static final String HEALTHY = "healthy";
+    static final String UNHEALTHY = "unhealthy";
+
+    private static final String HEALTH_STATUS_EVENT = "health_status";
+
+    // Inspections are done in the background, so that checks don't block
+    private static final ExecutorService INSPECT_EXECUTOR = createInspectExecutor();
+
+    private final DockerAccess docker;
+    private final String containerId;
+    private final String description;
+    private final Logger log;
+
+    // Last health status known, updated from the event thread
+    private final AtomicReference<String> healthStatus = new AtomicReference<>();
+
+    // Whether the container should be inspected, set when the events are followed
+    private final AtomicBoolean inspectRequested = new AtomicBoolean();
+
+    private volatile boolean eventsAvailable = true;
+
+    private final EventGetHandle eventsHandle;
+
+    // Inspection currently running, only accessed from the checking thread
+    private Future<String> pending;
+
+    /**
+     * Create a checker and start following the events of the container
+     *
+     * @param docker access to the docker daemon
+     * @param containerId container to wait for
+     * @param description description of the container's image, used in messages
+     * @param log logger
+     */
+    public HealthyWaitChecker(DockerAccess docker, String containerId, String description, Logger log) {
+        this.docker = docker;
+        this.containerId = containerId;
+        this.description = description;
+        this.log = log;
+        this.eventsHandle = docker.getEventsAsync(containerId, new HealthEventCallback(), HEALTH_STATUS_EVENT);
+    }
+
+    @Override
+    public boolean check() {
+        collectInspection();
+
+        String status = healthStatus.get();
+        if (HEALTHY.equals(status)) {
+            return true;
+        }
+        if (UNHEALTHY.equals(status)) {
+            throw new IllegalStateException(String.format("%s: Container %s is unhealthy", description, shortId()));
+        }
+        if (pending == null && (inspectRequested.getAndSet(false) || !eventsAvailable)) {
+            pending = INSPECT_EXECUTOR.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return inspectHealthStatus();
+                }
+            });
+        }
+        return false;
+    }
+
+    @Override
+    public void cleanUp() {
+        if (eventsHandle != null) {
+            eventsHandle.finish();
+        }
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    // Take over the result of a finished inspection. Failures to inspect are only fatal if the
+    // container cannot be waited for at all.
+    private void collectInspection() {
+        if (pending == null || !pending.isDone()) {
+            return;
+        }
+        try {
+            updateHealthStatus(pending.get());
+        } catch (InterruptedException | CancellationException exp) {
+            // Tried again with the next check
+        } catch (ExecutionException exp) {
+            if (exp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exp.getCause();
+            }
+            log.debug("%s: Cannot inspect container %s: %s", description, shortId(), exp.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    private String inspectHealthStatus() throws Exception {
+        Container container = docker.getContainer(containerId);
+        if (container == null) {
+            throw new IllegalStateException(String.format("%s: Container %s doesn't exist anymore", description, shortId()));
+        }
+        String status = container.getHealthStatus();
+        if (status == null) {
+            throw new IllegalStateException(String.format("%s: Container %s has no health check", description, shortId()));
+        }
+        return status;
+    }
+
+    // A final status is not overwritten by an older status
+    private void updateHealthStatus(String status) {
+        String current;
+        do {
+            current = healthStatus.get();
+            if (HEALTHY.equals(current) || UNHEALTHY.equals(current)) {
+                return;
+            }
+        } while (!healthStatus.compareAndSet(current, status));
+    }
+
+    private String shortId() {
+        return containerId.length() > 12 ? containerId.substring(0, 12) : containerId;
+    }
+
+    private static ExecutorService createInspectExecutor() {
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(4, 4, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                   new ThreadFactoryBuilder().setNameFormat("docker-wait-health-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Events come as "health_status: healthy"
+    private class HealthEventCallback implements EventCallback {
+
+        @Override
+        public void open() {
+            inspectRequested.set(true);
+        }
+
+        @Override
+        public void event(StreamEvent event) throws DoneException {
+            String status = event.getStatus();
+            if (status != null && status.startsWith(HEALTH_STATUS_EVENT + ":")) {
+                String health = status.substring(HEALTH_STATUS_EVENT.length() + 1).trim();
+                log.debug("%s: Container %s is %s", description, shortId(), health);
+                updateHealthStatus(health);
+                if (HEALTHY.equals(health) || UNHEALTHY.equals(health)) {
+                    throw new DoneException();
+                }
+            }
+        }
+
+        @Override
+        public void error(String error) {
+            log.debug("%s: Health events not available, inspecting container %s instead: %s", description, shortId(), error);
+            eventsAvailable = false;
+        }
+    }
+}
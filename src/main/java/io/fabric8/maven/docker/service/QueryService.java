@@ -1,6 +1,8 @@
 package io.fabric8.maven.docker.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -11,6 +13,7 @@ import io.fabric8.maven.docker.model.Network;
 import io.fabric8.maven.docker.access.DockerAccessException;
 import io.fabric8.maven.docker.util.AutoPullMode;
 import io.fabric8.maven.docker.util.ImagePullCache;
+import io.fabric8.maven.docker.util.PomLabel;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.json.JSONObject;
 
@@ -103,6 +106,64 @@ public class QueryService {
         return docker.getContainersForImage(image);
     }
 
+    /**
+     * List all containers with a single request
+     *
+     * @param all whether to include stopped containers
+     * @return list of <code>Container</code> objects
+     * @throws DockerAccessException if the request fails
+     */
+    public List<Container> listContainers(boolean all) throws DockerAccessException {
+        return docker.listContainers(all);
+    }
+
+    /**
+     * Fetch containers with at most two requests and index them, independent of the number of images
+     * looked up afterwards.
+     *
+     * @param pomLabel if given, only containers with this label are fetched, otherwise all running containers
+     * @param names names of containers to fetch in addition, whether running or not
+     * @return snapshot of the fetched containers
+     * @throws DockerAccessException if a request fails
+     */
+    public ContainerSnapshot getContainerSnapshot(PomLabel pomLabel, Collection<String> names) throws DockerAccessException {
+        List<Container> containers = new ArrayList<>();
+        if (pomLabel != null) {
+            containers.addAll(docker.listContainers(false, "label", pomLabel.getKey() + "=" + pomLabel.getValue()));
+        } else {
+            containers.addAll(docker.listContainers(false));
+        }
+        if (names != null && !names.isEmpty()) {
+            List<String> filter = new ArrayList<>();
+            for (String name : names) {
+                // The daemon matches names as regular expressions, the snapshot only exact names
+                filter.add("name");
+                filter.add("^/" + name + "$");
+            }
+            containers.addAll(docker.listContainers(true, filter.toArray(new String[filter.size()])));
+        }
+        return new ContainerSnapshot(containers);
+    }
+
+    /**
+     * Fetch containers by id with a single request, whether running or not
+     *
+     * @param containerIds ids of the containers
+     * @return the containers found. Containers which don't exist anymore are missing.
+     * @throws DockerAccessException if the request fails
+     */
+    public List<Container> getContainersById(Collection<String> containerIds) throws DockerAccessException {
+        if (containerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> filter = new ArrayList<>();
+        for (String containerId : containerIds) {
+            filter.add("id");
+            filter.add(containerId);
+        }
+        return docker.listContainers(true, filter.toArray(new String[filter.size()]));
+    }
+
     /**
      * Finds the id of an image.
      *
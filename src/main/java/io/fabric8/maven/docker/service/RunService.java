@@ -17,15 +17,17 @@ package io.fabric8.maven.docker.service;
  * limitations under the License.
  */
 
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.*;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.fabric8.maven.docker.model.Container;
 import io.fabric8.maven.docker.log.LogOutputSpecFactory;
 import io.fabric8.maven.docker.access.*;
 import io.fabric8.maven.docker.config.*;
 import io.fabric8.maven.docker.model.Network;
+import io.fabric8.maven.docker.model.ServerCapabilities;
 import io.fabric8.maven.docker.util.*;
 import io.fabric8.maven.docker.util.WaitUtil.WaitTimeoutException;
 
@@ -38,12 +40,29 @@ import io.fabric8.maven.docker.util.WaitUtil.WaitTimeoutException;
  */
 public class RunService {
 
+    // Max number of containers stopped at the same time
+    private static final int MAX_PARALLEL_SHUTDOWNS = 8;
+
+    // Time in seconds on top of the kill grace period after which a stop is given up
+    private static final int STOP_TIMEOUT_MARGIN = 10;
+
+    // How often a container is created again when a host port allocated up front has been taken meanwhile
+    private static final int MAX_PORT_ALLOCATION_RETRIES = 3;
+
+    /**
+     * Label holding the fingerprint of the configuration a container has been created with
+     */
+    public static final String FINGERPRINT_LABEL = "dmp.fingerprint";
+
     // logger delegated from top
     private Logger log;
 
     // Action to be used when doing a shutdown
     final private ContainerTracker tracker;
 
+    // Containers shared by all projects of the reactor
+    private final SharedContainerRegistry sharedContainers;
+
     // DAO for accessing the docker daemon
     private DockerAccess docker;
 
@@ -51,14 +70,31 @@ public class RunService {
 
     private final LogOutputSpecFactory logConfig;
 
+    // Containers which were already running and have been taken over instead of creating new ones
+    private final Set<String> reusedContainers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // Short ids of the containers created or taken over by createOrReuseContainer(), so that no container
+    // is taken over twice
+    private final Set<String> claimedContainers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public RunService(DockerAccess docker,
+                      QueryService queryService,
+                      ContainerTracker tracker,
+                      LogOutputSpecFactory logConfig,
+                      Logger log) {
+        this(docker, queryService, tracker, new SharedContainerRegistry(), logConfig, log);
+    }
+
     public RunService(DockerAccess docker,
                       QueryService queryService,
                       ContainerTracker tracker,
+                      SharedContainerRegistry sharedContainers,
                       LogOutputSpecFactory logConfig,
                       Logger log) {
         this.docker = docker;
         this.queryService = queryService;
         this.tracker = tracker;
+        this.sharedContainers = sharedContainers;
         this.log = log;
         this.logConfig = logConfig;
     }
@@ -96,21 +132,255 @@ public class RunService {
                                           PortMapping portMapping,
                                           PomLabel pomLabel,
                                           Properties mavenProps) throws DockerAccessException {
+        String id = createContainer(imageConfig, portMapping, pomLabel, mavenProps);
+        startContainer(imageConfig, id, portMapping);
+        return id;
+    }
+
+    /**
+     * Create a container with the given image configuration. The container is registered for
+     * shutdown right away, so that it gets removed even when starting it fails.
+     *
+     * @param imageConfig image configuration holding the run information and the image name
+     * @param portMapping container port mapping
+     * @param pomLabel label to tag the created container with
+     * @param mavenProps properties for the container's environment
+     *
+     * @return the container id
+     *
+     * @throws DockerAccessException if access to the docker backend fails
+     */
+    public String createContainer(ImageConfiguration imageConfig,
+                                  PortMapping portMapping,
+                                  PomLabel pomLabel,
+                                  Properties mavenProps) throws DockerAccessException {
         RunImageConfiguration runConfig = imageConfig.getRunConfiguration();
         String imageName = imageConfig.getName();
         String containerName = calculateContainerName(imageConfig.getAlias(), runConfig.getNamingStrategy());
         ContainerCreateConfig config = createContainerConfig(imageName, runConfig, portMapping, pomLabel, mavenProps);
 
         String id = docker.createContainer(config, containerName);
-        startContainer(imageConfig, id, pomLabel);
+        tracker.registerContainer(id, imageConfig, pomLabel);
+        return id;
+    }
 
-        if (portMapping.needsPropertiesUpdate()) {
-            updateMappedPortsAndAddresses(id, portMapping);
+    /**
+     * Create a container like {@link #createContainer(ImageConfiguration, PortMapping, PomLabel, Properties)}, but
+     * take over a running container if it has been created from the same configuration and image. This is detected
+     * by a fingerprint stored as label with the container. A container with the same name, but a different
+     * fingerprint is removed before the new container is created. A container taken over is registered for shutdown
+     * like a newly created one, and {@link #startContainer(ImageConfiguration, String, PortMapping)} only refreshes
+     * its port mapping.
+     *
+     * @param imageConfig image configuration holding the run information and the image name
+     * @param portMapping container port mapping
+     * @param pomLabel label to tag the created container with
+     * @param mavenProps properties for the container's environment
+     *
+     * @return the id of the container taken over or created
+     *
+     * @throws DockerAccessException if access to the docker backend fails
+     */
+    public String createOrReuseContainer(ImageConfiguration imageConfig,
+                                         PortMapping portMapping,
+                                         PomLabel pomLabel,
+                                         Properties mavenProps) throws DockerAccessException {
+        RunImageConfiguration runConfig = imageConfig.getRunConfiguration();
+        String imageName = imageConfig.getName();
+        String containerName = calculateContainerName(imageConfig.getAlias(), runConfig.getNamingStrategy());
+        ContainerCreateConfig config = createContainerConfig(imageName, runConfig, portMapping, pomLabel, mavenProps);
+        String fingerprint = config.getFingerprint(queryService.getImageId(imageName));
+
+        String id = claimRunningContainer(fingerprint, containerName, pomLabel);
+        if (id != null) {
+            log.info("%s: Reuse running container %s", imageConfig.getDescription(), id);
+            reusedContainers.add(id);
+        } else {
+            if (containerName != null) {
+                removeOutdatedContainer(imageConfig, containerName);
+            }
+            config.label(FINGERPRINT_LABEL, fingerprint);
+            id = docker.createContainer(config, containerName);
+            claimedContainers.add(shortId(id));
         }
+        tracker.registerContainer(id, imageConfig, pomLabel);
+        return id;
+    }
 
+    /**
+     * Create the container of an image shared by all projects of the reactor, or wait for the container
+     * if it is created by another project. In the latter case the container is handled like a container
+     * taken over by {@link #createOrReuseContainer(ImageConfiguration, PortMapping, PomLabel, Properties)}.
+     * Shared containers are not registered for shutdown with the other containers, they are stopped by
+     * {@link #releaseSharedContainers(PomLabel, boolean, boolean, boolean)} when not used anymore. A created
+     * shared container must be marked with {@link #sharedContainerReady(ImageConfiguration)} when it is up.
+     *
+     * @param imageConfig image configuration holding the run information and the image name
+     * @param portMapping container port mapping
+     * @param pomLabel label of the project using the container
+     * @param mavenProps properties for the container's environment
+     *
+     * @return the id of the shared container
+     *
+     * @throws DockerAccessException if access to the docker backend fails or the other project couldn't start the container
+     */
+    public String createOrAcquireSharedContainer(ImageConfiguration imageConfig,
+                                                 PortMapping portMapping,
+                                                 PomLabel pomLabel,
+                                                 Properties mavenProps) throws DockerAccessException {
+        RunImageConfiguration runConfig = imageConfig.getRunConfiguration();
+        String imageName = imageConfig.getName();
+        // Not labeled with the project, since the container doesn't belong to a single one
+        ContainerCreateConfig config = createContainerConfig(imageName, runConfig, portMapping, null, mavenProps);
+        String fingerprint = config.getFingerprint(queryService.getImageId(imageName));
+        if (!sharedContainers.acquire(imageConfig, fingerprint, pomLabel)) {
+            String id = awaitSharedContainer(imageConfig);
+            log.info("%s: Use shared container %s", imageConfig.getDescription(), id);
+            reusedContainers.add(id);
+            return id;
+        }
+
+        String containerName = calculateContainerName(imageConfig.getAlias(), runConfig.getNamingStrategy());
+        config.label(FINGERPRINT_LABEL, fingerprint);
+        String id = docker.createContainer(config, containerName);
+        sharedContainers.created(imageConfig, id);
         return id;
     }
 
+    /**
+     * Mark a shared container as ready, so that other projects can use it
+     *
+     * @param imageConfig image configuration of the shared container
+     */
+    public void sharedContainerReady(ImageConfiguration imageConfig) {
+        sharedContainers.ready(imageConfig);
+    }
+
+    /**
+     * Release the shared containers used by a project. Containers not used by any project anymore are stopped,
+     * unless they are kept for projects still to come. Kept containers are stopped when the JVM exits.
+     *
+     * @param pomLabel label of the project
+     * @param keepUnused whether to keep containers not used anymore
+     * @param keepContainer whether to keep containers or to remove them after stopping
+     * @param removeVolumes whether to remove volumes after stopping
+     *
+     * @throws DockerAccessException if stopping a container fails
+     */
+    public void releaseSharedContainers(PomLabel pomLabel, final boolean keepUnused,
+                                        final boolean keepContainer, final boolean removeVolumes)
+        throws DockerAccessException {
+        stopSharedContainers(sharedContainers.release(pomLabel, keepUnused), keepContainer, removeVolumes);
+        if (keepUnused && sharedContainers.markShutdownHookAdded()) {
+            final DockerAccess shutdownAccess = getSharedContainersShutdownAccess();
+            final RunService shutdownService = shutdownAccess != null ?
+                new RunService(shutdownAccess, new QueryService(shutdownAccess), new ContainerTracker(),
+                               sharedContainers, logConfig, log) :
+                this;
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        shutdownService.stopSharedContainers(sharedContainers.releaseAll(), keepContainer, removeVolumes);
+                    } catch (DockerAccessException | RuntimeException e) {
+                        log.error("Error while stopping shared containers: %s", e.getMessage());
+                    } finally {
+                        if (shutdownAccess != null) {
+                            shutdownAccess.shutdown();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    // Access object of its own for stopping the kept containers, since the one of this service is
+    // shut down at the end of the goal
+    private DockerAccess getSharedContainersShutdownAccess() {
+        try {
+            return sharedContainers.getShutdownAccess(log);
+        } catch (IOException e) {
+            log.warn("Cannot create docker access object for stopping shared containers: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Check whether a container has been taken over by {@link #createOrReuseContainer(ImageConfiguration, PortMapping, PomLabel, Properties)}
+     * instead of being created
+     *
+     * @param containerId id of the container
+     * @return true if the container was already running
+     */
+    public boolean isReusedContainer(String containerId) {
+        return reusedContainers.contains(containerId);
+    }
+
+    /**
+     * Start a container created with {@link #createContainer(ImageConfiguration, PortMapping, PomLabel, Properties)}
+     *
+     * @param imageConfig image configuration of the container
+     * @param containerId id of the container to start
+     * @param portMapping container port mapping, updated with the dynamically assigned ports
+     *
+     * @throws DockerAccessException if access to the docker backend fails
+     */
+    public void startContainer(ImageConfiguration imageConfig,
+                               String containerId,
+                               PortMapping portMapping) throws DockerAccessException {
+        if (!isReusedContainer(containerId)) {
+            log.info("%s: Start container %s",imageConfig.getDescription(), containerId);
+            docker.startContainer(containerId);
+        }
+
+        if (portMapping.needsPropertiesUpdate()) {
+            updateMappedPortsAndAddresses(containerId, portMapping);
+        }
+    }
+
+    /**
+     * Start a container like {@link #startContainer(ImageConfiguration, String, PortMapping)}. If the port mapping
+     * holds host ports allocated up front with {@link PortMapping#allocateHostPorts()} and one of them has been
+     * taken by someone else in the meantime, the container is removed and created again with newly allocated ports.
+     *
+     * @param imageConfig image configuration of the container
+     * @param containerId id of the container to start
+     * @param portMapping container port mapping
+     * @param pomLabel label to tag a container created again with
+     * @param mavenProps properties for the environment of a container created again
+     *
+     * @return the id of the started container, which differs from the given id if the container had to be created again
+     *
+     * @throws DockerAccessException if access to the docker backend fails
+     */
+    public String startContainer(ImageConfiguration imageConfig,
+                                 String containerId,
+                                 PortMapping portMapping,
+                                 PomLabel pomLabel,
+                                 Properties mavenProps) throws DockerAccessException {
+        String id = containerId;
+        for (int retry = 1; ; retry++) {
+            try {
+                startContainer(imageConfig, id, portMapping);
+                return id;
+            } catch (DockerAccessException exp) {
+                if (retry > MAX_PORT_ALLOCATION_RETRIES || !portMapping.hasAllocatedHostPorts() || !isPortConflict(exp)) {
+                    throw exp;
+                }
+                log.warn("%s: Allocated host port already in use, creating container again (%d/%d)",
+                         imageConfig.getDescription(), retry, MAX_PORT_ALLOCATION_RETRIES);
+                tracker.removeContainer(id);
+                docker.removeContainer(id, false);
+                try {
+                    portMapping.allocateHostPorts();
+                } catch (IOException ioExp) {
+                    throw new DockerAccessException(ioExp, "%s: Cannot allocate host ports", imageConfig.getDescription());
+                }
+                id = createContainer(imageConfig, portMapping, pomLabel, mavenProps);
+            }
+        }
+    }
+
     /**
      * Stop a container immediately by id.
      * @param containerId the container to stop
@@ -148,30 +418,50 @@ public class RunService {
     }
 
     /**
-     * Stop all registered container
+     * Stop all registered container. Containers are stopped in parallel, but a container is only stopped when all
+     * containers depending on it have been stopped. Custom networks are removed as soon as all of their
+     * containers are gone.
+     *
      * @param keepContainer whether to keep container or to remove them after stoppings
      * @param removeVolumes whether to remove volumes after stopping
+     * @param removeCustomNetworks whether to remove the custom networks of the containers
+     * @param pomLabel label of the containers to stop or <code>null</code> for all containers
      *
-     * @throws DockerAccessException if during stopping of a container sth fails
+     * @throws DockerAccessException if during stopping of a container sth fails. All other containers are
+     *         stopped nevertheless, the first error is thrown at the end.
      */
     public void stopStartedContainers(boolean keepContainer,
                                       boolean removeVolumes,
                                       boolean removeCustomNetworks,
                                       PomLabel pomLabel)
             throws DockerAccessException {
-        Set<Network> networksToRemove = new HashSet<>();
-        for (ContainerTracker.ContainerShutdownDescriptor descriptor : tracker.removeShutdownDescriptors(pomLabel)) {
-            collectCustomNetworks(networksToRemove, descriptor, removeCustomNetworks);
-            shutdown(descriptor, keepContainer, removeVolumes);
+        List<ContainerTracker.ContainerShutdownDescriptor> descriptors =
+            new ArrayList<>(tracker.removeShutdownDescriptors(pomLabel));
+        if (descriptors.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_SHUTDOWNS, descriptors.size()),
+                                                                new ThreadFactoryBuilder()
+                                                                    .setNameFormat("docker-stop-%d")
+                                                                    .setDaemon(true)
+                                                                    .build());
+        try {
+            new ShutdownGraph(descriptors, removeCustomNetworks).run(executor, keepContainer, removeVolumes);
+        } finally {
+            executor.shutdownNow();
         }
-        removeCustomNetworks(networksToRemove);
     }
 
-    private void collectCustomNetworks(Set<Network> networksToRemove, ContainerTracker.ContainerShutdownDescriptor descriptor, boolean removeCustomNetworks) throws DockerAccessException {
-        final NetworkConfig config = descriptor.getImageConfiguration().getRunConfiguration().getNetworkingConfig();
-        if (removeCustomNetworks && config.isCustomNetwork()) {
-           networksToRemove.add(queryService.getNetworkByName(config.getCustomNetwork()));
-        }
+    /**
+     * Register a container started in an earlier run, so that it is stopped by
+     * {@link #stopStartedContainers(boolean, boolean, boolean, PomLabel)} like the containers started in this run.
+     *
+     * @param containerId id of the container
+     * @param imageConfig configuration of the image the container was created from
+     * @param pomLabel label of the project which started the container
+     */
+    public void registerStartedContainer(String containerId, ImageConfiguration imageConfig, PomLabel pomLabel) {
+        tracker.registerContainer(containerId, imageConfig, pomLabel);
     }
 
     /**
@@ -181,7 +471,8 @@ public class RunService {
      * @return the container id if the container exists, <code>null</code> otherwise.
      */
     public String lookupContainer(String lookup) {
-        return tracker.lookupContainer(lookup);
+        String id = tracker.lookupContainer(lookup);
+        return id != null ? id : sharedContainers.lookupContainer(lookup);
     }
 
     /**
@@ -259,6 +550,12 @@ public class RunService {
 
             NetworkConfig networkConfig = runConfig.getNetworkingConfig();
             if(networkConfig.isCustomNetwork() && networkConfig.hasAliases()) {
+                // Older daemons silently ignore the aliases
+                ServerCapabilities capabilities = docker.getServerCapabilities();
+                if (!capabilities.supportsNetworkAliases()) {
+                    throw new DockerAccessException("Network aliases for [%s] are not supported by the Docker daemon with API version %s (1.22 required)",
+                                                    imageName, capabilities.getApiVersion());
+                }
                 ContainerNetworkingConfig networkingConfig =
                     new ContainerNetworkingConfig().aliases(networkConfig);
                 config.networkingConfig(networkingConfig);
@@ -388,10 +685,80 @@ public class RunService {
         return id;
     }
 
-    private void startContainer(ImageConfiguration imageConfig, String id, PomLabel pomLabel) throws DockerAccessException {
-        log.info("%s: Start container %s",imageConfig.getDescription(), id);
-        docker.startContainer(id);
-        tracker.registerContainer(id, imageConfig, pomLabel);
+    private String awaitSharedContainer(ImageConfiguration imageConfig) throws DockerAccessException {
+        try {
+            return sharedContainers.await(imageConfig);
+        } catch (ExecutionException e) {
+            throw new DockerAccessException(e.getCause(), "%s: %s", imageConfig.getDescription(), e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerAccessException(e, "%s: Interrupted while waiting for the shared container", imageConfig.getDescription());
+        }
+    }
+
+    private void stopSharedContainers(List<SharedContainerRegistry.SharedContainer> containers,
+                                      boolean keepContainer, boolean removeVolumes) throws DockerAccessException {
+        DockerAccessException error = null;
+        for (SharedContainerRegistry.SharedContainer container : containers) {
+            try {
+                stopContainer(container.getContainerId(), container.getImageConfiguration(), keepContainer, removeVolumes);
+            } catch (DockerAccessException e) {
+                log.error("%s", e.getMessage());
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // Running container with the given fingerprint, which belongs to the same project and hasn't been created or
+    // taken over in this run already. If a name is given, the container must have this name, too.
+    private String claimRunningContainer(String fingerprint, String containerName, PomLabel pomLabel)
+        throws DockerAccessException {
+        for (Container container : docker.listContainers(false, "label", FINGERPRINT_LABEL + "=" + fingerprint)) {
+            if (containerName != null && !containerName.equals(container.getName())) {
+                continue;
+            }
+            if (pomLabel != null && !pomLabel.getValue().equals(container.getLabels().get(pomLabel.getKey()))) {
+                continue;
+            }
+            if (claimedContainers.add(shortId(container.getId()))) {
+                return container.getId();
+            }
+        }
+        return null;
+    }
+
+    private String shortId(String id) {
+        return id.length() > 12 ? id.substring(0, 12) : id;
+    }
+
+    // Remove a container which has been created with a different configuration and would block the name.
+    // Containers not created with a fingerprint are left alone.
+    private void removeOutdatedContainer(ImageConfiguration imageConfig, String containerName) throws DockerAccessException {
+        Container container = queryService.getContainer(containerName);
+        if (container != null && container.getLabels().containsKey(FINGERPRINT_LABEL)) {
+            log.info("%s: Remove container %s with outdated configuration", imageConfig.getDescription(), container.getId());
+            if (container.isRunning()) {
+                docker.stopContainer(container.getId(), 0);
+            }
+            docker.removeContainer(container.getId(), false);
+        }
+    }
+
+    // Whether starting failed because a host port is bound by someone else
+    private boolean isPortConflict(Throwable exp) {
+        for (Throwable cause = exp; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null &&
+                (message.contains("port is already allocated") || message.contains("address already in use"))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void updateMappedPortsAndAddresses(String containerId, PortMapping mappedPorts) throws DockerAccessException {
@@ -418,13 +785,7 @@ public class RunService {
         int killGracePeriod = adjustGracePeriod(descriptor.getKillGracePeriod());
         log.debug("shutdown will wait max of %d seconds before removing container", killGracePeriod);
 
-        long waited;
-        if (killGracePeriod == 0) {
-            docker.stopContainer(containerId, 0);
-            waited = 0;
-        } else {
-            waited = shutdownAndWait(containerId, killGracePeriod);
-        }
+        long waited = shutdownAndWait(containerId, killGracePeriod);
         if (!keepContainer) {
             removeContainer(descriptor, removeVolumes, containerId);
         }
@@ -470,10 +831,11 @@ public class RunService {
         docker.removeContainer(containerId, removeVolumes);
     }
 
+    // The daemon kills the container after the grace period, give up if the stop takes much longer
     private long shutdownAndWait(final String containerId, final int killGracePeriodInSeconds) throws DockerAccessException {
         long waited;
         try {
-            waited = WaitUtil.wait(killGracePeriodInSeconds, new Callable<Void>() {
+            waited = WaitUtil.wait(killGracePeriodInSeconds + STOP_TIMEOUT_MARGIN, new Callable<Void>() {
                 @Override
                 public Void call() throws Exception {
                     docker.stopContainer(containerId, killGracePeriodInSeconds);
@@ -493,4 +855,176 @@ public class RunService {
 
         return waited;
     }
+
+    // Stops containers in reverse dependency order. A container is stopped when no container depending on it is
+    // running anymore, all containers which are ready for it are stopped in parallel.
+    private class ShutdownGraph {
+
+        private final List<ContainerTracker.ContainerShutdownDescriptor> descriptors;
+
+        // Number of containers depending on a container, which are not stopped yet
+        private final int[] runningDependents;
+        // Containers a container depends on
+        private final List<List<Integer>> dependencies = new ArrayList<>();
+
+        // Custom networks to remove with the number of their containers not stopped yet
+        private final Map<String, Integer> networkUsers = new HashMap<>();
+
+        ShutdownGraph(List<ContainerTracker.ContainerShutdownDescriptor> descriptors, boolean removeCustomNetworks) {
+            this.descriptors = descriptors;
+            this.runningDependents = new int[descriptors.size()];
+
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < descriptors.size(); i++) {
+                ImageConfiguration imageConfig = descriptors.get(i).getImageConfiguration();
+                if (imageConfig.getAlias() != null && !index.containsKey(imageConfig.getAlias())) {
+                    index.put(imageConfig.getAlias(), i);
+                }
+            }
+            for (int i = 0; i < descriptors.size(); i++) {
+                String name = descriptors.get(i).getImage();
+                if (!index.containsKey(name)) {
+                    index.put(name, i);
+                }
+            }
+            for (int i = 0; i < descriptors.size(); i++) {
+                ImageConfiguration imageConfig = descriptors.get(i).getImageConfiguration();
+                List<Integer> deps = new ArrayList<>();
+                for (String dependency : imageConfig.getDependencies()) {
+                    Integer dep = index.get(dependency);
+                    if (dep != null && dep != i && !deps.contains(dep)) {
+                        deps.add(dep);
+                        runningDependents[dep]++;
+                    }
+                }
+                dependencies.add(deps);
+
+                NetworkConfig config = imageConfig.getRunConfiguration().getNetworkingConfig();
+                if (removeCustomNetworks && config.isCustomNetwork()) {
+                    String network = config.getCustomNetwork();
+                    networkUsers.put(network, networkUsers.containsKey(network) ? networkUsers.get(network) + 1 : 1);
+                }
+            }
+        }
+
+        // First error, thrown when all containers are stopped
+        private DockerAccessException error;
+
+        void run(ExecutorService executor, boolean keepContainer, boolean removeVolumes) throws DockerAccessException {
+            CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+            boolean[] submitted = new boolean[descriptors.size()];
+            int running = 0;
+            int done = 0;
+            boolean cycle = false;
+
+            while (done < descriptors.size()) {
+                if (!cycle) {
+                    for (int i = 0; i < descriptors.size(); i++) {
+                        if (!submitted[i] && runningDependents[i] <= 0) {
+                            submitted[i] = true;
+                            running++;
+                            completion.submit(shutdownTask(i, keepContainer, removeVolumes));
+                        }
+                    }
+                    if (running == 0) {
+                        // Only possible for circular dependencies
+                        log.warn("Circular dependencies between the containers to stop, stopping the remaining ones one by one");
+                        cycle = true;
+                    }
+                }
+                if (cycle && running == 0) {
+                    // Stop the rest sequentially in the order of the descriptors, i.e. the reverse registration order
+                    int next = 0;
+                    while (submitted[next]) {
+                        next++;
+                    }
+                    submitted[next] = true;
+                    running++;
+                    completion.submit(shutdownTask(next, keepContainer, removeVolumes));
+                }
+                int stopped = takeStopped(completion);
+                running--;
+                done++;
+                // The dependencies of this container are stopped next, also when its stop has failed
+                for (int dep : dependencies.get(stopped)) {
+                    runningDependents[dep]--;
+                }
+                removeNetworkIfUnused(descriptors.get(stopped));
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        private Callable<Integer> shutdownTask(final int i, final boolean keepContainer, final boolean removeVolumes) {
+            return new Callable<Integer>() {
+                @Override
+                public Integer call() throws ShutdownException {
+                    try {
+                        shutdown(descriptors.get(i), keepContainer, removeVolumes);
+                    } catch (DockerAccessException | RuntimeException exp) {
+                        throw new ShutdownException(i, exp);
+                    }
+                    return i;
+                }
+            };
+        }
+
+        // Index of the next stopped container, whether successful or not
+        private int takeStopped(CompletionService<Integer> completion) throws DockerAccessException {
+            try {
+                return completion.take().get();
+            } catch (InterruptedException exp) {
+                Thread.currentThread().interrupt();
+                throw new DockerAccessException(exp, "Interrupted while stopping containers");
+            } catch (ExecutionException exp) {
+                ShutdownException shutdownException = (ShutdownException) exp.getCause();
+                ContainerTracker.ContainerShutdownDescriptor descriptor = descriptors.get(shutdownException.index);
+                Exception cause = (Exception) shutdownException.getCause();
+                recordError(cause instanceof DockerAccessException ?
+                                (DockerAccessException) cause :
+                                new DockerAccessException(cause, "Unable to stop container [%s]", descriptor.getContainerId()));
+                return shutdownException.index;
+            }
+        }
+
+        private void removeNetworkIfUnused(ContainerTracker.ContainerShutdownDescriptor descriptor) {
+            NetworkConfig config = descriptor.getImageConfiguration().getRunConfiguration().getNetworkingConfig();
+            String name = config.isCustomNetwork() ? config.getCustomNetwork() : null;
+            Integer users = name != null ? networkUsers.get(name) : null;
+            if (users == null) {
+                return;
+            }
+            if (users > 1) {
+                networkUsers.put(name, users - 1);
+                return;
+            }
+            networkUsers.remove(name);
+            try {
+                Network network = queryService.getNetworkByName(name);
+                if (network != null) {
+                    removeCustomNetworks(Collections.singletonList(network));
+                }
+            } catch (DockerAccessException exp) {
+                recordError(exp);
+            }
+        }
+
+        private void recordError(DockerAccessException exp) {
+            log.error("%s", exp.getMessage());
+            if (error == null) {
+                error = exp;
+            }
+        }
+    }
+
+    // Failed shutdown of the container with the given index
+    private static class ShutdownException extends Exception {
+        private final int index;
+
+        ShutdownException(int index, Exception cause) {
+            super(cause);
+            this.index = index;
+        }
+    }
 }
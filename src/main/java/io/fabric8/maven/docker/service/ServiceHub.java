@@ -40,7 +40,8 @@ public class ServiceHub {
     private final MojoExecutionService mojoExecutionService;
     private final ArchiveService archiveService;
 
-    ServiceHub(DockerAccess dockerAccess, ContainerTracker containerTracker, BuildPluginManager pluginManager,
+    ServiceHub(DockerAccess dockerAccess, ContainerTracker containerTracker, SharedContainerRegistry sharedContainerRegistry,
+               BuildPluginManager pluginManager,
                DockerAssemblyManager dockerAssemblyManager, MavenProject project, MavenSession session,
                Logger logger, LogOutputSpecFactory logSpecFactory) {
 
@@ -51,7 +52,7 @@ public class ServiceHub {
 
         if (dockerAccess != null) {
             queryService = new QueryService(dockerAccess);
-            runService = new RunService(dockerAccess, queryService, containerTracker, logSpecFactory, logger);
+            runService = new RunService(dockerAccess, queryService, containerTracker, sharedContainerRegistry, logSpecFactory, logger);
             buildService = new BuildService(dockerAccess, queryService, archiveService, logger);
         } else {
             queryService = null;
@@ -19,6 +19,12 @@ public class ServiceHubFactory {
     // Track started containers
     private final ContainerTracker containerTracker = new ContainerTracker();
 
+    // Containers shared by all projects of the reactor
+    private final SharedContainerRegistry sharedContainerRegistry = new SharedContainerRegistry();
+
+    // Docker access objects reused by all goal executions of a session
+    private final DockerAccessCache dockerAccessCache = new DockerAccessCache();
+
     @Requirement
     protected BuildPluginManager pluginManager;
 
@@ -28,11 +34,29 @@ public class ServiceHubFactory {
     private LogOutputSpecFactory logOutputSpecFactory;
 
     public ServiceHub createServiceHub(MavenProject project, MavenSession session, DockerAccess access, Logger log, LogOutputSpecFactory logSpecFactory) {
+        return createServiceHub(project, session, access, null, log, logSpecFactory);
+    }
+
+    /**
+     * Create a service hub like {@link #createServiceHub(MavenProject, MavenSession, DockerAccess, Logger, LogOutputSpecFactory)}
+     *
+     * @param accessFactory factory for access objects to the same daemon as the given access object, used by services which
+     *                      need an access object outliving the goal. Can be <code>null</code>.
+     */
+    public ServiceHub createServiceHub(MavenProject project, MavenSession session, DockerAccess access,
+                                       DockerAccessCache.Factory accessFactory, Logger log, LogOutputSpecFactory logSpecFactory) {
         this.logOutputSpecFactory = logSpecFactory;
-        return new ServiceHub(access, containerTracker, pluginManager, dockerAssemblyManager, project, session,
+        if (accessFactory != null) {
+            sharedContainerRegistry.setAccessFactory(accessFactory);
+        }
+        return new ServiceHub(access, containerTracker, sharedContainerRegistry, pluginManager, dockerAssemblyManager, project, session,
                               log, logSpecFactory);
     }
 
+    public DockerAccessCache getDockerAccessCache() {
+        return dockerAccessCache;
+    }
+
     public LogOutputSpecFactory getLogOutputSpecFactory() {
         return logOutputSpecFactory;
     }
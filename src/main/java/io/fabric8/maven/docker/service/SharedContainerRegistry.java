@@ -0,0 +1,283 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.config.ImageConfiguration;
+import io.fabric8.maven.docker.util.Logger;
+import io.fabric8.maven.docker.util.PomLabel;
+
+/**
+ * Registry for containers which are shared by all projects of a reactor build. A shared container
+ * is started by the first project using it and counts the projects using it. Other projects wait
+ * until it is ready and use it then, too. When no project uses it anymore, it is either stopped
+ * or kept for projects still to come.
+ *
+ * The registry lives as long as the Maven session, shared containers are identified by their image name
+ * together with their alias. Projects acquiring a shared container must configure it in the same way, this
+ * is checked with the fingerprint of the container configuration. Containers kept for later projects are
+ * stopped with an access object of the registry, since the ones of the goals are shut down when the goals end.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class SharedContainerRegistry {
+
+    // Guarded by this
+    private final Map<String, SharedContainer> containers = new HashMap<>();
+
+    private final AtomicBoolean shutdownHookAdded = new AtomicBoolean();
+
+    // Creates the access object for stopping kept containers and this access object, guarded by this
+    private DockerAccessCache.Factory accessFactory;
+    private DockerAccess shutdownAccess;
+
+    /**
+     * Acquire a shared container for a project. If the container is not known yet, the caller has to create it,
+     * announce it with {@link #created(ImageConfiguration, String)} and mark it ready with
+     * {@link #ready(ImageConfiguration)}. Otherwise it can wait for it with {@link #await(ImageConfiguration)}.
+     *
+     * @param imageConfig configuration of the shared image
+     * @param fingerprint fingerprint of the container configuration of the project
+     * @param user project using the container
+     * @return true if the caller has to start the container
+     * @throws IllegalStateException if the container is already used with another configuration or its alias
+     *         is used for another image
+     */
+    public synchronized boolean acquire(ImageConfiguration imageConfig, String fingerprint, PomLabel user) {
+        String key = getKey(imageConfig);
+        SharedContainer container = containers.get(key);
+        boolean start = container == null;
+        if (start) {
+            checkAliasUnique(imageConfig);
+            container = new SharedContainer(imageConfig, fingerprint);
+            containers.put(key, container);
+        } else if (!container.fingerprint.equals(fingerprint)) {
+            throw new IllegalStateException(
+                String.format("Shared container for %s is configured differently in %s than in the project which started it",
+                              imageConfig.getDescription(), user.getValue()));
+        }
+        container.users.add(user);
+        return start;
+    }
+
+    /**
+     * Announce the container created for a shared image
+     *
+     * @param imageConfig configuration of the shared image
+     * @param containerId id of the container
+     */
+    public synchronized void created(ImageConfiguration imageConfig, String containerId) {
+        SharedContainer container = containers.get(getKey(imageConfig));
+        if (container != null) {
+            container.containerId = containerId;
+        }
+    }
+
+    /**
+     * Mark the container of a shared image as ready, so that other projects can use it
+     *
+     * @param imageConfig configuration of the shared image
+     */
+    public synchronized void ready(ImageConfiguration imageConfig) {
+        SharedContainer container = containers.get(getKey(imageConfig));
+        if (container != null && container.containerId != null) {
+            container.ready.set(container.containerId);
+        }
+    }
+
+    /**
+     * Wait until the container of a shared image is ready
+     *
+     * @param imageConfig configuration of the shared image
+     * @return the container id
+     * @throws ExecutionException if the project starting the container failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public String await(ImageConfiguration imageConfig) throws ExecutionException, InterruptedException {
+        SharedContainer container;
+        synchronized (this) {
+            container = containers.get(getKey(imageConfig));
+        }
+        if (container == null) {
+            throw new IllegalStateException("No shared container for " + imageConfig.getDescription() + " acquired");
+        }
+        return container.ready.get();
+    }
+
+    /**
+     * Lookup the id of a ready shared container
+     *
+     * @param lookup alias or image name
+     * @return the container id or <code>null</code> if there is no such container
+     */
+    public synchronized String lookupContainer(String lookup) {
+        SharedContainer container = null;
+        for (SharedContainer candidate : containers.values()) {
+            if (lookup.equals(candidate.imageConfig.getAlias())) {
+                container = candidate;
+                break;
+            }
+            if (container == null && lookup.equals(candidate.imageConfig.getName())) {
+                container = candidate;
+            }
+        }
+        return container != null && container.ready.isDone() && !container.ready.isCancelled() ?
+            container.containerId : null;
+    }
+
+    /**
+     * Release all shared containers used by a project. Containers which could not be started are always
+     * removed from the registry, projects waiting for them fail.
+     *
+     * @param user project which doesn't use the containers anymore
+     * @param keepUnused whether to keep containers not used anymore for later projects
+     * @return the containers removed from the registry, which should be stopped now
+     */
+    public synchronized List<SharedContainer> release(PomLabel user, boolean keepUnused) {
+        List<SharedContainer> ret = new ArrayList<>();
+        Iterator<SharedContainer> it = containers.values().iterator();
+        while (it.hasNext()) {
+            SharedContainer container = it.next();
+            if (!container.users.remove(user)) {
+                continue;
+            }
+            if (!container.ready.isDone()) {
+                container.ready.setException(
+                    new IllegalStateException("Shared container for " + container.imageConfig.getDescription() + " could not be started"));
+            }
+            if (!isReady(container) || (container.users.isEmpty() && !keepUnused)) {
+                it.remove();
+                if (container.containerId != null) {
+                    ret.add(container);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Remove all containers from this registry, regardless whether they are in use
+     *
+     * @return all containers created
+     */
+    public synchronized List<SharedContainer> releaseAll() {
+        List<SharedContainer> ret = new ArrayList<>();
+        for (SharedContainer container : containers.values()) {
+            if (container.containerId != null) {
+                ret.add(container);
+            }
+        }
+        containers.clear();
+        return ret;
+    }
+
+    /**
+     * Mark that a shutdown hook for stopping the remaining containers has been added
+     *
+     * @return true if no hook has been added before
+     */
+    public boolean markShutdownHookAdded() {
+        return shutdownHookAdded.compareAndSet(false, true);
+    }
+
+    /**
+     * Set the factory for creating the access object used for stopping the containers kept for later
+     * projects when the JVM exits
+     *
+     * @param accessFactory factory for an access object to the daemon of the current goal
+     */
+    public synchronized void setAccessFactory(DockerAccessCache.Factory accessFactory) {
+        this.accessFactory = accessFactory;
+    }
+
+    /**
+     * Get the access object for stopping the containers kept for later projects when the JVM exits.
+     * It is created once and stays open until it is shut down by the caller.
+     *
+     * @param log logger for the access object
+     * @return the access object or <code>null</code> if no factory has been set
+     * @throws IOException if the access object can't be created
+     */
+    public synchronized DockerAccess getShutdownAccess(Logger log) throws IOException {
+        if (shutdownAccess == null && accessFactory != null) {
+            shutdownAccess = accessFactory.create(log, null);
+        }
+        return shutdownAccess;
+    }
+
+    private boolean isReady(SharedContainer container) {
+        try {
+            container.ready.get();
+            return true;
+        } catch (Exception exp) {
+            return false;
+        }
+    }
+
+    // The alias names the container, so it can't be shared by different images
+    private void checkAliasUnique(ImageConfiguration imageConfig) {
+        String alias = imageConfig.getAlias();
+        if (alias == null) {
+            return;
+        }
+        for (SharedContainer container : containers.values()) {
+            if (alias.equals(container.imageConfig.getAlias())) {
+                throw new IllegalStateException(
+                    String.format("Alias '%s' of shared container for %s is already used for the shared image %s",
+                                  alias, imageConfig.getDescription(), container.imageConfig.getName()));
+            }
+        }
+    }
+
+    private String getKey(ImageConfiguration imageConfig) {
+        return imageConfig.getName() + (imageConfig.getAlias() != null ? "|" + imageConfig.getAlias() : "");
+    }
+
+    /**
+     * A container shared between projects
+     */
+    public static class SharedContainer {
+
+        private final ImageConfiguration imageConfig;
+        private final String fingerprint;
+        private final SettableFuture<String> ready = SettableFuture.create();
+
+        // Guarded by the registry
+        private final Set<PomLabel> users = new HashSet<>();
+        private String containerId;
+
+        SharedContainer(ImageConfiguration imageConfig, String fingerprint) {
+            this.imageConfig = imageConfig;
+            this.fingerprint = fingerprint;
+        }
+
+        public ImageConfiguration getImageConfiguration() {
+            return imageConfig;
+        }
+
+        public String getContainerId() {
+            return containerId;
+        }
+    }
+}
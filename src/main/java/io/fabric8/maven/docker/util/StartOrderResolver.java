@@ -3,146 +3,173 @@ package io.fabric8.maven.docker.util;
 import java.util.*;
 
 import io.fabric8.maven.docker.access.DockerAccessException;
+import io.fabric8.maven.docker.model.Container;
 import io.fabric8.maven.docker.service.QueryService;
 import org.codehaus.plexus.util.StringUtils;
 
 /**
+ * Resolve the start order of images from their dependencies with a topological sort (Kahn's algorithm).
+ * Dependencies are resolved against the names and aliases of the given images first. All others
+ * are interpreted as names or ids of external containers, which are looked up in a single listing of all
+ * containers.
+ *
  * @author roland
  * @since 16.10.14
  */
 public class StartOrderResolver {
 
-    public static final int MAX_RESOLVE_RETRIES = 10;
-
     private final QueryService queryService;
-    
-    private final List<Resolvable> secondPass;
-    private final Set<String> processedImages;
-    
+
+    // Names and ids of all existing containers, fetched when first needed
+    private Set<String> containerNames;
+    private List<String> containerIds;
+
     public static List<Resolvable> resolve(QueryService queryService, List<Resolvable> convertToResolvables) {
         return new StartOrderResolver(queryService).resolve(convertToResolvables);
     }
 
     private StartOrderResolver(QueryService queryService) {
         this.queryService = queryService;
-     
-        this.secondPass = new ArrayList<>();
-        this.processedImages = new HashSet<>();
     }
 
-    
     // Check images for volume / link dependencies and return it in the right order.
-    // Only return images which should be run
-    // Images references via volumes but with no run configuration are started once to create
-    // an appropriate container which can be linked into the image
+    // Images without dependencies keep their order and come first.
     private List<Resolvable> resolve(List<Resolvable> images) {
-        List<Resolvable> resolved = new ArrayList<>();
-        // First pass: Pick all data images and all without dependencies
-        for (Resolvable config : images) {
-            List<String> volumesOrLinks = extractDependentImagesFor(config);
-            if (volumesOrLinks == null) {
-                // A data image only or no dependency. Add it to the list of data image which can be always
-                // created first.
-                updateProcessedImages(config);
-                resolved.add(config);
-            } else {
-                secondPass.add(config);
+        int size = images.size();
+        Map<String, Integer> index = createIndex(images);
+
+        // Edges from a dependency to the images depending on it and vice versa
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        List<List<Integer>> dependencies = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<Integer>());
+            dependencies.add(new ArrayList<Integer>());
+        }
+        int[] inDegree = new int[size];
+        List<String> missing = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            Resolvable config = images.get(i);
+            for (String dependency : new LinkedHashSet<>(config.getDependencies())) {
+                Integer dep = index.get(dependency);
+                if (dep != null) {
+                    if (!dependencies.get(i).contains(dep)) {
+                        dependents.get(dep).add(i);
+                        dependencies.get(i).add(dep);
+                        inDegree[i]++;
+                    }
+                } else if (!isExistingContainer(dependency)) {
+                    missing.add(String.format("* %s depends on %s", describe(config), dependency));
+                }
             }
         }
-
-        // Next passes: Those with dependencies are checked whether they already have been visited.
-        return secondPass.size() > 0 ? resolveRemaining(resolved) : resolved;
-    }
-
-    private List<Resolvable> resolveRemaining(List<Resolvable> ret) {
-        int retries = MAX_RESOLVE_RETRIES;
-        String error = null;
-        try {
-            do {
-                resolveImageDependencies(ret);
-            } while (secondPass.size() > 0  && retries-- > 0);
-        } catch (DockerAccessException | ResolveSteadyStateException e) {
-            error = "Cannot resolve image dependencies for start order\n" + remainingImagesDescription();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Cannot resolve image dependencies for start order, " +
+                                            "no image or container found for:\n" + StringUtils.join(missing.toArray(), "\n"));
         }
-        if (retries == 0 && secondPass.size() > 0) {
-            error = "Cannot resolve image dependencies after " + MAX_RESOLVE_RETRIES + " passes\n"
-                    + remainingImagesDescription();
+
+        List<Resolvable> resolved = new ArrayList<>(size);
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+            }
         }
-        if (error != null) {
-            throw new IllegalStateException(error);
+        while (!ready.isEmpty()) {
+            int current = ready.poll();
+            resolved.add(images.get(current));
+            for (int dependent : dependents.get(current)) {
+                if (--inDegree[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
         }
-        return ret;
-    }
 
-    private void updateProcessedImages(Resolvable config) {
-        processedImages.add(config.getName());
-        if (config.getAlias() != null) {
-            processedImages.add(config.getAlias());
+        if (resolved.size() < size) {
+            throw new IllegalStateException("Cannot resolve image dependencies for start order, circular dependency (image -> dependency): " +
+                                            describeCycle(images, dependencies, inDegree));
         }
+        return resolved;
     }
 
-    private String remainingImagesDescription() {
-        StringBuffer ret = new StringBuffer();
-        ret.append("Unresolved images:\n");
-        for (Resolvable config : secondPass) {
-            ret.append("* ")
-               .append(config.getAlias())
-               .append(" depends on ")
-               .append(StringUtils.join(config.getDependencies().toArray(), ","))
-               .append("\n");
+    // Aliases win over names. For images with the same name, the first one is taken.
+    private Map<String, Integer> createIndex(List<Resolvable> images) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            String alias = images.get(i).getAlias();
+            if (alias != null && !index.containsKey(alias)) {
+                index.put(alias, i);
+            }
+        }
+        for (int i = 0; i < images.size(); i++) {
+            String name = images.get(i).getName();
+            if (name != null && !index.containsKey(name)) {
+                index.put(name, i);
+            }
         }
-        return ret.toString();
+        return index;
     }
 
-    private void resolveImageDependencies(List<Resolvable> resolved) throws DockerAccessException, ResolveSteadyStateException {
-        boolean changed = false;        
-        Iterator<Resolvable> iterator = secondPass.iterator();
-
-        while (iterator.hasNext()) {
-            Resolvable config = iterator.next();
-            if (hasRequiredDependencies(config)) {
-                updateProcessedImages(config);
-                resolved.add(config);
-                changed = true;
-                iterator.remove();
+    // Every image left over has at least one dependency which is left over, too. Following
+    // these dependencies must end up in a cycle.
+    private String describeCycle(List<Resolvable> images, List<List<Integer>> dependencies, int[] inDegree) {
+        int current = -1;
+        for (int i = 0; i < inDegree.length; i++) {
+            if (inDegree[i] > 0) {
+                current = i;
+                break;
             }
         }
-
-        if (!changed) {
-            throw new ResolveSteadyStateException();
+        List<Integer> path = new ArrayList<>();
+        while (!path.contains(current)) {
+            path.add(current);
+            for (int dep : dependencies.get(current)) {
+                if (inDegree[dep] > 0) {
+                    current = dep;
+                    break;
+                }
+            }
+        }
+        List<String> cycle = new ArrayList<>();
+        for (int i = path.indexOf(current); i < path.size(); i++) {
+            cycle.add(describe(images.get(path.get(i))));
         }
+        cycle.add(describe(images.get(current)));
+        return StringUtils.join(cycle.toArray(), " -> ");
     }
 
-    private boolean hasRequiredDependencies(Resolvable config) throws DockerAccessException {
-        List<String> dependencies = extractDependentImagesFor(config);
-        if (dependencies == null) {
-            return false;
+    private boolean isExistingContainer(String nameOrId) {
+        if (containerNames == null) {
+            loadContainers();
         }
-
-        for (String dependency : dependencies) {
-            // make sure the container exists, it's state will be verified elsewhere
-            if (processedImages.contains(dependency) ||
-                // Check also whether a *container* with this name exists in which case it is interpreted
-                // as an external dependency which is already running
-                queryService.hasContainer(dependency)) {
-                continue;
+        if (containerNames.contains(nameOrId)) {
+            return true;
+        }
+        // Listed ids are shortened, whereas a dependency could be given by its full id
+        for (String id : containerIds) {
+            if (id.startsWith(nameOrId) || nameOrId.startsWith(id)) {
+                return true;
             }
-            return false;
         }
-        
-        return true;
+        return false;
     }
-    
-    private List<String> extractDependentImagesFor(Resolvable config) {
-        LinkedHashSet<String> ret = new LinkedHashSet<>();
-        for (String id : config.getDependencies()) {
-            ret.add(id);
+
+    private void loadContainers() {
+        containerNames = new HashSet<>();
+        containerIds = new ArrayList<>();
+        try {
+            for (Container container : queryService.listContainers(true)) {
+                containerNames.add(container.getName());
+                containerIds.add(container.getId());
+            }
+        } catch (DockerAccessException e) {
+            throw new IllegalStateException("Cannot resolve image dependencies for start order: " + e.getMessage(), e);
         }
-        return ret.isEmpty() ? null : new ArrayList<>(ret);
     }
 
-    // Exception indicating a steady state while resolving start order of images
-    private static class ResolveSteadyStateException extends Throwable { }
+    private String describe(Resolvable config) {
+        return config.getAlias() != null ? config.getAlias() : config.getName();
+    }
 
     public interface Resolvable {
         String getName();
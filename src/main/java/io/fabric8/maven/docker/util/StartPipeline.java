@@ -0,0 +1,255 @@
+package io.fabric8.maven.docker.util;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.*;
+
+/**
+ * Scheduler which starts containers along their dependency graph. Every image runs through the stages
+ * pull, create, start, wait and post-start. Pulling is independent of any other image, whereas
+ * creating a container begins as soon as all of its dependencies are ready. The stages run on a pool
+ * with a bounded number of threads, waiting itself doesn't occupy a thread.
+ *
+ * On the first failure all other stages are cancelled and running ones are interrupted. Creates and starts
+ * already sent to the daemon are waited for, so that their containers can be cleaned up afterwards. No create
+ * or start is sent after the cancellation.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class StartPipeline<T extends StartOrderResolver.Resolvable> {
+
+    // Max time to wait for creates and starts in progress after a failure
+    private static final long MUTATION_TIMEOUT = 60000;
+
+    private final Stages<T> stages;
+    private final int maxParallel;
+    private final boolean sequential;
+
+    // Number of creates and starts in progress and whether new ones are refused, guarded by this
+    private int mutations;
+    private boolean cancelled;
+
+    /**
+     * Create a pipeline
+     *
+     * @param stages the stages to run
+     * @param maxParallel max number of stages running at the same time
+     * @param sequential if true, an image is started only when the image before is ready
+     */
+    public StartPipeline(Stages<T> stages, int maxParallel, boolean sequential) {
+        this.stages = stages;
+        this.maxParallel = sequential ? 1 : Math.max(1, maxParallel);
+        this.sequential = sequential;
+    }
+
+    /**
+     * Start the given images and wait until all are ready.
+     *
+     * @param images images in start order, i.e. dependencies come before the images depending on them
+     * @throws ExecutionException with the cause of the first failing stage
+     * @throws InterruptedException if interrupted while waiting. All stages are cancelled then.
+     */
+    public void run(List<T> images) throws ExecutionException, InterruptedException {
+        ListeningExecutorService executor = MoreExecutors.listeningDecorator(
+            Executors.newFixedThreadPool(maxParallel, new ThreadFactoryBuilder()
+                .setNameFormat("docker-start-%d")
+                .setDaemon(true)
+                .build()));
+        List<ListenableFuture<?>> all = new ArrayList<>();
+        boolean success = false;
+        try {
+            Map<String, ListenableFuture<?>> pulls = new HashMap<>();
+            Map<String, ListenableFuture<?>> readyByKey = new HashMap<>();
+            List<ListenableFuture<?>> ready = new ArrayList<>();
+            // All pulls are queued before any other stage
+            for (T image : images) {
+                pull(image, pulls, executor, all);
+            }
+            ListenableFuture<?> previous = null;
+            for (T image : images) {
+                List<ListenableFuture<?>> gate = new ArrayList<>();
+                gate.add(pulls.get(image.getName()));
+                for (String dependency : image.getDependencies()) {
+                    ListenableFuture<?> dependencyReady = readyByKey.get(dependency);
+                    // Dependencies not started here are external containers checked during start order resolution
+                    if (dependencyReady != null) {
+                        gate.add(dependencyReady);
+                    }
+                }
+                if (sequential && previous != null) {
+                    gate.add(previous);
+                }
+                ListenableFuture<?> imageReady = schedule(image, Futures.allAsList(gate), executor, all);
+                ready.add(imageReady);
+                if (image.getAlias() != null) {
+                    readyByKey.put(image.getAlias(), imageReady);
+                }
+                if (!readyByKey.containsKey(image.getName())) {
+                    readyByKey.put(image.getName(), imageReady);
+                }
+                previous = imageReady;
+            }
+            // Fails as soon as the first image fails
+            Futures.allAsList(ready).get();
+            success = true;
+        } finally {
+            if (success) {
+                executor.shutdown();
+            } else {
+                refuseMutations();
+                for (ListenableFuture<?> future : all) {
+                    future.cancel(true);
+                }
+                executor.shutdownNow();
+                awaitMutations();
+            }
+        }
+    }
+
+    // Pull every image name only once
+    private ListenableFuture<?> pull(final T image, Map<String, ListenableFuture<?>> pulls,
+                                     ListeningExecutorService executor, List<ListenableFuture<?>> all) {
+        ListenableFuture<?> pull = pulls.get(image.getName());
+        if (pull == null) {
+            pull = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    stages.pull(image);
+                    return null;
+                }
+            });
+            pulls.put(image.getName(), pull);
+            all.add(pull);
+        }
+        return pull;
+    }
+
+    // Chain create, start, wait and post-start for a single image
+    private ListenableFuture<?> schedule(final T image, ListenableFuture<?> gate,
+                                         ListeningExecutorService executor, List<ListenableFuture<?>> all) {
+        ListenableFuture<String> created = Futures.transformAsync(gate, new AsyncFunction<Object, String>() {
+            @Override
+            public ListenableFuture<String> apply(Object input) throws Exception {
+                // Counted before the request is sent, so that a rollback waits for it
+                beginMutation();
+                try {
+                    return Futures.immediateFuture(stages.create(image));
+                } finally {
+                    endMutation();
+                }
+            }
+        }, executor);
+        ListenableFuture<String> started = Futures.transformAsync(created, new AsyncFunction<String, String>() {
+            @Override
+            public ListenableFuture<String> apply(String containerId) throws Exception {
+                beginMutation();
+                try {
+                    return Futures.immediateFuture(stages.start(image, containerId));
+                } finally {
+                    endMutation();
+                }
+            }
+        }, executor);
+        ListenableFuture<String> waited = Futures.transformAsync(started, new AsyncFunction<String, String>() {
+            @Override
+            public ListenableFuture<String> apply(final String containerId) throws Exception {
+                return Futures.transform(stages.waitUntilReady(image, containerId), new Function<Object, String>() {
+                    @Override
+                    public String apply(Object input) {
+                        return containerId;
+                    }
+                });
+            }
+        }, executor);
+        ListenableFuture<String> ready = Futures.transformAsync(waited, new AsyncFunction<String, String>() {
+            @Override
+            public ListenableFuture<String> apply(String containerId) throws Exception {
+                stages.postStart(image, containerId);
+                return Futures.immediateFuture(containerId);
+            }
+        }, executor);
+        all.addAll(Arrays.asList(created, started, waited, ready));
+        return ready;
+    }
+
+    private synchronized void beginMutation() {
+        if (cancelled) {
+            throw new CancellationException("Start has been cancelled");
+        }
+        mutations++;
+    }
+
+    private synchronized void refuseMutations() {
+        cancelled = true;
+    }
+
+    private synchronized void endMutation() {
+        mutations--;
+        notifyAll();
+    }
+
+    private synchronized void awaitMutations() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + MUTATION_TIMEOUT;
+        long remaining;
+        while (mutations > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            wait(remaining);
+        }
+    }
+
+    /**
+     * Stages through which every image runs. The methods are called on the threads of the pipeline and may block,
+     * only the future returned by {@link #waitUntilReady(Object, String)} should not occupy a thread while waiting.
+     */
+    public interface Stages<T> {
+
+        /**
+         * Make the image available, e.g. by pulling it
+         */
+        void pull(T image) throws Exception;
+
+        /**
+         * Create the container for an image. It must be registered for a later shutdown.
+         *
+         * @return the container id
+         */
+        String create(T image) throws Exception;
+
+        /**
+         * Start a container created before
+         *
+         * @return the id of the started container, which differs from the given one if the container was created again
+         */
+        String start(T image, String containerId) throws Exception;
+
+        /**
+         * Wait until a container is up
+         *
+         * @return future which completes when the container is up
+         */
+        ListenableFuture<?> waitUntilReady(T image, String containerId) throws Exception;
+
+        /**
+         * Called when a container is ready, before containers depending on it are created
+         */
+        void postStart(T image, String containerId) throws Exception;
+    }
+}
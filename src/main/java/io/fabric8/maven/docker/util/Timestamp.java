@@ -19,10 +19,14 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.*;
 
 /**
  * Timestamp holding a {@link DateTime} and nano seconds and which can be compared.
+ * Timestamps in the RFC 3339 format used by Docker are parsed without regular expressions
+ * and can be created unparsed with {@link #lazy(String)}. Timestamps in UTC as written by Docker
+ * are compared without parsing them at all.
  *
  * @author roland
  * @since 25/11/14
@@ -30,9 +34,23 @@ import org.joda.time.format.*;
 public class Timestamp implements Comparable<Timestamp> {
 
     private DateTime date;
+
+    // Nanoseconds below the milliseconds of the date
     private int rest;
 
-    private static Pattern TS_PATTERN = Pattern.compile("^(.*?)(?:\\.(\\d{3})(\\d*))?(Z|[+\\-][\\d:]+)?$",Pattern.CASE_INSENSITIVE);
+    // Specification still to parse for lazy timestamps, null when parsed
+    private volatile String spec;
+
+    // Specification if in the UTC format of Docker ("yyyy-MM-ddTHH:mm:ss[.fraction]Z"), null otherwise
+    private final String utcSpec;
+
+    private static Pattern TS_PATTERN = Pattern.compile("^(.*?)(?:\\.(\\d{1,3})(\\d*))?(Z|[+\\-][\\d:]+)?$",Pattern.CASE_INSENSITIVE);
+
+    private static final DateTimeFormatter ISO_MILLIS_FORMAT =
+        DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(DateTimeZone.UTC);
+
+    // Days from 0000-03-01 to 1970-01-01
+    private static final int DAYS_0000_TO_1970 = 719468;
 
     /**
      * Create a timestamp for *now*
@@ -40,6 +58,7 @@ public class Timestamp implements Comparable<Timestamp> {
      */
     public Timestamp() {
         date = new DateTime();
+        utcSpec = null;
     }
 
     /**
@@ -49,22 +68,269 @@ public class Timestamp implements Comparable<Timestamp> {
      * @param spec date specification to parse
      */
     public Timestamp(String spec) {
-        //
+        parse(spec);
+        utcSpec = isUtcSpec(spec) ? spec : null;
+    }
+
+    private Timestamp(String spec, boolean lazy) {
+        this.spec = spec;
+        this.utcSpec = isUtcSpec(spec) ? spec : null;
+    }
+
+    /**
+     * Create a timestamp which is parsed only when it is accessed for the first time. Useful
+     * for log entries whose timestamp is often not printed at all. An invalid specification
+     * leads to an {@link IllegalArgumentException} on first access.
+     *
+     * @param spec date specification to parse on demand
+     * @return unparsed timestamp
+     */
+    public static Timestamp lazy(String spec) {
+        if (spec == null) {
+            throw new NullPointerException("No timestamp given");
+        }
+        return new Timestamp(spec, true);
+    }
+
+    public DateTime getDate() {
+        ensureParsed();
+        return date;
+    }
+
+    /**
+     * Check whether this timestamp is valid. Lazy timestamps in the UTC format of Docker are
+     * checked without parsing them.
+     *
+     * @return true if the date can be accessed without an {@link IllegalArgumentException}
+     */
+    public boolean isValid() {
+        if (utcSpec != null) {
+            return true;
+        }
+        try {
+            ensureParsed();
+            return true;
+        } catch (IllegalArgumentException exp) {
+            return false;
+        }
+    }
+
+    private void ensureParsed() {
+        String toParse = spec;
+        if (toParse != null) {
+            parse(toParse);
+            spec = null;
+        }
+    }
+
+    private void parse(String spec) {
+        if (parseRfc3339(spec)) {
+            return;
+        }
         Matcher matcher = TS_PATTERN.matcher(spec);
         if (!matcher.matches()) {
             throw new IllegalArgumentException("Invalid timestamp '" + spec + "' given.");
         }
         String millis = matcher.group(2);
         String rest = matcher.group(3);
-        this.rest = rest != null ? Integer.parseInt(rest) : 0;
+        this.rest = rest != null ? Integer.parseInt(scaleFraction(rest, 6)) : 0;
         DateTimeFormatter parser = ISODateTimeFormat.dateTime();
-        date = parser.parseDateTime(matcher.group(1) + (millis != null ? "." + millis : ".000") + matcher.group(4));
+        date = parser.parseDateTime(matcher.group(1) + "." + (millis != null ? scaleFraction(millis, 3) : "000") + matcher.group(4));
     }
 
-    public DateTime getDate() {
-        return date;
+    // Digits of a fraction padded with zeros or cut to the given number of digits
+    private static String scaleFraction(String digits, int width) {
+        if (digits.length() >= width) {
+            return digits.substring(0, width);
+        }
+        StringBuilder ret = new StringBuilder(width).append(digits);
+        while (ret.length() < width) {
+            ret.append('0');
+        }
+        return ret.toString();
+    }
+
+    // Parse "yyyy-MM-ddTHH:mm:ss[.fraction](Z|+HH|+HH:mm|+HHmm)" without any intermediate objects.
+    // Docker drops trailing zeros of the fraction, so it has between one and nine digits.
+    // Returns false for anything else, which is then left to the generic parser
+    private boolean parseRfc3339(String s) {
+        int len = s.length();
+        if (len < 20 || s.charAt(4) != '-' || s.charAt(7) != '-' || Character.toUpperCase(s.charAt(10)) != 'T' ||
+            s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return false;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) ||
+            hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+
+        int pos = 19;
+        int millis = 0;
+        int nanoRest = 0;
+        if (s.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < len && isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            int nrDigits = pos - start;
+            if (nrDigits < 1 || nrDigits > 12) {
+                return false;
+            }
+            // Digits beyond nanoseconds are ignored
+            millis = fraction(s, start, Math.min(nrDigits, 3), 3);
+            nanoRest = nrDigits > 3 ? fraction(s, start + 3, Math.min(nrDigits - 3, 6), 6) : 0;
+        }
+
+        int offset = zoneOffsetMinutes(s, pos);
+        if (offset == Integer.MIN_VALUE) {
+            return false;
+        }
+        long days = daysSinceEpoch(year, month, day);
+        long epochMillis = (((days * 24 + hour) * 60 + minute - offset) * 60 + second) * 1000 + millis;
+        this.date = new DateTime(epochMillis);
+        this.rest = nanoRest;
+        return true;
+    }
+
+    // Whether the spec is a valid timestamp in the form "yyyy-MM-ddTHH:mm:ss[.fraction]Z", which is ordered
+    // like the instants it stands for when comparing the fractions digit by digit
+    private static boolean isUtcSpec(String s) {
+        int len = s.length();
+        if (len < 20 || len > 30 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T' ||
+            s.charAt(13) != ':' || s.charAt(16) != ':' || s.charAt(len - 1) != 'Z') {
+            return false;
+        }
+        if (len > 20 && (s.charAt(19) != '.' || len == 21 || digits(s, 20, len - 21) < 0)) {
+            return false;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        return year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month) &&
+               hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59;
+    }
+
+    // Compare two specs for which isUtcSpec() holds. Missing digits of a fraction count as zeros and,
+    // as when parsing, digits below nanoseconds are ignored.
+    private static int compareUtcSpecs(String a, String b) {
+        for (int i = 0; i < 19; i++) {
+            int diff = a.charAt(i) - b.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        for (int i = 20; i < 29; i++) {
+            int diff = fractionDigit(a, i) - fractionDigit(b, i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
     }
 
+    private static char fractionDigit(String s, int pos) {
+        return pos < s.length() - 1 ? s.charAt(pos) : '0';
+    }
+
+    // Offset in minutes or Integer.MIN_VALUE if invalid
+    private int zoneOffsetMinutes(String s, int pos) {
+        int len = s.length();
+        if (pos >= len) {
+            return Integer.MIN_VALUE;
+        }
+        char c = s.charAt(pos);
+        if (c == 'Z' || c == 'z') {
+            return pos + 1 == len ? 0 : Integer.MIN_VALUE;
+        }
+        if (c != '+' && c != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int hours;
+        int minutes;
+        switch (len - pos - 1) {
+            case 2:
+                hours = digits(s, pos + 1, 2);
+                minutes = 0;
+                break;
+            case 4:
+                hours = digits(s, pos + 1, 2);
+                minutes = digits(s, pos + 3, 2);
+                break;
+            case 5:
+                if (s.charAt(pos + 3) != ':') {
+                    return Integer.MIN_VALUE;
+                }
+                hours = digits(s, pos + 1, 2);
+                minutes = digits(s, pos + 4, 2);
+                break;
+            default:
+                return Integer.MIN_VALUE;
+        }
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = hours * 60 + minutes;
+        return c == '-' ? -offset : offset;
+    }
+
+    // Value of a run of decimal digits or -1 if there is a non-digit
+    private static int digits(String s, int start, int len) {
+        int ret = 0;
+        for (int i = start; i < start + len; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            ret = ret * 10 + (c - '0');
+        }
+        return ret;
+    }
+
+    // Value of the first len digits of a fraction with the given number of digits
+    private static int fraction(String s, int start, int len, int width) {
+        int ret = digits(s, start, len);
+        for (int i = len; i < width; i++) {
+            ret *= 10;
+        }
+        return ret;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 of a date in the proleptic gregorian calendar (only years >= 0)
+    private static long daysSinceEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * 146097 + dayOfEra - DAYS_0000_TO_1970;
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -72,6 +338,8 @@ public class Timestamp implements Comparable<Timestamp> {
         if (o == null || getClass() != o.getClass()) return false;
 
         Timestamp timestamp = (Timestamp) o;
+        ensureParsed();
+        timestamp.ensureParsed();
 
         if (rest != timestamp.rest) return false;
         if (!date.equals(timestamp.date)) return false;
@@ -81,6 +349,7 @@ public class Timestamp implements Comparable<Timestamp> {
 
     @Override
     public int hashCode() {
+        ensureParsed();
         int result = date.hashCode();
         result = 31 * result + (int) (rest ^ (rest >>> 32));
         return result;
@@ -88,6 +357,11 @@ public class Timestamp implements Comparable<Timestamp> {
 
     @Override
     public int compareTo(Timestamp ts) {
+        if (utcSpec != null && ts.utcSpec != null) {
+            return compareUtcSpecs(utcSpec, ts.utcSpec);
+        }
+        ensureParsed();
+        ts.ensureParsed();
         int fc = this.date.compareTo(ts.date);
         if (fc != 0) {
             return fc;
@@ -95,8 +369,20 @@ public class Timestamp implements Comparable<Timestamp> {
         return this.rest - ts.rest;
     }
 
+    /**
+     * Format this timestamp in UTC including the part below milliseconds, so that parsing the
+     * result gives an equal timestamp again (e.g. "2014-11-24T22:34:00.761764812Z")
+     *
+     * @return full ISO 8601 representation
+     */
+    public String toIsoString() {
+        ensureParsed();
+        return ISO_MILLIS_FORMAT.print(date) + String.format("%06d", rest) + "Z";
+    }
+
     @Override
     public String toString() {
+        ensureParsed();
         return date.toString();
     }
 
@@ -0,0 +1,229 @@
+package io.fabric8.maven.docker.util;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Engine running the {@link WaitUtil.WaitChecker}s of all waits on a single timer thread. Checks are
+ * repeated with an increasing delay, starting with {@value #INITIAL_DELAY} ms, so that fast starting
+ * containers are detected quickly without polling slow ones too often. Conditions given as futures
+ * are not polled but evaluated as soon as they complete. Since all checks share one thread,
+ * checkers must not block but start their checks in the background and report the result in a later round.
+ *
+ * A wait does not occupy any thread, its outcome is reported by the returned future.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class WaitEngine {
+
+    // Delay before the second check, doubled for every further check ...
+    static final long INITIAL_DELAY = 25;
+
+    // ... up to this delay
+    static final long MAX_DELAY = 500;
+
+    private static final WaitEngine INSTANCE = new WaitEngine();
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    WaitEngine() {
+        timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("docker-wait-%d")
+                                                                              .setDaemon(true)
+                                                                              .build());
+        // No thread is kept when nothing is to wait for
+        timer.setKeepAliveTime(10, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Get the engine shared by all waits
+     *
+     * @return shared engine
+     */
+    public static WaitEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Wait until one of the given checkers succeeds. The checkers are cleaned up when the wait is over.
+     *
+     * @param maxWait maximum time in milliseconds to wait, a default is used if 0 or less
+     * @param checkers checkers to run
+     * @return future with the time waited in milliseconds. The future fails with a {@link WaitUtil.WaitTimeoutException}
+     *         if no checker succeeded in time and with the runtime exception thrown by a checker if a check failed.
+     *         Cancelling the future stops the checks.
+     */
+    public ListenableFuture<Long> wait(long maxWait, Iterable<WaitUtil.WaitChecker> checkers) {
+        return wait(maxWait, checkers, Collections.<ListenableFuture<?>>emptyList());
+    }
+
+    /**
+     * Wait until one of the given checkers succeeds or one of the given conditions is met. A condition is
+     * evaluated as soon as it completes, without any polling.
+     *
+     * @param maxWait maximum time in milliseconds to wait, a default is used if 0 or less
+     * @param checkers checkers to run
+     * @param conditions futures completing when a condition is met. A failed condition fails the wait with
+     *                   the cause of the failure. Conditions still pending when the wait is over are cancelled.
+     * @return future with the time waited in milliseconds, see {@link #wait(long, Iterable)}
+     */
+    public ListenableFuture<Long> wait(long maxWait, Iterable<WaitUtil.WaitChecker> checkers,
+                                       Iterable<? extends ListenableFuture<?>> conditions) {
+        final WaitTask task = new WaitTask(maxWait > 0 ? maxWait : WaitUtil.DEFAULT_MAX_WAIT, checkers, conditions);
+        timer.execute(task);
+        for (ListenableFuture<?> condition : conditions) {
+            condition.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    task.checkNow();
+                }
+            }, timer);
+        }
+        return task.future;
+    }
+
+    /**
+     * Pause without occupying a thread
+     *
+     * @param millis time to pause in milliseconds
+     * @return future with the time paused
+     */
+    public ListenableFuture<Long> pause(final long millis) {
+        final SettableFuture<Long> future = SettableFuture.create();
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.set(millis);
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    // ==========================================================================================
+
+    // A single wait with its checkers. Only run on the timer thread.
+    private class WaitTask implements Runnable {
+
+        private final SettableFuture<Long> future = SettableFuture.create();
+        private final List<WaitUtil.WaitChecker> checkers = new ArrayList<>();
+        private final List<ListenableFuture<?>> conditions = new ArrayList<>();
+        private final long start = System.nanoTime();
+        private final long maxWait;
+
+        private long delay = INITIAL_DELAY;
+
+        // Next check and whether the wait is over
+        private ScheduledFuture<?> next;
+        private boolean finished;
+
+        WaitTask(long maxWait, Iterable<WaitUtil.WaitChecker> checkers, Iterable<? extends ListenableFuture<?>> conditions) {
+            this.maxWait = maxWait;
+            for (WaitUtil.WaitChecker checker : checkers) {
+                this.checkers.add(checker);
+            }
+            for (ListenableFuture<?> condition : conditions) {
+                this.conditions.add(condition);
+            }
+        }
+
+        // Check right away instead of waiting for the next scheduled check
+        void checkNow() {
+            if (!finished) {
+                if (next != null) {
+                    next.cancel(false);
+                }
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (finished) {
+                return;
+            }
+            if (future.isCancelled()) {
+                cleanUp();
+                return;
+            }
+            for (ListenableFuture<?> condition : conditions) {
+                if (condition.isDone() && !condition.isCancelled()) {
+                    try {
+                        Uninterruptibles.getUninterruptibly(condition);
+                        cleanUp();
+                        future.set(waited());
+                    } catch (ExecutionException exp) {
+                        cleanUp();
+                        future.setException(exp.getCause());
+                    }
+                    return;
+                }
+            }
+            try {
+                for (WaitUtil.WaitChecker checker : checkers) {
+                    if (checker.check()) {
+                        cleanUp();
+                        future.set(waited());
+                        return;
+                    }
+                }
+            } catch (RuntimeException exp) {
+                cleanUp();
+                future.setException(exp);
+                return;
+            }
+
+            long waited = waited();
+            if (waited >= maxWait) {
+                cleanUp();
+                future.setException(new WaitUtil.WaitTimeoutException("No checker finished successfully", waited));
+                return;
+            }
+            // Last check exactly at the deadline
+            next = timer.schedule(this, Math.min(delay, maxWait - waited), TimeUnit.MILLISECONDS);
+            delay = Math.min(delay * 2, MAX_DELAY);
+        }
+
+        private long waited() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+
+        private void cleanUp() {
+            finished = true;
+            for (ListenableFuture<?> condition : conditions) {
+                condition.cancel(true);
+            }
+            for (WaitUtil.WaitChecker checker : checkers) {
+                try {
+                    checker.cleanUp();
+                } catch (RuntimeException exp) {
+                    // Must not prevent the other checkers from cleaning up
+                }
+            }
+        }
+    }
+}
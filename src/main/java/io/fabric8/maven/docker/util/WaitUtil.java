@@ -2,18 +2,18 @@ package io.fabric8.maven.docker.util;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.RequestBuilder;
@@ -24,6 +24,7 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
 
 
 /**
@@ -33,15 +34,15 @@ import org.apache.http.ssl.SSLContextBuilder;
 public class WaitUtil {
 
     // how long to wait at max when doing a http ping
-    private static final long DEFAULT_MAX_WAIT = 10 * 1000;
-
-    // How long to wait between pings
-    private static final long WAIT_RETRY_WAIT = 500;
+    static final long DEFAULT_MAX_WAIT = 10 * 1000;
 
     // Timeout for pings
     private static final int HTTP_PING_TIMEOUT = 500;
     private static final int TCP_PING_TIMEOUT = 500;
 
+    // Maximum number of HTTP pings running at the same time
+    private static final int HTTP_PING_THREADS = 8;
+
     // Default HTTP Method to use
     public static final String DEFAULT_HTTP_METHOD = "HEAD";
 
@@ -53,19 +54,33 @@ public class WaitUtil {
     public static final int HTTP_CLIENT_RETRIES = 0;
 
 
+    // Runs the calls which are waited on with a timeout, so that the caller can give up on them
+    private static final ExecutorService CALL_EXECUTOR = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("docker-wait-call-%d").setDaemon(true).build());
+
     private WaitUtil() {}
 
+    /**
+     * Call the given callable and wait for it at most the given time. The call is done in a separate
+     * thread, which is interrupted when the time is up.
+     *
+     * @param wait max time to wait in seconds. If not positive, the callable is not called at all.
+     * @param callable the call to wait for
+     * @return time waited in milliseconds
+     * @throws ExecutionException if the call fails
+     * @throws WaitTimeoutException if the call didn't complete in time
+     */
     public static long wait(int wait, Callable<Void> callable) throws ExecutionException, WaitTimeoutException {
         long now = System.currentTimeMillis();
         if (wait > 0) {
+            Future<Void> task = CALL_EXECUTOR.submit(callable);
             try {
-                FutureTask<Void> task = new FutureTask<>(callable);
-                task.run();
-
                 task.get(wait, TimeUnit.SECONDS);
             } catch (@SuppressWarnings("unused") InterruptedException e) {
+                task.cancel(true);
                 Thread.currentThread().interrupt();
             } catch (@SuppressWarnings("unused") TimeoutException e) {
+                task.cancel(true);
                 throw new WaitTimeoutException("timed out waiting for execution to complete", delta(now));
             }
         }
@@ -77,29 +92,24 @@ public class WaitUtil {
     }
 
     public static long wait(int maxWait, Iterable<WaitChecker> checkers) throws WaitTimeoutException {
-        long max = maxWait > 0 ? maxWait : DEFAULT_MAX_WAIT;
         long now = System.currentTimeMillis();
+        ListenableFuture<Long> waiting = WaitEngine.getInstance().wait(maxWait, checkers);
         try {
-            do {
-                for (WaitChecker checker : checkers) {
-                    if (checker.check()) {
-                        return delta(now);
-                    }
-                }
-                sleep(WAIT_RETRY_WAIT);
-            } while (delta(now) < max);
-
-            throw new WaitTimeoutException("No checker finished successfully", delta(now));
-
-        } finally {
-            cleanup(checkers);
-        }
-    }
-
-    // Give checkers a possibility to clean up
-    private static void cleanup(Iterable<WaitChecker> checkers) {
-        for (WaitChecker checker : checkers) {
-            checker.cleanUp();
+            return waiting.get();
+        } catch (InterruptedException e) {
+            waiting.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new WaitTimeoutException("Interrupted while waiting", delta(now));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WaitTimeoutException) {
+                throw (WaitTimeoutException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Error while waiting: " + cause, cause);
         }
     }
 
@@ -124,16 +134,26 @@ public class WaitUtil {
     // ====================================================================================================
 
     /**
-     * Check whether a given URL is available
+     * Check whether a given URL is available. Pings are done in the background with an HTTP client
+     * shared by all checkers, so that {@link #check()} doesn't block.
      *
      */
     public static class HttpPingChecker implements WaitChecker {
 
+        // Shared by all checks, created on demand
+        private static CloseableHttpClient defaultClient;
+        private static CloseableHttpClient allowAllHostsClient;
+
+        private static final ExecutorService PING_EXECUTOR = createPingExecutor();
+
         private int statusMin, statusMax;
         private String url;
         private String method;
         private boolean allowAllHosts;
 
+        // Ping currently running
+        private Future<Boolean> pending;
+
         /**
          * Ping the given URL
          *
@@ -174,14 +194,67 @@ public class WaitUtil {
 
         @Override
         public boolean check() {
+            if (pending == null) {
+                pending = PING_EXECUTOR.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        try {
+                            return ping();
+                        } catch (IOException exception) {
+                            return false;
+                        }
+                    }
+                });
+            }
+            if (!pending.isDone()) {
+                return false;
+            }
             try {
-                return ping();
-            } catch (IOException exception) {
+                return pending.get();
+            } catch (InterruptedException | CancellationException e) {
                 return false;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    // e.g. for an unsupported method
+                    throw (RuntimeException) e.getCause();
+                }
+                return false;
+            } finally {
+                pending = null;
             }
         }
 
         private boolean ping() throws IOException {
+            CloseableHttpResponse response =
+                getClient(allowAllHosts).execute(RequestBuilder.create(method.toUpperCase()).setUri(url).build());
+            try {
+                int responseCode = response.getStatusLine().getStatusCode();
+                if (responseCode == 501) {
+                    throw new IllegalArgumentException("Invalid or not supported HTTP method '" + method.toUpperCase() + "' for checking " + url);
+                }
+                // Read the response so that the connection can be reused
+                EntityUtils.consume(response.getEntity());
+                return (responseCode >= statusMin && responseCode <= statusMax);
+            } finally {
+                response.close();
+            }
+        }
+
+        private static synchronized CloseableHttpClient getClient(boolean allowAllHosts) {
+            if (allowAllHosts) {
+                if (allowAllHostsClient == null) {
+                    allowAllHostsClient = createClient(true);
+                }
+                return allowAllHostsClient;
+            } else {
+                if (defaultClient == null) {
+                    defaultClient = createClient(false);
+                }
+                return defaultClient;
+            }
+        }
+
+        private static CloseableHttpClient createClient(boolean allowAllHosts) {
             RequestConfig requestConfig =
                     RequestConfig.custom()
                             .setSocketTimeout(HTTP_PING_TIMEOUT)
@@ -190,57 +263,56 @@ public class WaitUtil {
                             .setRedirectsEnabled(false)
                             .build();
 
-            CloseableHttpClient httpClient = null;
+            HttpClientBuilder builder = HttpClientBuilder.create()
+                    .setDefaultRequestConfig(requestConfig)
+                    .setRetryHandler(new DefaultHttpRequestRetryHandler(HTTP_CLIENT_RETRIES, false))
+                    .setMaxConnTotal(HTTP_PING_THREADS)
+                    .setMaxConnPerRoute(HTTP_PING_THREADS);
             if (allowAllHosts) {
-                SSLContextBuilder builder = new SSLContextBuilder();
+                SSLContextBuilder sslBuilder = new SSLContextBuilder();
                 try {
-                    builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
-                    SSLConnectionSocketFactory socketFactory = new SSLConnectionSocketFactory(builder.build(), NoopHostnameVerifier.INSTANCE);
-                    httpClient = HttpClientBuilder.create()
-                            .setDefaultRequestConfig(requestConfig)
-                            .setRetryHandler(new DefaultHttpRequestRetryHandler(HTTP_CLIENT_RETRIES, false))
-                            .setSSLSocketFactory(socketFactory)
-                            .build();
+                    sslBuilder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
+                    builder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslBuilder.build(), NoopHostnameVerifier.INSTANCE));
                 } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException e) {
                     throw new RuntimeException("Unable to set self signed strategy on http wait", e);
                 }
-            } else {
-                httpClient = HttpClientBuilder.create()
-                        .setDefaultRequestConfig(requestConfig)
-                        .setRetryHandler(new DefaultHttpRequestRetryHandler(HTTP_CLIENT_RETRIES, false))
-                        .build();
             }
+            return builder.build();
+        }
 
-            try {
-                CloseableHttpResponse response = httpClient.execute(RequestBuilder.create(method.toUpperCase()).setUri(url).build());
-                try {
-                    int responseCode = response.getStatusLine().getStatusCode();
-                    if (responseCode == 501) {
-                        throw new IllegalArgumentException("Invalid or not supported HTTP method '" + method.toUpperCase() + "' for checking " + url);
-                    }
-                    return (responseCode >= statusMin && responseCode <= statusMax);
-                } finally {
-                    response.close();
-                }
-            } finally {
-                httpClient.close();
-            }
+        private static ExecutorService createPingExecutor() {
+            ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(HTTP_PING_THREADS, HTTP_PING_THREADS, 10, TimeUnit.SECONDS,
+                                       new LinkedBlockingQueue<Runnable>(),
+                                       new ThreadFactoryBuilder().setNameFormat("docker-wait-http-%d").setDaemon(true).build());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
         }
 
         @Override
-        public void cleanUp() { }
+        public void cleanUp() {
+            if (pending != null) {
+                pending.cancel(true);
+                pending = null;
+            }
+        }
     }
 
     // ====================================================================================================
 
     /**
-     * Check whether a given TCP port is available
+     * Check whether a given TCP port is available. The ports are connected to in parallel with non-blocking
+     * connects, so that {@link #check()} doesn't block.
      */
     public static class TcpPortChecker implements WaitChecker {
         private final List<Integer> ports;
 
         private final List<InetSocketAddress> pending;
 
+        // Connects in progress with their start time
+        private final Map<InetSocketAddress, SocketChannel> connecting = new HashMap<>();
+        private final Map<InetSocketAddress, Long> connectStarted = new HashMap<>();
+
         public TcpPortChecker(String host, List<Integer> ports) {
             this.ports = ports;
 
@@ -265,27 +337,67 @@ public class WaitUtil {
 
             while (iter.hasNext()) {
                 InetSocketAddress address = iter.next();
-
-                try {
-                    Socket s = new Socket();
-                    s.connect(address, TCP_PING_TIMEOUT);
-                    s.close();
+                if (isConnected(address)) {
                     iter.remove();
-                } catch (IOException e) {
-                    // Ports isn't opened, yet. So don't remove from queue.
+                }
+            }
+            return pending.isEmpty();
+        }
 
+        // Start a connect or check whether a connect started before has finished
+        private boolean isConnected(InetSocketAddress address) {
+            SocketChannel channel = connecting.get(address);
+            try {
+                if (channel == null) {
+                    channel = SocketChannel.open();
+                    connecting.put(address, channel);
+                    connectStarted.put(address, System.nanoTime());
+                    channel.configureBlocking(false);
+                    if (!channel.connect(address)) {
+                        return false;
+                    }
+                } else if (!channel.finishConnect()) {
+                    if (System.nanoTime() - connectStarted.get(address) > TimeUnit.MILLISECONDS.toNanos(TCP_PING_TIMEOUT)) {
+                        // Try again with a new connection
+                        close(address);
+                    }
+                    return false;
                 }
+                close(address);
+                return true;
+            } catch (IOException | UnresolvedAddressException e) {
+                // Ports isn't opened, yet. So don't remove from queue.
+                close(address);
+                return false;
+            }
+        }
 
+        private void close(InetSocketAddress address) {
+            SocketChannel channel = connecting.remove(address);
+            connectStarted.remove(address);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
             }
-            return pending.isEmpty();
         }
 
         @Override
-        public void cleanUp() { }
+        public void cleanUp() {
+            for (InetSocketAddress address : new ArrayList<>(connecting.keySet())) {
+                close(address);
+            }
+        }
     };
 
     // ====================================================================================================
 
+    /**
+     * A check for a condition to wait on. Checks are run repeatedly by the {@link WaitEngine}
+     * on a thread shared with other checks, so a check must not block.
+     */
     public interface WaitChecker {
         boolean check();
 
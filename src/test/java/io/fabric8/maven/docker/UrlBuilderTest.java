@@ -20,6 +20,9 @@ import java.io.UnsupportedEncodingException;
 import java.net.*;
 
 import io.fabric8.maven.docker.access.UrlBuilder;
+import io.fabric8.maven.docker.util.ImageName;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.json.JSONObject;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -38,6 +41,10 @@ public class UrlBuilderTest {
         assertEquals("/1.0/containers/json?filters=" + URLEncoder.encode("{\"ancestor\":[\"nginx\"]}","UTF8"),
                      builder.listContainers("ancestor", "nginx"));
 
+        assertEquals("/1.0/containers/json?all=1", builder.listContainers(true));
+        assertEquals("/1.0/containers/json?filters=" + URLEncoder.encode("{\"name\":[\"a\",\"b\"]}","UTF8"),
+                     builder.listContainers("name", "a", "name", "b"));
+
         try {
             builder.listContainers("ancestor");
             fail();
@@ -45,4 +52,59 @@ public class UrlBuilderTest {
             assertTrue(exp.getMessage().contains("pair"));
         }
     }
+
+    @Test
+    public void containerLogs() {
+        UrlBuilder builder = new UrlBuilder("","1.0");
+
+        String url = builder.containerLogs("abc", false);
+        assertFalse(url.contains("since="));
+        assertFalse(url.contains("tail="));
+
+        url = builder.containerLogs("abc", true, new Timestamp("2016-10-26T10:00:01.999999999Z"), 10);
+        assertTrue(url.startsWith("/1.0/containers/abc/logs?"));
+        assertTrue(url.contains("follow=1"));
+        assertTrue(url.contains("since=1477476001"));
+        assertTrue(url.contains("tail=10"));
+    }
+
+    @Test
+    public void containerEvents() throws Exception {
+        UrlBuilder builder = new UrlBuilder("","1.0");
+        String url = builder.containerEvents("abc", "health_status");
+        assertTrue(url.startsWith("/1.0/events?filters="));
+        JSONObject filters = new JSONObject(URLDecoder.decode(url.substring(url.indexOf('=') + 1), "UTF8"));
+        assertEquals("abc", filters.getJSONArray("container").getString(0));
+        assertEquals("health_status", filters.getJSONArray("event").getString(0));
+        assertFalse(builder.containerEvents("abc").contains("event%22"));
+        assertEquals("/1.0/events", builder.containerEvents(null));
+    }
+
+    @Test
+    public void operations() {
+        UrlBuilder builder = new UrlBuilder("http://localhost:2375/", "v1.18");
+        assertEquals("unknown", builder.getOperation(builder.version()));
+
+        builder.recordOperations();
+        assertEquals("version", builder.getOperation(builder.version()));
+        assertEquals("info", builder.getOperation(builder.info()));
+        assertEquals("inspectContainer", builder.getOperation(builder.inspectContainer("abc")));
+        assertEquals("listContainers", builder.getOperation(builder.listContainers("ancestor", "busybox")));
+        assertEquals("createContainer", builder.getOperation(builder.createContainer("test")));
+        assertEquals("removeContainer", builder.getOperation(builder.removeContainer("abc", true)));
+        assertEquals("startContainer", builder.getOperation(builder.startContainer("abc")));
+        assertEquals("stopContainer", builder.getOperation(builder.stopContainer("abc", 10)));
+        assertEquals("waitForContainer", builder.getOperation(builder.waitForContainer("abc")));
+        assertEquals("containerLogs", builder.getOperation(builder.containerLogs("abc", true)));
+        assertEquals("inspectImage", builder.getOperation(builder.inspectImage("fabric8/s2i:latest")));
+        assertEquals("pullImage", builder.getOperation(builder.pullImage(new ImageName("fabric8/s2i:latest"), null)));
+        assertEquals("pushImage", builder.getOperation(builder.pushImage(new ImageName("fabric8/s2i:latest"), "docker.io")));
+        assertEquals("deleteImage", builder.getOperation(builder.deleteImage("fabric8/s2i", true)));
+        assertEquals("listNetworks", builder.getOperation(builder.listNetworks()));
+        assertEquals("createNetwork", builder.getOperation(builder.createNetwork()));
+        assertEquals("removeNetwork", builder.getOperation(builder.removeNetwork("net")));
+        assertEquals("containerEvents", builder.getOperation(builder.containerEvents("abc")));
+        assertEquals("unknown", builder.getOperation("http://localhost:2375/v1.18/system/df"));
+        assertEquals("unknown", builder.getOperation("http://otherhost/v1.18/containers/json"));
+    }
 }
@@ -0,0 +1,174 @@
+package io.fabric8.maven.docker.access;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.model.Network;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class CachingDockerAccessTest {
+
+    private static final String CONTAINER_ID = "4a6b8e6bd1ca";
+
+    @Mocked
+    private DockerAccess docker;
+
+    @Mocked
+    private Container container;
+
+    @Mocked
+    private Network network;
+
+    private CachingDockerAccess access;
+
+    @Before
+    public void setUp() throws Exception {
+        access = new CachingDockerAccess(docker);
+        new Expectations() {{
+            container.getId(); result = CONTAINER_ID; minTimes = 0;
+            container.getName(); result = "db"; minTimes = 0;
+        }};
+    }
+
+    @Test
+    public void containerForgottenWhenStarted() throws Exception {
+        new Expectations() {{
+            docker.getContainer("db"); result = container;
+        }};
+        assertSame(container, access.getContainer("db"));
+        assertSame(container, access.getContainer("db"));
+        access.startContainer(CONTAINER_ID + "0123456789");
+        assertSame(container, access.getContainer("db"));
+
+        new Verifications() {{
+            docker.getContainer(anyString); times = 2;
+        }};
+        assertEquals(1, access.getHits());
+        assertEquals(2, access.getMisses());
+    }
+
+    @Test
+    public void containerWithFullIdForgottenByShortId(@Injectable final Container fullIdContainer) throws Exception {
+        new Expectations() {{
+            fullIdContainer.getId(); result = CONTAINER_ID + "0123456789"; minTimes = 0;
+            docker.getContainer("web"); result = fullIdContainer; times = 2;
+        }};
+        assertSame(fullIdContainer, access.getContainer("web"));
+        access.stopContainer(CONTAINER_ID, 10);
+        assertSame(fullIdContainer, access.getContainer("web"));
+    }
+
+    @Test
+    public void runningContainerNotCached() throws Exception {
+        new Expectations() {{
+            container.isRunning(); result = true;
+            docker.getContainer("db"); result = container; times = 2;
+        }};
+        assertSame(container, access.getContainer("db"));
+        assertSame(container, access.getContainer("db"));
+        assertEquals(0, access.getHits());
+    }
+
+    @Test
+    public void unknownContainerForgottenWhenCreated() throws Exception {
+        new Expectations() {{
+            docker.getContainer("db"); returns(null, container);
+        }};
+        assertNull(access.getContainer("db"));
+        assertNull(access.getContainer("db"));
+        access.createContainer(null, "db");
+        assertSame(container, access.getContainer("db"));
+    }
+
+    @Test
+    public void containerListForgottenWhenRemoved() throws Exception {
+        new Expectations() {{
+            docker.listContainers(true, "label", "app=test");
+            returns(Collections.singletonList(container), Collections.emptyList());
+        }};
+        assertEquals(1, access.listContainers(true, "label", "app=test").size());
+        assertEquals(1, access.listContainers(true, "label", "app=test").size());
+        access.removeContainer(CONTAINER_ID, false);
+        assertEquals(0, access.listContainers(true, "label", "app=test").size());
+    }
+
+    @Test
+    public void containerForgottenWhenExited() throws Exception {
+        final SettableFuture<Integer> exit = SettableFuture.create();
+        new Expectations() {{
+            docker.getContainer(CONTAINER_ID); result = container;
+            docker.waitForExitAsync(CONTAINER_ID); result = exit;
+        }};
+        access.getContainer(CONTAINER_ID);
+        access.waitForExitAsync(CONTAINER_ID);
+        access.getContainer(CONTAINER_ID);
+        exit.set(0);
+        access.getContainer(CONTAINER_ID);
+
+        new Verifications() {{
+            docker.getContainer(anyString); times = 2;
+        }};
+    }
+
+    @Test
+    public void imageIdSharedWithHasImage() throws Exception {
+        new Expectations() {{
+            docker.getImageId("postgres:9"); returns(null, "1234567890ab");
+        }};
+        assertFalse(access.hasImage("postgres:9"));
+        assertNull(access.getImageId("postgres:9"));
+        access.pullImage("postgres:9", null, null);
+        assertTrue(access.hasImage("postgres:9"));
+        assertEquals("1234567890ab", access.getImageId("postgres:9"));
+
+        new Verifications() {{
+            docker.hasImage(anyString); times = 0;
+            docker.getImageId(anyString); times = 2;
+        }};
+    }
+
+    @Test
+    public void networksForgottenWhenCreated() throws Exception {
+        new Expectations() {{
+            docker.listNetworks(); returns(Collections.emptyList(), Collections.singletonList(network));
+        }};
+        assertTrue(access.listNetworks().isEmpty());
+        assertTrue(access.listNetworks().isEmpty());
+        access.createNetwork(null);
+        assertEquals(1, access.listNetworks().size());
+    }
+
+    @Test
+    public void uncached() {
+        assertSame(docker, CachingDockerAccess.uncached(access));
+        assertSame(docker, CachingDockerAccess.uncached(docker));
+    }
+}
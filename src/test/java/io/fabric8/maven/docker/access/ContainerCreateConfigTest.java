@@ -91,6 +91,36 @@ public class ContainerCreateConfigTest {
         assertTrue(envAsString.contains("EXTERNAL_ENV=TRUE"));
     }
 
+    @Test
+    public void testFingerprint() {
+        Map<String, String> labels = new LinkedHashMap<>();
+        labels.put("a", "1");
+        labels.put("b", "2");
+        ContainerCreateConfig cc = new ContainerCreateConfig("testImage").hostname("host").labels(labels);
+
+        Map<String, String> reversed = new LinkedHashMap<>();
+        reversed.put("b", "2");
+        reversed.put("a", "1");
+        ContainerCreateConfig same = new ContainerCreateConfig("testImage").labels(reversed).hostname("host");
+
+        String fingerprint = cc.getFingerprint("image-id");
+        assertTrue(fingerprint.matches("^[0-9a-f]{64}$"));
+        assertEquals(fingerprint, same.getFingerprint("image-id"));
+        assertNotEquals(fingerprint, same.getFingerprint("other-image-id"));
+        assertNotEquals(fingerprint, new ContainerCreateConfig("testImage").hostname("other").labels(labels).getFingerprint("image-id"));
+    }
+
+    @Test
+    public void testLabel() {
+        ContainerCreateConfig cc = new ContainerCreateConfig("testImage").labels(Collections.singletonMap("a", "1"));
+        cc.label("b", "2");
+        JSONObject labels = new JSONObject(cc.toJson()).getJSONObject("Labels");
+        assertEquals("1", labels.getString("a"));
+        assertEquals("2", labels.getString("b"));
+        assertEquals("2", new JSONObject(new ContainerCreateConfig("testImage").label("b", "2").toJson())
+            .getJSONObject("Labels").getString("b"));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testNoPropFile() {
         ContainerCreateConfig cc= new ContainerCreateConfig("testImage");
@@ -0,0 +1,190 @@
+package io.fabric8.maven.docker.access;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.fabric8.maven.docker.access.chunked.JsonStreamReader;
+import io.fabric8.maven.docker.access.chunked.StreamEvent;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
+import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.util.Logger;
+import mockit.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class DaemonStateMirrorTest {
+
+    private static final String CONTAINER_ID = "4a6b8e6bd1ca";
+
+    @Mocked
+    private DockerAccess docker;
+
+    @Mocked
+    private Container container;
+
+    @Mocked
+    private EventGetHandle handle;
+
+    @Mocked
+    private Logger log;
+
+    private DaemonStateMirror mirror;
+
+    private List<EventCallback> callbacks = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        new Expectations() {{
+            container.getId(); result = CONTAINER_ID; minTimes = 0;
+            container.getName(); result = "db"; minTimes = 0;
+            docker.getContainer("db"); result = container; minTimes = 0;
+            docker.getEventsAsync(anyString, (EventCallback) any, (String[]) any);
+            result = new Delegate<EventGetHandle>() {
+                EventGetHandle follow(String containerId, EventCallback callback, String... events) {
+                    assertNull(containerId);
+                    callbacks.add(callback);
+                    return handle;
+                }
+            };
+            minTimes = 0;
+        }};
+        mirror = new DaemonStateMirror(docker, log, 60000);
+        mirror.startFollowing();
+    }
+
+    @After
+    public void tearDown() {
+        mirror.stopFollowing();
+    }
+
+    @Test
+    public void passedThroughBeforeOpen() throws Exception {
+        mirror.getContainer("db");
+        mirror.getContainer("db");
+        assertFalse(mirror.isSynced());
+        verifyInspects(2);
+    }
+
+    @Test
+    public void snapshotOnOpen() throws Exception {
+        mirror.open();
+        assertTrue(mirror.isSynced());
+        mirror.listContainers(true);
+        mirror.listNetworks();
+        new Verifications() {{
+            docker.listContainers(true); times = 1;
+            docker.listNetworks(); times = 1;
+        }};
+    }
+
+    @Test
+    public void containerForgottenOnEvent() throws Exception {
+        mirror.open();
+        mirror.getContainer("db");
+        mirror.getContainer("db");
+        verifyInspects(1);
+
+        mirror.event(event("{\"Type\":\"container\",\"Action\":\"exec_start: /bin/check\",\"Actor\":{\"ID\":\"" + CONTAINER_ID + "\"}}"));
+        mirror.getContainer("db");
+        verifyInspects(1);
+
+        mirror.event(event("{\"Type\":\"container\",\"Action\":\"die\",\"Actor\":{\"ID\":\"" + CONTAINER_ID + "0123\",\"Attributes\":{\"name\":\"db\"}}}"));
+        mirror.getContainer("db");
+        verifyInspects(2);
+    }
+
+    @Test
+    public void imagesForgottenOnEventOfOldDaemon() throws Exception {
+        mirror.open();
+        mirror.getImageId("postgres:9");
+        mirror.getImageId("postgres:9");
+        mirror.event(event("{\"status\":\"untag\",\"id\":\"sha256:1234\",\"time\":1477500000}"));
+        mirror.getImageId("postgres:9");
+        new Verifications() {{
+            docker.getImageId("postgres:9"); times = 2;
+        }};
+    }
+
+    @Test
+    public void networksForgottenOnEvent() throws Exception {
+        mirror.open();
+        mirror.listNetworks();
+        mirror.getContainer("db");
+        mirror.event(event("{\"Type\":\"network\",\"Action\":\"connect\",\"Actor\":{\"ID\":\"abcd\",\"Attributes\":{\"container\":\"" + CONTAINER_ID + "\"}}}"));
+        mirror.listNetworks();
+        mirror.getContainer("db");
+        new Verifications() {{
+            docker.listNetworks(); times = 2;
+        }};
+        verifyInspects(2);
+    }
+
+    @Test
+    public void stale() throws Exception {
+        mirror.stopFollowing();
+        mirror = new DaemonStateMirror(docker, log, 0);
+        mirror.startFollowing();
+        mirror.open();
+        mirror.getContainer("db");
+        Thread.sleep(10);
+        mirror.getContainer("db");
+        verifyInspects(2);
+    }
+
+    @Test
+    public void resyncAfterError() throws Exception {
+        mirror.open();
+        mirror.error("Event stream closed by the Docker daemon");
+        assertFalse(mirror.isSynced());
+        mirror.getContainer("db");
+        mirror.getContainer("db");
+        verifyInspects(2);
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (callbacks.size() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, callbacks.size());
+        callbacks.get(1).open();
+        assertTrue(mirror.isSynced());
+    }
+
+    private void verifyInspects(final int count) throws DockerAccessException {
+        new Verifications() {{
+            docker.getContainer(anyString); times = count;
+        }};
+    }
+
+    private StreamEvent event(String json) throws IOException {
+        StreamEvent event = new StreamEvent();
+        new JsonStreamReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).next(event);
+        return event;
+    }
+}
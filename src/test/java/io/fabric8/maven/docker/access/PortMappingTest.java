@@ -1,10 +1,13 @@
 package io.fabric8.maven.docker.access;
 
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.util.*;
 
 import io.fabric8.maven.docker.model.Container;
 import org.apache.commons.lang3.text.StrSubstitutor;
 import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.*;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONParser;
@@ -193,6 +196,53 @@ public class PortMappingTest {
         }
     }
 
+    @Test
+    public void testAllocateHostPorts() throws Exception {
+        givenADockerHostAddress("1.2.3.4");
+        givenAPortMapping("jolokia.port:8080", "${other.ip}:other.port:5677/udp", "18181:8181");
+
+        assertTrue(mapping.allocateHostPorts());
+        assertTrue(mapping.hasAllocatedHostPorts());
+        assertFalse(mapping.needsPropertiesUpdate());
+
+        Integer jolokiaPort = mapping.getHostPortVariableMap().get("jolokia.port");
+        Integer otherPort = mapping.getHostPortVariableMap().get("other.port");
+        assertTrue(jolokiaPort > 0);
+        assertTrue(otherPort > 0);
+        thenContainerPortToHostPortMapHasPortSpecAndPort("8080/tcp", jolokiaPort);
+        thenContainerPortToHostPortMapHasPortSpecAndPort("5677/udp", otherPort);
+        thenContainerPortToHostPortMapHasPortSpecAndPort("8181/tcp", 18181);
+        thenHostIpVariableEquals("other.ip", "1.2.3.4");
+        assertEquals(jolokiaPort.toString(), properties.getProperty("jolokia.port"));
+
+        JSONObject bindings = mapping.toDockerPortBindingsJson();
+        assertEquals(jolokiaPort.toString(), bindings.getJSONArray("8080/tcp").getJSONObject(0).getString("HostPort"));
+    }
+
+    @Test
+    public void testAllocateHostPortsAgain() throws Exception {
+        givenAPortMapping("jolokia.port:8080");
+        mapping.allocateHostPorts();
+        Integer port = mapping.getHostPortVariableMap().get("jolokia.port");
+
+        // The first port is still in use, so another one is allocated
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.bind(new InetSocketAddress(port));
+            assertTrue(mapping.allocateHostPorts());
+        }
+        Integer newPort = mapping.getHostPortVariableMap().get("jolokia.port");
+        assertNotEquals(port, newPort);
+        thenContainerPortToHostPortMapHasPortSpecAndPort("8080/tcp", newPort);
+    }
+
+    @Test
+    public void testAllocateHostPortsWithoutVariables() throws Exception {
+        givenAPortMapping("18181:8181", "8080");
+        assertFalse(mapping.allocateHostPorts());
+        assertFalse(mapping.hasAllocatedHostPorts());
+        thenContainerPortToHostPortMapHasOnlyPortSpec("8080/tcp");
+    }
+
     @Test
     public void testToJson() {
         givenAPortMapping("49000:8080/udp", "127.0.0.1:49001:8081");
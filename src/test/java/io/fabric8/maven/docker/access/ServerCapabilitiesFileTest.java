@@ -0,0 +1,102 @@
+package io.fabric8.maven.docker.access;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class ServerCapabilitiesFileTest {
+
+    private static final String URL = "tcp://localhost:2375";
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("d-m-p-daemons").toFile(), "docker/daemons.json");
+    }
+
+    @Test
+    public void storedForLaterRuns() throws Exception {
+        assertNull(new ServerCapabilitiesFile(file).lookup(URL, version("1.12.1")));
+
+        new ServerCapabilitiesFile(file).store(URL, capabilities("daemon1", "1.12.1"));
+        assertTrue(file.exists());
+
+        ServerCapabilities capabilities = new ServerCapabilitiesFile(file).lookup(URL, version("1.12.1"));
+        assertEquals("daemon1", capabilities.getDaemonId());
+        assertEquals("linux", capabilities.getOsType());
+        assertEquals("1.12.1", capabilities.getVersion());
+        assertNull(new ServerCapabilitiesFile(file).lookup("unix:///var/run/docker.sock", version("1.12.1")));
+    }
+
+    @Test
+    public void changedDaemonNotUsed() throws Exception {
+        ServerCapabilitiesFile capabilitiesFile = new ServerCapabilitiesFile(file);
+        capabilitiesFile.store(URL, capabilities("daemon1", "1.12.1"));
+        assertNull(capabilitiesFile.lookup(URL, version("1.13.0")));
+
+        // Replaces the entry of the other daemon at the same URL
+        capabilitiesFile.store(URL, capabilities("daemon2", "1.13.0"));
+        assertEquals("daemon2", capabilitiesFile.lookup(URL, version("1.13.0")).getDaemonId());
+        JSONObject stored = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(1, stored.length());
+    }
+
+    @Test
+    public void withoutDaemonIdNotStored() throws Exception {
+        new ServerCapabilitiesFile(file).store(URL, new ServerCapabilities(version("1.12.1"), null));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void brokenFileIgnored() throws Exception {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "{ broken".getBytes(StandardCharsets.UTF_8));
+        ServerCapabilitiesFile capabilitiesFile = new ServerCapabilitiesFile(file);
+        assertNull(capabilitiesFile.lookup(URL, version("1.12.1")));
+        capabilitiesFile.store(URL, capabilities("daemon1", "1.12.1"));
+        assertNotNull(capabilitiesFile.lookup(URL, version("1.12.1")));
+    }
+
+    private ServerCapabilities capabilities(String daemonId, String version) {
+        JSONObject info = new JSONObject();
+        info.put("ID", daemonId);
+        info.put("OSType", "linux");
+        return new ServerCapabilities(version(version), info);
+    }
+
+    private JSONObject version(String version) {
+        JSONObject ret = new JSONObject();
+        ret.put("Version", version);
+        ret.put("ApiVersion", "1.24");
+        ret.put("GitCommit", "23cf638");
+        return ret;
+    }
+}
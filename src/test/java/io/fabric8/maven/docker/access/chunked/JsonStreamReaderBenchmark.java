@@ -0,0 +1,107 @@
+package io.fabric8.maven.docker.access.chunked;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Simple benchmark comparing the parsing of a pull stream with {@link JsonStreamReader} with the
+ * former {@link JSONTokener} / {@link JSONObject} based parsing. This is not run as part of the tests,
+ * start it with its main method.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class JsonStreamReaderBenchmark {
+
+    private static final int LAYERS = 40;
+    private static final int PROGRESS_EVENTS_PER_LAYER = 500;
+
+    public static void main(String[] args) throws IOException {
+        byte[] stream = createPullStream();
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        System.out.printf("Stream with %d events, %d kB%n",
+                          LAYERS * (PROGRESS_EVENTS_PER_LAYER + 2), stream.length / 1024);
+
+        // Warmup
+        for (int i = 0; i < 5; i++) {
+            parseWithJsonObject(stream);
+            parseWithStreamReader(stream);
+        }
+
+        measure("JSONTokener/JSONObject", stream, rounds, false);
+        measure("JsonStreamReader", stream, rounds, true);
+    }
+
+    private static void measure(String name, byte[] stream, int rounds, boolean streamReader) throws IOException {
+        long allocatedStart = allocatedBytes();
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            checksum += streamReader ? parseWithStreamReader(stream) : parseWithJsonObject(stream);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedStart;
+        System.out.printf("%-25s %8.2f ms/stream %10d kB allocated/stream (checksum %d)%n",
+                          name, nanos / 1e6 / rounds, allocated / 1024 / rounds, checksum);
+    }
+
+    // Former way of parsing, as done up to version 0.18.1
+    private static long parseWithJsonObject(byte[] stream) {
+        long ret = 0;
+        JSONTokener tokener = new JSONTokener(new ByteArrayInputStream(stream));
+        while (true) {
+            char next = tokener.nextClean();
+            if (next == 0) {
+                return ret;
+            }
+            tokener.back();
+            JSONObject object = new JSONObject(tokener);
+            if (object.has("progressDetail")) {
+                ret += object.optString("progress").length();
+            }
+        }
+    }
+
+    private static long parseWithStreamReader(byte[] stream) throws IOException {
+        long ret = 0;
+        JsonStreamReader reader = new JsonStreamReader(new ByteArrayInputStream(stream));
+        StreamEvent event = new StreamEvent();
+        while (reader.next(event)) {
+            if (event.hasProgressDetail()) {
+                ret += event.getProgress() != null ? event.getProgress().length() : 0;
+            }
+        }
+        return ret;
+    }
+
+    private static byte[] createPullStream() {
+        StringBuilder ret = new StringBuilder();
+        for (int layer = 0; layer < LAYERS; layer++) {
+            String id = String.format("%012x", layer * 7919L + 0x56bec22e3559L);
+            ret.append("{\"status\":\"Pulling fs layer\",\"progressDetail\":{},\"id\":\"").append(id).append("\"}\r\n");
+            for (int i = 0; i < PROGRESS_EVENTS_PER_LAYER; i++) {
+                ret.append("{\"status\":\"Downloading\",\"progressDetail\":{\"current\":").append(i * 1024)
+                   .append(",\"total\":").append(PROGRESS_EVENTS_PER_LAYER * 1024)
+                   .append("},\"progress\":\"[=====>                                             ] ")
+                   .append(i).append(" kB/").append(PROGRESS_EVENTS_PER_LAYER).append(" kB\",\"id\":\"")
+                   .append(id).append("\"}\r\n");
+            }
+            ret.append("{\"status\":\"Pull complete\",\"progressDetail\":{},\"id\":\"").append(id).append("\"}\r\n");
+        }
+        return ret.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
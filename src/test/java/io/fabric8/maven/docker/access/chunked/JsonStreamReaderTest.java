@@ -0,0 +1,104 @@
+package io.fabric8.maven.docker.access.chunked;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class JsonStreamReaderTest {
+
+    @Test
+    public void pullStream() throws IOException {
+        String stream =
+            "{\"status\":\"Pulling from library/busybox\",\"id\":\"latest\"}\r\n" +
+            "{\"status\":\"Downloading\",\"progressDetail\":{\"current\":1024,\"total\":667590},\"progress\":\"[>   ] 1.024 kB/667.6 kB\",\"id\":\"56bec22e3559\"}\r\n" +
+            "{\"status\":\"Digest: sha256:29f5d56d12684887bdfa50dcd29fc31eea4aaf4ad3bec43daf19026a7ce69912\"}\n";
+        for (int bufferSize : new int[] { 1, 3, 7, 8192 }) {
+            JsonStreamReader reader = reader(stream, bufferSize);
+            StreamEvent event = new StreamEvent();
+
+            assertTrue(reader.next(event));
+            assertEquals("Pulling from library/busybox", event.getStatus());
+            assertEquals("latest", event.getId());
+            assertFalse(event.hasProgressDetail());
+
+            assertTrue(reader.next(event));
+            assertEquals("Downloading", event.getStatus());
+            assertEquals("56bec22e3559", event.getId());
+            assertEquals("[>   ] 1.024 kB/667.6 kB", event.getProgress());
+            assertTrue(event.hasProgressDetail());
+
+            assertTrue(reader.next(event));
+            assertTrue(event.getStatus().startsWith("Digest: sha256:"));
+            assertNull(event.getId());
+            assertNull(event.getProgress());
+            assertFalse(event.hasProgressDetail());
+
+            assertFalse(reader.next(event));
+        }
+    }
+
+    @Test
+    public void buildStream() throws IOException {
+        JsonStreamReader reader = reader(
+            "{\"stream\":\"Step 1 : FROM busybox\\n\"}" +
+            "{\"aux\":{\"ID\":\"sha256:1234\",\"nested\":[1,{\"a\":\"}]\"}]}, \"stream\" : \"\\u00e4\\\"\\\\\\/\\t\"}" +
+            "{\"errorDetail\":{\"code\":1,\"message\":\"The command returned a non-zero code: 1\"},\"error\":\"The command returned a non-zero code: 1\"}",
+            5);
+        StreamEvent event = new StreamEvent();
+
+        assertTrue(reader.next(event));
+        assertEquals("Step 1 : FROM busybox\n", event.getStream());
+
+        assertTrue(reader.next(event));
+        assertEquals("ä\"\\/\t", event.getStream());
+
+        assertTrue(reader.next(event));
+        assertEquals("The command returned a non-zero code: 1", event.getError());
+        assertEquals("The command returned a non-zero code: 1", event.getErrorDetailMessage());
+        assertNull(event.getStream());
+
+        assertFalse(reader.next(event));
+    }
+
+    @Test
+    public void rawAndUtf8() throws IOException {
+        String json = "{\"status\":\"Grüße ☃ 🐳\",\"id\":12,\"other\":null}";
+        JsonStreamReader reader = reader(json + "\n{}", 4);
+        StreamEvent event = new StreamEvent();
+
+        assertTrue(reader.next(event));
+        assertEquals("Grüße ☃ 🐳", event.getStatus());
+        assertEquals("12", event.getId());
+        assertEquals(json, event.toJson());
+
+        assertTrue(reader.next(event));
+        assertNull(event.getStatus());
+        assertEquals("{}", event.toJson());
+        assertFalse(reader.next(event));
+    }
+
+    @Test
+    public void invalid() {
+        for (String json : new String[] { "[1,2]", "{\"status\" \"a\"}", "{\"status\":\"abc", "{\"id\":1 \"status\":2}" }) {
+            try {
+                JsonStreamReader reader = reader(json, 8192);
+                reader.next(new StreamEvent());
+                fail("Exception expected for " + json);
+            } catch (IOException exp) {
+                assertTrue(exp.getMessage().contains("Invalid JSON"));
+            }
+        }
+    }
+
+    private JsonStreamReader reader(String content, int bufferSize) {
+        return new JsonStreamReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+}
@@ -0,0 +1,115 @@
+package io.fabric8.maven.docker.access.hc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import io.fabric8.maven.docker.access.ArchiveStream;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class ArchiveStreamEntityTest {
+
+    @Test
+    public void writeLargeArchive() throws IOException {
+        final byte[] data = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ArchiveStreamEntity entity = new ArchiveStreamEntity(new ArchiveStream() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                for (int i = 0; i < data.length; i += 1000) {
+                    out.write(data, i, Math.min(1000, data.length - i));
+                }
+            }
+        });
+        assertTrue(entity.isChunked());
+        assertFalse(entity.isRepeatable());
+        assertEquals(-1, entity.getContentLength());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        assertArrayEquals(data, out.toByteArray());
+        assertFalse(entity.isStreaming());
+    }
+
+    @Test
+    public void readContent() throws IOException {
+        ArchiveStreamEntity entity = new ArchiveStreamEntity(new ArchiveStream() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write("FROM busybox".getBytes("UTF-8"));
+            }
+        });
+        InputStream in = entity.getContent();
+        assertEquals("FROM busybox", new String(IOUtil.toByteArray(in), "UTF-8"));
+        in.close();
+        assertFalse(entity.isStreaming());
+    }
+
+    @Test
+    public void producerErrorWhenReading() throws IOException {
+        ArchiveStreamEntity entity = new ArchiveStreamEntity(new ArchiveStream() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                throw new IOException("disk on fire");
+            }
+        });
+        InputStream in = entity.getContent();
+        try {
+            IOUtil.toByteArray(in);
+            fail("Producer error should be propagated");
+        } catch (IOException exp) {
+            assertTrue(exp.getMessage().contains("disk on fire"));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void producerError() {
+        ArchiveStreamEntity entity = new ArchiveStreamEntity(new ArchiveStream() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(new byte[10]);
+                throw new IOException("disk on fire");
+            }
+        });
+        try {
+            entity.writeTo(new ByteArrayOutputStream());
+            fail("Producer error should be propagated");
+        } catch (IOException exp) {
+            assertTrue(exp.getMessage().contains("disk on fire"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void uploadError() throws IOException {
+        ArchiveStreamEntity entity = new ArchiveStreamEntity(new ArchiveStream() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                while (true) {
+                    out.write(new byte[8192]);
+                }
+            }
+        });
+        entity.writeTo(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+    }
+}
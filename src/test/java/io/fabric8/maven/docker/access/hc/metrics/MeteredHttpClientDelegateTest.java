@@ -0,0 +1,131 @@
+package io.fabric8.maven.docker.access.hc.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.fabric8.maven.docker.access.UrlBuilder;
+import io.fabric8.maven.docker.access.hc.http.HttpClientBuilder;
+import io.fabric8.maven.docker.access.hc.http.HttpRequestException;
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class MeteredHttpClientDelegateTest {
+
+    private HttpServer server;
+    private UrlBuilder urlBuilder;
+    private HttpMetrics metrics;
+    private MeteredHttpClientDelegate delegate;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                while (in.read() != -1) {
+                    // drain
+                }
+                boolean notFound = exchange.getRequestURI().getPath().contains("missing");
+                byte[] body = "{\"Id\":\"1234\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(notFound ? 404 : 200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        urlBuilder = new UrlBuilder("http://127.0.0.1:" + server.getAddress().getPort(), "v1.18");
+        metrics = new HttpMetrics();
+        delegate = new MeteredHttpClientDelegate(new HttpClientBuilder(null, 10, metrics), true, urlBuilder, metrics);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        delegate.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void recordRequests() throws IOException {
+        delegate.get(urlBuilder.inspectContainer("abc"), 200);
+        delegate.get(urlBuilder.inspectContainer("def"), 200);
+        delegate.post(urlBuilder.createContainer("test"), "{\"Image\":\"busybox\"}",
+                      new MeteredHttpClientDelegate.BodyResponseHandler(), 200);
+        try {
+            delegate.get(urlBuilder.inspectImage("missing"), 200);
+            fail();
+        } catch (HttpRequestException exp) {
+            // expected
+        }
+
+        OperationMetrics inspect = metrics.getOperations().get("inspectContainer");
+        assertEquals(2, inspect.getCount());
+        assertEquals(0, inspect.getErrors());
+        assertEquals(26, inspect.getResponseBytes());
+        assertEquals(0, inspect.getRequestBytes());
+
+        OperationMetrics create = metrics.getOperations().get("createContainer");
+        assertEquals(1, create.getCount());
+        assertEquals(19, create.getRequestBytes());
+
+        OperationMetrics inspectImage = metrics.getOperations().get("inspectImage");
+        assertEquals(1, inspectImage.getErrors());
+
+        assertEquals(4, metrics.getLeaseCount());
+        assertEquals(10, metrics.getMaxConnections());
+        assertTrue(metrics.getPeakLeasedConnections() >= 1);
+
+        long[] histogram = inspect.getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        assertEquals(2, total);
+    }
+
+    @Test
+    public void storeAndMBean() throws Exception {
+        delegate.get(urlBuilder.version(), 200);
+
+        metrics.registerMBean("test:start");
+        ObjectName name = new ObjectName(HttpMetrics.MBEAN_NAME_PREFIX + ",name=" + ObjectName.quote("test:start"));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "LeaseCount"));
+        assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Operations"));
+        metrics.unregisterMBean();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        File dir = Files.createTempDirectory("metrics").toFile();
+        try {
+            File file = new File(dir, "docker/metrics.json");
+            metrics.store(file, "build");
+            metrics.store(file, "start");
+            JSONObject content = new JSONObject(FileUtils.fileRead(file));
+            assertEquals(1, content.getJSONObject("start").getJSONObject("operations").getJSONObject("version").getInt("count"));
+            assertTrue(content.has("build"));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package io.fabric8.maven.docker.access.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.fabric8.maven.docker.access.DockerAccessException;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFollowEngineTest {
+
+    private ServerSocket server;
+    private LogFollowEngine engine;
+
+    // Sockets accepted by the server, the test writes responses to them
+    private BlockingQueue<Socket> accepted = new LinkedBlockingQueue<>();
+
+    // Request headers received by the server
+    private BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        requests.add(readRequest(socket.getInputStream()));
+                        accepted.add(socket);
+                    }
+                } catch (IOException exp) {
+                    // server closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        engine = new LogFollowEngine(new LogChannelFactory() {
+            @Override
+            public Selector openSelector() throws IOException {
+                return Selector.open();
+            }
+
+            @Override
+            public SelectableChannel connect() throws IOException {
+                return SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+            }
+        }, 2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void multipleContainers() throws Exception {
+        int nrContainers = 10;
+        List<RecordingCallback> callbacks = new ArrayList<>();
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < nrContainers; i++) {
+            RecordingCallback callback = new RecordingCallback(3);
+            callbacks.add(callback);
+            engine.follow("http://127.0.0.1:" + server.getLocalPort() + "/v1.18/containers/c" + i + "/logs?follow=1", callback);
+            sockets.add(accepted.poll(10, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < nrContainers; i++) {
+            OutputStream out = sockets.get(i).getOutputStream();
+            out.write(chunkedHeader());
+            // Frames spread over several chunks, partially split within the header
+            byte[] frames = concat(frame(1, "2016-10-26T10:00:00.000000001Z first " + i),
+                                   frame(2, "2016-10-26T10:00:00.000000002Z second " + i),
+                                   frame(1, "[2016-10-26T10:00:00Z] third " + i));
+            int[] splits = { 3, 20, frames.length };
+            int pos = 0;
+            for (int split : splits) {
+                out.write(chunk(frames, pos, split - pos));
+                out.flush();
+                pos = split;
+            }
+        }
+        for (int i = 0; i < nrContainers; i++) {
+            RecordingCallback callback = callbacks.get(i);
+            assertTrue(callback.latch.await(10, TimeUnit.SECONDS));
+            assertEquals("1 first " + i, callback.lines.get(0));
+            assertEquals("2 second " + i, callback.lines.get(1));
+            assertEquals("1 third " + i, callback.lines.get(2));
+            assertEquals(0, callback.errors.size());
+        }
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void finish() throws Exception {
+        RecordingCallback callback = new RecordingCallback(1);
+        LogGetHandle handle = engine.follow("http://127.0.0.1:" + server.getLocalPort() + "/v1.18/containers/c/logs", callback);
+        Socket socket = accepted.poll(10, TimeUnit.SECONDS);
+        OutputStream out = socket.getOutputStream();
+        out.write(chunkedHeader());
+        byte[] data = frame(1, "2016-10-26T10:00:00Z hello");
+        out.write(chunk(data, 0, data.length));
+        out.flush();
+        assertTrue(callback.latch.await(10, TimeUnit.SECONDS));
+
+        handle.finish();
+        // Connection must be closed by the engine
+        socket.setSoTimeout(10000);
+        assertEquals(-1, socket.getInputStream().read());
+        assertFalse(handle.isError());
+        socket.close();
+    }
+
+    @Test
+    public void errorStatus() throws Exception {
+        RecordingCallback callback = new RecordingCallback(0);
+        LogGetHandle handle = engine.follow("http://127.0.0.1:" + server.getLocalPort() + "/v1.18/containers/c/logs", callback);
+        Socket socket = accepted.poll(10, TimeUnit.SECONDS);
+        OutputStream out = socket.getOutputStream();
+        out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(Charsets.US_ASCII));
+        out.flush();
+        assertTrue(callback.errorLatch.await(10, TimeUnit.SECONDS));
+        assertTrue(handle.isError());
+        assertNotNull(handle.getException());
+        assertTrue(callback.errors.get(0).contains("404"));
+        socket.close();
+    }
+
+    @Test
+    public void connectionError() throws Exception {
+        RecordingCallback callback = new RecordingCallback(0);
+        LogFollowEngine failing = new LogFollowEngine(new LogChannelFactory() {
+            @Override
+            public Selector openSelector() throws IOException {
+                return Selector.open();
+            }
+
+            @Override
+            public SelectableChannel connect() throws IOException {
+                throw new IOException("connection refused");
+            }
+        }, 1);
+        failing.follow("http://127.0.0.1:1/v1.18/containers/c/logs", callback);
+        assertEquals(1, callback.errors.size());
+        assertTrue(callback.errors.get(0).contains("connection refused"));
+    }
+
+    @Test
+    public void requestBody() throws Exception {
+        List<ListenableFuture<String>> results = new ArrayList<>();
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(engine.request("POST", "http://127.0.0.1:" + server.getLocalPort() + "/v1.24/containers/c" + i + "/wait",
+                                       "waiting for container"));
+            sockets.add(accepted.poll(10, TimeUnit.SECONDS));
+            String request = requests.poll(10, TimeUnit.SECONDS);
+            assertTrue(request.startsWith("POST /v1.24/containers/c" + i + "/wait HTTP/1.1\r\n"));
+            assertTrue(request.contains("Content-Length: 0\r\n"));
+        }
+        assertFalse(results.get(0).isDone());
+
+        // Chunked as well as ended by closing the connection
+        byte[] body = "{\"StatusCode\":0}".getBytes(Charsets.UTF_8);
+        OutputStream out = sockets.get(0).getOutputStream();
+        out.write(concat("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n".getBytes(Charsets.US_ASCII),
+                         chunk(body, 0, 5), chunk(body, 5, body.length - 5), "0\r\n\r\n".getBytes(Charsets.US_ASCII)));
+        out.flush();
+        out = sockets.get(1).getOutputStream();
+        out.write(concat("HTTP/1.0 200 OK\r\n\r\n".getBytes(Charsets.US_ASCII), "{\"StatusCode\":1}".getBytes(Charsets.UTF_8)));
+        sockets.get(1).close();
+
+        assertEquals("{\"StatusCode\":0}", results.get(0).get(10, TimeUnit.SECONDS));
+        assertEquals("{\"StatusCode\":1}", results.get(1).get(10, TimeUnit.SECONDS));
+        sockets.get(0).close();
+    }
+
+    @Test
+    public void requestErrorStatus() throws Exception {
+        ListenableFuture<String> result =
+            engine.request("POST", "http://127.0.0.1:" + server.getLocalPort() + "/v1.24/containers/c/wait", "waiting for container");
+        Socket socket = accepted.poll(10, TimeUnit.SECONDS);
+        OutputStream out = socket.getOutputStream();
+        out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(Charsets.US_ASCII));
+        out.flush();
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exp) {
+            assertTrue(exp.getCause() instanceof DockerAccessException);
+            assertTrue(exp.getCause().getMessage().contains("waiting for container"));
+            assertTrue(exp.getCause().getMessage().contains("404"));
+        }
+        socket.close();
+    }
+
+    @Test
+    public void requestCancelled() throws Exception {
+        ListenableFuture<String> result =
+            engine.request("POST", "http://127.0.0.1:" + server.getLocalPort() + "/v1.24/containers/c/wait", "waiting for container");
+        Socket socket = accepted.poll(10, TimeUnit.SECONDS);
+        result.cancel(true);
+        // Connection must be closed by the engine
+        socket.setSoTimeout(10000);
+        assertEquals(-1, socket.getInputStream().read());
+        socket.close();
+    }
+
+    @Test
+    public void decodeByteByByte() throws Exception {
+        RecordingCallback callback = new RecordingCallback(2);
+        LogResponseDecoder decoder = new LogResponseDecoder(new LogFrameDecoder(callback));
+        byte[] frames = concat(frame(1, "2016-10-26T10:00:00Z one"), frame(2, "2016-10-26T10:00:01Z two"));
+        byte[] response = concat(chunkedHeader(), chunk(frames, 0, 5), chunk(frames, 5, frames.length - 5),
+                                 "0\r\n\r\n".getBytes(Charsets.US_ASCII));
+        boolean done = false;
+        for (byte b : response) {
+            assertFalse(done);
+            done = decoder.decode(ByteBuffer.wrap(new byte[] { b }));
+        }
+        assertTrue(done);
+        decoder.end();
+        assertEquals("1 one", callback.lines.get(0));
+        assertEquals("2 two", callback.lines.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFrame() throws Exception {
+        LogResponseDecoder decoder = new LogResponseDecoder(new LogFrameDecoder(new RecordingCallback(0)));
+        byte[] data = frame(1, "2016-10-26T10:00:00Z one");
+        decoder.decode(ByteBuffer.wrap("HTTP/1.0 200 OK\r\n\r\n".getBytes(Charsets.US_ASCII)));
+        decoder.decode(ByteBuffer.wrap(data, 0, data.length - 2));
+        decoder.end();
+    }
+
+    // =================================================================================
+
+    private static String readRequest(InputStream in) throws IOException {
+        // Read until the empty line terminating the request header
+        StringBuilder ret = new StringBuilder();
+        int matched = 0;
+        byte[] end = "\r\n\r\n".getBytes(Charsets.US_ASCII);
+        while (matched < end.length) {
+            int c = in.read();
+            if (c == -1) {
+                throw new IOException("Incomplete request");
+            }
+            ret.append((char) c);
+            matched = c == end[matched] ? matched + 1 : (c == end[0] ? 1 : 0);
+        }
+        return ret.toString();
+    }
+
+    private static byte[] chunkedHeader() {
+        return ("HTTP/1.1 200 OK\r\n" +
+                "Content-Type: application/vnd.docker.raw-stream\r\n" +
+                "Transfer-Encoding: chunked\r\n\r\n").getBytes(Charsets.US_ASCII);
+    }
+
+    private static byte[] chunk(byte[] data, int offset, int len) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write((Integer.toHexString(len) + "\r\n").getBytes(Charsets.US_ASCII));
+        out.write(data, offset, len);
+        out.write("\r\n".getBytes(Charsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static byte[] frame(int type, String message) {
+        byte[] payload = message.getBytes(Charsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.put((byte) type);
+        buffer.position(4);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static class RecordingCallback implements LogCallback {
+
+        private final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch latch;
+        private final CountDownLatch errorLatch = new CountDownLatch(1);
+
+        RecordingCallback(int expectedLines) {
+            latch = new CountDownLatch(expectedLines);
+        }
+
+        @Override
+        public void log(int type, Timestamp timestamp, String txt) {
+            lines.add(type + " " + txt);
+            latch.countDown();
+        }
+
+        @Override
+        public void error(String error) {
+            errors.add(error);
+            errorLatch.countDown();
+        }
+    }
+}
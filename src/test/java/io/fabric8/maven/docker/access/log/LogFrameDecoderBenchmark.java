@@ -0,0 +1,177 @@
+package io.fabric8.maven.docker.access.log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.regex.Matcher;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import io.fabric8.maven.docker.log.LogOutputSpec;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.fusesource.jansi.Ansi;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import static org.fusesource.jansi.Ansi.Color.BLACK;
+import static org.fusesource.jansi.Ansi.Color.CYAN;
+import static org.fusesource.jansi.Ansi.ansi;
+
+/**
+ * Simple benchmark comparing decoding and formatting of container log lines with {@link LogFrameDecoder}
+ * and the former frame-by-frame parsing (new buffers and decoder per frame, regexp split, eager timestamp
+ * parsing, prompt created for each line). This is not run as part of the tests, start it with its main method.
+ *
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFrameDecoderBenchmark {
+
+    private static final int LINES = 200000;
+
+    public static void main(String[] args) throws Exception {
+        Ansi.setEnabled(true);
+        byte[] stream = createLogStream();
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        System.out.printf("Stream with %d lines, %d kB%n", LINES, stream.length / 1024);
+
+        for (String date : new String[] { "NONE", "DEFAULT" }) {
+            LogOutputSpec spec = new LogOutputSpec.Builder()
+                .prefix("app-server")
+                .color("CYAN")
+                .timeFormatter(date)
+                .useColor(true)
+                .logStdout(true)
+                .build();
+            DateTimeFormatter formatter = date.equals("NONE") ? null : DateTimeFormat.forPattern("HH:mm:ss.SSS");
+
+            // Warmup
+            for (int i = 0; i < 3; i++) {
+                formerDecoding(stream, formatter);
+                frameDecoder(stream, spec);
+            }
+            System.out.printf("Date format %s:%n", date);
+            measure("  former decoding", stream, rounds, formatter, null);
+            measure("  LogFrameDecoder", stream, rounds, null, spec);
+        }
+    }
+
+    private static void measure(String name, byte[] stream, int rounds,
+                                DateTimeFormatter formatter, LogOutputSpec spec) throws Exception {
+        long allocatedStart = allocatedBytes();
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            checksum += spec == null ? formerDecoding(stream, formatter) : frameDecoder(stream, spec);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedStart;
+        System.out.printf("%-20s %10.0f lines/s %8d bytes allocated/line (checksum %d)%n",
+                          name, LINES * rounds / (nanos / 1e9), allocated / ((long) LINES * rounds), checksum);
+    }
+
+    private static long frameDecoder(byte[] stream, final LogOutputSpec spec) throws Exception {
+        final CountingOutputStream out = new CountingOutputStream();
+        final PrintStream ps = new PrintStream(out);
+        LogFrameDecoder decoder = new LogFrameDecoder(new LogCallback() {
+            @Override
+            public void log(int type, Timestamp timestamp, String txt) {
+                // Same as DefaultLogCallback
+                ps.println(spec.getPrompt(spec.isUseColor(), timestamp) + txt);
+            }
+
+            @Override
+            public void error(String error) {
+                throw new IllegalStateException(error);
+            }
+        });
+        // Read in pieces as they would arrive from the network
+        ByteBuffer buffer = ByteBuffer.wrap(stream);
+        int pos = 0;
+        while (pos < stream.length) {
+            int len = Math.min(8192, stream.length - pos);
+            buffer.limit(pos + len).position(pos);
+            decoder.decode(buffer);
+            pos += len;
+        }
+        decoder.end();
+        ps.flush();
+        return out.count;
+    }
+
+    // Former way of decoding and formatting, as done up to version 0.18.1
+    private static long formerDecoding(byte[] stream, DateTimeFormatter formatter) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        PrintStream ps = new PrintStream(out);
+        InputStream is = new ByteArrayInputStream(stream);
+        while (true) {
+            ByteBuffer headerBuffer = ByteBuffer.allocate(8);
+            headerBuffer.order(ByteOrder.BIG_ENDIAN);
+            if (ByteStreams.read(is, headerBuffer.array(), 0, 8) == 0) {
+                break;
+            }
+            int type = headerBuffer.get();
+            int size = headerBuffer.getInt(4);
+            ByteBuffer payload = ByteBuffer.allocate(size);
+            ByteStreams.readFully(is, payload.array());
+            String message = Charsets.UTF_8.newDecoder().decode(payload).toString();
+            Matcher matcher = LogRequestor.LOG_LINE.matcher(message);
+            if (!matcher.matches()) {
+                throw new IllegalStateException(message);
+            }
+            Timestamp ts = new Timestamp(matcher.group("timestamp"));
+            String txt = matcher.group("entry");
+            String date = "";
+            if (formatter != null) {
+                date = ansi().fgBright(BLACK).a(formatter.print(ts.getDate())).reset().toString() + " ";
+            }
+            ps.println(date + ansi().fg(CYAN).a("app-server").reset().toString() + "> " + txt);
+        }
+        ps.flush();
+        return out.count;
+    }
+
+    private static byte[] createLogStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < LINES; i++) {
+            String line = String.format("2016-10-26T10:%02d:%02d.%09dZ INFO  [main] o.e.j.s.Server - Request %d handled in %d ms",
+                                        (i / 3600) % 60, (i / 60) % 60, i * 1000L % 1000000000L, i, i % 97);
+            byte[] payload = line.getBytes(Charsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.put((byte) (i % 7 == 0 ? 2 : 1));
+            header.putInt(4, payload.length);
+            out.write(header.array());
+            out.write(payload);
+        }
+        return out.toByteArray();
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
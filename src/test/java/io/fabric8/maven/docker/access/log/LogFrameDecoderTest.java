@@ -0,0 +1,130 @@
+package io.fabric8.maven.docker.access.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import com.google.common.base.Charsets;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFrameDecoderTest {
+
+    @Test
+    public void sameAsLogLinePattern() throws Exception {
+        String[] lines = {
+            "2016-10-26T10:00:00.123456789Z hello world",
+            "[2016-10-26T10:00:00Z] bracketed",
+            "2016-10-26T10:00:00Z    leading and trailing whitespace \t\r\n",
+            "2016-10-26T10:00:00Z multi\nline\n",
+            "2016-10-26T10:00:00Z ünicode ✓",
+            "2016-10-26T10:00:00Z ",
+            "[2016-10-26T10:00:00Z]\tx",
+            "[] empty timestamp",
+        };
+        for (String line : lines) {
+            Matcher matcher = LogRequestor.LOG_LINE.matcher(line);
+            assertTrue(line, matcher.matches());
+            Recorder recorder = new Recorder();
+            new LogFrameDecoder(recorder).decode(ByteBuffer.wrap(frame(1, line)));
+            assertEquals(line, 1, recorder.entries.size());
+            assertEquals(line, matcher.group("entry"), recorder.entries.get(0));
+            String timestamp = matcher.group("timestamp");
+            if (timestamp.length() > 0) {
+                assertEquals(line, new Timestamp(timestamp), recorder.timestamps.get(0));
+            }
+        }
+    }
+
+    @Test
+    public void invalidFormat() throws Exception {
+        for (String line : new String[] { "nowhitespace", "[2016-10-26T10:00:00Z]x", "a" }) {
+            assertFalse(LogRequestor.LOG_LINE.matcher(line).matches());
+            Recorder recorder = new Recorder();
+            try {
+                new LogFrameDecoder(recorder).decode(ByteBuffer.wrap(frame(2, line)));
+                throw new AssertionError("DoneException expected for " + line);
+            } catch (LogCallback.DoneException exp) {
+                assertEquals(1, recorder.errors.size());
+                assertEquals(0, recorder.entries.size());
+            }
+        }
+    }
+
+    @Test
+    public void largeFrameBetweenSmallOnes() throws Exception {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+        Recorder recorder = new Recorder();
+        LogFrameDecoder decoder = new LogFrameDecoder(recorder);
+        decoder.decode(ByteBuffer.wrap(frame(1, "2016-10-26T10:00:00Z small")));
+        decoder.decode(ByteBuffer.wrap(frame(1, "2016-10-26T10:00:00Z " + big)));
+        decoder.decode(ByteBuffer.wrap(frame(2, "2016-10-26T10:00:00Z small again")));
+        decoder.end();
+        assertEquals("small", recorder.entries.get(0));
+        assertEquals(big.toString(), recorder.entries.get(1));
+        assertEquals("small again", recorder.entries.get(2));
+    }
+
+    @Test(expected = IOException.class)
+    public void incompleteHeader() throws Exception {
+        LogFrameDecoder decoder = new LogFrameDecoder(new Recorder());
+        decoder.decode(ByteBuffer.wrap(new byte[] { 1, 0, 0 }));
+        decoder.end();
+    }
+
+    private static byte[] frame(int type, String message) {
+        byte[] payload = message.getBytes(Charsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.put((byte) type);
+        buffer.position(4);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    private static class Recorder implements LogCallback {
+        private final List<String> entries = new ArrayList<>();
+        private final List<Timestamp> timestamps = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        @Override
+        public void log(int type, Timestamp timestamp, String txt) {
+            entries.add(txt);
+            timestamps.add(timestamp);
+        }
+
+        @Override
+        public void error(String error) {
+            errors.add(error);
+        }
+    }
+}
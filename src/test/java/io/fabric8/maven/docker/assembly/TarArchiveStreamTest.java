@@ -0,0 +1,133 @@
+package io.fabric8.maven.docker.assembly;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import io.fabric8.maven.docker.config.BuildTarArchiveCompression;
+import org.codehaus.plexus.archiver.commonscompress.archivers.tar.TarArchiveEntry;
+import org.codehaus.plexus.archiver.commonscompress.archivers.tar.TarArchiveInputStream;
+import org.codehaus.plexus.archiver.tar.TarArchiver;
+import org.codehaus.plexus.archiver.tar.TarLongFileMode;
+import org.codehaus.plexus.archiver.util.DefaultFileSet;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class TarArchiveStreamTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("tar-stream").toFile();
+        FileUtils.fileWrite(new File(dir, "Dockerfile"), "UTF-8", "FROM busybox\n");
+        File sub = new File(dir, "maven/a/very/long/directory/name/which/exceeds/the/classic/tar/limit/of/hundred/chars");
+        assertTrue(sub.mkdirs());
+        FileUtils.fileWrite(new File(sub, "data.txt"), "UTF-8", "hello");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void uncompressed() throws IOException {
+        Map<String, String> content = readTar(new ByteArrayInputStream(stream(BuildTarArchiveCompression.none)));
+        checkContent(content);
+    }
+
+    @Test
+    public void gzip() throws IOException {
+        Map<String, String> content =
+            readTar(new GZIPInputStream(new ByteArrayInputStream(stream(BuildTarArchiveCompression.gzip))));
+        checkContent(content);
+    }
+
+    @Test
+    public void sameEntriesAsArchiver() throws IOException {
+        File script = new File(dir, "maven/run.sh");
+        FileUtils.fileWrite(script, "UTF-8", "#!/bin/sh\n");
+        assertTrue(script.setExecutable(true));
+        Files.createSymbolicLink(new File(dir, "maven/link").toPath(), script.toPath());
+
+        File archive = new File(dir.getParentFile(), dir.getName() + ".tar");
+        try {
+            TarArchiver archiver = createArchiver();
+            archiver.enableLogging(new ConsoleLogger(ConsoleLogger.LEVEL_DISABLED, "tar"));
+            archiver.setDestFile(archive);
+            archiver.createArchive();
+
+            assertEquals(describeTar(new FileInputStream(archive)),
+                         describeTar(new ByteArrayInputStream(stream(BuildTarArchiveCompression.none))));
+        } finally {
+            archive.delete();
+        }
+    }
+
+    private void checkContent(Map<String, String> content) {
+        assertEquals("FROM busybox\n", content.get("Dockerfile"));
+        assertEquals("hello", content.get("maven/a/very/long/directory/name/which/exceeds/the/classic/tar/limit/of/hundred/chars/data.txt"));
+        assertTrue(content.containsKey("maven/a/"));
+    }
+
+    private byte[] stream(BuildTarArchiveCompression compression) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TarArchiveStream(createArchiver(), compression).writeTo(out);
+        return out.toByteArray();
+    }
+
+    private TarArchiver createArchiver() {
+        TarArchiver archiver = new TarArchiver();
+        archiver.setLongfile(TarLongFileMode.posix);
+        archiver.addFileSet(DefaultFileSet.fileSet(dir));
+        return archiver;
+    }
+
+    // Header fields and content of all entries, in archive order
+    private List<String> describeTar(InputStream in) throws IOException {
+        List<String> ret = new ArrayList<>();
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(in);
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextTarEntry()) != null) {
+            ret.add(String.format("%s mode=%o size=%d link=%s user=%s/%d group=%s/%d content=%s",
+                                  entry.getName(), entry.getMode(), entry.getSize(), entry.getLinkName(),
+                                  entry.getUserName(), entry.getUserId(), entry.getGroupName(), entry.getGroupId(),
+                                  new String(IOUtil.toByteArray(tarIn), StandardCharsets.UTF_8)));
+        }
+        tarIn.close();
+        return ret;
+    }
+
+    private Map<String, String> readTar(InputStream in) throws IOException {
+        Map<String, String> ret = new HashMap<>();
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(in);
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextTarEntry()) != null) {
+            ret.put(entry.getName(), entry.isDirectory() ? null : new String(IOUtil.toByteArray(tarIn), StandardCharsets.UTF_8));
+        }
+        tarIn.close();
+        return ret;
+    }
+}
@@ -327,6 +327,8 @@ public class PropertyConfigHandlerTest extends AbstractConfigHandlerTest {
         WaitConfiguration wait = runConfig.getWaitConfiguration();
         assertEquals("http://foo.com", wait.getUrl());
         assertEquals("pattern", wait.getLog());
+        assertTrue(wait.isHealthy());
+        assertEquals(0, (int) wait.getExit());
         assertEquals("post_start_command", wait.getExec().getPostStart());
         assertEquals("pre_stop_command", wait.getExec().getPreStop());
         assertEquals(5, wait.getTime());
@@ -410,6 +412,8 @@ public class PropertyConfigHandlerTest extends AbstractConfigHandlerTest {
             k(ConfigKey.PRE_STOP), "pre_stop_command",
             k(ConfigKey.POST_START), "post_start_command",
             k(ConfigKey.WAIT_LOG), "pattern",
+            k(ConfigKey.WAIT_HEALTHY), "true",
+            k(ConfigKey.WAIT_EXIT), "0",
             k(ConfigKey.WAIT_TIME), "5",
             k(ConfigKey.WAIT_URL), "http://foo.com",
             k(ConfigKey.LOG_PREFIX), "SRV",
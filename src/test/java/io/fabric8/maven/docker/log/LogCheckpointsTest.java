@@ -0,0 +1,122 @@
+package io.fabric8.maven.docker.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.fabric8.maven.docker.access.log.LogCallback;
+import io.fabric8.maven.docker.util.Timestamp;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogCheckpointsTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("d-m-p-log").toFile(), "docker/log-checkpoints.properties");
+    }
+
+    @Test
+    public void onlyNewEntries() throws Exception {
+        LogCheckpoints checkpoints = LogCheckpoints.load(file);
+        assertNull(checkpoints.get("c1"));
+
+        Recorder recorder = new Recorder();
+        LogCallback callback = checkpoints.track("c1", recorder);
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.100000000Z"), "one");
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.200000001Z"), "two");
+        callback.log(1, Timestamp.lazy("invalid"), "no timestamp");
+        checkpoints.save();
+        assertTrue(file.exists());
+
+        checkpoints = LogCheckpoints.load(file);
+        assertEquals(new Timestamp("2016-10-26T10:00:00.200000001Z"), checkpoints.get("c1"));
+
+        // Daemon sends the entries of the whole second again
+        recorder = new Recorder();
+        callback = checkpoints.track("c1", recorder);
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.100000000Z"), "one");
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.200000001Z"), "two");
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.200000002Z"), "three");
+        assertEquals(1, recorder.entries.size());
+        assertEquals("three", recorder.entries.get(0));
+
+        // Other containers are not affected
+        recorder = new Recorder();
+        checkpoints.track("c2", recorder).log(1, Timestamp.lazy("2016-10-26T09:00:00Z"), "other");
+        assertEquals(1, recorder.entries.size());
+
+        checkpoints.save();
+        checkpoints = LogCheckpoints.load(file);
+        assertEquals(new Timestamp("2016-10-26T10:00:00.200000002Z"), checkpoints.get("c1"));
+        assertEquals(new Timestamp("2016-10-26T09:00:00Z"), checkpoints.get("c2"));
+    }
+
+    @Test
+    public void fractionsOfDifferentLength() throws Exception {
+        LogCheckpoints checkpoints = LogCheckpoints.load(file);
+        checkpoints.update("c1", new Timestamp("2016-10-26T10:00:00.7617648Z"));
+
+        Recorder recorder = new Recorder();
+        LogCallback callback = checkpoints.track("c1", recorder);
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.7617Z"), "old");
+        callback.log(1, Timestamp.lazy("2016-10-26T10:00:00.761765Z"), "new");
+        assertEquals(1, recorder.entries.size());
+        assertEquals("new", recorder.entries.get(0));
+    }
+
+    @Test
+    public void onlyMovedForward() throws Exception {
+        LogCheckpoints checkpoints = LogCheckpoints.load(file);
+        checkpoints.update("c1", new Timestamp("2016-10-26T10:00:00Z"));
+        checkpoints.update("c1", new Timestamp("2016-10-26T09:00:00Z"));
+        assertEquals(new Timestamp("2016-10-26T10:00:00Z"), checkpoints.get("c1"));
+    }
+
+    @Test
+    public void invalidEntriesIgnored() throws Exception {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "c1=garbage\nc2=2016-10-26T10:00:00Z\n".getBytes("UTF-8"));
+        LogCheckpoints checkpoints = LogCheckpoints.load(file);
+        assertNull(checkpoints.get("c1"));
+        assertNotNull(checkpoints.get("c2"));
+    }
+
+    private static class Recorder implements LogCallback {
+        private final List<String> entries = new ArrayList<>();
+
+        @Override
+        public void log(int type, Timestamp timestamp, String txt) {
+            entries.add(txt);
+        }
+
+        @Override
+        public void error(String error) {
+        }
+    }
+}
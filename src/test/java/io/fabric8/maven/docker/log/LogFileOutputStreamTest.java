@@ -0,0 +1,159 @@
+package io.fabric8.maven.docker.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogFileOutputStreamTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("d-m-p-log").toFile();
+        file = new File(dir, "container.log");
+    }
+
+    @Test
+    public void simple() throws Exception {
+        Files.write(file.toPath(), "old content\n".getBytes(Charsets.UTF_8));
+        PrintStream out = new PrintStream(new LogFileOutputStream(file), false);
+        for (int i = 0; i < 10000; i++) {
+            out.println("line " + i);
+        }
+        out.close();
+        assertFalse(out.checkError());
+        List<String> lines = Files.readAllLines(file.toPath(), Charsets.UTF_8);
+        assertEquals(10000, lines.size());
+        assertEquals("line 0", lines.get(0));
+        assertEquals("line 9999", lines.get(9999));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void flushWritesToFile() throws Exception {
+        LogFileOutputStream out = new LogFileOutputStream(file);
+        out.write("hello\n".getBytes(Charsets.UTF_8));
+        out.flush();
+        assertEquals("hello\n", new String(Files.readAllBytes(file.toPath()), Charsets.UTF_8));
+        out.close();
+    }
+
+    @Test
+    public void rotateBySize() throws Exception {
+        PrintStream out = new PrintStream(new LogFileOutputStream(file, 100, 0, false), false);
+        for (int i = 0; i < 50; i++) {
+            out.println("0123456789 line " + i);
+            if (i % 7 == 0) {
+                out.flush();
+            }
+        }
+        out.close();
+
+        File[] files = dir.listFiles();
+        assertTrue(files.length > 5);
+        Set<String> allLines = new HashSet<>();
+        for (File f : files) {
+            byte[] content = Files.readAllBytes(f.toPath());
+            assertTrue(f + " too large", content.length <= 100);
+            String text = new String(content, Charsets.UTF_8);
+            assertTrue(f + " must only contain full lines", text.isEmpty() || text.endsWith("\n"));
+            allLines.addAll(Arrays.asList(text.split("\n")));
+        }
+        for (int i = 0; i < 50; i++) {
+            assertTrue(allLines.contains("0123456789 line " + i));
+        }
+    }
+
+    @Test
+    public void lineLargerThanMaxSize() throws Exception {
+        LogFileOutputStream out = new LogFileOutputStream(file, 10, 0, false);
+        out.write("short\nthis line is too long\nend\n".getBytes(Charsets.UTF_8));
+        out.close();
+        assertEquals("end\n", new String(Files.readAllBytes(file.toPath()), Charsets.UTF_8));
+        assertEquals(3, dir.listFiles().length);
+    }
+
+    @Test
+    public void rotateByTimeWithCompression() throws Exception {
+        LogFileOutputStream out = new LogFileOutputStream(file, 0, 50, true);
+        out.write("first\n".getBytes(Charsets.UTF_8));
+        out.flush();
+        Thread.sleep(100);
+        out.write("second\n".getBytes(Charsets.UTF_8));
+        out.close();
+
+        assertEquals("second\n", new String(Files.readAllBytes(file.toPath()), Charsets.UTF_8));
+        File[] files = dir.listFiles();
+        assertEquals(2, files.length);
+        for (File f : files) {
+            if (!f.equals(file)) {
+                assertTrue(f.getName().matches("^container\\.log\\.\\d{8}-\\d{6}\\.gz$"));
+                try (InputStream is = new GZIPInputStream(new FileInputStream(f))) {
+                    assertEquals("first\n", new String(ByteStreams.toByteArray(is), Charsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterClose() throws Exception {
+        LogFileOutputStream out = new LogFileOutputStream(file);
+        out.close();
+        out.write(1);
+    }
+
+    @Test
+    public void specParsing() {
+        LogOutputSpec spec = new LogOutputSpec.Builder()
+            .fileMaxSize("10m")
+            .fileRotateInterval("2h")
+            .build();
+        assertEquals(10 * 1024 * 1024, spec.getFileMaxSize());
+        assertEquals(2 * 60 * 60 * 1000, spec.getFileRotateInterval());
+        spec = new LogOutputSpec.Builder().fileMaxSize("1000").fileRotateInterval("30").build();
+        assertEquals(1000, spec.getFileMaxSize());
+        assertEquals(30000, spec.getFileRotateInterval());
+        spec = new LogOutputSpec.Builder().fileMaxSize(null).build();
+        assertEquals(0, spec.getFileMaxSize());
+        assertEquals(0, spec.getFileRotateInterval());
+
+        for (String invalid : new String[] { "10x", "m", "-1", "1.5m" }) {
+            try {
+                new LogOutputSpec.Builder().fileMaxSize(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException exp) {
+                assertTrue(exp.getMessage().contains(invalid));
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.fabric8.maven.docker.log;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.maven.docker.util.Timestamp;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class LogMergerTest {
+
+    private LogOutputSpec spec = new LogOutputSpec.Builder().prefix("c").useColor(false).build();
+
+    @Test
+    public void orderWithinWindow() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        LogMerger merger = new LogMerger(10000);
+
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:03.000000000Z"), "three");
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:01.000000001Z"), "one-b");
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:02.000000000Z"), "two");
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:01.000000000Z"), "one-a");
+        // same timestamp keeps order of arrival
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:03.000000000Z"), "three-again");
+
+        // Nothing printed within the window
+        Thread.sleep(200);
+        assertEquals(0, bytes.size());
+
+        merger.flush();
+        assertArrayEquals(new String[] { "c> one-a", "c> one-b", "c> two", "c> three", "c> three-again" },
+                          lines(bytes));
+    }
+
+    @Test
+    public void writtenAfterWindow() throws Exception {
+        final CountDownLatch written = new CountDownLatch(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes) {
+            @Override
+            public void flush() {
+                super.flush();
+                written.countDown();
+            }
+        };
+        LogMerger merger = new LogMerger(20);
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:02Z"), "second");
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:01Z"), "first");
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        assertArrayEquals(new String[] { "c> first", "c> second" }, lines(bytes));
+    }
+
+    @Test
+    public void manyProducers() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(bytes);
+        final LogMerger merger = new LogMerger(10000);
+        Thread[] producers = new Thread[8];
+        for (int i = 0; i < producers.length; i++) {
+            final int offset = i;
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        int ms = j * 8 + offset;
+                        merger.add(spec, out, Timestamp.lazy(String.format("2016-10-26T10:00:%02d.%03dZ", ms / 1000, ms % 1000)),
+                                   Integer.toString(ms));
+                    }
+                }
+            };
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        merger.flush();
+        String[] lines = lines(bytes);
+        assertEquals(8000, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(lines[i], "c> " + i);
+        }
+    }
+
+    @Test
+    public void invalidTimestamp() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        LogMerger merger = new LogMerger(10000);
+        merger.add(spec, out, Timestamp.lazy("2016-10-26T10:00:02Z"), "valid");
+        merger.add(spec, out, Timestamp.lazy("invalid"), "invalid");
+        merger.flush();
+        assertEquals(2, lines(bytes).length);
+    }
+
+    private String[] lines(ByteArrayOutputStream bytes) {
+        return bytes.toString().split("\\r?\\n");
+    }
+}
@@ -74,6 +74,16 @@ public class ContainerDetailsTest {
         thenMapContainsPortSpecOnly("52/udp");
     }
 
+    @Test
+    public void testHealthStatus() {
+        givenContainerData();
+        whenCreateContainer();
+        assertNull(container.getHealthStatus());
+
+        json.put(ContainerDetails.STATE, new JSONObject("{'Running' : true, 'Health' : { 'Status' : 'healthy' } }"));
+        assertEquals("healthy", container.getHealthStatus());
+    }
+
     @Test
     public void testContainerWithoutPorts() {
         givenAContainerWithoutPorts();
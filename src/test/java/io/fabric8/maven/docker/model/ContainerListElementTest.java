@@ -54,6 +54,18 @@ public class ContainerListElementTest {
         thenLabelsSizeIs(0);
     }
 
+    @Test
+    public void testHealthStatus() {
+        givenContainerData();
+        whenCreateContainer();
+        assertNull(container.getHealthStatus());
+
+        json.put(ContainersListElement.STATUS, "Up 16 seconds (health: starting)");
+        assertEquals("starting", container.getHealthStatus());
+        json.put(ContainersListElement.STATUS, "Up 2 minutes (unhealthy)");
+        assertEquals("unhealthy", container.getHealthStatus());
+    }
+
     @Test
     public void testContainerWithoutPorts() {
         givenAContainerWithoutPorts();
@@ -0,0 +1,86 @@
+package io.fabric8.maven.docker.model;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class ServerCapabilitiesTest {
+
+    @Test
+    public void details() {
+        ServerCapabilities capabilities = create("1.24", "1.12.1");
+        assertEquals("1.24", capabilities.getApiVersion());
+        assertEquals("1.12.1", capabilities.getVersion());
+        assertEquals("3XLU:ZJ4J:DNKQ:ZYVB", capabilities.getDaemonId());
+        assertEquals("docker-host", capabilities.getName());
+        assertEquals("linux", capabilities.getOsType());
+    }
+
+    @Test
+    public void oldDaemon() {
+        ServerCapabilities capabilities = new ServerCapabilities(new JSONObject("{\"ApiVersion\":\"1.20\"}"), new JSONObject());
+        assertNull(capabilities.getVersion());
+        assertNull(capabilities.getDaemonId());
+        assertNull(capabilities.getOsType());
+        assertTrue(capabilities.supportsApiVersion("1.18"));
+        assertFalse(capabilities.supportsBuildArgs());
+        assertFalse(capabilities.supportsNetworkAliases());
+        assertFalse(capabilities.supportsAncestorFilter());
+        assertFalse(capabilities.supportsHealthCheck());
+        assertFalse(capabilities.supportsWaitCondition());
+    }
+
+    @Test
+    public void withoutInfo() {
+        ServerCapabilities capabilities = new ServerCapabilities(new JSONObject("{\"ApiVersion\":\"1.24\"}"), null);
+        assertNull(capabilities.getDaemonId());
+        assertNull(capabilities.getName());
+        assertEquals(0, capabilities.getInfoJson().length());
+        assertTrue(capabilities.supportsHealthCheck());
+    }
+
+    @Test
+    public void capabilities() {
+        ServerCapabilities capabilities = create("1.23", "1.11.0");
+        assertTrue(capabilities.supportsBuildArgs());
+        assertTrue(capabilities.supportsNetworkAliases());
+        assertTrue(capabilities.supportsAncestorFilter());
+        assertFalse(capabilities.supportsHealthCheck());
+
+        capabilities = create("1.30", "17.06.0-ce");
+        assertTrue(capabilities.supportsHealthCheck());
+        assertTrue(capabilities.supportsWaitCondition());
+    }
+
+    private ServerCapabilities create(String apiVersion, String version) {
+        JSONObject versionJson = new JSONObject();
+        versionJson.put("ApiVersion", apiVersion);
+        versionJson.put("Version", version);
+        JSONObject info = new JSONObject();
+        info.put("ID", "3XLU:ZJ4J:DNKQ:ZYVB");
+        info.put("Name", "docker-host");
+        info.put("OSType", "linux");
+        return new ServerCapabilities(versionJson, info);
+    }
+}
@@ -0,0 +1,95 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.model.ContainersListElement;
+import io.fabric8.maven.docker.util.PomLabel;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class ContainerSnapshotTest {
+
+    @Mocked
+    private DockerAccess docker;
+
+    @Test
+    public void index() {
+        ContainerSnapshot snapshot = new ContainerSnapshot(Arrays.asList(
+            container("1", "web", "nginx", 100),
+            container("2", "web2", "nginx", 200),
+            container("3", "db", "postgres", 50),
+            container("1", "web", "nginx", 100)));
+
+        assertEquals(2, snapshot.getContainersForImage("nginx").size());
+        assertEquals("200000000000", snapshot.getLatestContainerForImage("nginx").getId());
+        assertEquals("300000000000", snapshot.getContainer("db").getId());
+        assertNull(snapshot.getContainer("unknown"));
+        assertTrue(snapshot.getContainersForImage("unknown").isEmpty());
+        assertNull(snapshot.getLatestContainerForImage("unknown"));
+    }
+
+    @Test
+    public void queryWithLabelAndNames() throws Exception {
+        final PomLabel label = new PomLabel("g", "a", "1.0");
+        new Expectations() {{
+            docker.listContainers(false, "label", "dmp.coordinates=g:a:1.0");
+            result = Arrays.asList(container("1", "web", "nginx", 100));
+            docker.listContainers(true, "name", "^/db$", "name", "^/cache$");
+            result = Arrays.asList(container("2", "db", "postgres", 100), container("1", "web", "nginx", 100));
+        }};
+        ContainerSnapshot snapshot = new QueryService(docker).getContainerSnapshot(label, Arrays.asList("db", "cache"));
+        assertEquals(1, snapshot.getContainersForImage("nginx").size());
+        assertNotNull(snapshot.getContainer("db"));
+        assertNull(snapshot.getContainer("cache"));
+    }
+
+    @Test
+    public void queryAllRunning() throws Exception {
+        new Expectations() {{
+            docker.listContainers(false);
+            result = Collections.emptyList();
+        }};
+        new QueryService(docker).getContainerSnapshot(null, null);
+        new Verifications() {{
+            docker.listContainers(anyBoolean, (String[]) any); times = 1;
+            docker.getContainersForImage(anyString); times = 0;
+        }};
+    }
+
+    private Container container(String id, String name, String image, long created) {
+        JSONObject json = new JSONObject();
+        json.put("Id", id + "00000000000000000000");
+        json.put("Names", new JSONArray().put("/" + name));
+        json.put("Image", image);
+        json.put("Created", created);
+        return new ContainersListElement(json);
+    }
+}
@@ -0,0 +1,115 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import io.fabric8.maven.docker.config.ImageConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class ContainerStateFileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("d-m-p-state").toFile(), "docker/containers.properties");
+    }
+
+    @Test
+    public void storedInOrder() throws Exception {
+        ContainerStateFile state = ContainerStateFile.load(file);
+        assertTrue(state.getEntries().isEmpty());
+
+        state.add("id1", image("name1", "alias1"));
+        state.add("id2", image("name2", null));
+        state.add("id3", image("name3", "alias3"));
+        // Added again moves to the end
+        state.add("id1", image("name1", "alias1"));
+        assertTrue(file.exists());
+
+        List<ContainerStateFile.Entry> entries = ContainerStateFile.load(file).getEntries();
+        assertEquals(3, entries.size());
+        verifyEntry(entries.get(0), "id2", "name2", null);
+        verifyEntry(entries.get(1), "id3", "name3", "alias3");
+        verifyEntry(entries.get(2), "id1", "name1", "alias1");
+    }
+
+    @Test
+    public void clear() throws Exception {
+        ContainerStateFile state = ContainerStateFile.load(file);
+        state.add("id1", image("name1", "alias1"));
+        state.clear();
+        assertFalse(file.exists());
+        assertTrue(state.getEntries().isEmpty());
+        assertTrue(ContainerStateFile.load(file).getEntries().isEmpty());
+        // Nothing to delete
+        state.clear();
+    }
+
+    @Test
+    public void incompleteEntries() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("0.id", "id0");
+        props.setProperty("1.id", "id1");
+        props.setProperty("1.image", "name1");
+        props.setProperty("3.id", "id3");
+        props.setProperty("3.image", "name3");
+        file.getParentFile().mkdirs();
+        try (OutputStream os = new FileOutputStream(file)) {
+            props.store(os, null);
+        }
+        List<ContainerStateFile.Entry> entries = ContainerStateFile.load(file).getEntries();
+        assertEquals(1, entries.size());
+        verifyEntry(entries.get(0), "id1", "name1", null);
+    }
+
+    @Test
+    public void matches() throws Exception {
+        ContainerStateFile state = ContainerStateFile.load(file);
+        state.add("id1", image("name1", "alias1"));
+        state.add("id2", image("name2", null));
+        List<ContainerStateFile.Entry> entries = state.getEntries();
+
+        assertTrue(entries.get(0).matches(image("other", "alias1")));
+        assertFalse(entries.get(0).matches(image("name1", "other")));
+        assertTrue(entries.get(1).matches(image("name2", "alias2")));
+        assertFalse(entries.get(1).matches(image("other", null)));
+    }
+
+    private void verifyEntry(ContainerStateFile.Entry entry, String id, String image, String alias) {
+        assertEquals(id, entry.getContainerId());
+        assertEquals(image, entry.getImage());
+        assertEquals(alias, entry.getAlias());
+    }
+
+    private ImageConfiguration image(String name, String alias) {
+        return new ImageConfiguration.Builder().name(name).alias(alias).build();
+    }
+}
@@ -114,6 +114,79 @@ public class ContainerTrackerTest {
         assertEquals(0,tracker.removeShutdownDescriptors(null).size());
     }
 
+    @Test
+    public void lookupAfterReRegistration() throws Exception {
+        tracker.registerContainer("1", getImageConfiguration("name", "alias"), getPomLabel("label1"));
+        tracker.registerContainer("2", getImageConfiguration("name", "alias"), getPomLabel("label1"));
+
+        // Removing the older container must not drop the mapping of the newer one
+        assertNotNull(tracker.removeContainer("1"));
+        assertEquals("2", tracker.lookupContainer("name"));
+        assertEquals("2", tracker.lookupContainer("alias"));
+
+        Collection<ContainerTracker.ContainerShutdownDescriptor> removed = tracker.removeShutdownDescriptors(getPomLabel("label1"));
+        assertEquals(1, removed.size());
+        assertEquals("2", removed.iterator().next().getContainerId());
+        assertNull(tracker.lookupContainer("name"));
+    }
+
+    @Test
+    public void removeManyByLabel() throws Exception {
+        int count = 20000;
+        for (int i = 0; i < count; i++) {
+            tracker.registerContainer("id" + i, getImageConfiguration("name" + i, "alias" + i), getPomLabel("label" + (i % 2)));
+        }
+        for (int i = 0; i < count; i += 4) {
+            assertNotNull(tracker.removeContainer("id" + i));
+        }
+
+        Collection<ContainerTracker.ContainerShutdownDescriptor> removed = tracker.removeShutdownDescriptors(getPomLabel("label0"));
+        assertEquals(count / 4, removed.size());
+        int expected = count - 2;
+        for (ContainerTracker.ContainerShutdownDescriptor desc : removed) {
+            assertEquals("id" + expected, desc.getContainerId());
+            assertNull(tracker.lookupContainer("alias" + expected));
+            expected -= 4;
+        }
+        assertEquals("id1", tracker.lookupContainer("alias1"));
+        assertEquals(count / 2, tracker.removeShutdownDescriptors(null).size());
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        final int threads = 8;
+        final int perThread = 500;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * perThread;
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = offset; i < offset + perThread; i++) {
+                            tracker.registerContainer("id" + i, getImageConfiguration("name" + i, "alias" + i), getPomLabel("label"));
+                            assertEquals("id" + i, tracker.lookupContainer("alias" + i));
+                            if (i % 2 == 0) {
+                                assertNotNull(tracker.removeContainer("id" + i));
+                                assertNull(tracker.lookupContainer("name" + i));
+                            }
+                        }
+                    } catch (Throwable exp) {
+                        errors.add(exp);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(threads * perThread / 2, tracker.removeShutdownDescriptors(getPomLabel("label")).size());
+        assertTrue(tracker.removeShutdownDescriptors(null).isEmpty());
+    }
+
     private void verifyDescriptor(String[] d, ContainerTracker.ContainerShutdownDescriptor desc) {
         assertNotNull(desc);
         assertEquals(desc.getContainerId(),d[0]);
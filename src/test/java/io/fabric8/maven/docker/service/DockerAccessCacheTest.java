@@ -0,0 +1,152 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.util.Logger;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class DockerAccessCacheTest {
+
+    @Mocked
+    private DockerAccess access;
+
+    @Mocked
+    private Logger log1;
+
+    @Mocked
+    private Logger log2;
+
+    private DockerAccessCache cache;
+
+    private List<Logger> created;
+
+    private List<ServerCapabilities> knownCapabilities;
+
+    private DockerAccessCache.Factory factory = new DockerAccessCache.Factory() {
+        @Override
+        public DockerAccess create(Logger log, ServerCapabilities capabilities) throws IOException {
+            created.add(log);
+            knownCapabilities.add(capabilities);
+            return access;
+        }
+    };
+
+    private Object session1 = new Object();
+    private Object session2 = new Object();
+
+    @Before
+    public void setUp() {
+        cache = new DockerAccessCache();
+        created = new ArrayList<>();
+        knownCapabilities = new ArrayList<>();
+    }
+
+    @Test
+    public void reusedWithinSession() throws Exception {
+        assertSame(access, get(session1, "v1.22", log1));
+        assertSame(access, get(session1, "v1.22", log2));
+        assertEquals(1, created.size());
+        assertTrue(cache.isCached(access));
+
+        // Logs go to the logger of the last user
+        created.get(0).info("hello");
+        new Verifications() {{
+            log1.info("hello", (Object[]) any); times = 0;
+            log2.info("hello", (Object[]) any); times = 1;
+            access.shutdown(); times = 0;
+        }};
+    }
+
+    @Test
+    public void separateForOtherVersion() throws Exception {
+        get(session1, "v1.22", log1);
+        get(session1, "v1.24", log1);
+        assertEquals(2, created.size());
+
+        // Capabilities are fetched for the first access object only
+        assertNull(knownCapabilities.get(0));
+        assertNotNull(knownCapabilities.get(1));
+        new Verifications() {{
+            access.getServerCapabilities(); times = 1;
+        }};
+    }
+
+    @Test
+    public void knownCapabilitiesNotFetched(@Mocked final ServerCapabilities capabilities) throws Exception {
+        assertNull(cache.getCapabilities(session1, "tcp://localhost:2375"));
+        cache.get(session1, "tcp://localhost:2375", null, "v1.24", 100, log1, factory, capabilities);
+        assertSame(capabilities, knownCapabilities.get(0));
+        assertSame(capabilities, cache.getCapabilities(session1, "tcp://localhost:2375"));
+        assertNull(cache.getCapabilities(session2, "tcp://localhost:2375"));
+        new Verifications() {{
+            access.getServerCapabilities(); times = 0;
+        }};
+    }
+
+    @Test
+    public void shutdownForNewSession() throws Exception {
+        get(session1, "v1.22", log1);
+        get(session2, "v1.22", log1);
+        assertEquals(2, created.size());
+        new Verifications() {{
+            access.shutdown(); times = 1;
+        }};
+    }
+
+    @Test
+    public void shutdownAll() throws Exception {
+        get(session1, "v1.22", log1);
+        get(session1, "v1.24", log1);
+        cache.shutdownAll();
+        assertFalse(cache.isCached(access));
+        new Verifications() {{
+            access.shutdown(); times = 2;
+        }};
+    }
+
+    @Test
+    public void shutdownAtSessionEnd() throws Exception {
+        DockerAccessCacheParticipant participant = new DockerAccessCacheParticipant();
+        participant.serviceHubFactory = new ServiceHubFactory();
+        cache = participant.serviceHubFactory.getDockerAccessCache();
+        get(session1, "v1.22", log1);
+        participant.afterSessionEnd(null);
+        assertFalse(cache.isCached(access));
+        new Verifications() {{
+            access.shutdown(); times = 1;
+        }};
+    }
+
+    private DockerAccess get(Object session, String version, Logger log) throws IOException {
+        return cache.get(session, "tcp://localhost:2375", null, version, 100, log, factory);
+    }
+}
@@ -0,0 +1,188 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.access.chunked.JsonStreamReader;
+import io.fabric8.maven.docker.access.chunked.StreamEvent;
+import io.fabric8.maven.docker.access.events.EventCallback;
+import io.fabric8.maven.docker.access.events.EventGetHandle;
+import io.fabric8.maven.docker.model.ContainerDetails;
+import io.fabric8.maven.docker.util.Logger;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class HealthyWaitCheckerTest {
+
+    private static final String CONTAINER_ID = "1234567890abcdef";
+
+    @Mocked
+    private DockerAccess docker;
+
+    @Mocked
+    private EventGetHandle handle;
+
+    @Mocked
+    private Logger log;
+
+    private final List<EventCallback> callbacks = new ArrayList<>();
+
+    @Test
+    public void healthyByEvent() throws Exception {
+        givenContainerWithHealth("starting");
+        HealthyWaitChecker checker = createChecker();
+        EventCallback callback = callbacks.get(0);
+
+        // Inspected once when the events are followed
+        callback.open();
+        assertFalse(checkUntilInspected(checker));
+        assertFalse(checker.check());
+
+        try {
+            callback.event(event("health_status: healthy"));
+            fail();
+        } catch (EventCallback.DoneException exp) {
+            // No more events needed
+        }
+        assertTrue(checker.check());
+        checker.cleanUp();
+
+        new Verifications() {{
+            docker.getContainer(anyString); times = 1;
+            handle.finish(); times = 1;
+        }};
+    }
+
+    @Test
+    public void healthyBeforeFollowingEvents() throws Exception {
+        givenContainerWithHealth("healthy");
+        HealthyWaitChecker checker = createChecker();
+        assertFalse(checker.check());
+
+        callbacks.get(0).open();
+        assertTrue(checkUntilInspected(checker));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unhealthyByEvent() throws Exception {
+        HealthyWaitChecker checker = createChecker();
+        EventCallback callback = callbacks.get(0);
+        callback.event(event("health_status: starting"));
+        assertFalse(checker.check());
+        try {
+            callback.event(event("health_status: unhealthy"));
+        } catch (EventCallback.DoneException exp) {
+            // Done as well
+        }
+        checker.check();
+    }
+
+    @Test
+    public void inspectedWithoutEvents() throws Exception {
+        givenContainerWithHealth("starting", "starting", "healthy");
+        HealthyWaitChecker checker = createChecker();
+        callbacks.get(0).error("Not supported");
+
+        checkUntilHealthy(checker);
+        new Verifications() {{
+            docker.getContainer(anyString); times = 3;
+        }};
+    }
+
+    @Test
+    public void noHealthCheck() throws Exception {
+        givenContainerWithHealth((String) null);
+        HealthyWaitChecker checker = createChecker();
+        callbacks.get(0).open();
+        try {
+            checkUntilInspected(checker);
+            fail();
+        } catch (IllegalStateException exp) {
+            assertTrue(exp.getMessage().contains("no health check"));
+        }
+    }
+
+    private HealthyWaitChecker createChecker() {
+        new Expectations() {{
+            docker.getEventsAsync(withEqual(CONTAINER_ID), withCapture(callbacks), withEqual("health_status"));
+            result = handle;
+        }};
+        return new HealthyWaitChecker(docker, CONTAINER_ID, "db", log);
+    }
+
+    private void givenContainerWithHealth(final String ... health) throws Exception {
+        final List<ContainerDetails> containers = new ArrayList<>();
+        for (String status : health) {
+            JSONObject state = new JSONObject().put("Running", true);
+            if (status != null) {
+                state.put("Health", new JSONObject().put("Status", status));
+            }
+            containers.add(new ContainerDetails(new JSONObject().put("Id", CONTAINER_ID).put("State", state)));
+        }
+        new Expectations() {{
+            docker.getContainer(CONTAINER_ID); result = containers;
+        }};
+    }
+
+    // Check until the inspection requested is done and return the result of the last check
+    private boolean checkUntilInspected(HealthyWaitChecker checker) throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            boolean result = checker.check();
+            if (!isInspecting(checker)) {
+                return result;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Container not inspected");
+    }
+
+    private void checkUntilHealthy(HealthyWaitChecker checker) throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            if (checker.check()) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Container not healthy");
+    }
+
+    private boolean isInspecting(HealthyWaitChecker checker) throws Exception {
+        java.lang.reflect.Field field = HealthyWaitChecker.class.getDeclaredField("pending");
+        field.setAccessible(true);
+        return field.get(checker) != null;
+    }
+
+    private StreamEvent event(String status) throws Exception {
+        String json = new JSONObject().put("status", status).put("id", CONTAINER_ID).toString();
+        StreamEvent event = new StreamEvent();
+        new JsonStreamReader(IOUtils.toInputStream(json, "UTF-8")).next(event);
+        return event;
+    }
+}
@@ -3,15 +3,24 @@ package io.fabric8.maven.docker.service;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import io.fabric8.maven.docker.log.LogOutputSpec;
 import io.fabric8.maven.docker.util.Logger;
+import io.fabric8.maven.docker.util.PomLabel;
 import io.fabric8.maven.docker.util.WaitUtil;
 import io.fabric8.maven.docker.access.*;
 import io.fabric8.maven.docker.config.*;
 import io.fabric8.maven.docker.log.LogOutputSpecFactory;
+import io.fabric8.maven.docker.model.Container;
+import io.fabric8.maven.docker.model.ContainersListElement;
+import io.fabric8.maven.docker.model.Network;
+import io.fabric8.maven.docker.model.ServerCapabilities;
 import mockit.*;
 import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
@@ -69,6 +78,7 @@ public class RunServiceTest {
             queryService.getContainerName("redisContainer2"); result = "db2";
             queryService.getContainerName("parentContainer"); result = "parentContainer";
             queryService.getContainerName("otherContainer"); result = "otherContainer";
+            docker.getServerCapabilities(); result = new ServerCapabilities(new JSONObject("{\"ApiVersion\":\"1.22\"}"), null);
         }};
 
         givenARunConfiguration();
@@ -211,6 +221,302 @@ public class RunServiceTest {
     }
 
 
+    @Test
+    public void stopStartedContainersInReverseDependencyOrder() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> removedNetworks = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch independentStops = new CountDownLatch(2);
+        final boolean[] parallel = new boolean[1];
+        docker = new MockUp<DockerAccess>() {
+            @Mock
+            public void stopContainer(String containerId, int wait) throws InterruptedException {
+                calls.add("begin " + containerId);
+                if (containerId.equals("web-container-id") || containerId.equals("other-container-id")) {
+                    // Both are stopped at the same time, otherwise the latch isn't released
+                    independentStops.countDown();
+                    if (independentStops.await(5, TimeUnit.SECONDS)) {
+                        parallel[0] = true;
+                    }
+                }
+                calls.add("end " + containerId);
+            }
+
+            @Mock
+            public boolean removeNetwork(String networkId) {
+                // Only when all containers of the network are gone
+                assertTrue(calls.contains("end db-container-id") && calls.contains("end app-container-id") &&
+                           calls.contains("end web-container-id"));
+                return removedNetworks.add(networkId);
+            }
+        }.getMockInstance();
+        runService = new RunService(docker, queryService, tracker, new LogOutputSpecFactory(true, true, null), log);
+
+        tracker.registerContainer("db-container-id", createDependentImageConfig("db", "net"), null);
+        tracker.registerContainer("other-container-id", createDependentImageConfig("other", null), null);
+        tracker.registerContainer("app-container-id", createDependentImageConfig("app", "net", "db"), null);
+        tracker.registerContainer("web-container-id", createDependentImageConfig("web", "net", "app", "db"), null);
+
+        new Expectations() {{
+            queryService.getNetworkByName("net"); result = new Network() {
+                public String getName() { return "net"; }
+                public String getId() { return "net-id"; }
+                public String getScope() { return null; }
+                public String getDriver() { return null; }
+            };
+            times = 1;
+        }};
+
+        runService.stopStartedContainers(false, false, true, null);
+
+        assertEquals(8, calls.size());
+        assertTrue(calls.indexOf("end web-container-id") < calls.indexOf("begin app-container-id"));
+        assertTrue(calls.indexOf("end app-container-id") < calls.indexOf("begin db-container-id"));
+        // Independent containers are stopped in parallel
+        assertTrue(parallel[0]);
+
+        assertEquals(Collections.singletonList("net-id"), removedNetworks);
+    }
+
+    @Test
+    public void stopStartedContainersWithCircularDependencies() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        docker = new MockUp<DockerAccess>() {
+            @Mock
+            public void stopContainer(String containerId, int wait) {
+                calls.add("begin " + containerId);
+                calls.add("end " + containerId);
+            }
+        }.getMockInstance();
+        runService = new RunService(docker, queryService, tracker, new LogOutputSpecFactory(true, true, null), log);
+
+        tracker.registerContainer("db-container-id", createDependentImageConfig("db", "net", "web"), null);
+        tracker.registerContainer("app-container-id", createDependentImageConfig("app", "net", "db"), null);
+        tracker.registerContainer("web-container-id", createDependentImageConfig("web", "net", "app"), null);
+
+        runService.stopStartedContainers(false, false, false, null);
+
+        // One after another, the last started first
+        assertEquals(Arrays.asList("begin web-container-id", "end web-container-id",
+                                   "begin app-container-id", "end app-container-id",
+                                   "begin db-container-id", "end db-container-id"), calls);
+    }
+
+    @Test
+    public void stopStartedContainersContinuesOnError() throws Exception {
+        final List<String> removed = Collections.synchronizedList(new ArrayList<String>());
+        docker = new MockUp<DockerAccess>() {
+            @Mock
+            public void stopContainer(String containerId, int wait) throws DockerAccessException {
+                if (containerId.equals("app-container-id")) {
+                    throw new DockerAccessException("Test");
+                }
+            }
+
+            @Mock
+            public void removeContainer(String containerId, boolean removeVolumes) {
+                removed.add(containerId);
+            }
+        }.getMockInstance();
+        runService = new RunService(docker, queryService, tracker, new LogOutputSpecFactory(true, true, null), log);
+
+        tracker.registerContainer("db-container-id", createDependentImageConfig("db", null), null);
+        tracker.registerContainer("app-container-id", createDependentImageConfig("app", null, "db"), null);
+        try {
+            runService.stopStartedContainers(false, false, false, null);
+            fail();
+        } catch (DockerAccessException exp) {
+            assertEquals("Test", exp.getMessage());
+        }
+        assertEquals(Collections.singletonList("db-container-id"), removed);
+    }
+
+    @Test
+    public void createOrReuseContainerTakesOverRunning() throws Exception {
+        final ImageConfiguration imageConfig = createReusableImageConfig();
+        new Expectations() {{
+            queryService.getImageId("db-image"); result = "image-id";
+            docker.listContainers(withEqual(false), withEqual("label"), withPrefix(RunService.FINGERPRINT_LABEL + "="));
+            result = Arrays.asList(createListedContainer("other-container-id", "other", "Up 2 minutes"),
+                                   createListedContainer("db-container-id", "db", "Up 2 minutes"));
+        }};
+
+        PortMapping portMapping = new PortMapping(Collections.<String>emptyList(), properties);
+        String id = runService.createOrReuseContainer(imageConfig, portMapping, null, properties);
+        assertEquals("db-container", id);
+        assertTrue(runService.isReusedContainer(id));
+        assertEquals(id, tracker.lookupContainer("db"));
+
+        runService.startContainer(imageConfig, id, portMapping);
+
+        new Verifications() {{
+            docker.createContainer((ContainerCreateConfig) any, anyString); times = 0;
+            docker.startContainer(anyString); times = 0;
+        }};
+    }
+
+    @Test
+    public void createOrReuseContainerTakesOverOnlyOwnContainersOnce() throws Exception {
+        final ImageConfiguration imageConfig = new ImageConfiguration.Builder()
+            .name("db-image")
+            .alias("db")
+            .runConfig(new RunImageConfiguration.Builder().build())
+            .build();
+        final PomLabel pomLabel = new PomLabel("io.fabric8", "module1", "1.0.0");
+        final PomLabel otherPomLabel = new PomLabel("io.fabric8", "module2", "1.0.0");
+        new Expectations() {{
+            queryService.getImageId("db-image"); result = "image-id";
+            docker.listContainers(withEqual(false), withEqual("label"), withPrefix(RunService.FINGERPRINT_LABEL + "="));
+            result = Arrays.asList(createListedContainer("foreign-container-id", "foreign", "Up 2 minutes", otherPomLabel),
+                                   createListedContainer("db-container-id", "db", "Up 2 minutes", pomLabel));
+            docker.createContainer((ContainerCreateConfig) any, null); result = "new-container-id";
+        }};
+
+        PortMapping portMapping = new PortMapping(Collections.<String>emptyList(), properties);
+        String first = runService.createOrReuseContainer(imageConfig, portMapping, pomLabel, properties);
+        assertEquals("db-container", first);
+        assertTrue(runService.isReusedContainer(first));
+        // Identical image of the same project gets a container of its own
+        String second = runService.createOrReuseContainer(imageConfig, portMapping, pomLabel, properties);
+        assertEquals("new-container-id", second);
+        assertFalse(runService.isReusedContainer(second));
+    }
+
+    @Test
+    public void createOrReuseContainerReplacesOutdated() throws Exception {
+        final ImageConfiguration imageConfig = createReusableImageConfig();
+        final List<ContainerCreateConfig> created = new ArrayList<>();
+        new Expectations() {{
+            queryService.getImageId("db-image"); result = "image-id";
+            docker.listContainers(withEqual(false), withEqual("label"), withPrefix(RunService.FINGERPRINT_LABEL + "="));
+            result = Collections.emptyList();
+            queryService.getContainer("db");
+            result = createListedContainer("old-db-container-id", "db", "Exited (0) 2 minutes ago");
+            docker.createContainer(withCapture(created), "db"); result = "new-container-id";
+        }};
+
+        String id = runService.createOrReuseContainer(imageConfig, new PortMapping(Collections.<String>emptyList(), properties),
+                                                      null, properties);
+        assertEquals("new-container-id", id);
+        assertFalse(runService.isReusedContainer(id));
+        String fingerprint = new JSONObject(created.get(0).toJson()).getJSONObject("Labels").getString(RunService.FINGERPRINT_LABEL);
+        assertTrue(fingerprint.matches("^[0-9a-f]{64}$"));
+
+        new Verifications() {{
+            docker.stopContainer(anyString, anyInt); times = 0;
+            docker.removeContainer("old-db-conta", false); times = 1;
+        }};
+    }
+
+    @Test
+    public void sharedContainerStartedOnce() throws Exception {
+        runService = new RunService(docker, queryService, tracker, new SharedContainerRegistry(),
+                                    new LogOutputSpecFactory(true, true, null), log);
+        ImageConfiguration imageConfig = createReusableImageConfig();
+        PomLabel module1 = new PomLabel("io.fabric8", "module1", "1.0.0");
+        PomLabel module2 = new PomLabel("io.fabric8", "module2", "1.0.0");
+        new Expectations() {{
+            docker.createContainer((ContainerCreateConfig) any, "db"); result = "shared-db-container-id"; times = 1;
+        }};
+
+        PortMapping portMapping = new PortMapping(Collections.<String>emptyList(), properties);
+        String id = runService.createOrAcquireSharedContainer(imageConfig, portMapping, module1, properties);
+        assertFalse(runService.isReusedContainer(id));
+        runService.sharedContainerReady(imageConfig);
+
+        assertEquals(id, runService.createOrAcquireSharedContainer(imageConfig, portMapping, module2, properties));
+        assertTrue(runService.isReusedContainer(id));
+        assertEquals(id, runService.lookupContainer("db"));
+        // Not stopped together with the containers of a project
+        assertNull(tracker.lookupContainer("db"));
+
+        runService.releaseSharedContainers(module1, false, false, false);
+        new Verifications() {{
+            docker.stopContainer(anyString, anyInt); times = 0;
+        }};
+        runService.releaseSharedContainers(module2, false, false, false);
+        new Verifications() {{
+            docker.stopContainer("shared-db-container-id", anyInt); times = 1;
+            docker.removeContainer("shared-db-container-id", false); times = 1;
+        }};
+    }
+
+    @Test
+    public void startContainerRetriesOnPortConflict() throws Exception {
+        ImageConfiguration imageConfig = createReusableImageConfig();
+        new Expectations() {{
+            docker.createContainer((ContainerCreateConfig) any, "db");
+            returns("first-container-id", "second-container-id");
+            docker.startContainer("first-container-id");
+            result = new DockerAccessException(new IOException("Bind for 0.0.0.0:32768 failed: port is already allocated"),
+                                               "Unable to start container id [first-container-id]");
+        }};
+
+        PortMapping portMapping = new PortMapping(Collections.singletonList("db.port:5432"), properties);
+        assertTrue(portMapping.allocateHostPorts());
+        String id = runService.createContainer(imageConfig, portMapping, null, properties);
+        assertEquals("second-container-id", runService.startContainer(imageConfig, id, portMapping, null, properties));
+        assertEquals("second-container-id", tracker.lookupContainer("db"));
+        assertNotNull(properties.getProperty("db.port"));
+
+        new Verifications() {{
+            docker.removeContainer("first-container-id", false); times = 1;
+            docker.startContainer("second-container-id"); times = 1;
+            queryService.getMandatoryContainer(anyString); times = 0;
+        }};
+    }
+
+    @Test(expected = DockerAccessException.class)
+    public void startContainerWithoutAllocatedPortsFails() throws Exception {
+        ImageConfiguration imageConfig = createReusableImageConfig();
+        new Expectations() {{
+            docker.startContainer("first-container-id");
+            result = new DockerAccessException(new IOException("port is already allocated"), "Unable to start container");
+        }};
+        PortMapping portMapping = new PortMapping(Collections.singletonList("5432:5432"), properties);
+        runService.startContainer(imageConfig, "first-container-id", portMapping, null, properties);
+    }
+
+    private ImageConfiguration createReusableImageConfig() {
+        return new ImageConfiguration.Builder()
+            .name("db-image")
+            .alias("db")
+            .runConfig(new RunImageConfiguration.Builder()
+                           .namingStrategy(RunImageConfiguration.NamingStrategy.alias)
+                           .build())
+            .build();
+    }
+
+    private Container createListedContainer(String id, String name, String status) {
+        return createListedContainer(id, name, status, null);
+    }
+
+    private Container createListedContainer(String id, String name, String status, PomLabel pomLabel) {
+        JSONObject labels = new JSONObject().put(RunService.FINGERPRINT_LABEL, "outdated");
+        if (pomLabel != null) {
+            labels.put(pomLabel.getKey(), pomLabel.getValue());
+        }
+        return new ContainersListElement(new JSONObject()
+            .put("Id", id)
+            .put("Image", "db-image")
+            .put("Names", new JSONArray().put("/" + name))
+            .put("Status", status)
+            .put("Created", 0L)
+            .put("Labels", labels));
+    }
+
+    private ImageConfiguration createDependentImageConfig(String alias, String network, String ... dependsOn) {
+        RunImageConfiguration.Builder builder = new RunImageConfiguration.Builder()
+            .dependsOn(Arrays.asList(dependsOn));
+        if (network != null) {
+            builder.network(new NetworkConfig.Builder().name(network).build());
+        }
+        return new ImageConfiguration.Builder()
+            .name("image-" + alias)
+            .alias(alias)
+            .runConfig(builder.build())
+            .build();
+    }
+
     private ImageConfiguration createImageConfig(int wait, int kill) {
         return new ImageConfiguration.Builder()
                 .name("testName")
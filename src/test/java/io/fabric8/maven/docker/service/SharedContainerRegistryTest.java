@@ -0,0 +1,203 @@
+package io.fabric8.maven.docker.service;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.maven.docker.access.DockerAccess;
+import io.fabric8.maven.docker.config.ImageConfiguration;
+import io.fabric8.maven.docker.model.ServerCapabilities;
+import io.fabric8.maven.docker.util.Logger;
+import io.fabric8.maven.docker.util.PomLabel;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class SharedContainerRegistryTest {
+
+    private SharedContainerRegistry registry;
+
+    private ImageConfiguration db = new ImageConfiguration.Builder().name("postgres").alias("db").build();
+    private PomLabel module1 = new PomLabel("io.fabric8", "module1", "1.0.0");
+    private PomLabel module2 = new PomLabel("io.fabric8", "module2", "1.0.0");
+
+    @Before
+    public void setUp() {
+        registry = new SharedContainerRegistry();
+    }
+
+    @Test
+    public void startedOnce() throws Exception {
+        assertTrue(registry.acquire(db, "fp", module1));
+        assertFalse(registry.acquire(db, "fp", module2));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> waiting = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return registry.await(db);
+                }
+            });
+            registry.created(db, "db-container-id");
+            assertNull(registry.lookupContainer("db"));
+            Thread.sleep(50);
+            assertFalse(waiting.isDone());
+
+            registry.ready(db);
+            assertEquals("db-container-id", waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("db-container-id", registry.lookupContainer("db"));
+        assertEquals("db-container-id", registry.lookupContainer("postgres"));
+        assertNull(registry.lookupContainer("other"));
+    }
+
+    @Test
+    public void stoppedByLastUser() throws Exception {
+        registry.acquire(db, "fp", module1);
+        registry.created(db, "db-container-id");
+        registry.ready(db);
+        registry.acquire(db, "fp", module2);
+
+        assertTrue(registry.release(module1, false).isEmpty());
+        assertEquals("db-container-id", registry.lookupContainer("db"));
+
+        List<SharedContainerRegistry.SharedContainer> released = registry.release(module2, false);
+        assertEquals(1, released.size());
+        assertEquals("db-container-id", released.get(0).getContainerId());
+        assertSame(db, released.get(0).getImageConfiguration());
+        assertNull(registry.lookupContainer("db"));
+        assertTrue(registry.acquire(db, "fp", module1));
+    }
+
+    @Test
+    public void keptForLaterUsers() throws Exception {
+        registry.acquire(db, "fp", module1);
+        registry.created(db, "db-container-id");
+        registry.ready(db);
+
+        assertTrue(registry.release(module1, true).isEmpty());
+        assertFalse(registry.acquire(db, "fp", module2));
+        assertEquals("db-container-id", registry.await(db));
+
+        assertEquals(1, registry.releaseAll().size());
+        assertNull(registry.lookupContainer("db"));
+    }
+
+    @Test
+    public void failedStart() throws Exception {
+        registry.acquire(db, "fp", module1);
+        registry.acquire(db, "fp", module2);
+        registry.created(db, "db-container-id");
+
+        // Removed regardless of other users, so that it is stopped
+        List<SharedContainerRegistry.SharedContainer> released = registry.release(module1, true);
+        assertEquals(1, released.size());
+        try {
+            registry.await(db);
+            fail();
+        } catch (IllegalStateException exp) {
+            // Not known anymore
+        }
+        assertTrue(registry.release(module2, false).isEmpty());
+    }
+
+    @Test
+    public void waitingUserFails() throws Exception {
+        registry.acquire(db, "fp", module1);
+        registry.acquire(db, "fp", module2);
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        Thread waiting = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    registry.await(db);
+                } catch (Throwable exp) {
+                    errors.add(exp);
+                }
+            }
+        };
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        // Failed before the container was created, nothing to stop
+        assertTrue(registry.release(module1, false).isEmpty());
+        Throwable error = errors.poll(10, TimeUnit.SECONDS);
+        assertTrue(error instanceof ExecutionException);
+        assertTrue(error.getCause().getMessage().contains("could not be started"));
+    }
+
+    @Test
+    public void differentConfigurationRejected() throws Exception {
+        assertTrue(registry.acquire(db, "fp", module1));
+        try {
+            registry.acquire(db, "other-fp", module2);
+            fail();
+        } catch (IllegalStateException exp) {
+            assertTrue(exp.getMessage().contains("io.fabric8:module2:1.0.0"));
+        }
+        registry.created(db, "db-container-id");
+        registry.ready(db);
+        assertEquals(1, registry.release(module1, false).size());
+    }
+
+    @Test
+    public void aliasUsedForOtherImageRejected() throws Exception {
+        ImageConfiguration mysql = new ImageConfiguration.Builder().name("mysql").alias("db").build();
+        ImageConfiguration cache = new ImageConfiguration.Builder().name("redis").build();
+        assertTrue(registry.acquire(db, "fp", module1));
+        try {
+            registry.acquire(mysql, "fp", module2);
+            fail();
+        } catch (IllegalStateException exp) {
+            assertTrue(exp.getMessage().contains("'db'"));
+        }
+        // Images without alias are identified by their name only
+        assertTrue(registry.acquire(cache, "fp", module2));
+        registry.created(cache, "cache-container-id");
+        registry.ready(cache);
+        assertEquals("cache-container-id", registry.lookupContainer("redis"));
+    }
+
+    @Test
+    public void shutdownAccessCreatedOnce(@Mocked final DockerAccess docker) throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        assertNull(registry.getShutdownAccess(null));
+        registry.setAccessFactory(new DockerAccessCache.Factory() {
+            @Override
+            public DockerAccess create(Logger log, ServerCapabilities capabilities) {
+                created.incrementAndGet();
+                assertNull(capabilities);
+                return docker;
+            }
+        });
+        assertSame(docker, registry.getShutdownAccess(null));
+        assertSame(docker, registry.getShutdownAccess(null));
+        assertEquals(1, created.get());
+    }
+}
@@ -2,10 +2,11 @@ package io.fabric8.maven.docker.util;
 
 import java.util.*;
 
+import io.fabric8.maven.docker.model.Container;
 import io.fabric8.maven.docker.service.QueryService;
 import mockit.Expectations;
 import mockit.Mocked;
-import org.junit.Before;
+import mockit.Verifications;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -19,23 +20,21 @@ public class StartOrderResolverTest {
     @Mocked
     private QueryService queryService;
     
-    @Before
-    @SuppressWarnings("unused")
-    public void setup() throws Exception {
-        new Expectations() {{
-            queryService.hasContainer((String) withNotNull());
-            result = false;
-            minTimes = 1;
-        }};
-    }
-    
+    @Mocked
+    private Container external;
+
     @Test
-    public void simple() {
+    public void simple() throws Exception {
         checkData(new Object[][]{
                 { new T[]{new T("1")}, new T[]{new T("1")}},
                 { new T[]{new T("1", "2"), new T("2")}, new T[]{new T("2"), new T("1", "2")} },
                 { new T[]{new T("1", "2", "3"), new T("2", "3"), new T("3")}, new T[]{new T("3"), new T("2", "3"), new T("1", "2", "3")} },
         });
+        // No lookup needed when all dependencies are known images
+        new Verifications() {{
+            queryService.listContainers(anyBoolean);
+            times = 0;
+        }};
     }
 
     @Test(expected = IllegalStateException.class)
@@ -46,6 +45,71 @@ public class StartOrderResolverTest {
         fail();
     }
 
+    @Test
+    public void exactCycle() {
+        try {
+            StartOrderResolver.resolve(queryService, Arrays.<StartOrderResolver.Resolvable>asList(
+                new T("0"), new T("1", "0", "2"), new T("2", "3"), new T("3", "1"), new T("4", "3")));
+            fail();
+        } catch (IllegalStateException exp) {
+            assertTrue(exp.getMessage(), exp.getMessage().endsWith(": 1 -> 2 -> 3 -> 1"));
+        }
+    }
+
+    @Test
+    public void externalContainers() throws Exception {
+        new Expectations() {{
+            queryService.listContainers(true);
+            result = Arrays.asList(external);
+            times = 1;
+            external.getName(); result = "db";
+            external.getId(); result = "0123456789abcdef";
+        }};
+        checkData(new Object[][]{
+                { new T[]{new T("1", "db", "2"), new T("2", "db", "01234")}, new T[]{new T("2", "db", "01234"), new T("1", "db", "2")} },
+        });
+    }
+
+    @Test
+    public void externalContainerByFullId() throws Exception {
+        final String fullId = "0123456789ab4a6b8e6bd1ca5f3e0f1d8e7c2b9a6d5c4b3a2f1e0d9c8b7a6f5e";
+        new Expectations() {{
+            queryService.listContainers(true);
+            result = Arrays.asList(external);
+            external.getName(); result = "db";
+            external.getId(); result = fullId.substring(0, 12);
+        }};
+        List<StartOrderResolver.Resolvable> resolved =
+            StartOrderResolver.resolve(queryService, Arrays.<StartOrderResolver.Resolvable>asList(new T("1", fullId)));
+        assertEquals(1, resolved.size());
+    }
+
+    @Test
+    public void missingDependency() throws Exception {
+        new Expectations() {{
+            queryService.listContainers(true);
+            result = Collections.emptyList();
+        }};
+        try {
+            StartOrderResolver.resolve(queryService, Arrays.<StartOrderResolver.Resolvable>asList(new T("1", "unknown")));
+            fail();
+        } catch (IllegalStateException exp) {
+            assertTrue(exp.getMessage(), exp.getMessage().contains("1 depends on unknown"));
+        }
+    }
+
+    @Test
+    public void longChain() {
+        List<StartOrderResolver.Resolvable> input = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            input.add(i < 499 ? new T("" + i, "" + (i + 1)) : new T("" + i));
+        }
+        List<StartOrderResolver.Resolvable> result = StartOrderResolver.resolve(queryService, input);
+        for (int i = 0; i < 500; i++) {
+            assertEquals("" + (499 - i), result.get(i).getName());
+        }
+    }
+
     private void checkData(Object[][] data) {
         for (Object[] aData : data) {
             StartOrderResolver.Resolvable[] input = (StartOrderResolver.Resolvable[]) aData[0];
@@ -0,0 +1,236 @@
+package io.fabric8.maven.docker.util;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class StartPipelineTest {
+
+    @Test
+    public void dependenciesReadyBeforeCreate() throws Exception {
+        Image db = new Image("db");
+        Image app = new Image("app", "db");
+        Image web = new Image("web", "app");
+        Image other = new Image("other");
+        Recorder recorder = new Recorder();
+        recorder.waitTime.put("db", 200L);
+
+        new StartPipeline<>(recorder, 4, false).run(Arrays.asList(db, other, app, web));
+
+        List<String> events = recorder.events;
+        assertEquals(20, events.size());
+        assertTrue(events.indexOf("ready db") < events.indexOf("create app"));
+        assertTrue(events.indexOf("ready app") < events.indexOf("create web"));
+        // Independent images neither wait for the slow one to be ready nor for its pull
+        assertTrue(events.indexOf("ready other") < events.indexOf("ready db"));
+        assertTrue(events.indexOf("pull web") < events.indexOf("ready db"));
+    }
+
+    @Test
+    public void sequential() throws Exception {
+        Recorder recorder = new Recorder();
+        recorder.waitTime.put("a", 100L);
+        new StartPipeline<>(recorder, 4, true).run(Arrays.asList(new Image("a"), new Image("b"), new Image("c")));
+        assertEquals(Arrays.asList("pull a", "pull b", "pull c",
+                                   "create a", "start a", "wait a", "ready a",
+                                   "create b", "start b", "wait b", "ready b",
+                                   "create c", "start c", "wait c", "ready c"),
+                     recorder.events);
+    }
+
+    @Test
+    public void boundedParallelism() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        Recorder recorder = new Recorder() {
+            @Override
+            public void pull(Image image) throws Exception {
+                int now = running.incrementAndGet();
+                synchronized (max) {
+                    max.set(Math.max(max.get(), now));
+                }
+                Thread.sleep(20);
+                running.decrementAndGet();
+            }
+        };
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            images.add(new Image("i" + i));
+        }
+        new StartPipeline<>(recorder, 3, false).run(images);
+        assertEquals(3, max.get());
+    }
+
+    @Test
+    public void sharedPull() throws Exception {
+        Recorder recorder = new Recorder();
+        Image first = new Image("first");
+        Image second = new Image("second");
+        second.name = first.name;
+        new StartPipeline<>(recorder, 4, false).run(Arrays.asList(first, second));
+        assertEquals(1, Collections.frequency(recorder.events, "pull first"));
+        assertEquals(0, Collections.frequency(recorder.events, "pull second"));
+    }
+
+    @Test
+    public void failFast() throws Exception {
+        final SettableFuture<Object> neverReady = SettableFuture.create();
+        final CountDownLatch slowCreateRunning = new CountDownLatch(1);
+        Recorder recorder = new Recorder() {
+            @Override
+            public String create(Image image) throws Exception {
+                if (image.alias.equals("broken")) {
+                    slowCreateRunning.await();
+                    throw new IllegalStateException("broken");
+                }
+                if (image.alias.equals("slow")) {
+                    slowCreateRunning.countDown();
+                    // Like a request to the daemon, which isn't stopped by an interrupt
+                    Uninterruptibles.sleepUninterruptibly(300, TimeUnit.MILLISECONDS);
+                }
+                return super.create(image);
+            }
+
+            @Override
+            public ListenableFuture<?> waitUntilReady(Image image, String containerId) throws Exception {
+                events.add("wait " + image.alias);
+                return image.alias.equals("waiting") ? neverReady : Futures.immediateFuture(null);
+            }
+        };
+        long start = System.currentTimeMillis();
+        try {
+            new StartPipeline<>(recorder, 4, false).run(Arrays.asList(new Image("waiting"), new Image("slow"),
+                                                                      new Image("broken"), new Image("dependent", "waiting")));
+            fail();
+        } catch (ExecutionException exp) {
+            assertEquals("broken", exp.getCause().getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(neverReady.isCancelled());
+        // Create in progress has been waited for
+        assertTrue(recorder.events.contains("create slow"));
+        assertFalse(recorder.events.contains("start slow"));
+        assertFalse(recorder.events.contains("create dependent"));
+    }
+
+    @Test
+    public void runningStagesInterrupted() throws Exception {
+        final CountDownLatch pullRunning = new CountDownLatch(1);
+        final CountDownLatch pullInterrupted = new CountDownLatch(1);
+        Recorder recorder = new Recorder() {
+            @Override
+            public void pull(Image image) throws Exception {
+                if (image.alias.equals("huge")) {
+                    pullRunning.countDown();
+                    try {
+                        Thread.sleep(60000);
+                    } catch (InterruptedException exp) {
+                        pullInterrupted.countDown();
+                        throw exp;
+                    }
+                }
+                super.pull(image);
+            }
+
+            @Override
+            public String create(Image image) throws Exception {
+                pullRunning.await();
+                throw new IllegalStateException("broken");
+            }
+        };
+        try {
+            new StartPipeline<>(recorder, 4, false).run(Arrays.asList(new Image("huge"), new Image("broken")));
+            fail();
+        } catch (ExecutionException exp) {
+            assertEquals("broken", exp.getCause().getMessage());
+        }
+        assertTrue(pullInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    private static class Image implements StartOrderResolver.Resolvable {
+        private String name;
+        private final String alias;
+        private final List<String> dependencies;
+
+        Image(String alias, String... dependencies) {
+            this.name = "image-" + alias;
+            this.alias = alias;
+            this.dependencies = Arrays.asList(dependencies);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getAlias() {
+            return alias;
+        }
+
+        @Override
+        public List<String> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    private static class Recorder implements StartPipeline.Stages<Image> {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final Map<String, Long> waitTime = new ConcurrentHashMap<>();
+
+        @Override
+        public void pull(Image image) throws Exception {
+            events.add("pull " + image.alias);
+        }
+
+        @Override
+        public String create(Image image) throws Exception {
+            events.add("create " + image.alias);
+            return image.alias + "-id";
+        }
+
+        @Override
+        public String start(Image image, String containerId) throws Exception {
+            assertEquals(image.alias + "-id", containerId);
+            events.add("start " + image.alias);
+            return containerId;
+        }
+
+        @Override
+        public ListenableFuture<?> waitUntilReady(Image image, String containerId) throws Exception {
+            events.add("wait " + image.alias);
+            Long time = waitTime.get(image.alias);
+            return time != null ? WaitEngine.getInstance().pause(time) : Futures.immediateFuture(null);
+        }
+
+        @Override
+        public void postStart(Image image, String containerId) throws Exception {
+            events.add("ready " + image.alias);
+        }
+    }
+}
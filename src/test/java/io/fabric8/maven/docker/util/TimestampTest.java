@@ -108,4 +108,90 @@ public class TimestampTest {
     public void testInvalidNanos() throws Exception {
         Timestamp ts = new Timestamp("2014-11-24T12:00:00.abzeZ");
     }
+
+    @Test
+    public void testFastParseSameAsIsoParser() throws Exception {
+        String[][] specs = {
+            { "2014-11-24T22:34:00.761764812Z", "2014-11-24T22:34:00.761Z" },
+            { "2016-02-29T23:59:59.999Z", "2016-02-29T23:59:59.999Z" },
+            { "1969-12-31T23:59:59.001+05:30", "1969-12-31T23:59:59.001+05:30" },
+            { "2016-03-16T17:06:30.714387000-04:00", "2016-03-16T17:06:30.714-04:00" },
+            { "2016-03-16T17:06:30.714387000+03", "2016-03-16T17:06:30.714+03" },
+            { "2016-03-16T17:06:30+0130", "2016-03-16T17:06:30.000+0130" },
+            { "2000-01-01t00:00:00z", "2000-01-01T00:00:00.000Z" }
+        };
+        for (String[] spec : specs) {
+            assertEquals(spec[0], ISODateTimeFormat.dateTime().parseDateTime(spec[1]), new Timestamp(spec[0]).getDate());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDayOfMonth() throws Exception {
+        new Timestamp("2015-02-29T12:00:00.000Z");
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        Timestamp lazy = Timestamp.lazy("2014-11-24T22:34:00.761764812Z");
+        assertEquals(ref, lazy);
+        assertEquals(ref.hashCode(), lazy.hashCode());
+        assertEquals(0, Timestamp.lazy("2014-11-24T22:34:00.761764812Z").compareTo(ref));
+    }
+
+    @Test
+    public void testLazyInvalidSpec() throws Exception {
+        Timestamp ts = Timestamp.lazy("no timestamp");
+        try {
+            ts.getDate();
+            fail("Invalid timestamp should be detected on first access");
+        } catch (IllegalArgumentException exp) {
+            // expected
+        }
+    }
+
+    @Test
+    public void isoStringRoundTrip() throws Exception {
+        assertEquals("2014-11-24T22:34:00.761764812Z", ref.toIsoString());
+        for (String spec : new String[] { "2016-10-26T10:00:00Z", "2016-10-26T12:00:00.1234+02:00",
+                                          "2016-10-26T10:00:00.000000001Z", "2016-10-26T10:00:00.123456789012Z" }) {
+            Timestamp ts = new Timestamp(spec);
+            assertEquals(spec, ts, new Timestamp(ts.toIsoString()));
+        }
+    }
+
+    @Test
+    public void fractionsOfDifferentLength() throws Exception {
+        // Docker drops trailing zeros, so entries within the same millisecond have fractions of different length
+        String[] ordered = { "2014-11-24T22:34:00.76Z", "2014-11-24T22:34:00.761Z", "2014-11-24T22:34:00.7617Z",
+                             "2014-11-24T22:34:00.7617648Z", "2014-11-24T22:34:00.761765Z",
+                             "2014-11-24T22:34:00.761765001Z" };
+        for (int i = 1; i < ordered.length; i++) {
+            assertTrue(ordered[i], new Timestamp(ordered[i - 1]).compareTo(new Timestamp(ordered[i])) < 0);
+        }
+        assertEquals("2014-11-24T22:34:00.761764800Z", new Timestamp("2014-11-24T22:34:00.7617648Z").toIsoString());
+        assertEquals("2014-11-24T22:34:00.760000000Z", new Timestamp("2014-11-24T22:34:00.76Z").toIsoString());
+        assertEquals(new Timestamp("2014-11-24T22:34:00.7617648Z"), new Timestamp("2014-11-24T22:34:00.761764800Z"));
+        // Too many digits for the fast parser
+        assertEquals(new Timestamp("2014-11-24T22:34:00.7617648Z"), new Timestamp("2014-11-24T22:34:00.7617648000000Z"));
+    }
+
+    @Test
+    public void utcComparedLikeParsed() throws Exception {
+        String[] specs = { "2014-11-24T22:34:00Z", "2014-11-24T22:34:00.76Z", "2014-11-24T22:34:00.7617648Z",
+                           "2014-11-24T22:34:00.761765Z", "2014-11-24T22:34:00.761765000Z", "2014-11-24T22:34:01.1Z",
+                           "2014-11-25T00:00:00.000000001Z", "2016-02-29T23:59:59.999999999Z" };
+        for (String a : specs) {
+            for (String b : specs) {
+                // An explicit offset is not compared as string
+                Timestamp parsedB = new Timestamp(b.replace("Z", "+00:00"));
+                assertEquals(a + " <> " + b, Integer.signum(Timestamp.lazy(a).compareTo(parsedB)),
+                             Integer.signum(Timestamp.lazy(a).compareTo(Timestamp.lazy(b))));
+                assertEquals(a + " <> " + b, Timestamp.lazy(a).equals(Timestamp.lazy(b)),
+                             Timestamp.lazy(a).compareTo(Timestamp.lazy(b)) == 0);
+            }
+        }
+        assertTrue(Timestamp.lazy("2014-11-24T22:34:00.76Z").isValid());
+        assertFalse(Timestamp.lazy("2015-02-29T22:34:00.76Z").isValid());
+        assertFalse(Timestamp.lazy("no timestamp").isValid());
+    }
 }
@@ -0,0 +1,214 @@
+package io.fabric8.maven.docker.util;
+/*
+ *
+ * Copyright 2016 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+import static io.fabric8.maven.docker.util.WaitEngine.MAX_DELAY;
+import static org.junit.Assert.*;
+
+/**
+ * @author roland
+ * @since 16/10/26
+ */
+public class WaitEngineTest {
+
+    private WaitEngine engine = new WaitEngine();
+
+    @Test
+    public void manyWaitsOnOneThread() throws Exception {
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        List<ListenableFuture<Long>> futures = new ArrayList<>();
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < 40; i++) {
+            final long readyAfter = 50 + i * 5;
+            futures.add(engine.wait(5000, Collections.<WaitUtil.WaitChecker>singletonList(new Checker() {
+                @Override
+                public boolean check() {
+                    threads.add(Thread.currentThread().getName());
+                    return System.currentTimeMillis() - start >= readyAfter;
+                }
+            })));
+        }
+        for (ListenableFuture<Long> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS) < 1000);
+        }
+        assertEquals(1, threads.size());
+        // The waits don't need to be finished one after the other
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    public void quickDetection() throws Exception {
+        final long start = System.currentTimeMillis();
+        long waited = engine.wait(5000, Collections.<WaitUtil.WaitChecker>singletonList(new Checker() {
+            @Override
+            public boolean check() {
+                return System.currentTimeMillis() - start > 30;
+            }
+        })).get();
+        // Checks are done after 0, 25, 75 ms
+        assertTrue("Waited " + waited, waited < 200);
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        Checker checker = new Checker();
+        try {
+            engine.wait(300, Collections.<WaitUtil.WaitChecker>singletonList(checker)).get();
+            fail();
+        } catch (ExecutionException exp) {
+            assertTrue(exp.getCause() instanceof WaitUtil.WaitTimeoutException);
+            long waited = ((WaitUtil.WaitTimeoutException) exp.getCause()).getWaited();
+            assertTrue("Waited " + waited, waited >= 300 && waited < 1000);
+        }
+        assertTrue(checker.cleaned);
+        // 0, 25, 75, 175 and at the deadline
+        assertTrue(checker.checks >= 4 && checker.checks <= 6);
+    }
+
+    @Test
+    public void checkerError() throws Exception {
+        Checker checker = new Checker() {
+            @Override
+            public boolean check() {
+                throw new IllegalArgumentException("bad");
+            }
+        };
+        try {
+            engine.wait(5000, Collections.<WaitUtil.WaitChecker>singletonList(checker)).get();
+            fail();
+        } catch (ExecutionException exp) {
+            assertTrue(exp.getCause() instanceof IllegalArgumentException);
+        }
+        assertTrue(checker.cleaned);
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        Checker checker = new Checker();
+        ListenableFuture<Long> future = engine.wait(10000, Collections.<WaitUtil.WaitChecker>singletonList(checker));
+        Thread.sleep(50);
+        future.cancel(false);
+        long start = System.currentTimeMillis();
+        while (!checker.cleaned && System.currentTimeMillis() - start < 2000) {
+            Thread.sleep(10);
+        }
+        assertTrue(checker.cleaned);
+    }
+
+    @Test
+    public void conditionMetWithoutPolling() throws Exception {
+        final SettableFuture<Integer> condition = SettableFuture.create();
+        Checker checker = new Checker();
+        ListenableFuture<Long> future = engine.wait(10000, Collections.<WaitUtil.WaitChecker>singletonList(checker),
+                                                    Collections.singletonList(condition));
+        // Polling has backed off to its max delay by now
+        Thread.sleep(1200);
+        long start = System.currentTimeMillis();
+        condition.set(0);
+        future.get(5, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - start < MAX_DELAY);
+        assertTrue(checker.cleaned);
+    }
+
+    @Test
+    public void conditionFailed() throws Exception {
+        SettableFuture<Integer> condition = SettableFuture.create();
+        ListenableFuture<Long> future = engine.wait(10000, Collections.<WaitUtil.WaitChecker>emptyList(),
+                                                    Collections.singletonList(condition));
+        condition.setException(new IllegalStateException("exit code 1"));
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exp) {
+            assertEquals("exit code 1", exp.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void conditionCancelledOnTimeout() throws Exception {
+        SettableFuture<Integer> condition = SettableFuture.create();
+        try {
+            engine.wait(100, Collections.<WaitUtil.WaitChecker>emptyList(), Collections.singletonList(condition)).get();
+            fail();
+        } catch (ExecutionException exp) {
+            assertTrue(exp.getCause() instanceof WaitUtil.WaitTimeoutException);
+        }
+        assertTrue(condition.isCancelled());
+    }
+
+    @Test
+    public void pause() throws Exception {
+        long start = System.currentTimeMillis();
+        assertEquals(100L, (long) engine.pause(100).get());
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    @Test
+    public void tcpPortsInParallel() throws Exception {
+        InetAddress address = InetAddress.getLoopbackAddress();
+        try (ServerSocket open1 = new ServerSocket(0, 10, address);
+             ServerSocket open2 = new ServerSocket(0, 10, address)) {
+            WaitUtil.TcpPortChecker checker =
+                new WaitUtil.TcpPortChecker(address.getHostAddress(), Arrays.asList(open1.getLocalPort(), open2.getLocalPort()));
+            assertTrue(engine.wait(2000, Collections.<WaitUtil.WaitChecker>singletonList(checker)).get() < 1000);
+            assertTrue(checker.getPending().isEmpty());
+
+            int closedPort = freePort(address);
+            checker = new WaitUtil.TcpPortChecker(address.getHostAddress(), Arrays.asList(open1.getLocalPort(), closedPort));
+            try {
+                engine.wait(300, Collections.<WaitUtil.WaitChecker>singletonList(checker)).get();
+                fail();
+            } catch (ExecutionException exp) {
+                assertTrue(exp.getCause() instanceof WaitUtil.WaitTimeoutException);
+            }
+            assertEquals(Collections.singletonList(new InetSocketAddress(address.getHostAddress(), closedPort)),
+                         checker.getPending());
+        }
+    }
+
+    private int freePort(InetAddress address) throws Exception {
+        try (ServerSocket socket = new ServerSocket(0, 10, address)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class Checker implements WaitUtil.WaitChecker {
+        private volatile boolean cleaned;
+        private volatile int checks;
+
+        @Override
+        public boolean check() {
+            checks++;
+            return false;
+        }
+
+        @Override
+        public void cleanUp() {
+            cleaned = true;
+        }
+    }
+}
@@ -92,7 +92,7 @@ public class WaitUtilTest {
 
     @Test
     public void waitOnCallable() throws Exception {
-        long waited = waitOnCallable(1, 500);
+        long waited = waitOnCallable(5, 500);
 
         assertTrue(500 <= waited);
         assertTrue(1000 > waited);
@@ -100,12 +100,24 @@ public class WaitUtilTest {
 
     @Test
     public void waitOnCallableFullWait() throws Exception {
-        long waited = waitOnCallable(1, 1000);
+        long waited = waitOnCallable(5, 1000);
         assertTrue(1000 <= waited);
     }
 
-    private long waitOnCallable(long wait, final long sleep) throws WaitTimeoutException, ExecutionException {
-        return WaitUtil.wait(5, new Callable<Void>() {
+    @Test
+    public void waitOnCallableTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            waitOnCallable(1, 5000);
+            fail();
+        } catch (WaitTimeoutException exp) {
+            assertTrue(exp.getWaited() >= 1000);
+        }
+        assertTrue(System.currentTimeMillis() - start < 3000);
+    }
+
+    private long waitOnCallable(int wait, final long sleep) throws WaitTimeoutException, ExecutionException {
+        return WaitUtil.wait(wait, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
                 Thread.sleep(sleep);